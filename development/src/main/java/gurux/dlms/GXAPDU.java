@@ -305,10 +305,9 @@ final class GXAPDU {
                 GXByteBuffer tmp = new GXByteBuffer();
                 getInitiateRequest(settings, tmp, false);
                 AesGcmParameter p = new AesGcmParameter(settings, Command.GLO_INITIATE_REQUEST, cipher.getSecurity(),
-                        cipher.getSecuritySuite(), cipher.getInvocationCounter(), cipher.getSystemTitle(),
+                        cipher.getSecuritySuite(), cipher.nextInvocationCounter(), cipher.getSystemTitle(),
                         cipher.getBlockCipherKey(), cipher.getAuthenticationKey());
                 byte[] crypted = GXCiphering.encrypt(p, tmp.array());
-                cipher.setInvocationCounter(1 + cipher.getInvocationCounter());
                 // Length for AARQ user field
                 data.setUInt8((2 + crypted.length));
                 data.setUInt8(BerType.OCTET_STRING);
@@ -1444,10 +1443,9 @@ final class GXAPDU {
         }
         if (settings.isCiphered(false)) {
             AesGcmParameter p = new AesGcmParameter(settings, Command.GLO_INITIATE_RESPONSE, cipher.getSecurity(),
-                    cipher.getSecuritySuite(), cipher.getInvocationCounter(), cipher.getSystemTitle(),
+                    cipher.getSecuritySuite(), cipher.nextInvocationCounter(), cipher.getSystemTitle(),
                     cipher.getBlockCipherKey(), cipher.getAuthenticationKey());
             byte[] tmp = GXCiphering.encrypt(p, data.array());
-            cipher.setInvocationCounter(1 + cipher.getInvocationCounter());
             return tmp;
         }
         return data.array();
@@ -38,6 +38,7 @@ package gurux.dlms;
 
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 
 import gurux.dlms.enums.DataType;
@@ -63,6 +64,14 @@ public class GXByteBuffer {
      * Position of byte array.
      */
     private int position;
+    /**
+     * Is buffer a read-only slice of another buffer.
+     */
+    private boolean readOnly;
+    /**
+     * Is buffer taken from the buffer pool.
+     */
+    private boolean pooled;
 
     /**
      * Constructor.
@@ -117,16 +126,21 @@ public class GXByteBuffer {
      *            Buffer capacity.
      */
     public final void capacity(final int capacity) {
+        checkWritable();
         if (capacity == 0) {
             setData(null);
             size = 0;
             position = 0;
         } else {
+            int value = capacity;
+            if (pooled) {
+                value = GXByteBufferPool.getClassCapacity(capacity);
+            }
             if (getData() == null) {
-                setData(new byte[capacity]);
+                setData(new byte[value]);
             } else {
                 byte[] tmp = getData();
-                setData(new byte[capacity]);
+                setData(new byte[value]);
                 if (size < capacity) {
                     System.arraycopy(tmp, 0, getData(), 0, size);
                 } else {
@@ -137,6 +151,52 @@ public class GXByteBuffer {
         }
     }
 
+    /**
+     * Grow the buffer so that the given amount of bytes fit to it. Capacity is
+     * at least doubled, so the array is not copied every time when data is
+     * appended.
+     * 
+     * @param required
+     *            Required capacity.
+     */
+    private void ensureCapacity(final int required) {
+        int cap = capacity();
+        if (required > cap) {
+            capacity(Math.max(required + ARRAY_CAPACITY, 2 * cap));
+        }
+    }
+
+    /**
+     * Throw exception if buffer is read-only.
+     */
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("Buffer is read-only.");
+        }
+    }
+
+    /**
+     * @return Is buffer read-only.
+     */
+    public final boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return Is buffer taken from the buffer pool.
+     */
+    public final boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * @param value
+     *            Is buffer taken from the buffer pool.
+     */
+    final void setPooled(final boolean value) {
+        pooled = value;
+    }
+
     /**
      * Buffer capacity.
      * 
@@ -179,7 +239,7 @@ public class GXByteBuffer {
      *            Buffer size.
      */
     public final void size(final int value) {
-        if (value < 0 || value > capacity()) {
+        if (value < 0 || value > capacity() || (readOnly && value > size)) {
             throw new IllegalArgumentException("size");
         }
         size = value;
@@ -219,6 +279,56 @@ public class GXByteBuffer {
         return tmp;
     }
 
+    /**
+     * Returns read-only slice that shares the data with this buffer. Bytes are
+     * not copied. Slice starts from the given index and it uses the same
+     * indexes as this buffer.
+     * 
+     * @param index
+     *            Start index.
+     * @param count
+     *            Byte count.
+     * @return Read-only slice.
+     */
+    public final GXByteBuffer slice(final int index, final int count) {
+        if (index < 0 || count < 0 || index + count > size) {
+            throw new IllegalArgumentException("slice");
+        }
+        GXByteBuffer bb = new GXByteBuffer();
+        bb.data = data;
+        bb.size = index + count;
+        bb.position = index;
+        bb.readOnly = true;
+        return bb;
+    }
+
+    /**
+     * Returns read-only buffer that shares the data with the heap NIO buffer.
+     * Position and size of the returned buffer are the position and limit of
+     * the NIO buffer in the backing array.
+     * 
+     * @param value
+     *            NIO buffer. Buffer must have accessible backing array.
+     * @return Read-only buffer.
+     */
+    static GXByteBuffer wrap(final ByteBuffer value) {
+        GXByteBuffer bb = new GXByteBuffer();
+        bb.data = value.array();
+        bb.position = value.arrayOffset() + value.position();
+        bb.size = value.arrayOffset() + value.limit();
+        bb.readOnly = true;
+        return bb;
+    }
+
+    /**
+     * Returns read-only slice from the remaining data. Bytes are not copied.
+     * 
+     * @return Read-only slice.
+     */
+    public final GXByteBuffer slice() {
+        return slice(position, size - position);
+    }
+
     /**
      * Move content from source to destination.
      * 
@@ -233,6 +343,7 @@ public class GXByteBuffer {
         if (count < 0) {
             throw new IllegalArgumentException("count");
         }
+        checkWritable();
         if (count != 0) {
             System.arraycopy(data, srcPos, data, destPos, count);
             size((destPos + count));
@@ -288,9 +399,8 @@ public class GXByteBuffer {
      *            The UInt8 value to be added.
      */
     public final void setUInt8(final int index, final int item) {
-        if (index >= capacity()) {
-            capacity(index + ARRAY_CAPACITY);
-        }
+        checkWritable();
+        ensureCapacity(index + 1);
         data[index] = (byte) item;
     }
 
@@ -316,9 +426,8 @@ public class GXByteBuffer {
      *            The UInt16 value to be added.
      */
     public final void setUInt16(final int index, final int item) {
-        if (index + 2 >= capacity()) {
-            capacity(index + ARRAY_CAPACITY);
-        }
+        checkWritable();
+        ensureCapacity(index + 2);
         data[index] = (byte) ((item >> 8) & 0xFF);
         data[index + 1] = (byte) (item & 0xFF);
     }
@@ -345,9 +454,8 @@ public class GXByteBuffer {
      *            The UInt32 value to be added.
      */
     public final void setUInt32(final int index, final long item) {
-        if (index + 4 >= capacity()) {
-            capacity(index + ARRAY_CAPACITY);
-        }
+        checkWritable();
+        ensureCapacity(index + 4);
         data[index] = (byte) ((item >> 24) & 0xFF);
         data[index + 1] = (byte) ((item >> 16) & 0xFF);
         data[index + 2] = (byte) ((item >> 8) & 0xFF);
@@ -376,9 +484,8 @@ public class GXByteBuffer {
      *            The UInt64 value to be added.
      */
     public final void setUInt64(final int index, final long item) {
-        if (index + 8 >= capacity()) {
-            capacity(index + ARRAY_CAPACITY);
-        }
+        checkWritable();
+        ensureCapacity(index + 8);
         data[size] = (byte) ((item >> 56) & 0xFF);
         data[size + 1] = (byte) ((item >> 48) & 0xFF);
         data[size + 2] = (byte) ((item >> 40) & 0xFF);
@@ -638,6 +745,7 @@ public class GXByteBuffer {
      *            The data to set
      */
     public final void setData(final byte[] value) {
+        checkWritable();
         data = value;
     }
 
@@ -777,9 +885,12 @@ public class GXByteBuffer {
      *            The value to be added.
      */
     public final void set(final int index, final byte[] value) {
-        if (value != null) {
-            move(index, value.length, size - index);
-            set(value, index, value.length);
+        if (value != null && value.length != 0) {
+            checkWritable();
+            ensureCapacity(size + value.length);
+            System.arraycopy(data, index, data, index + value.length, size - index);
+            System.arraycopy(value, 0, data, index, value.length);
+            size += value.length;
         }
     }
 
@@ -795,14 +906,30 @@ public class GXByteBuffer {
      */
     public final void set(final byte[] value, final int index, final int count) {
         if (value != null && count != 0) {
-            if (size + count > capacity()) {
-                capacity(size + count + ARRAY_CAPACITY);
-            }
+            checkWritable();
+            ensureCapacity(size + count);
             System.arraycopy(value, index, data, size, count);
             size += count;
         }
     }
 
+    /**
+     * Append remaining bytes of the NIO buffer. Position of the NIO buffer is
+     * moved to the limit.
+     * 
+     * @param value
+     *            NIO buffer. Direct buffers are supported.
+     */
+    public final void set(final ByteBuffer value) {
+        int count = value.remaining();
+        if (count != 0) {
+            checkWritable();
+            ensureCapacity(size + count);
+            value.get(data, size, count);
+            size += count;
+        }
+    }
+
     /**
      * @param value
      *            Set new value to byte array.
@@ -822,10 +949,9 @@ public class GXByteBuffer {
      *            Byte count.
      */
     public final void set(final GXByteBuffer value, final int count) {
-        if (size + count > capacity()) {
-            capacity(size + count + ARRAY_CAPACITY);
-        }
         if (count != 0) {
+            checkWritable();
+            ensureCapacity(size + count);
             System.arraycopy(value.data, value.position, data, size, count);
             size += count;
             value.position += count;
@@ -916,6 +1042,7 @@ public class GXByteBuffer {
         if (size() == 0) {
             return;
         }
+        checkWritable();
         int first = position;
         int last = size - 1;
         byte tmp;
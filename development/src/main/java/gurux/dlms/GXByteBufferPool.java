@@ -0,0 +1,173 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.dlms;
+
+/**
+ * Size-classed pool of byte buffers.
+ * <p>
+ * Buffers are kept per thread, so taking and returning a buffer doesn't lock
+ * or allocate after the pool is warmed up. Capacity of the pooled buffer is
+ * always a power of two. Buffers larger than the biggest size class are not
+ * pooled.
+ * </p>
+ * <p>
+ * Buffer must not be used after it's released. Slices of the released buffer
+ * are not valid either.
+ * </p>
+ * 
+ * @author Gurux Ltd.
+ */
+public final class GXByteBufferPool {
+    /**
+     * Smallest size class is 64 bytes.
+     */
+    private static final int MIN_SHIFT = 6;
+
+    /**
+     * Biggest size class is 64 kB.
+     */
+    private static final int MAX_SHIFT = 16;
+
+    /**
+     * Amount of the buffers that are kept in each size class for each thread.
+     */
+    private static final int DEPTH = 8;
+
+    /**
+     * Free buffers of the current thread. Index is size class.
+     */
+    private static final ThreadLocal<GXByteBuffer[][]> FREE = new ThreadLocal<GXByteBuffer[][]>() {
+        @Override
+        protected GXByteBuffer[][] initialValue() {
+            return new GXByteBuffer[MAX_SHIFT - MIN_SHIFT + 1][DEPTH];
+        }
+    };
+
+    /**
+     * Amount of the free buffers in each size class of the current thread.
+     */
+    private static final ThreadLocal<int[]> COUNT = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[MAX_SHIFT - MIN_SHIFT + 1];
+        }
+    };
+
+    /**
+     * Constructor.
+     */
+    private GXByteBufferPool() {
+
+    }
+
+    /**
+     * Returns capacity of the size class where given capacity fits.
+     * 
+     * @param capacity
+     *            Required capacity.
+     * @return Capacity of the size class.
+     */
+    static int getClassCapacity(final int capacity) {
+        if (capacity <= 1 << MIN_SHIFT) {
+            return 1 << MIN_SHIFT;
+        }
+        int value = Integer.highestOneBit(capacity - 1) << 1;
+        // Don't overflow with huge buffers.
+        if (value < 0) {
+            return capacity;
+        }
+        return value;
+    }
+
+    /**
+     * Returns index of the size class or -1 if capacity is not pooled.
+     */
+    private static int getClassIndex(final int capacity) {
+        if (capacity < 1 << MIN_SHIFT || capacity > 1 << MAX_SHIFT || Integer.bitCount(capacity) != 1) {
+            return -1;
+        }
+        return Integer.numberOfTrailingZeros(capacity) - MIN_SHIFT;
+    }
+
+    /**
+     * Take empty buffer from the pool. New buffer is created if there are no
+     * free buffers.
+     * 
+     * @param capacity
+     *            Minimum capacity of the buffer.
+     * @return Empty buffer.
+     */
+    public static GXByteBuffer acquire(final int capacity) {
+        int cap = getClassCapacity(capacity);
+        int index = getClassIndex(cap);
+        if (index != -1) {
+            int[] count = COUNT.get();
+            if (count[index] != 0) {
+                GXByteBuffer[] free = FREE.get()[index];
+                GXByteBuffer bb = free[--count[index]];
+                free[count[index]] = null;
+                bb.setPooled(true);
+                return bb;
+            }
+        }
+        GXByteBuffer bb = new GXByteBuffer();
+        bb.setPooled(true);
+        bb.capacity(cap);
+        return bb;
+    }
+
+    /**
+     * Return buffer to the pool. Buffers that are not taken from the pool are
+     * ignored.
+     * 
+     * @param value
+     *            Released buffer.
+     */
+    public static void release(final GXByteBuffer value) {
+        if (value == null || !value.isPooled()) {
+            return;
+        }
+        value.clear();
+        value.setPooled(false);
+        int index = getClassIndex(value.capacity());
+        if (index != -1) {
+            int[] count = COUNT.get();
+            if (count[index] != DEPTH) {
+                FREE.get()[index][count[index]++] = value;
+            }
+        }
+    }
+}
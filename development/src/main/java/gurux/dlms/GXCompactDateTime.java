@@ -0,0 +1,544 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.time.Instant;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import gurux.dlms.enums.ClockStatus;
+import gurux.dlms.enums.DateTimeExtraInfo;
+import gurux.dlms.enums.DateTimeSkips;
+
+/**
+ * Compact immutable DLMS date-time.
+ * <p>
+ * Date-time is kept as epoch seconds and one packed integer that holds
+ * hundredths of seconds, deviation, clock status, day of week, skipped fields
+ * and extra info. Value is converted from and to the 12 byte DLMS date-time
+ * without Calendar or TimeZone. Enable it with
+ * {@link GXDLMSClient#setUseCompactDateTime(boolean)} to get it from the
+ * parser and in the profile generic buffer instead of {@link GXDateTime}.
+ * COSEM objects use {@link GXDateTime}, so changeType and updateValue
+ * change compact values back to {@link GXDateTime}.
+ * </p>
+ */
+public final class GXCompactDateTime {
+    /**
+     * Deviation is not used.
+     */
+    public static final int DEVIATION_NOT_SPECIFIED = -32768;
+
+    private static final long SECONDS_PER_DAY = 86400L;
+    private static final int DAYS_0000_TO_1970 = 719468;
+    private static final int DAYS_PER_CYCLE = 146097;
+
+    /**
+     * Seconds from the epoch.
+     */
+    private final long epochSecond;
+
+    /**
+     * Bits 0-15 deviation, 16-23 hundredths, 24-31 status, 32-39 day of week,
+     * 40-49 skipped fields and 50-53 extra info.
+     */
+    private final long packed;
+
+    private GXCompactDateTime(final long forEpochSecond, final long forPacked) {
+        epochSecond = forEpochSecond;
+        packed = forPacked;
+    }
+
+    private static long pack(final int deviation, final int hundredths, final int status, final int dayOfWeek,
+            final int skip, final int extra) {
+        return (deviation & 0xFFFFL) | (long) (hundredths & 0xFF) << 16 | (long) (status & 0xFF) << 24
+                | (long) (dayOfWeek & 0xFF) << 32 | (long) (skip & 0x3FF) << 40 | (long) (extra & 0xF) << 50;
+    }
+
+    /**
+     * Create date-time from epoch seconds.
+     * 
+     * @param epochSecond
+     *            Seconds from the epoch in UTC.
+     * @param hundredths
+     *            Hundredths of seconds. 0xFF if not used.
+     * @param deviation
+     *            Deviation in minutes from local time to UTC.
+     *            {@link #DEVIATION_NOT_SPECIFIED} if the deviation is not
+     *            used and epoch seconds are the local time.
+     * @param status
+     *            Clock status.
+     * @return Date-time.
+     */
+    public static GXCompactDateTime of(final long epochSecond, final int hundredths, final int deviation,
+            final int status) {
+        if (deviation < -32768 || deviation > 32767) {
+            throw new IllegalArgumentException("Invalid deviation.");
+        }
+        if ((hundredths < 0 || hundredths > 99) && hundredths != 0xFF) {
+            throw new IllegalArgumentException("Invalid hundredths.");
+        }
+        int skip = 0;
+        if (deviation == DEVIATION_NOT_SPECIFIED) {
+            skip |= DateTimeSkips.DEVIATION.getValue();
+        }
+        if (hundredths == 0xFF) {
+            skip |= DateTimeSkips.MILLISECOND.getValue();
+        }
+        long local = toLocal(epochSecond, deviation);
+        int dayOfWeek = (int) Math.floorMod(Math.floorDiv(local, SECONDS_PER_DAY) + 3, 7L) + 1;
+        return new GXCompactDateTime(epochSecond, pack(deviation, hundredths, status, dayOfWeek, skip, 0));
+    }
+
+    /**
+     * Create date-time from the instant.
+     * 
+     * @param value
+     *            Instant.
+     * @param deviation
+     *            Deviation in minutes from local time to UTC.
+     * @return Date-time.
+     */
+    public static GXCompactDateTime of(final Instant value, final int deviation) {
+        return of(value.getEpochSecond(), value.getNano() / 10000000, deviation, 0);
+    }
+
+    /**
+     * Parse date-time from 12 bytes.
+     * 
+     * @param settings
+     *            DLMS settings. Can be null.
+     * @param buff
+     *            Received DLMS data.
+     * @return Parsed date-time.
+     */
+    public static GXCompactDateTime parse(final GXDLMSSettings settings, final GXByteBuffer buff) {
+        if (buff.available() < 12) {
+            throw new IllegalArgumentException("Invalid date-time.");
+        }
+        int skip = 0;
+        int extra = 0;
+        int year = buff.getUInt16();
+        int month = buff.getUInt8();
+        int day = buff.getUInt8();
+        int dayOfWeek = buff.getUInt8();
+        int hour = buff.getUInt8();
+        int minute = buff.getUInt8();
+        int second = buff.getUInt8();
+        int hundredths = buff.getUInt8();
+        int deviation = buff.getInt16();
+        int status = buff.getUInt8();
+        if (year < 1 || year == 0xFFFF) {
+            skip |= DateTimeSkips.YEAR.getValue();
+            year = getYear(System.currentTimeMillis() / 1000);
+        }
+        if (month == 0xFE) {
+            month = 1;
+            extra |= DateTimeExtraInfo.DST_BEGIN.getValue();
+        } else if (month == 0xFD) {
+            month = 1;
+            extra |= DateTimeExtraInfo.DST_END.getValue();
+        } else if (month < 1 || month > 12) {
+            month = 1;
+            skip |= DateTimeSkips.MONTH.getValue();
+        }
+        if (day == 0xFE) {
+            day = 1;
+            extra |= DateTimeExtraInfo.LAST_DAY.getValue();
+        } else if (day == 0xFD) {
+            day = 1;
+            extra |= DateTimeExtraInfo.LAST_DAY2.getValue();
+        } else if (day < 1 || day > 31) {
+            day = 1;
+            skip |= DateTimeSkips.DAY.getValue();
+        }
+        if (dayOfWeek == 0xFF) {
+            skip |= DateTimeSkips.DAY_OF_WEEK.getValue();
+        }
+        if (hour > 24) {
+            hour = 0;
+            skip |= DateTimeSkips.HOUR.getValue();
+        }
+        if (minute > 60) {
+            minute = 0;
+            skip |= DateTimeSkips.MINUTE.getValue();
+        }
+        if (second > 60) {
+            second = 0;
+            skip |= DateTimeSkips.SECOND.getValue();
+        }
+        if (hundredths > 99) {
+            hundredths = 0xFF;
+            skip |= DateTimeSkips.MILLISECOND.getValue();
+        }
+        if (deviation == DEVIATION_NOT_SPECIFIED) {
+            skip |= DateTimeSkips.DEVIATION.getValue();
+        } else if (settings != null) {
+            if (settings.getUseUtc2NormalTime()) {
+                deviation = -deviation;
+            }
+            if (settings.getDateTimeSkipsOnRead().contains(DateTimeSkips.DEVIATION)) {
+                skip |= DateTimeSkips.DEVIATION.getValue();
+            }
+        }
+        if (status == 0xFF) {
+            skip |= DateTimeSkips.STATUS.getValue();
+        }
+        long local = daysFromCivil(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+        if ((skip & DateTimeSkips.DEVIATION.getValue()) == 0) {
+            local += 60L * deviation;
+        }
+        return new GXCompactDateTime(local, pack(deviation, hundredths, status, dayOfWeek, skip, extra));
+    }
+
+    /**
+     * Write date-time as 12 bytes.
+     * 
+     * @param settings
+     *            DLMS settings. Can be null.
+     * @param buff
+     *            Byte buffer where data is written.
+     */
+    public void write(final GXDLMSSettings settings, final GXByteBuffer buff) {
+        int skip = getSkip();
+        if (settings != null && !settings.getDateTimeSkips().isEmpty()) {
+            skip |= DateTimeSkips.toInteger(settings.getDateTimeSkips());
+        }
+        int extra = getExtra();
+        long local = toLocal(epochSecond, isDeviationUsed() ? getDeviation() : DEVIATION_NOT_SPECIFIED);
+        long days = Math.floorDiv(local, SECONDS_PER_DAY);
+        int secs = (int) Math.floorMod(local, SECONDS_PER_DAY);
+        long date = civilFromDays(days);
+        if ((skip & DateTimeSkips.YEAR.getValue()) != 0) {
+            buff.setUInt16(0xFFFF);
+        } else {
+            buff.setUInt16((int) (date >> 16));
+        }
+        if ((extra & DateTimeExtraInfo.DST_BEGIN.getValue()) != 0) {
+            buff.setUInt8(0xFE);
+        } else if ((extra & DateTimeExtraInfo.DST_END.getValue()) != 0) {
+            buff.setUInt8(0xFD);
+        } else if ((skip & DateTimeSkips.MONTH.getValue()) != 0) {
+            buff.setUInt8(0xFF);
+        } else {
+            buff.setUInt8((int) (date >> 8) & 0xFF);
+        }
+        if ((extra & DateTimeExtraInfo.LAST_DAY.getValue()) != 0) {
+            buff.setUInt8(0xFE);
+        } else if ((extra & DateTimeExtraInfo.LAST_DAY2.getValue()) != 0) {
+            buff.setUInt8(0xFD);
+        } else if ((skip & DateTimeSkips.DAY.getValue()) != 0) {
+            buff.setUInt8(0xFF);
+        } else {
+            buff.setUInt8((int) date & 0xFF);
+        }
+        if ((skip & DateTimeSkips.DAY_OF_WEEK.getValue()) != 0) {
+            buff.setUInt8(0xFF);
+        } else {
+            buff.setUInt8(getDayOfWeek());
+        }
+        buff.setUInt8((skip & DateTimeSkips.HOUR.getValue()) != 0 ? 0xFF : secs / 3600);
+        buff.setUInt8((skip & DateTimeSkips.MINUTE.getValue()) != 0 ? 0xFF : secs / 60 % 60);
+        buff.setUInt8((skip & DateTimeSkips.SECOND.getValue()) != 0 ? 0xFF : secs % 60);
+        buff.setUInt8((skip & DateTimeSkips.MILLISECOND.getValue()) != 0 ? 0xFF : getHundredths());
+        if ((skip & DateTimeSkips.DEVIATION.getValue()) != 0) {
+            buff.setUInt16(0x8000);
+        } else if (settings != null && settings.getUseUtc2NormalTime()) {
+            buff.setUInt16(-getDeviation());
+        } else {
+            buff.setUInt16(getDeviation());
+        }
+        buff.setUInt8((skip & DateTimeSkips.STATUS.getValue()) != 0 ? 0xFF : getStatus());
+    }
+
+    private static long toLocal(final long epochSecond, final int deviation) {
+        if (deviation == DEVIATION_NOT_SPECIFIED) {
+            return epochSecond;
+        }
+        return epochSecond - 60L * deviation;
+    }
+
+    /**
+     * Count days from 1970-01-01. Day is not validated, so it can overflow
+     * to the next month as with lenient Calendar.
+     */
+    private static long daysFromCivil(final int year, final int month, final int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yoe = y - era * 400;
+        int doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return (long) era * DAYS_PER_CYCLE + doe - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Convert days from 1970-01-01 to date.
+     * 
+     * @return Year in bits 16-, month in bits 8-15 and day in bits 0-7.
+     */
+    private static long civilFromDays(final long days) {
+        long z = days + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(z, DAYS_PER_CYCLE);
+        int doe = (int) (z - era * DAYS_PER_CYCLE);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int d = doy - (153 * mp + 2) / 5 + 1;
+        int m = mp < 10 ? mp + 3 : mp - 9;
+        long y = yoe + era * 400 + (m <= 2 ? 1 : 0);
+        return y << 16 | m << 8 | d;
+    }
+
+    private static int getYear(final long epochSecond) {
+        return (int) (civilFromDays(Math.floorDiv(epochSecond, SECONDS_PER_DAY)) >> 16);
+    }
+
+    private long getLocal() {
+        return toLocal(epochSecond, isDeviationUsed() ? getDeviation() : DEVIATION_NOT_SPECIFIED);
+    }
+
+    /**
+     * @return Seconds from the epoch. Seconds are in UTC if deviation is
+     *         used, otherwise in local time.
+     */
+    public long getEpochSecond() {
+        return epochSecond;
+    }
+
+    /**
+     * @return Is deviation used.
+     */
+    public boolean isDeviationUsed() {
+        return (getSkip() & DateTimeSkips.DEVIATION.getValue()) == 0;
+    }
+
+    /**
+     * @return Deviation in minutes from local time to UTC.
+     */
+    public int getDeviation() {
+        return (short) packed;
+    }
+
+    /**
+     * @return Hundredths of seconds. 0xFF if not used.
+     */
+    public int getHundredths() {
+        return (int) (packed >>> 16) & 0xFF;
+    }
+
+    /**
+     * @return Clock status as an integer.
+     * @see ClockStatus#forValue(int)
+     */
+    public int getStatus() {
+        return (int) (packed >>> 24) & 0xFF;
+    }
+
+    /**
+     * @return Day of week. Monday is 1.
+     */
+    public int getDayOfWeek() {
+        return (int) (packed >>> 32) & 0xFF;
+    }
+
+    /**
+     * @return Skipped fields as an integer.
+     * @see DateTimeSkips#forValue(int)
+     */
+    public int getSkip() {
+        return (int) (packed >>> 40) & 0x3FF;
+    }
+
+    /**
+     * @return Extra info as an integer.
+     * @see DateTimeExtraInfo#forValue(int)
+     */
+    public int getExtra() {
+        return (int) (packed >>> 50) & 0xF;
+    }
+
+    /**
+     * @param value
+     *            Date-time field.
+     * @return Is field skipped.
+     */
+    public boolean isSkipped(final DateTimeSkips value) {
+        return (getSkip() & value.getValue()) != 0;
+    }
+
+    /**
+     * @return Year in local time.
+     */
+    public int getYear() {
+        return getYear(getLocal());
+    }
+
+    /**
+     * @return Month in local time. January is 1.
+     */
+    public int getMonth() {
+        return (int) (civilFromDays(Math.floorDiv(getLocal(), SECONDS_PER_DAY)) >> 8) & 0xFF;
+    }
+
+    /**
+     * @return Day of month in local time.
+     */
+    public int getDay() {
+        return (int) civilFromDays(Math.floorDiv(getLocal(), SECONDS_PER_DAY)) & 0xFF;
+    }
+
+    /**
+     * @return Hour in local time.
+     */
+    public int getHour() {
+        return (int) (Math.floorMod(getLocal(), SECONDS_PER_DAY) / 3600);
+    }
+
+    /**
+     * @return Minute in local time.
+     */
+    public int getMinute() {
+        return (int) (Math.floorMod(getLocal(), 3600L) / 60);
+    }
+
+    /**
+     * @return Second in local time.
+     */
+    public int getSecond() {
+        return (int) Math.floorMod(getLocal(), 60L);
+    }
+
+    /**
+     * @return Date-time as an instant. Local time is used as UTC if deviation
+     *         is not used.
+     */
+    public Instant toInstant() {
+        int hundredths = getHundredths();
+        return Instant.ofEpochSecond(epochSecond, hundredths == 0xFF ? 0 : hundredths * 10000000L);
+    }
+
+    /**
+     * Convert to GXDateTime. Local time zone is used if deviation is not
+     * used.
+     * 
+     * @return GXDateTime.
+     */
+    public GXDateTime toGXDateTime() {
+        GXDateTime dt = new GXDateTime();
+        Calendar tm;
+        if (isDeviationUsed()) {
+            tm = Calendar.getInstance(GXDateTime.getTimeZone(-getDeviation(),
+                    (getStatus() & ClockStatus.DAYLIGHT_SAVE_ACTIVE.getValue()) != 0));
+            tm.setTimeInMillis(epochSecond * 1000);
+        } else {
+            tm = Calendar.getInstance();
+            Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+            utc.setTimeInMillis(epochSecond * 1000);
+            tm.clear();
+            tm.set(utc.get(Calendar.YEAR), utc.get(Calendar.MONTH), utc.get(Calendar.DATE),
+                    utc.get(Calendar.HOUR_OF_DAY), utc.get(Calendar.MINUTE), utc.get(Calendar.SECOND));
+        }
+        int hundredths = getHundredths();
+        tm.set(Calendar.MILLISECOND, hundredths == 0xFF ? 0 : hundredths * 10);
+        dt.setMeterCalendar(tm);
+        dt.setStatus(ClockStatus.forValue(getStatus()));
+        if (!isSkipped(DateTimeSkips.DAY_OF_WEEK)) {
+            dt.setDayOfWeek(getDayOfWeek());
+        }
+        dt.getSkip().addAll(DateTimeSkips.forValue(getSkip()));
+        dt.getExtra().addAll(DateTimeExtraInfo.forValue(getExtra()));
+        return dt;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof GXCompactDateTime)) {
+            return false;
+        }
+        GXCompactDateTime other = (GXCompactDateTime) obj;
+        return epochSecond == other.epochSecond && packed == other.packed;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(epochSecond * 31 + packed);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(32);
+        long local = getLocal();
+        long date = civilFromDays(Math.floorDiv(local, SECONDS_PER_DAY));
+        int secs = (int) Math.floorMod(local, SECONDS_PER_DAY);
+        append(sb, (int) (date >> 16), 4, isSkipped(DateTimeSkips.YEAR));
+        sb.append('-');
+        append(sb, (int) (date >> 8) & 0xFF, 2, isSkipped(DateTimeSkips.MONTH));
+        sb.append('-');
+        append(sb, (int) date & 0xFF, 2, isSkipped(DateTimeSkips.DAY));
+        sb.append('T');
+        append(sb, secs / 3600, 2, isSkipped(DateTimeSkips.HOUR));
+        sb.append(':');
+        append(sb, secs / 60 % 60, 2, isSkipped(DateTimeSkips.MINUTE));
+        sb.append(':');
+        append(sb, secs % 60, 2, isSkipped(DateTimeSkips.SECOND));
+        if (!isSkipped(DateTimeSkips.MILLISECOND)) {
+            sb.append('.');
+            append(sb, getHundredths(), 2, false);
+        }
+        if (isDeviationUsed()) {
+            // Deviation is from local time to UTC, offset is the opposite.
+            int offset = -getDeviation();
+            sb.append(offset < 0 ? '-' : '+');
+            append(sb, Math.abs(offset) / 60, 2, false);
+            sb.append(':');
+            append(sb, Math.abs(offset) % 60, 2, false);
+        }
+        return sb.toString();
+    }
+
+    private static void append(final StringBuilder sb, final int value, final int digits, final boolean skipped) {
+        if (skipped) {
+            for (int pos = 0; pos != digits; ++pos) {
+                sb.append('*');
+            }
+            return;
+        }
+        String str = Integer.toString(value);
+        for (int pos = str.length(); pos < digits; ++pos) {
+            sb.append('0');
+        }
+        sb.append(str);
+    }
+}
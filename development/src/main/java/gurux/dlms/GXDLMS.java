@@ -35,6 +35,7 @@
 package gurux.dlms;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
@@ -176,6 +177,7 @@ import gurux.dlms.secure.AesGcmParameter;
 import gurux.dlms.secure.CountType;
 import gurux.dlms.secure.GXCiphering;
 import gurux.dlms.secure.GXSecure;
+import gurux.dlms.secure.IGXKeyResolver;
 
 /**
  * GXDLMS implements methods to communicate with DLMS/COSEM metering devices.
@@ -727,14 +729,31 @@ abstract class GXDLMS {
      *            Data where bytes are added.
      */
     static void addLLCBytes(final GXDLMSSettings settings, final GXByteBuffer data) {
-        byte[] tmp = data.array();
-        data.clear();
         if (settings.isServer()) {
-            data.set(GXCommon.LLC_REPLY_BYTES);
+            data.set(0, GXCommon.LLC_REPLY_BYTES);
         } else {
-            data.set(GXCommon.LLC_SEND_BYTES);
+            data.set(0, GXCommon.LLC_SEND_BYTES);
         }
-        data.set(tmp);
+    }
+
+    /**
+     * Add gateway header in front of the generated message.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param data
+     *            Data where header is added.
+     */
+    private static void addGatewayHeader(final GXDLMSSettings settings, final GXByteBuffer data) {
+        byte[] address = settings.getGateway().getPhysicalDeviceAddress();
+        byte[] header = new byte[3 + address.length];
+        header[0] = (byte) Command.GATEWAY_REQUEST;
+        header[1] = (byte) settings.getGateway().getNetworkId();
+        header[2] = (byte) address.length;
+        System.arraycopy(address, 0, header, 3, address.length);
+        // Sent bytes are removed.
+        data.trim();
+        data.set(0, header);
     }
 
     /*
@@ -978,13 +997,7 @@ abstract class GXDLMS {
                                 .getMaxPduSize()) {
                             len -= (3 + p.getSettings().getGateway().getPhysicalDeviceAddress().length);
                         }
-                        GXByteBuffer tmp = new GXByteBuffer(reply);
-                        reply.size(0);
-                        reply.setUInt8(Command.GATEWAY_REQUEST);
-                        reply.setUInt8(p.getSettings().getGateway().getNetworkId());
-                        reply.setUInt8(p.getSettings().getGateway().getPhysicalDeviceAddress().length);
-                        reply.set(p.getSettings().getGateway().getPhysicalDeviceAddress());
-                        reply.set(tmp);
+                        addGatewayHeader(p.getSettings(), reply);
                     }
                     // Get request size can be bigger than PDU size.
                     if (p.getSettings().getNegotiatedConformance().contains(Conformance.GENERAL_BLOCK_TRANSFER)) {
@@ -1028,13 +1041,7 @@ abstract class GXDLMS {
                             .getMaxPduSize()) {
                         len -= (3 + p.getSettings().getGateway().getPhysicalDeviceAddress().length);
                     }
-                    GXByteBuffer tmp = new GXByteBuffer(reply);
-                    reply.size(0);
-                    reply.setUInt8(Command.GATEWAY_REQUEST);
-                    reply.setUInt8(p.getSettings().getGateway().getNetworkId());
-                    reply.setUInt8(p.getSettings().getGateway().getPhysicalDeviceAddress().length);
-                    reply.set(p.getSettings().getGateway().getPhysicalDeviceAddress());
-                    reply.set(tmp);
+                    addGatewayHeader(p.getSettings(), reply);
                 }
             }
             if (reply.size() != 0 && p.command != Command.GENERAL_BLOCK_TRANSFER
@@ -1057,7 +1064,7 @@ abstract class GXDLMS {
         }
         if (p.getCommand() == Command.GENERAL_BLOCK_TRANSFER || (p.isMultipleBlocks()
                 && p.getSettings().getNegotiatedConformance().contains(Conformance.GENERAL_BLOCK_TRANSFER))) {
-            GXByteBuffer bb = new GXByteBuffer();
+            GXByteBuffer bb = GXByteBufferPool.acquire(reply.available());
             bb.set(reply);
             reply.clear();
             reply.setUInt8(Command.GENERAL_BLOCK_TRANSFER);
@@ -1084,6 +1091,7 @@ abstract class GXDLMS {
             // Add data length.
             GXCommon.setObjectCount(bb.size(), reply);
             reply.set(bb);
+            GXByteBufferPool.release(bb);
             if (p.getCommand() != Command.GENERAL_BLOCK_TRANSFER) {
                 p.command = Command.GENERAL_BLOCK_TRANSFER;
                 ++p.blockNumberAck;
@@ -1096,13 +1104,7 @@ abstract class GXDLMS {
                     // len -= (3 + p.getSettings().getGateway()
                     // .getPhysicalDeviceAddress().length);
                 }
-                GXByteBuffer tmp = new GXByteBuffer(reply);
-                reply.size(0);
-                reply.setUInt8(Command.GATEWAY_REQUEST);
-                reply.setUInt8(p.getSettings().getGateway().getNetworkId());
-                reply.setUInt8(p.getSettings().getGateway().getPhysicalDeviceAddress().length);
-                reply.set(p.getSettings().getGateway().getPhysicalDeviceAddress());
-                reply.set(tmp);
+                addGatewayHeader(p.getSettings(), reply);
             }
         }
         if (useHdlc(p.getSettings().getInterfaceType())) {
@@ -1123,7 +1125,7 @@ abstract class GXDLMS {
         return signing;
     }
 
-    static AesGcmParameter getCipheringParameters(GXDLMSLNParameters p) {
+    static AesGcmParameter getCipheringParameters(final GXDLMSLNParameters p, final long invocationCounter) {
         int cmd;
         byte[] key;
         GXICipher cipher = p.getSettings().getCipher();
@@ -1168,7 +1170,7 @@ abstract class GXDLMS {
             }
         }
         AesGcmParameter s = new AesGcmParameter(p.getSettings(), cmd, cipher.getSecurity(), cipher.getSecuritySuite(),
-                cipher.getInvocationCounter(), cipher.getSystemTitle(), key, getAuthenticationKey(p.getSettings()));
+                invocationCounter, cipher.getSystemTitle(), key, getAuthenticationKey(p.getSettings()));
         s.setIgnoreSystemTitle(p.getSettings().getStandard() == Standard.ITALY);
         s.setRecipientSystemTitle(p.getSettings().getSourceSystemTitle());
         return s;
@@ -1247,6 +1249,8 @@ abstract class GXDLMS {
         default:
             throw new IllegalArgumentException("Invalid security suite.");
         }
+        // Invocation counter is reserved before it's used.
+        final long invocationCounter = c.nextInvocationCounter();
         GXByteBuffer tmp2 = new GXByteBuffer();
         byte[] z = null;
         PrivateKey key = null;
@@ -1254,10 +1258,8 @@ abstract class GXDLMS {
         if (!sign) {
             // If external Hardware Security Module is used.
             byte[] ret = GXCommon.crypt(p.getSettings(), CertificateType.KEY_AGREEMENT, data, true, CryptoKeyType.ECDSA,
-                    0, c.getSecurity(), c.getSecuritySuite(), c.getInvocationCounter());
+                    0, c.getSecurity(), c.getSecuritySuite(), invocationCounter);
             if (ret != null) {
-                p.getSettings().getCipher()
-                        .setInvocationCounter(1 + p.getSettings().getCipher().getInvocationCounter());
                 return ret;
             }
             if (c.getKeyAgreementKeyPair() != null) {
@@ -1277,7 +1279,7 @@ abstract class GXDLMS {
                 // Generate ephemeral key pair for each transaction.
                 KeyPair kp = GXEcdsa.generateKeyPair(Ecc.P256);
                 c.setEphemeralKeyPair(kp);
-                KeyAgreement ka = KeyAgreement.getInstance("ECDH");
+                KeyAgreement ka = GXSecure.getKeyAgreement();
                 ka.init(kp.getPrivate());
                 ka.doPhase(c.getKeyAgreementKeyPair().getPublic(), true);
                 z = ka.generateSecret();
@@ -1292,7 +1294,7 @@ abstract class GXDLMS {
                         GXCommon.toHex(GXAsn1Converter.rawValue(key), true));
                 Logger.getLogger(GXSecure.class.getName()).log(Level.FINEST, "Public ephemeral key: {0}",
                         GXCommon.toHex(GXAsn1Converter.rawValue(pub), true));
-                KeyAgreement ka = KeyAgreement.getInstance("ECDH");
+                KeyAgreement ka = GXSecure.getKeyAgreement();
                 ka.init(c.getKeyAgreementKeyPair().getPrivate());
                 ka.doPhase(c.getKeyAgreementKeyPair().getPublic(), true);
                 z = ka.generateSecret();
@@ -1330,7 +1332,7 @@ abstract class GXDLMS {
         }
         AesGcmParameter s;
         if (sign) {
-            s = getCipheringParameters(p);
+            s = getCipheringParameters(p, invocationCounter);
         } else {
             GXByteBuffer kdf = new GXByteBuffer();
             kdf.set(GXSecure.generateKDF(alg, z, keyDataLen, GXCommon.hexToBytes(algID), c.getSystemTitle(),
@@ -1438,22 +1440,21 @@ abstract class GXDLMS {
             reply.setUInt8(sc);
             signedData.setUInt8(sc);
             // Add IC.
-            reply.setUInt32(p.getSettings().getCipher().getInvocationCounter());
-            signedData.setUInt32(p.getSettings().getCipher().getInvocationCounter());
+            reply.setUInt32(invocationCounter);
+            signedData.setUInt32(invocationCounter);
         } else if (!sign) {
             // Length.
             GXCommon.setObjectCount(tmp.length, reply);
         }
-        p.getSettings().getCipher().setInvocationCounter(1 + p.getSettings().getCipher().getInvocationCounter());
         reply.set(tmp);
         signedData.set(tmp);
         if (sign) {
             // Signature
             Signature sig;
             if (p.getSettings().getCipher().getSecuritySuite() == SecuritySuite.SUITE_1) {
-                sig = Signature.getInstance("SHA256withECDSA");
+                sig = GXSecure.getSignature("SHA256withECDSA");
             } else if (p.getSettings().getCipher().getSecuritySuite() == SecuritySuite.SUITE_2) {
-                sig = Signature.getInstance("SHA384withECDSA");
+                sig = GXSecure.getSignature("SHA384withECDSA");
             } else {
                 throw new IllegalArgumentException("Invalid security suite.");
             }
@@ -1498,6 +1499,21 @@ abstract class GXDLMS {
         return settings.getCipher().getAuthenticationKey();
     }
 
+    /**
+     * Get key resolver for global keys. Ephemeral keys are used if they are
+     * agreed.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @return Key resolver or null if keys of the settings are used.
+     */
+    private static IGXKeyResolver getKeyResolver(final GXDLMSSettings settings) {
+        if (settings.getEphemeralBlockCipherKey() != null) {
+            return null;
+        }
+        return settings.getCipher().getKeyResolver();
+    }
+
     private static byte[] decompress(GXDLMSSettings settings, byte[] tmp) {
         if (settings.getCompressionNotifier() != null) {
             GXCompressionArgs args =
@@ -1508,13 +1524,14 @@ abstract class GXDLMS {
             }
             return args.getOutputData();
         }
-        throw new RuntimeException("Data is compressed but compression handler is not defined.");
+        return settings.getV44().decompress(settings.getCompressionOptions(), tmp);
     }
 
     /*
      * Compress data if compression is used. Compression is used if ciphering is
      * used and compression options are defined. Compression is done before
-     * ciphering.
+     * ciphering. Built-in V.44 codec is used if compression notifier is not
+     * set.
      */
     private static byte[] compress(GXDLMSSettings settings, byte[] tmp) {
         if (settings.getCompressionNotifier() != null) {
@@ -1527,7 +1544,7 @@ abstract class GXDLMS {
             }
             return args.getOutputData();
         }
-        throw new RuntimeException("Data compression failed. Compression handler is not defined.");
+        return settings.getV44().compress(settings.getCompressionOptions(), tmp);
     }
 
     /*
@@ -1537,7 +1554,8 @@ abstract class GXDLMS {
      */
     static byte[] cipher0(final GXDLMSLNParameters p, byte[] data) throws InvalidKeyException, NoSuchAlgorithmException,
             NoSuchPaddingException, InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException {
-        AesGcmParameter s = getCipheringParameters(p);
+        // Invocation counter is reserved before it's used.
+        AesGcmParameter s = getCipheringParameters(p, p.getSettings().getCipher().nextInvocationCounter());
         if (p.getSettings().getCompressionOptions().getEnableCompression()) {
             byte[] tmp = compress(p.getSettings(), data);
             if (tmp != null) {
@@ -1547,9 +1565,7 @@ abstract class GXDLMS {
                 s.setCompression(true);
             }
         }
-        byte[] tmp = GXCiphering.encrypt(s, data);
-        p.getSettings().getCipher().setInvocationCounter(1 + p.getSettings().getCipher().getInvocationCounter());
-        return tmp;
+        return GXCiphering.encrypt(s, data);
     }
 
     /*
@@ -1575,11 +1591,21 @@ abstract class GXDLMS {
             while (reply.position() != reply.size()) {
                 switch (p.getSettings().getInterfaceType()) {
                 case WRAPPER:
-                    messages.add(getWrapperFrame(p.getSettings(), p.getCommand(), reply));
+                    if (p.getSettings().getFrameOutput() != null) {
+                        getWrapperFrame(p.getSettings(), p.getCommand(), reply, p.getSettings().getFrameOutput());
+                        p.getSettings().frameWritten();
+                    } else {
+                        messages.add(getWrapperFrame(p.getSettings(), p.getCommand(), reply));
+                    }
                     break;
                 case HDLC:
                 case HDLC_WITH_MODE_E:
-                    messages.add(GXDLMS.getHdlcFrame(p.getSettings(), frame, reply));
+                    if (p.getSettings().getFrameOutput() != null) {
+                        getHdlcFrame(p.getSettings(), frame, reply, p.getSettings().getFrameOutput());
+                        p.getSettings().frameWritten();
+                    } else {
+                        messages.add(GXDLMS.getHdlcFrame(p.getSettings(), frame, reply));
+                    }
                     if (reply.position() != reply.size()) {
                         frame = p.getSettings().getNextSend(false);
                     }
@@ -1629,10 +1655,20 @@ abstract class GXDLMS {
             // Command is not add to next PDUs.
             while (reply.position() != reply.size()) {
                 if (p.getSettings().getInterfaceType() == InterfaceType.WRAPPER) {
-                    messages.add(getWrapperFrame(p.getSettings(), p.getCommand(), reply));
+                    if (p.getSettings().getFrameOutput() != null) {
+                        getWrapperFrame(p.getSettings(), p.getCommand(), reply, p.getSettings().getFrameOutput());
+                        p.getSettings().frameWritten();
+                    } else {
+                        messages.add(getWrapperFrame(p.getSettings(), p.getCommand(), reply));
+                    }
                 } else if (p.getSettings().getInterfaceType() == InterfaceType.HDLC
                         || p.getSettings().getInterfaceType() == InterfaceType.HDLC_WITH_MODE_E) {
-                    messages.add(getHdlcFrame(p.getSettings(), frame, reply));
+                    if (p.getSettings().getFrameOutput() != null) {
+                        getHdlcFrame(p.getSettings(), frame, reply, p.getSettings().getFrameOutput());
+                        p.getSettings().frameWritten();
+                    } else {
+                        messages.add(getHdlcFrame(p.getSettings(), frame, reply));
+                    }
                     if (reply.position() != reply.size()) {
                         frame = p.getSettings().getNextSend(false);
                     }
@@ -1847,7 +1883,58 @@ abstract class GXDLMS {
      * @return Wrapper frames.
      */
     static byte[] getWrapperFrame(final GXDLMSSettings settings, final int command, final GXByteBuffer data) {
-        GXByteBuffer bb = new GXByteBuffer();
+        GXByteBuffer bb;
+        if (data == null) {
+            bb = new GXByteBuffer(8);
+        } else {
+            bb = new GXByteBuffer(8 + data.available());
+        }
+        getWrapperFrame(settings, command, data, bb);
+        return getFrameBytes(bb);
+    }
+
+    /**
+     * Write wrapper frame to the NIO buffer.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param command
+     *            DLMS command.
+     * @param data
+     *            Wrapped data.
+     * @param out
+     *            Output buffer.
+     */
+    static void getWrapperFrame(final GXDLMSSettings settings, final int command, final GXByteBuffer data,
+            final ByteBuffer out) {
+        GXByteBuffer bb;
+        if (data == null) {
+            bb = GXByteBufferPool.acquire(8);
+        } else {
+            bb = GXByteBufferPool.acquire(8 + data.available());
+        }
+        try {
+            getWrapperFrame(settings, command, data, bb);
+            out.put(bb.getData(), 0, bb.size());
+        } finally {
+            GXByteBufferPool.release(bb);
+        }
+    }
+
+    /**
+     * Append wrapper frame to the buffer.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param command
+     *            DLMS command.
+     * @param data
+     *            Wrapped data.
+     * @param bb
+     *            Buffer where frame is added.
+     */
+    private static void getWrapperFrame(final GXDLMSSettings settings, final int command, final GXByteBuffer data,
+            final GXByteBuffer bb) {
         // Add version.
         bb.setUInt16(1);
         if (settings.isServer()) {
@@ -1880,7 +1967,6 @@ abstract class GXDLMS {
                 data.position(0);
             }
         }
-        return bb.array();
     }
 
     /**
@@ -2089,6 +2175,21 @@ abstract class GXDLMS {
         return bb.array();
     }
 
+    /**
+     * Returns generated frame. Array is not copied if the frame fills the
+     * whole buffer.
+     * 
+     * @param bb
+     *            Generated frame.
+     * @return Frame as byte array.
+     */
+    private static byte[] getFrameBytes(final GXByteBuffer bb) {
+        if (bb.size() == bb.capacity()) {
+            return bb.getData();
+        }
+        return bb.array();
+    }
+
     /**
      * Get HDLC frame for data.
      * 
@@ -2102,6 +2203,47 @@ abstract class GXDLMS {
      */
     static byte[] getHdlcFrame(final GXDLMSSettings settings, final int frame, final GXByteBuffer data) {
         GXByteBuffer bb = new GXByteBuffer();
+        getHdlcFrame(settings, frame, data, bb);
+        return getFrameBytes(bb);
+    }
+
+    /**
+     * Write HDLC frame to the NIO buffer.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param frame
+     *            Frame ID. If zero new is generated.
+     * @param data
+     *            Data to add.
+     * @param out
+     *            Output buffer.
+     */
+    static void getHdlcFrame(final GXDLMSSettings settings, final int frame, final GXByteBuffer data,
+            final ByteBuffer out) {
+        GXByteBuffer bb = GXByteBufferPool.acquire(settings.getHdlcSettings().getMaxInfoTX() + 32);
+        try {
+            getHdlcFrame(settings, frame, data, bb);
+            out.put(bb.getData(), 0, bb.size());
+        } finally {
+            GXByteBufferPool.release(bb);
+        }
+    }
+
+    /**
+     * Append HDLC frame to the buffer.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param frame
+     *            Frame ID. If zero new is generated.
+     * @param data
+     *            Data to add.
+     * @param bb
+     *            Buffer where frame is added.
+     */
+    private static void getHdlcFrame(final GXDLMSSettings settings, final int frame, final GXByteBuffer data,
+            final GXByteBuffer bb) {
         int frameSize, len = 0;
         byte[] primaryAddress, secondaryAddress;
         if (settings.isServer()) {
@@ -2117,8 +2259,6 @@ abstract class GXDLMS {
             secondaryAddress = getAddressBytes(settings.getClientAddress(), 0);
             len = primaryAddress.length;
         }
-        // Add BOP
-        bb.setUInt8(HDLC_FRAME_START_END);
         frameSize = settings.getHdlcSettings().getMaxInfoTX();
 
         // Remove BOP, type, len, primaryAddress, secondaryAddress, frame,
@@ -2131,19 +2271,33 @@ abstract class GXDLMS {
             }
         }
 
+        int type;
         // If no data
         if (data == null || data.size() == 0) {
             len = 0;
-            bb.setUInt8(0xA0);
+            type = 0xA0;
         } else if (data.size() - data.position() <= frameSize) {
             len = data.size() - data.position();
             // Is last packet.
-            bb.setUInt8(0xA0 | (((7 + primaryAddress.length + secondaryAddress.length + len) >> 8) & 0x7));
+            type = 0xA0 | (((7 + primaryAddress.length + secondaryAddress.length + len) >> 8) & 0x7);
         } else {
             len = frameSize;
             // More data to left.
-            bb.setUInt8(0xA8 | ((7 + primaryAddress.length + secondaryAddress.length + len >> 8) & 0x7));
+            type = 0xA8 | ((7 + primaryAddress.length + secondaryAddress.length + len >> 8) & 0x7);
         }
+        // Frame size is known, so the frame is written to the buffer without
+        // growing or copying it.
+        int size = 7 + primaryAddress.length + secondaryAddress.length;
+        if (len != 0) {
+            size += len + 2;
+        }
+        int start = bb.size();
+        if (bb.capacity() < start + size) {
+            bb.capacity(start + size);
+        }
+        // Add BOP
+        bb.setUInt8(HDLC_FRAME_START_END);
+        bb.setUInt8(type);
         // Frame len.
         if (len == 0) {
             bb.setUInt8((byte) (5 + primaryAddress.length + secondaryAddress.length + len));
@@ -2162,14 +2316,15 @@ abstract class GXDLMS {
             bb.setUInt8(frame);
         }
         // Add header CRC.
-        int crc = GXFCS16.countFCS16(bb.getData(), 1, bb.size() - 1);
-        bb.setUInt16(crc);
+        int fcs = GXFCS16.updateFCS16(GXFCS16.FCS16_INIT, bb.getData(), start + 1, bb.size() - start - 1);
+        int pos = bb.size();
+        bb.setUInt16(GXFCS16.finishFCS16(fcs));
         if (len != 0) {
             // Add data.
             bb.set(data, len);
-            // Add data CRC.
-            crc = GXFCS16.countFCS16(bb.getData(), 1, bb.size() - 1);
-            bb.setUInt16(crc);
+            // Add data CRC. Header and header CRC are already counted.
+            fcs = GXFCS16.updateFCS16(fcs, bb.getData(), pos, bb.size() - pos);
+            bb.setUInt16(GXFCS16.finishFCS16(fcs));
         }
         // Add EOP
         bb.setUInt8(HDLC_FRAME_START_END);
@@ -2182,7 +2337,6 @@ abstract class GXDLMS {
                 data.position(0);
             }
         }
-        return bb.array();
     }
 
     /**
@@ -2519,7 +2673,9 @@ abstract class GXDLMS {
             return getHdlcData(server, settings, reply, data, notify);
         }
         // Check that header CRC is correct.
-        crc = GXFCS16.countFCS16(reply.getData(), packetStartID + 1, reply.position() - packetStartID - 1);
+        int fcs = GXFCS16.updateFCS16(GXFCS16.FCS16_INIT, reply.getData(), packetStartID + 1,
+                reply.position() - packetStartID - 1);
+        crc = GXFCS16.finishFCS16(fcs);
         crcRead = reply.getUInt16();
         if (crc != crcRead) {
             if (reply.size() - reply.position() > 8) {
@@ -2529,7 +2685,10 @@ abstract class GXDLMS {
         }
         // Check that packet CRC match only if there is a data part.
         if (reply.position() != packetStartID + frameLen + 1) {
-            crc = GXFCS16.countFCS16(reply.getData(), packetStartID + 1, frameLen - 2);
+            // Header is already counted. Continue from the header CRC.
+            fcs = GXFCS16.updateFCS16(fcs, reply.getData(), reply.position() - 2,
+                    packetStartID + frameLen - 1 - (reply.position() - 2));
+            crc = GXFCS16.finishFCS16(fcs);
             crcRead = reply.getUInt16(packetStartID + frameLen - 1);
             if (crc != crcRead) {
                 throw new GXDLMSException("Wrong CRC.");
@@ -5050,14 +5209,19 @@ abstract class GXDLMS {
                 } else if (data.getCommand() == Command.GENERAL_GLO_CIPHERING) {
                     p = new AesGcmParameter(settings, settings.getSourceSystemTitle(), getBlockCipherKey(settings),
                             getAuthenticationKey(settings));
+                    p.setKeyResolver(getKeyResolver(settings));
                 } else if (cipher.getDedicatedKey() == null || isGloMessage(data.getCommand())) {
                     p = new AesGcmParameter(settings, settings.getSourceSystemTitle(), getBlockCipherKey(settings),
                             getAuthenticationKey(settings));
+                    p.setKeyResolver(getKeyResolver(settings));
                 } else {
                     p = new AesGcmParameter(settings, settings.getSourceSystemTitle(), cipher.getDedicatedKey(),
                             getAuthenticationKey(settings));
                 }
                 byte[] tmp = GXCiphering.decrypt(settings.getCipher(), p, data.getData());
+                if (p.isCompression()) {
+                    tmp = decompress(settings, tmp);
+                }
                 cipher.setSecuritySuite(p.getSecuritySuite());
                 cipher.setSecurity(p.getSecurity());
                 if (settings.getCryptoNotifier() != null && data.isComplete()
@@ -5080,6 +5244,32 @@ abstract class GXDLMS {
         }
     }
 
+    /**
+     * Get AES GCM parameter that is used to decrypt glo or ded response.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @return AES GCM parameter.
+     */
+    static AesGcmParameter getGloDedParameter(final GXDLMSSettings settings) {
+        AesGcmParameter p;
+        if (settings.getCipher().getDedicatedKey() != null && settings.getConnected() == ConnectionState.DLMS) {
+            p = new AesGcmParameter(settings, settings.getSourceSystemTitle(), settings.getCipher().getDedicatedKey(),
+                    getAuthenticationKey(settings));
+        } else {
+            if (settings.getPreEstablishedSystemTitle() != null
+                    && (settings.getConnected() & ConnectionState.DLMS) == 0) {
+                p = new AesGcmParameter(settings, settings.getPreEstablishedSystemTitle(), getBlockCipherKey(settings),
+                        getAuthenticationKey(settings));
+            } else {
+                p = new AesGcmParameter(settings, settings.getSourceSystemTitle(), getBlockCipherKey(settings),
+                        getAuthenticationKey(settings));
+            }
+            p.setKeyResolver(getKeyResolver(settings));
+        }
+        return p;
+    }
+
     private static void handleGloDedResponse(final GXDLMSSettings settings, final GXReplyData data, final int index)
             throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
             InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
@@ -5092,26 +5282,28 @@ abstract class GXDLMS {
             // If all frames are read.
             if (!data.getMoreData().contains(RequestTypes.FRAME)) {
                 data.getData().position(data.getData().position() - 1);
-                GXByteBuffer bb = new GXByteBuffer(data.getData());
+                // Ciphered data is decrypted before new data is written to the
+                // buffer, so the bytes don't need to be copied.
+                int start = data.getData().position();
+                GXByteBuffer bb = data.getData().slice();
                 data.getData().position(index);
                 data.getData().size(index);
 
                 AesGcmParameter p;
-                if (settings.getCipher().getDedicatedKey() != null && settings.getConnected() == ConnectionState.DLMS) {
-                    p = new AesGcmParameter(settings, settings.getSourceSystemTitle(),
-                            settings.getCipher().getDedicatedKey(), getAuthenticationKey(settings));
+                byte[] tmp;
+                GXParallelDecryptor.GXDecryptTask task = null;
+                if (settings.getParallelDecryptor() != null) {
+                    task = settings.getParallelDecryptor().poll(bb);
+                }
+                if (task != null) {
+                    // APDU is already decrypted.
+                    p = task.getParameter();
+                    tmp = task.getPlainText();
+                    bb.position(bb.position() + task.getLength());
                 } else {
-                    if (settings.getPreEstablishedSystemTitle() != null
-                            && (settings.getConnected() & ConnectionState.DLMS) == 0) {
-                        p = new AesGcmParameter(settings, settings.getPreEstablishedSystemTitle(),
-                                getBlockCipherKey(settings), getAuthenticationKey(settings));
-                    } else {
-                        p = new AesGcmParameter(settings, settings.getSourceSystemTitle(), getBlockCipherKey(settings),
-                                getAuthenticationKey(settings));
-                    }
-
+                    p = getGloDedParameter(settings);
+                    tmp = GXCiphering.decrypt(settings.getCipher(), p, bb);
                 }
-                byte[] tmp = GXCiphering.decrypt(settings.getCipher(), p, bb);
                 if (p.isCompression()) {
                     tmp = decompress(settings, tmp);
                 }
@@ -5128,7 +5320,7 @@ abstract class GXDLMS {
                     getPdu(settings, data);
                     data.setCipherIndex(data.getData().size());
                 } else {
-                    data.setCipherIndex(data.getCipherIndex() + bb.position());
+                    data.setCipherIndex(data.getCipherIndex() + bb.position() - start);
                 }
             }
         }
@@ -5149,6 +5341,7 @@ abstract class GXDLMS {
             data.getData().position(data.getData().position() - 1);
             AesGcmParameter p = new AesGcmParameter(settings, settings.getSourceSystemTitle(),
                     getBlockCipherKey(settings), getAuthenticationKey(settings));
+            p.setKeyResolver(getKeyResolver(settings));
             p.setXml(data.getXml());
             try {
                 byte[] tmp = GXCiphering.decrypt(settings.getCipher(), p, data.getData());
@@ -5210,6 +5403,8 @@ abstract class GXDLMS {
             info.setCount(reply.getTotalCount());
             info.setIndex(reply.getCount());
         }
+        IGXRowListener listener = reply.getRowListener();
+        info.setRowListener(listener);
         int index = data.position();
         data.position(reply.getReadPosition());
         try {
@@ -5220,6 +5415,15 @@ abstract class GXDLMS {
                     reply.setValue(value);
                     reply.setTotalCount(0);
                     reply.setReadPosition(data.position());
+                } else if (listener != null && info.getType() == DataType.ARRAY) {
+                    // Elements are passed to the listener. Empty array tells
+                    // that parsing continues from the read position.
+                    if (reply.getValue() == null) {
+                        reply.setValue(value);
+                    }
+                    reply.setRowCount(info.getIndex());
+                    reply.setReadPosition(data.position());
+                    reply.setTotalCount(info.getCount());
                 } else {
                     if (!((List<?>) value).isEmpty()) {
                         if (reply.getValue() == null) {
@@ -5240,6 +5444,17 @@ abstract class GXDLMS {
         } finally {
             data.position(index);
         }
+        // Remove streamed elements, so received data doesn't grow.
+        if (listener != null && reply.getValue() instanceof List<?> && reply.getReadPosition() != 0) {
+            int count = reply.getReadPosition();
+            if (count == data.size()) {
+                data.size(0);
+            } else {
+                data.move(count, 0, data.size() - count);
+            }
+            data.position(Math.max(0, index - count));
+            reply.setReadPosition(0);
+        }
 
         // If last data frame of the data block is read.
         if (reply.getCommand() != Command.DATA_NOTIFICATION && info.isComplete() && reply.getMoreData().isEmpty()) {
@@ -5272,6 +5487,9 @@ abstract class GXDLMS {
             break;
         case WRAPPER:
         case PRIME_DC_WRAPPER:
+            if (settings.getParallelDecryptor() != null) {
+                settings.getParallelDecryptor().schedule(reply);
+            }
             if (!getTcpData(settings, reply, target, notify)) {
                 if (notify != null) {
                     target = notify;
@@ -5401,7 +5619,6 @@ abstract class GXDLMS {
         int offset = data.size();
         int cnt = info.getPacketLength() - reply.position();
         if (cnt != 0) {
-            data.capacity(offset + cnt);
             data.set(reply.getData(), reply.position(), cnt);
             reply.position(reply.position() + cnt);
             if (hdlc) {
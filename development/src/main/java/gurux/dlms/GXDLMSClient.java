@@ -36,6 +36,7 @@ package gurux.dlms;
 
 import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
@@ -52,6 +53,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -484,6 +486,51 @@ public class GXDLMSClient {
         settings.setUseUtc2NormalTime(value);
     }
 
+    /**
+     * @return Is date-time parsed to GXCompactDateTime instead of
+     *         GXDateTime.
+     */
+    public boolean getUseCompactDateTime() {
+        return settings.getUseCompactDateTime();
+    }
+
+    /**
+     * Parse received date-time values to GXCompactDateTime instead of
+     * GXDateTime. Compact date-time is faster to parse and it uses less
+     * memory when profile generic rows are read. Rows of the profile generic
+     * buffer keep compact values. Other values are changed to GXDateTime in
+     * changeType and updateValue, because COSEM objects use GXDateTime.
+     * 
+     * @param value
+     *            Is date-time parsed to GXCompactDateTime instead of
+     *            GXDateTime.
+     */
+    public void setUseCompactDateTime(final boolean value) {
+        settings.setUseCompactDateTime(value);
+    }
+
+    /**
+     * @return Executor where received ciphered APDUs are decrypted. Null if
+     *         ciphered APDUs are decrypted in caller's thread.
+     */
+    public Executor getDecryptExecutor() {
+        return settings.getDecryptExecutor();
+    }
+
+    /**
+     * Decrypt received ciphered APDUs in parallel. If several ciphered
+     * wrapper frames are received with one read, for example when GBT window
+     * is used, they are decrypted with the executor and handled in receive
+     * order. ForkJoinPool.commonPool() can be used as an executor.
+     * 
+     * @param value
+     *            Executor where received ciphered APDUs are decrypted. Null
+     *            if ciphered APDUs are decrypted in caller's thread.
+     */
+    public void setDecryptExecutor(final Executor value) {
+        settings.setDecryptExecutor(value);
+    }
+
     /**
      * @return Some meters expect that Invocation Counter is increased for
      *         Authentication when connection is established.
@@ -1057,12 +1104,13 @@ public class GXDLMSClient {
         } else {
             pw = settings.getPassword();
         }
-        long ic = settings.getCipher().getInvocationCounter();
-        byte[] challenge = GXSecure.secure(settings, settings.getCipher(), ic, settings.getStoCChallenge(), pw);
-        if (settings.getCipher() != null && settings.getIncreaseInvocationCounterForGMacAuthentication()) {
-            ++ic;
-            settings.getCipher().setInvocationCounter(ic);
+        long ic;
+        if (settings.getIncreaseInvocationCounterForGMacAuthentication()) {
+            ic = settings.getCipher().nextInvocationCounter();
+        } else {
+            ic = settings.getCipher().getInvocationCounter();
         }
+        byte[] challenge = GXSecure.secure(settings, settings.getCipher(), ic, settings.getStoCChallenge(), pw);
         if (getUseLogicalNameReferencing()) {
             return method("0.0.40.0.0.255", ObjectType.ASSOCIATION_LOGICAL_NAME, 1, challenge, DataType.OCTET_STRING);
         }
@@ -1127,9 +1175,9 @@ public class GXDLMSClient {
                     try {
                         Signature ver;
                         if (settings.getCipher().getSecuritySuite() == SecuritySuite.SUITE_1) {
-                            ver = Signature.getInstance("SHA256withECDSA");
+                            ver = GXSecure.getSignature("SHA256withECDSA");
                         } else if (settings.getCipher().getSecuritySuite() == SecuritySuite.SUITE_2) {
-                            ver = Signature.getInstance("SHA384withECDSA");
+                            ver = GXSecure.getSignature("SHA384withECDSA");
                         } else {
                             throw new IllegalArgumentException("Invalid security suite.");
                         }
@@ -1226,7 +1274,7 @@ public class GXDLMSClient {
             buff.setUInt8(00);
             GXAPDU.generateUserInformation(settings, settings.getCipher(), null, buff);
             if (settings.isCiphered(false)) {
-                settings.getCipher().setInvocationCounter(settings.getCipher().getInvocationCounter() + 1);
+                settings.getCipher().nextInvocationCounter();
             }
             buff.setUInt8(0, (byte) (buff.size() - 1));
         }
@@ -1634,6 +1682,10 @@ public class GXDLMSClient {
     public final Object updateValue(final GXDLMSObject target, final int attributeIndex, final Object value,
             final Object parameters) {
         Object val = value;
+        // Profile generic buffer keeps compact date-time values.
+        if (!(target instanceof GXDLMSProfileGeneric && attributeIndex == 2)) {
+            val = GXCommon.toDateTime(val);
+        }
         if (val instanceof byte[]) {
             DataType type = target.getUIDataType(attributeIndex);
             if (type == DataType.DATETIME && ((byte[]) val).length == 5) {
@@ -1692,12 +1744,77 @@ public class GXDLMSClient {
         int pos = 0;
         for (Entry<GXDLMSObject, Integer> it : list) {
             ValueEventArgs e = new ValueEventArgs(settings, it.getKey(), it.getValue(), 0, null);
-            e.setValue(values.get(pos));
+            if (it.getKey() instanceof GXDLMSProfileGeneric && it.getValue() == 2) {
+                e.setValue(values.get(pos));
+            } else {
+                e.setValue(GXCommon.toDateTime(values.get(pos)));
+            }
             it.getKey().setValue(settings, e);
             ++pos;
         }
     }
 
+    /**
+     * Create listener that receives the rows of the profile generic buffer as
+     * soon as they are parsed. Rows are converted like in updateValue, but
+     * they are not added to the buffer of the profile generic.
+     * 
+     * <pre>
+     * reply.setRowListener(client.createRowListener(pg, listener));
+     * </pre>
+     * 
+     * @param target
+     *            Profile generic.
+     * @param listener
+     *            Listener that receives converted rows.
+     * @return Listener that is set to the reply data.
+     * @see GXReplyData#setRowListener
+     */
+    public final IGXRowListener createRowListener(final GXDLMSProfileGeneric target,
+            final IGXRowListener listener) {
+        return createRowListener(target, null, listener);
+    }
+
+    /**
+     * Create listener that receives the rows of the profile generic buffer as
+     * soon as they are parsed. Rows are converted like in updateValue, but
+     * they are not added to the buffer of the profile generic.
+     * 
+     * @param target
+     *            Profile generic.
+     * @param columns
+     *            Read columns. Capture objects are used if null.
+     * @param listener
+     *            Listener that receives converted rows.
+     * @return Listener that is set to the reply data.
+     * @see GXReplyData#setRowListener
+     */
+    public final IGXRowListener createRowListener(final GXDLMSProfileGeneric target,
+            final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns, final IGXRowListener listener) {
+        return target.createRowListener(settings, columns, listener);
+    }
+
+    /**
+     * Create decoder that passes the cells of the profile generic buffer to
+     * the visitor as primitives. Values are not boxed and rows are not added
+     * to the buffer of the profile generic.
+     * 
+     * <pre>
+     * reply.setRowListener(client.createRowDecoder(pg, visitor));
+     * </pre>
+     * 
+     * @param target
+     *            Profile generic.
+     * @param visitor
+     *            Visitor that receives the cells.
+     * @return Decoder that is set to the reply data as a row listener.
+     * @see GXReplyData#setRowListener
+     */
+    public final GXRowDecoder createRowDecoder(final GXDLMSProfileGeneric target,
+            final IGXRowVisitor visitor) {
+        return target.createRowDecoder(null, visitor);
+    }
+
     /**
      * Changes byte array received from the meter to given type.
      * 
@@ -1749,6 +1866,20 @@ public class GXDLMSClient {
         return changeType(value, type, settings);
     }
 
+    /**
+     * Changes date-time received from the meter to compact date-time.
+     * 
+     * @param value
+     *            Date-time received from the meter as 12 bytes.
+     * @return Compact date-time or null if value is null.
+     */
+    public final GXCompactDateTime changeTypeToCompactDateTime(final byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        return GXCompactDateTime.parse(settings, new GXByteBuffer(value));
+    }
+
     /**
      * Changes byte array received from the meter to given type.
      * 
@@ -1791,7 +1922,7 @@ public class GXDLMSClient {
         if (!info.isComplete()) {
             throw new IllegalArgumentException("Change type failed. Not enought data.");
         }
-        return ret;
+        return GXCommon.toDateTime(ret);
     }
 
     /**
@@ -3084,6 +3215,551 @@ public class GXDLMSClient {
         return GXDLMS.receiverReady(settings, type);
     }
 
+    /**
+     * Writes generated frames to the NIO buffer. HDLC and wrapper frames are
+     * written directly to the buffer and other frames are copied from the
+     * byte arrays.
+     * 
+     * @param frames
+     *            Frames that were not written directly to the buffer.
+     * @param out
+     *            Buffer where frames are written.
+     * @return Amount of written frames.
+     */
+    private int writeFrames(final byte[][] frames, final ByteBuffer out) {
+        int count = settings.getFrameCount();
+        if (frames != null) {
+            for (byte[] it : frames) {
+                out.put(it);
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Generates SNRM request to the NIO buffer.
+     * 
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     */
+    public final int snrmRequest(final ByteBuffer out) {
+        byte[] frame = snrmRequest(false);
+        if (frame == null) {
+            return 0;
+        }
+        out.put(frame);
+        return 1;
+    }
+
+    /**
+     * Generates AARQ request to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int aarqRequest(final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(aarqRequest(), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates release request to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int releaseRequest(final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(releaseRequest(), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates disconnect request to the NIO buffer.
+     * 
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int disconnectRequest(final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        byte[] frame = disconnectRequest(false);
+        if (frame == null) {
+            return 0;
+        }
+        out.put(frame);
+        return 1;
+    }
+
+    /**
+     * Generates a read message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param item
+     *            DLMS object to read.
+     * @param attributeOrdinal
+     *            Read attribute index.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int read(final GXDLMSObject item, final int attributeOrdinal, final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(read(item, attributeOrdinal), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates a read message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param name
+     *            Short or Logical Name.
+     * @param objectType
+     *            COSEM object type.
+     * @param attributeOrdinal
+     *            Attribute index of the object.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int read(final Object name, final ObjectType objectType, final int attributeOrdinal, final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(read(name, objectType, attributeOrdinal), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates a read list message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param list
+     *            DLMS objects to read.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int readList(final List<Entry<GXDLMSObject, Integer>> list, final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(readList(list), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates a write message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param item
+     *            COSEM object to write.
+     * @param index
+     *            Attribute index.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int write(final GXDLMSObject item, final int index, final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(write(item, index), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates a write message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param name
+     *            Short or Logical Name.
+     * @param value
+     *            Data to write.
+     * @param dataType
+     *            Data type of write object.
+     * @param objectType
+     *            Object type.
+     * @param index
+     *            Attribute index where data is write.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int write(final Object name, final Object value, final DataType dataType, final ObjectType objectType,
+            final int index, final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(write(name, value, dataType, objectType, index), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates a write list message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param list
+     *            DLMS objects to write.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int writeList(final List<Entry<GXDLMSObject, Integer>> list, final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(writeList(list), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates a method message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param item
+     *            Method object.
+     * @param index
+     *            Method index.
+     * @param data
+     *            Method data.
+     * @param type
+     *            Data type.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int method(final GXDLMSObject item, final int index, final Object data, final DataType type,
+            final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(method(item, index, data, type), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates a method message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param name
+     *            Method object short name or Logical Name.
+     * @param objectType
+     *            Object type.
+     * @param methodIndex
+     *            Method index.
+     * @param value
+     *            Method data.
+     * @param dataType
+     *            Data type.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int method(final Object name, final ObjectType objectType, final int methodIndex, final Object value,
+            final DataType dataType, final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(method(name, objectType, methodIndex, value, dataType), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates a read rows by entry message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param pg
+     *            Profile generic object to read.
+     * @param index
+     *            Zero bases start index.
+     * @param count
+     *            Rows count to read.
+     * @param columns
+     *            Columns to read. If null, all columns are read.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int readRowsByEntry(final GXDLMSProfileGeneric pg, final int index, final int count,
+            final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns, final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(readRowsByEntry(pg, index, count, columns), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
+    /**
+     * Generates a read rows by range message to the NIO buffer. Frames are written back to back to the buffer. HDLC frames are
+     * delimited by flags and wrapper frames carry their length, so when more
+     * than one frame is generated they must be sent one by one.
+     * 
+     * @param pg
+     *            Profile generic object to read.
+     * @param start
+     *            Start time.
+     * @param end
+     *            End time.
+     * @param columns
+     *            Columns to read. If null, all columns are read.
+     * @param out
+     *            Buffer where generated frames are written.
+     * @return Amount of written frames.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final int readRowsByRange(final GXDLMSProfileGeneric pg, final Calendar start, final Calendar end,
+            final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns, final ByteBuffer out)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        settings.setFrameOutput(out);
+        try {
+            return writeFrames(readRowsByRange(pg, start, end, columns), out);
+        } finally {
+            settings.setFrameOutput(null);
+        }
+    }
+
     /**
      * Generates an acknowledgment message, with which the server is informed to
      * send next packets.
@@ -3100,6 +3776,31 @@ public class GXDLMSClient {
         }
     }
 
+    /**
+     * Generates an acknowledgment message to the NIO buffer, with which the
+     * server is informed to send next packets.
+     * 
+     * @param reply
+     *            Received data.
+     * @param out
+     *            Buffer where acknowledgment message is written.
+     */
+    public final void receiverReady(final GXReplyData reply, final ByteBuffer out) {
+        InterfaceType type = settings.getInterfaceType();
+        if (type == InterfaceType.HDLC || type == InterfaceType.HDLC_WITH_MODE_E) {
+            // HDLC frames are written without temporary byte array.
+            if (reply.getMoreData().isEmpty()) {
+                GXDLMS.getHdlcFrame(settings, settings.getKeepAlive(), null, out);
+                return;
+            }
+            if (reply.getMoreData().contains(RequestTypes.FRAME)) {
+                GXDLMS.getHdlcFrame(settings, settings.getReceiverReady(), null, out);
+                return;
+            }
+        }
+        out.put(receiverReady(reply));
+    }
+
     /**
      * Removes the HDLC frame from the packet, and returns COSEM data only.
      * 
@@ -3189,6 +3890,85 @@ public class GXDLMSClient {
         return getData(reply, data, null);
     }
 
+    /**
+     * Removes the frame from the NIO buffer, and returns COSEM data only.
+     * Position of the buffer is moved over the handled bytes. Heap buffers are
+     * parsed without copying.
+     * 
+     * @param reply
+     *            The received data from the device. Direct buffers are
+     *            supported.
+     * @param data
+     *            The exported reply information.
+     * @return Is frame complete.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final boolean getData(final ByteBuffer reply, final GXReplyData data)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        return getData(reply, data, null);
+    }
+
+    /**
+     * Removes the frame from the NIO buffer, and returns COSEM data only.
+     * Position of the buffer is moved over the handled bytes. Heap buffers are
+     * parsed without copying.
+     * 
+     * @param reply
+     *            The received data from the device. Direct buffers are
+     *            supported.
+     * @param data
+     *            The exported reply information.
+     * @param notify
+     *            Information from the notify message.
+     * @return Is frame complete.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final boolean getData(final ByteBuffer reply, final GXReplyData data, final GXReplyData notify)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        GXByteBuffer bb;
+        if (reply.hasArray()) {
+            bb = GXByteBuffer.wrap(reply);
+        } else {
+            bb = GXByteBufferPool.acquire(reply.remaining());
+            bb.set(reply.duplicate());
+        }
+        int start = bb.position();
+        try {
+            return getData(bb, data, notify);
+        } finally {
+            reply.position(reply.position() + bb.position() - start);
+            GXByteBufferPool.release(bb);
+        }
+    }
+
     /**
      * Removes the HDLC frame from the packet, and returns COSEM data only.
      * 
@@ -3266,14 +4046,12 @@ public class GXDLMSClient {
                 if (data.getCommand() == Command.SNRM || data.getCommand() == Command.UA) {
                     data.getXml().appendStartTag(data.getCommand());
                     if (data.getData().size() != 0) {
-                        translator.pduToXml(data.getXml(), data.getData(), translator.isOmitXmlDeclaration(),
-                                translator.isOmitXmlNameSpace(), true, null);
+                        translator.pduToStructure(data.getXml(), data.getData(), true, null);
                     }
                     data.getXml().appendEndTag(data.getCommand());
                 } else {
                     if (data.getData().size() != 0) {
-                        translator.pduToXml(data.getXml(), data.getData(), translator.isOmitXmlDeclaration(),
-                                translator.isOmitXmlNameSpace(), true, null);
+                        translator.pduToStructure(data.getXml(), data.getData(), true, null);
                     }
                     data.setData(data2);
                 }
@@ -1,13 +1,17 @@
 package gurux.dlms;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,9 +30,12 @@ import gurux.dlms.objects.enums.CertificateType;
  */
 public class GXDLMSConverter {
     /**
-     * Collection of standard OBIS codes.
+     * Standard OBIS code tables that are shared between the converters. Index
+     * is the ordinal of the standard. Tables are read when they are used
+     * first time and they are not changed after that.
      */
-    private GXStandardObisCodeCollection codes = new GXStandardObisCodeCollection();
+    private static final AtomicReferenceArray<GXStandardObisCodeCollection> STANDARDS =
+            new AtomicReferenceArray<GXStandardObisCodeCollection>(Standard.values().length);
 
     private Standard standard;
 
@@ -98,9 +105,7 @@ public class GXDLMSConverter {
      * @return Array of descriptions that match given OBIS code.
      */
     public final String[] getDescription(final String logicalName, final ObjectType type, final String description) {
-        if (codes.isEmpty()) {
-            readStandardObisInfo(standard, codes);
-        }
+        GXStandardObisCodeCollection codes = getCodes(standard);
         List<String> list = new ArrayList<String>();
         boolean all = logicalName == null || logicalName.isEmpty();
         for (GXStandardObisCode it : codes.find(logicalName, type)) {
@@ -238,12 +243,7 @@ public class GXDLMSConverter {
      *            COSEM object.
      */
     public final void updateOBISCodeInformation(final GXDLMSObject object) {
-        synchronized (codes) {
-            if (codes.isEmpty()) {
-                readStandardObisInfo(standard, codes);
-            }
-            updateOBISCodeInfo(codes, object, standard);
-        }
+        updateOBISCodeInfo(getCodes(standard), object, standard);
     }
 
     /**
@@ -253,14 +253,35 @@ public class GXDLMSConverter {
      *            Collection of COSEM objects to update.
      */
     public final void updateOBISCodeInformation(final GXDLMSObjectCollection objects) {
-        synchronized (codes) {
-            if (codes.isEmpty()) {
-                readStandardObisInfo(standard, codes);
-            }
-            for (GXDLMSObject it : objects) {
-                updateOBISCodeInfo(codes, it, standard);
+        GXStandardObisCodeCollection codes = getCodes(standard);
+        for (GXDLMSObject it : objects) {
+            updateOBISCodeInfo(codes, it, standard);
+        }
+    }
+
+    /**
+     * Get shared standard OBIS codes. Codes are read when they are used first
+     * time.
+     * 
+     * @param standard
+     *            Used standard.
+     * @return Read-only collection of standard OBIS codes.
+     */
+    private static GXStandardObisCodeCollection getCodes(final Standard standard) {
+        int index = standard == null ? Standard.DLMS.ordinal() : standard.ordinal();
+        GXStandardObisCodeCollection codes = STANDARDS.get(index);
+        if (codes == null) {
+            synchronized (STANDARDS) {
+                codes = STANDARDS.get(index);
+                if (codes == null) {
+                    codes = new GXStandardObisCodeCollection();
+                    readStandardObisInfo(standard, codes);
+                    codes.setReadOnly();
+                    STANDARDS.set(index, codes);
+                }
             }
         }
+        return codes;
     }
 
     /**
@@ -286,21 +307,7 @@ public class GXDLMSConverter {
         if (stream == null) {
             return new GXObisCode[0];
         }
-        int nRead;
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        byte[] data = new byte[1000];
-        try {
-            while ((nRead = stream.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
-            }
-            buffer.flush();
-        } catch (IOException e) {
-            throw new RuntimeException(e.getMessage());
-        }
-        String str = buffer.toString();
-        str = str.replace("\r", "");
-        List<String> rows = GXCommon.split(str, '\n');
-        for (String it : rows) {
+        for (String it : readRows(stream)) {
             // Comments start with #.
             if (!it.startsWith("#")) {
                 List<String> items = GXCommon.split(it, ';');
@@ -345,31 +352,69 @@ public class GXDLMSConverter {
         if (stream == null) {
             return;
         }
+        // Masks, interfaces and data types are repeated in many rows.
+        Map<String, String> strings = new HashMap<String, String>();
+        for (String it : readRows(stream)) {
+            if (!it.isEmpty()) {
+                List<String> items = GXCommon.split(it, ';');
+                List<String> obis = GXCommon.split(items.get(0), '.');
+                String[] ln = new String[obis.size()];
+                for (int pos = 0; pos != ln.length; ++pos) {
+                    ln[pos] = intern(strings, obis.get(pos));
+                }
+                GXStandardObisCode code = new GXStandardObisCode(ln,
+                        items.get(3) + "; " + items.get(4) + "; " + items.get(5) + "; " + items.get(6) + "; "
+                                + items.get(7),
+                        intern(strings, items.get(1)), intern(strings, items.get(2)));
+                codes.add(code);
+            }
+        }
+    }
 
-        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-        int nRead;
-        byte[] data = new byte[1000];
+    /**
+     * Return shared instance of the string.
+     * 
+     * @param strings
+     *            Shared strings.
+     * @param value
+     *            String value.
+     * @return Shared string.
+     */
+    private static String intern(final Map<String, String> strings, final String value) {
+        String ret = strings.get(value);
+        if (ret == null) {
+            strings.put(value, value);
+            ret = value;
+        }
+        return ret;
+    }
+
+    /**
+     * Read rows of the text resource.
+     * 
+     * @param stream
+     *            Resource stream.
+     * @return Rows.
+     */
+    @SuppressWarnings("squid:S00112")
+    private static List<String> readRows(final InputStream stream) {
+        List<String> rows = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
         try {
-            while ((nRead = stream.read(data, 0, data.length)) != -1) {
-                buffer.write(data, 0, nRead);
+            String row;
+            while ((row = reader.readLine()) != null) {
+                rows.add(row);
             }
-            buffer.flush();
         } catch (IOException e) {
             throw new RuntimeException(e.getMessage());
-        }
-        String str = buffer.toString();
-        str = str.replace("\r", "");
-        List<String> rows = GXCommon.split(str, '\n');
-        for (String it : rows) {
-            if (!it.isEmpty()) {
-                List<String> items = GXCommon.split(it, ';');
-                List<String> obis = GXCommon.split(items.get(0), '.');
-                GXStandardObisCode code =
-                        new GXStandardObisCode(obis.toArray(new String[0]), items.get(3) + "; " + items.get(4) + "; "
-                                + items.get(5) + "; " + items.get(6) + "; " + items.get(7), items.get(1), items.get(2));
-                codes.add(code);
+        } finally {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Closing a resource stream doesn't fail.
             }
         }
+        return rows;
     }
 
     @SuppressWarnings("rawtypes")
@@ -471,7 +516,7 @@ public class GXDLMSConverter {
         if (value instanceof GXDate) {
             return DataType.DATE;
         }
-        if (value instanceof java.util.Date || value instanceof GXDateTime) {
+        if (value instanceof java.util.Date || value instanceof GXDateTime || value instanceof GXCompactDateTime) {
             return DataType.DATETIME;
         }
         if (value.getClass().isArray()) {
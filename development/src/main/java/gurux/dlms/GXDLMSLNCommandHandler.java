@@ -233,7 +233,7 @@ final class GXDLMSLNCommandHandler {
                 parameters = GXCommon.getData(settings, data, info);
             }
             ObjectType ot = ObjectType.forValue(ci);
-            GXDLMSObject obj = settings.getObjects().findByLN(ot, GXCommon.toLogicalName(ln));
+            GXDLMSObject obj = settings.getObjects().findByLN(ot, ln);
             if (obj == null) {
                 obj = server.notifyFindObject(ot, 0, GXCommon.toLogicalName(ln));
             }
@@ -425,7 +425,7 @@ final class GXDLMSLNCommandHandler {
                 xml.appendEndTag(TranslatorTags.ATTRIBUTE_DESCRIPTOR);
                 xml.appendEndTag(TranslatorTags.ATTRIBUTE_DESCRIPTOR_WITH_SELECTION);
             } else {
-                GXDLMSObject obj = settings.getObjects().findByLN(ci, GXCommon.toLogicalName(ln));
+                GXDLMSObject obj = settings.getObjects().findByLN(ci, ln);
                 if (obj == null) {
                     obj = server.notifyFindObject(ci, 0, GXCommon.toLogicalName(ln));
                 }
@@ -542,7 +542,7 @@ final class GXDLMSLNCommandHandler {
             value = GXCommon.getData(settings, data, reply);
         }
 
-        GXDLMSObject obj = settings.getObjects().findByLN(ot, GXCommon.toLogicalName(ln));
+        GXDLMSObject obj = settings.getObjects().findByLN(ot, ln);
         if (obj == null) {
             obj = server.notifyFindObject(ot, 0, GXCommon.toLogicalName(ln));
         }
@@ -694,7 +694,7 @@ final class GXDLMSLNCommandHandler {
                     xml.appendEndTag(TranslatorTags.ATTRIBUTE_DESCRIPTOR);
                     xml.appendEndTag(TranslatorTags.ATTRIBUTE_DESCRIPTOR_WITH_SELECTION);
                 } else {
-                    GXDLMSObject obj = settings.getObjects().findByLN(ci, GXCommon.toLogicalName(ln));
+                    GXDLMSObject obj = settings.getObjects().findByLN(ci, ln);
                     if (obj == null) {
                         obj = server.notifyFindObject(ci, 0, GXCommon.toLogicalName(ln));
                     }
@@ -820,7 +820,7 @@ final class GXDLMSLNCommandHandler {
             }
         }
 
-        GXDLMSObject obj = settings.getObjects().findByLN(ot, GXCommon.toLogicalName(ln));
+        GXDLMSObject obj = settings.getObjects().findByLN(ot, ln);
         if ((settings.getConnected() & ConnectionState.DLMS) == 0 && cipheredCommand == Command.NONE
                 && (ci != ObjectType.ASSOCIATION_LOGICAL_NAME.getValue() || id != 1)) {
             replyData.set(GXDLMSServerBase.generateConfirmedServiceError(ConfirmedServiceError.INITIATE_ERROR,
@@ -1114,7 +1114,7 @@ final class GXDLMSLNCommandHandler {
                 xml.appendEndTag(TranslatorTags.ACCESS_REQUEST_SPECIFICATION);
             } else {
                 ObjectType ot = ObjectType.forValue(ci);
-                GXDLMSObject obj = settings.getObjects().findByLN(ot, GXCommon.toLogicalName(ln));
+                GXDLMSObject obj = settings.getObjects().findByLN(ot, ln);
                 if (obj == null) {
                     try {
                         obj = server.notifyFindObject(ot, 0, GXCommon.toLogicalName(ln));
@@ -1254,7 +1254,7 @@ final class GXDLMSLNCommandHandler {
             reply.getXml().appendEndTag(TranslatorTags.ATTRIBUTE_VALUE);
             reply.getXml().appendEndTag(Command.EVENT_NOTIFICATION);
         } else {
-            GXDLMSObject obj = settings.getObjects().findByLN(ObjectType.forValue(ci), GXCommon.toLogicalName(ln));
+            GXDLMSObject obj = settings.getObjects().findByLN(ObjectType.forValue(ci), ln);
             if (obj != null) {
                 ValueEventArgs v = new ValueEventArgs(obj, index, 0, null);
                 v.setValue(value);
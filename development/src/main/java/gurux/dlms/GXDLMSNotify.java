@@ -148,6 +148,20 @@ public class GXDLMSNotify {
         return settings.getHdlcSettings();
     }
 
+    /**
+     * @return PLC settings.
+     */
+    public final GXPlcSettings getPlc() {
+        return settings.getPlc();
+    }
+
+    /**
+     * @return CoAP settings.
+     */
+    public final GXCoAPSettings getCoap() {
+        return settings.getCoap();
+    }
+
     /**
      * Retrieves the maximum size of received PDU. PDU size tells maximum size
      * of PDU packet. Value can be from 0 to 0xFFFF. By default the value is
@@ -0,0 +1,741 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import gurux.dlms.enums.InterfaceType;
+
+/**
+ * Non-blocking engine that receives push messages from multiple senders.
+ * <p>
+ * One NIO selector thread receives the data of all the TCP connections and
+ * UDP senders. Each TCP connection and each UDP sender address has own client
+ * that is created by the client factory, so frame reassembly, general block
+ * transfer and ciphering state are kept per sender. Received data is parsed
+ * in the given executor. Messages of one sender are always parsed in
+ * receiving order, but different senders are parsed in parallel.
+ * </p>
+ * <p>
+ * Decoded messages are added to the bounded message queue. If the queue is
+ * full, parsing waits and TCP senders are not read until the parsing catches
+ * up, so a burst of push messages can't exhaust the memory.
+ * </p>
+ */
+public final class GXDLMSPushEngine implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(GXDLMSPushEngine.class.getName());
+
+    /**
+     * Maximum size of the received TCP packet or UDP datagram.
+     */
+    private static final int RECEIVE_BUFFER_SIZE = 0x10000;
+
+    /**
+     * Requested size of the socket receive buffer of the UDP channel.
+     */
+    private static final int UDP_RECEIVE_BUFFER_SIZE = 0x400000;
+
+    /**
+     * Amount of the unparsed bytes after TCP sender is not read anymore and
+     * UDP datagrams are dropped.
+     */
+    private static final int MAX_PENDING = 0x10000;
+
+    private final IGXDLMSPushClientFactory factory;
+
+    private final Executor executor;
+
+    private final BlockingQueue<GXDLMSPushMessage> messages;
+
+    private final Selector selector;
+
+    /**
+     * Channels are registered while holding this lock, so the selector thread
+     * doesn't block the registration.
+     */
+    private final Object registerLock = new Object();
+
+    /**
+     * Opened server channels.
+     */
+    private final List<SelectableChannel> channels = new ArrayList<SelectableChannel>();
+
+    /**
+     * TCP senders that can be read again.
+     */
+    private final ConcurrentLinkedQueue<GXSender> resumed = new ConcurrentLinkedQueue<GXSender>();
+
+    /**
+     * Received data is read to this buffer.
+     */
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+
+    private Thread thread;
+
+    private volatile boolean closed;
+
+    /**
+     * Amount of the senders.
+     */
+    private volatile int senderCount;
+
+    /**
+     * Inactivity timeout in seconds.
+     */
+    private volatile int inactivityTimeout;
+
+    /**
+     * One sender. Received data is added in the selector thread and parsed in
+     * the executor.
+     */
+    private final class GXSender implements Runnable {
+        private final GXDLMSClient client;
+        private final SocketAddress address;
+        /**
+         * TCP channel. Null for UDP senders.
+         */
+        private final SocketChannel channel;
+        /**
+         * UDP endpoint. Null for TCP senders.
+         */
+        private final GXUdpEndpoint endpoint;
+        /**
+         * Received data that is not parsed yet. Guarded by this.
+         */
+        private final GXByteBuffer pending = new GXByteBuffer();
+        /**
+         * Data that is parsed. Used only by the executor.
+         */
+        private final GXByteBuffer received = new GXByteBuffer();
+        private final GXReplyData data = new GXReplyData();
+        /**
+         * Is parsing scheduled to the executor. Guarded by this.
+         */
+        private boolean scheduled;
+        /**
+         * Is TCP reading paused. Guarded by this.
+         */
+        private boolean paused;
+        private long lastReceived;
+
+        GXSender(final GXDLMSClient forClient, final SocketAddress forAddress, final SocketChannel forChannel,
+                final GXUdpEndpoint forEndpoint) {
+            client = forClient;
+            address = forAddress;
+            channel = forChannel;
+            endpoint = forEndpoint;
+        }
+
+        /**
+         * Add received data. Called from the selector thread.
+         * 
+         * @return False, if UDP datagram is dropped because too much data is
+         *         waiting for the parsing.
+         */
+        synchronized boolean add(final ByteBuffer value) {
+            // TCP sender is not read when too much data is waiting.
+            if (channel == null && pending.size() >= MAX_PENDING) {
+                return false;
+            }
+            pending.set(value);
+            if (!scheduled) {
+                schedule();
+            }
+            if (channel != null && pending.size() >= MAX_PENDING) {
+                paused = true;
+                channel.keyFor(selector).interestOps(0);
+            }
+            return true;
+        }
+
+        /**
+         * Start reading the TCP sender again. Called from the selector
+         * thread.
+         */
+        synchronized void resume() {
+            SelectionKey key = channel.keyFor(selector);
+            if (!paused && key != null && key.isValid()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Schedule parsing to the executor. Called when this is locked.
+         */
+        private void schedule() {
+            scheduled = true;
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                scheduled = false;
+                throw ex;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    synchronized (this) {
+                        if (pending.size() == 0) {
+                            return;
+                        }
+                        received.set(pending);
+                        pending.clear();
+                        if (paused) {
+                            paused = false;
+                            resumed.add(this);
+                            selector.wakeup();
+                        }
+                    }
+                    try {
+                        parse();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception ex) {
+                        LOGGER.log(Level.WARNING, "Invalid push message from " + address + ".", ex);
+                        // Partially received message is dropped.
+                        received.clear();
+                        data.clear();
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    scheduled = false;
+                    // Data that is received after the last check is parsed
+                    // in a new task.
+                    if (!closed && pending.size() != 0) {
+                        try {
+                            schedule();
+                        } catch (RejectedExecutionException ex) {
+                            LOGGER.log(Level.WARNING, "Failed to parse push messages from " + address + ".", ex);
+                        }
+                    }
+                }
+            }
+        }
+
+        private void parse() throws Exception {
+            while (received.available() != 0) {
+                int pos = received.position();
+                client.getData(received, data);
+                if (!data.isComplete()) {
+                    // Wait until the rest of the frame is received.
+                    received.position(pos);
+                    break;
+                }
+                if (data.isMoreData()) {
+                    if (endpoint != null && client.getInterfaceType() == InterfaceType.COAP) {
+                        byte[] reply = client.receiverReady(data);
+                        endpoint.channel.send(ByteBuffer.wrap(reply), address);
+                    }
+                } else {
+                    put(new GXDLMSPushMessage(address, client.getSourceSystemTitle(), data.getCommand(),
+                            data.getTime(), data.getValue(), System.currentTimeMillis()));
+                    data.clear();
+                }
+            }
+            received.trim();
+        }
+
+        private void put(final GXDLMSPushMessage message) throws InterruptedException {
+            while (!closed) {
+                if (messages.offer(message, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * UDP channel and the senders of the addresses.
+     */
+    private static final class GXUdpEndpoint {
+        private final DatagramChannel channel;
+        private final Map<SocketAddress, GXSender> senders = new HashMap<SocketAddress, GXSender>();
+
+        GXUdpEndpoint(final DatagramChannel forChannel) {
+            channel = forChannel;
+        }
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param clientFactory
+     *            Factory that creates the client for each sender.
+     * @param parser
+     *            Executor where received data is parsed. Engine doesn't shut
+     *            down the executor.
+     * @param capacity
+     *            Maximum amount of the messages in the message queue.
+     * @throws IOException
+     *             Selector can't be opened.
+     */
+    public GXDLMSPushEngine(final IGXDLMSPushClientFactory clientFactory, final Executor parser,
+            final int capacity) throws IOException {
+        if (clientFactory == null) {
+            throw new IllegalArgumentException("clientFactory");
+        }
+        if (parser == null) {
+            throw new IllegalArgumentException("parser");
+        }
+        factory = clientFactory;
+        executor = parser;
+        messages = new ArrayBlockingQueue<GXDLMSPushMessage>(capacity);
+        selector = Selector.open();
+    }
+
+    /**
+     * @return Amount of the senders.
+     */
+    public int getSenderCount() {
+        return senderCount;
+    }
+
+    /**
+     * @return Amount of the messages in the message queue.
+     */
+    public int getMessageCount() {
+        return messages.size();
+    }
+
+    /**
+     * @return Inactivity timeout in seconds. Zero if connections are never
+     *         closed because of inactivity.
+     */
+    public int getInactivityTimeout() {
+        return inactivityTimeout;
+    }
+
+    /**
+     * UDP senders are removed only when inactivity time out elapses, because
+     * UDP doesn't have connections.
+     * 
+     * @param value
+     *            Inactivity timeout in seconds. Zero if connections are never
+     *            closed because of inactivity.
+     */
+    public void setInactivityTimeout(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid inactivity timeout.");
+        }
+        inactivityTimeout = value;
+    }
+
+    /**
+     * Wait until the next message is received.
+     * 
+     * @return Received message.
+     * @throws InterruptedException
+     *             Waiting was interrupted.
+     */
+    public GXDLMSPushMessage take() throws InterruptedException {
+        return messages.take();
+    }
+
+    /**
+     * Wait the next message.
+     * 
+     * @param timeout
+     *            Wait time.
+     * @param unit
+     *            Time unit of the wait time.
+     * @return Received message or null, if the wait time elapsed.
+     * @throws InterruptedException
+     *             Waiting was interrupted.
+     */
+    public GXDLMSPushMessage poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return messages.poll(timeout, unit);
+    }
+
+    /**
+     * Move received messages to the collection without waiting. Messages can
+     * be handled in batches, for example stored to the database in one
+     * transaction.
+     * 
+     * @param target
+     *            Target collection.
+     * @param maxCount
+     *            Maximum amount of the moved messages.
+     * @return Amount of the moved messages.
+     */
+    public int drainTo(final Collection<? super GXDLMSPushMessage> target, final int maxCount) {
+        return messages.drainTo(target, maxCount);
+    }
+
+    /**
+     * Start listening TCP connections.
+     * 
+     * @param address
+     *            Local address.
+     * @return Bound local address.
+     * @throws IOException
+     *             Bind failed.
+     */
+    public SocketAddress bind(final SocketAddress address) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(address);
+            channel.configureBlocking(false);
+            register(channel, SelectionKey.OP_ACCEPT, null);
+            return channel.getLocalAddress();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Start listening UDP datagrams.
+     * 
+     * @param address
+     *            Local address.
+     * @return Bound local address.
+     * @throws IOException
+     *             Bind failed.
+     */
+    public SocketAddress bindUdp(final SocketAddress address) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            // Push messages are received in bursts, so datagrams are buffered
+            // as much as the operating system allows.
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, UDP_RECEIVE_BUFFER_SIZE);
+            channel.bind(address);
+            channel.configureBlocking(false);
+            register(channel, SelectionKey.OP_READ, new GXUdpEndpoint(channel));
+            return channel.getLocalAddress();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private void register(final SelectableChannel channel, final int ops, final Object attachment)
+            throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed.");
+        }
+        synchronized (registerLock) {
+            selector.wakeup();
+            channel.register(selector, ops, attachment);
+            synchronized (channels) {
+                channels.add(channel);
+            }
+        }
+    }
+
+    /**
+     * Start the selector thread.
+     */
+    public synchronized void start() {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed.");
+        }
+        if (thread != null) {
+            throw new IllegalStateException("Engine is already started.");
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                process();
+            }
+        }, "GXDLMSPushEngine");
+        thread.start();
+    }
+
+    /**
+     * Close all the connections and stop the selector thread. Messages that
+     * are already in the message queue can still be read. If the calling
+     * thread is interrupted while it waits for the selector thread, the
+     * interrupt status is set again and the selector thread stops by itself.
+     */
+    @Override
+    public void close() {
+        Thread tmp;
+        synchronized (this) {
+            closed = true;
+            tmp = thread;
+        }
+        selector.wakeup();
+        if (tmp != null && tmp != Thread.currentThread()) {
+            try {
+                tmp.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (tmp == null) {
+            closeAll();
+        }
+    }
+
+    /**
+     * Selector loop.
+     */
+    private void process() {
+        long lastCheck = System.currentTimeMillis();
+        try {
+            while (!closed) {
+                selector.select(1000);
+                // Wait until the channel that woke up the selector is
+                // registered.
+                // CHECKSTYLE:OFF
+                synchronized (registerLock) {
+                }
+                // CHECKSTYLE:ON
+                GXSender sender;
+                while ((sender = resumed.poll()) != null) {
+                    sender.resume();
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    handleKey(key);
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastCheck >= 1000) {
+                    lastCheck = now;
+                    checkInactivity(now);
+                }
+            }
+        } catch (ClosedSelectorException ex) {
+            // Engine is closed.
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Selector failed.", ex);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void handleKey(final SelectionKey key) {
+        Object attachment = key.attachment();
+        GXSender sender = null;
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                accept((ServerSocketChannel) key.channel());
+            } else if (attachment instanceof GXUdpEndpoint) {
+                receive((GXUdpEndpoint) attachment);
+            } else if (key.isReadable()) {
+                sender = (GXSender) attachment;
+                read(sender);
+            }
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Connection failed.", ex);
+            if (sender != null) {
+                closeSender(sender);
+            }
+        }
+    }
+
+    private GXSender createSender(final SocketAddress address, final SocketChannel channel,
+            final GXUdpEndpoint endpoint) throws Exception {
+        GXDLMSClient client = factory.createClient(address);
+        if (client == null) {
+            return null;
+        }
+        GXSender sender = new GXSender(client, address, channel, endpoint);
+        sender.lastReceived = System.currentTimeMillis();
+        ++senderCount;
+        return sender;
+    }
+
+    private void accept(final ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        GXSender sender;
+        try {
+            channel.configureBlocking(false);
+            sender = createSender(channel.getRemoteAddress(), channel, null);
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Sender creation failed.", ex);
+            sender = null;
+        }
+        if (sender == null) {
+            channel.close();
+            return;
+        }
+        channel.register(selector, SelectionKey.OP_READ, sender);
+    }
+
+    private void read(final GXSender sender) throws IOException {
+        receiveBuffer.clear();
+        int count = sender.channel.read(receiveBuffer);
+        if (count == -1) {
+            // Data that is already received is still parsed.
+            closeSender(sender);
+        } else if (count != 0) {
+            receiveBuffer.flip();
+            sender.lastReceived = System.currentTimeMillis();
+            sender.add(receiveBuffer);
+        }
+    }
+
+    private void receive(final GXUdpEndpoint endpoint) throws IOException {
+        while (true) {
+            receiveBuffer.clear();
+            SocketAddress address = endpoint.channel.receive(receiveBuffer);
+            if (address == null) {
+                break;
+            }
+            receiveBuffer.flip();
+            GXSender sender = endpoint.senders.get(address);
+            if (sender == null) {
+                try {
+                    sender = createSender(address, null, endpoint);
+                } catch (Exception ex) {
+                    LOGGER.log(Level.WARNING, "Sender creation failed.", ex);
+                }
+                if (sender == null) {
+                    continue;
+                }
+                endpoint.senders.put(address, sender);
+            }
+            sender.lastReceived = System.currentTimeMillis();
+            if (!sender.add(receiveBuffer)) {
+                LOGGER.log(Level.WARNING, "Parsing is too slow. Datagram from {0} is dropped.", address);
+            }
+        }
+    }
+
+    private void checkInactivity(final long now) {
+        int timeout = inactivityTimeout;
+        if (timeout == 0) {
+            return;
+        }
+        long limit = now - 1000L * timeout;
+        List<GXSender> expired = new ArrayList<GXSender>();
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof GXSender) {
+                if (((GXSender) attachment).lastReceived < limit) {
+                    expired.add((GXSender) attachment);
+                }
+            } else if (attachment instanceof GXUdpEndpoint) {
+                for (GXSender it : ((GXUdpEndpoint) attachment).senders.values()) {
+                    if (it.lastReceived < limit) {
+                        expired.add(it);
+                    }
+                }
+            }
+        }
+        for (GXSender it : expired) {
+            closeSender(it);
+        }
+    }
+
+    private void closeSender(final GXSender sender) {
+        if (sender.endpoint != null) {
+            if (sender.endpoint.senders.remove(sender.address) == null) {
+                return;
+            }
+        } else {
+            if (!sender.channel.isOpen()) {
+                return;
+            }
+            try {
+                sender.channel.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Closing connection failed.", ex);
+            }
+        }
+        --senderCount;
+    }
+
+    private void closeAll() {
+        List<GXSender> senders = new ArrayList<GXSender>();
+        try {
+            for (SelectionKey key : selector.keys()) {
+                Object attachment = key.attachment();
+                if (attachment instanceof GXSender) {
+                    senders.add((GXSender) attachment);
+                } else if (attachment instanceof GXUdpEndpoint) {
+                    senders.addAll(((GXUdpEndpoint) attachment).senders.values());
+                }
+            }
+        } catch (ClosedSelectorException ex) {
+            // Senders are already closed.
+        }
+        for (GXSender it : senders) {
+            closeSender(it);
+        }
+        synchronized (channels) {
+            for (SelectableChannel it : channels) {
+                try {
+                    it.close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.FINE, "Closing channel failed.", ex);
+                }
+            }
+            channels.clear();
+        }
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Closing selector failed.", ex);
+        }
+    }
+}
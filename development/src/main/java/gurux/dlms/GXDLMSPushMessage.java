@@ -0,0 +1,124 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.net.SocketAddress;
+
+/**
+ * Decoded push message.
+ * 
+ * @see GXDLMSPushEngine
+ */
+public final class GXDLMSPushMessage {
+    private final SocketAddress address;
+    private final byte[] systemTitle;
+    private final int command;
+    private final GXDateTime time;
+    private final Object value;
+    private final long received;
+
+    /**
+     * Constructor.
+     * 
+     * @param forAddress
+     *            Address of the sender.
+     * @param forSystemTitle
+     *            System title of the sender.
+     * @param forCommand
+     *            Push command.
+     * @param forTime
+     *            Time stamp.
+     * @param forValue
+     *            Push value.
+     * @param forReceived
+     *            Receive time in milliseconds.
+     */
+    GXDLMSPushMessage(final SocketAddress forAddress, final byte[] forSystemTitle, final int forCommand,
+            final GXDateTime forTime, final Object forValue, final long forReceived) {
+        address = forAddress;
+        systemTitle = forSystemTitle;
+        command = forCommand;
+        time = forTime;
+        value = forValue;
+        received = forReceived;
+    }
+
+    /**
+     * @return Address of the sender.
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * @return System title of the sender, if the message was ciphered.
+     *         Otherwise null.
+     */
+    public byte[] getSystemTitle() {
+        return systemTitle;
+    }
+
+    /**
+     * @return Push command. For example data notification or event
+     *         notification.
+     * @see gurux.dlms.enums.Command
+     */
+    public int getCommand() {
+        return command;
+    }
+
+    /**
+     * @return Time stamp of the message, if the sender added it. Otherwise
+     *         null.
+     */
+    public GXDateTime getTime() {
+        return time;
+    }
+
+    /**
+     * @return Push value.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return The time when the message was completed as returned by
+     *         {@link System#currentTimeMillis()}.
+     */
+    public long getReceived() {
+        return received;
+    }
+}
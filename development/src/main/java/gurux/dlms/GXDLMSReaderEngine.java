@@ -0,0 +1,704 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import gurux.dlms.enums.Authentication;
+import gurux.dlms.enums.Conformance;
+import gurux.dlms.enums.DataType;
+import gurux.dlms.enums.InterfaceType;
+import gurux.dlms.enums.Security;
+import gurux.dlms.objects.GXDLMSObject;
+
+/**
+ * Reader engine that reads multiple meters concurrently without a thread per
+ * meter.
+ * <p>
+ * Each read is a state machine that opens the transport and sends SNRM, AARQ,
+ * the HLS authentication, the GET or read list requests, the release request
+ * and the disconnect request. Replies are handled when the transport passes
+ * the received data to the engine. Timeouts are handled by the scheduler.
+ * Each meter must have its own client and transport, because they keep the
+ * state of the connection.
+ * </p>
+ * 
+ * <pre>
+ * GXDLMSReaderEngine engine = new GXDLMSReaderEngine(scheduler);
+ * CompletableFuture&lt;List&lt;Object&gt;&gt; values =
+ *         engine.read(client, new GXDLMSTcpTransport(address), items);
+ * </pre>
+ */
+public final class GXDLMSReaderEngine {
+    private static final Logger LOGGER = Logger.getLogger(GXDLMSReaderEngine.class.getName());
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Reply timeout in milliseconds.
+     */
+    private volatile int waitTime = 5000;
+
+    /**
+     * How many times a request is resent if reply is not received.
+     */
+    private volatile int retryCount = 3;
+
+    /**
+     * Maximum amount of concurrent reads. Zero if not limited.
+     */
+    private int maxConcurrency;
+
+    /**
+     * Amount of the active reads.
+     */
+    private int active;
+
+    /**
+     * Reads that wait until other reads are finished.
+     */
+    private final ArrayDeque<GXReadJob> queue = new ArrayDeque<GXReadJob>();
+
+    /**
+     * Is a thread starting the queued reads.
+     */
+    private boolean draining;
+
+    /**
+     * Steps of the read.
+     */
+    private enum Step {
+        /**
+         * SNRM request.
+         */
+        SNRM,
+        /**
+         * AARQ request.
+         */
+        AARQ,
+        /**
+         * High level authentication.
+         */
+        AUTHENTICATION,
+        /**
+         * Read requests.
+         */
+        READ,
+        /**
+         * Release request.
+         */
+        RELEASE,
+        /**
+         * Disconnect request.
+         */
+        DISCONNECT
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param forScheduler
+     *            Scheduler that is used to handle timeouts.
+     */
+    public GXDLMSReaderEngine(final ScheduledExecutorService forScheduler) {
+        if (forScheduler == null) {
+            throw new IllegalArgumentException("scheduler");
+        }
+        scheduler = forScheduler;
+    }
+
+    /**
+     * @return Reply timeout in milliseconds.
+     */
+    public int getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * @param value
+     *            Reply timeout in milliseconds.
+     */
+    public void setWaitTime(final int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Invalid wait time.");
+        }
+        waitTime = value;
+    }
+
+    /**
+     * @return How many times a request is resent if reply is not received.
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * @param value
+     *            How many times a request is resent if reply is not received.
+     */
+    public void setRetryCount(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid retry count.");
+        }
+        retryCount = value;
+    }
+
+    /**
+     * @return Maximum amount of concurrent reads. Zero if not limited.
+     */
+    public int getMaxConcurrency() {
+        synchronized (queue) {
+            return maxConcurrency;
+        }
+    }
+
+    /**
+     * Reads that are started when the maximum amount of reads is active wait
+     * until another read is finished.
+     * 
+     * @param value
+     *            Maximum amount of concurrent reads. Zero if not limited.
+     */
+    public void setMaxConcurrency(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid max concurrency.");
+        }
+        synchronized (queue) {
+            maxConcurrency = value;
+        }
+        startQueued();
+    }
+
+    /**
+     * @return Amount of the active reads.
+     */
+    public int getActiveCount() {
+        synchronized (queue) {
+            return active;
+        }
+    }
+
+    /**
+     * @return Amount of the reads that are waiting to start.
+     */
+    public int getQueuedCount() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Connect to the meter, read one attribute and disconnect.
+     * 
+     * @param client
+     *            Client of the meter.
+     * @param transport
+     *            Connection to the meter.
+     * @param target
+     *            Read object.
+     * @param attributeIndex
+     *            Attribute index.
+     * @return Future that completes with the updated value.
+     */
+    public CompletableFuture<Object> read(final GXDLMSClient client, final IGXDLMSTransport transport,
+            final GXDLMSObject target, final int attributeIndex) {
+        List<Entry<GXDLMSObject, Integer>> items = new ArrayList<Entry<GXDLMSObject, Integer>>(1);
+        items.add(new GXSimpleEntry<GXDLMSObject, Integer>(target, attributeIndex));
+        return read(client, transport, items).thenApply(new Function<List<Object>, Object>() {
+            @Override
+            public Object apply(final List<Object> values) {
+                return values.get(0);
+            }
+        });
+    }
+
+    /**
+     * Connect to the meter, read the attributes and disconnect. Attributes
+     * are read with one read list request if the meter supports multiple
+     * references. Otherwise they are read one by one.
+     * 
+     * @param client
+     *            Client of the meter.
+     * @param transport
+     *            Connection to the meter.
+     * @param items
+     *            Read objects and attribute indexes.
+     * @return Future that completes with the updated values in the same order
+     *         as the items.
+     */
+    public CompletableFuture<List<Object>> read(final GXDLMSClient client, final IGXDLMSTransport transport,
+            final List<Entry<GXDLMSObject, Integer>> items) {
+        if (client == null) {
+            throw new IllegalArgumentException("client");
+        }
+        if (transport == null) {
+            throw new IllegalArgumentException("transport");
+        }
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("items");
+        }
+        GXReadJob job = new GXReadJob(client, transport, new ArrayList<Entry<GXDLMSObject, Integer>>(items));
+        synchronized (queue) {
+            queue.add(job);
+        }
+        startQueued();
+        return job.future;
+    }
+
+    /**
+     * Start queued reads if maximum concurrency allows it. Only one thread
+     * starts the reads at the time. Reads that fail when they are started
+     * don't start the next reads recursively, because they are started in
+     * this loop.
+     * <p>
+     * This must not be called when the monitor of a read is held.
+     * </p>
+     */
+    private void startQueued() {
+        synchronized (queue) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            GXReadJob job;
+            synchronized (queue) {
+                if ((maxConcurrency != 0 && active >= maxConcurrency) || queue.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                job = queue.poll();
+                ++active;
+            }
+            job.start();
+        }
+    }
+
+    /**
+     * Read is finished. Queued reads are started by the caller after the
+     * monitor of the read is released.
+     */
+    private void finished() {
+        synchronized (queue) {
+            --active;
+        }
+    }
+
+    /**
+     * Read of one meter.
+     */
+    private final class GXReadJob implements IGXDLMSTransportListener {
+        private final GXDLMSClient client;
+        private final IGXDLMSTransport transport;
+        private final List<Entry<GXDLMSObject, Integer>> items;
+        private final CompletableFuture<List<Object>> future = new CompletableFuture<List<Object>>();
+        private final GXReplyData reply = new GXReplyData();
+        private final GXReplyData notify = new GXReplyData();
+        private final GXByteBuffer received = new GXByteBuffer();
+        /**
+         * HDLC frames are assembled before they are parsed. Null if HDLC is
+         * not used.
+         */
+        private final GXHdlcFrameAssembler assembler;
+        private final List<Object> values = new ArrayList<Object>();
+        private final List<Object> results = new ArrayList<Object>();
+        private Step step;
+        private byte[][] frames;
+        private int frameIndex;
+        /**
+         * Last sent data. Null if meter is streaming.
+         */
+        private byte[] sent;
+        private int retry;
+        private ScheduledFuture<?> timeout;
+        /**
+         * Identifier of the current timeout. Timeouts that fire after they are
+         * cancelled or replaced are ignored.
+         */
+        private long timeoutId;
+        private boolean useReadList;
+        private int itemIndex;
+        private boolean done;
+
+        GXReadJob(final GXDLMSClient forClient, final IGXDLMSTransport forTransport,
+                final List<Entry<GXDLMSObject, Integer>> forItems) {
+            client = forClient;
+            transport = forTransport;
+            items = forItems;
+            if (client.getInterfaceType() == InterfaceType.HDLC) {
+                assembler = new GXHdlcFrameAssembler();
+            } else {
+                assembler = null;
+            }
+        }
+
+        void start() {
+            try {
+                transport.open(this).whenComplete(new BiConsumer<Void, Throwable>() {
+                    @Override
+                    public void accept(final Void result, final Throwable ex) {
+                        synchronized (GXReadJob.this) {
+                            if (ex != null) {
+                                fail(ex);
+                            } else {
+                                try {
+                                    byte[] data = client.snrmRequest();
+                                    send(Step.SNRM, data.length == 0 ? new byte[0][] : new byte[][] { data });
+                                } catch (Exception e) {
+                                    fail(e);
+                                }
+                            }
+                        }
+                        startNext();
+                    }
+                });
+            } catch (RuntimeException ex) {
+                synchronized (this) {
+                    fail(ex);
+                }
+            }
+        }
+
+        /**
+         * Start the step.
+         */
+        private void send(final Step value, final byte[][] data) throws Exception {
+            step = value;
+            frames = data;
+            frameIndex = 0;
+            if (frames.length == 0) {
+                stepCompleted();
+            } else {
+                reply.clear();
+                send(frames[0]);
+            }
+        }
+
+        private void send(final byte[] data) throws IOException {
+            sent = data;
+            retry = 0;
+            write();
+        }
+
+        private void write() throws IOException {
+            if (sent != null) {
+                transport.send(sent);
+            }
+            cancelTimeout();
+            final long id = timeoutId;
+            timeout = scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (GXReadJob.this) {
+                        // Timeout is ignored if reply is received or the
+                        // request is sent again before it's handled.
+                        if (id == timeoutId) {
+                            timeout = null;
+                            onTimeout();
+                        }
+                    }
+                    startNext();
+                }
+            }, waitTime, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Cancel the current timeout.
+         */
+        private void cancelTimeout() {
+            if (timeout != null) {
+                timeout.cancel(false);
+                timeout = null;
+            }
+            ++timeoutId;
+        }
+
+        /**
+         * Start queued reads if this read is finished. This is called after
+         * the monitor of this read is released.
+         */
+        private void startNext() {
+            boolean tmp;
+            synchronized (this) {
+                tmp = done;
+            }
+            if (tmp) {
+                startQueued();
+            }
+        }
+
+        /**
+         * Reply timeout.
+         */
+        private void onTimeout() {
+            if (done) {
+                return;
+            }
+            try {
+                if (retry < retryCount) {
+                    ++retry;
+                    LOGGER.log(Level.FINE, "Reply timeout. Try to resend {0}/{1}",
+                            new Object[] { retry, retryCount });
+                    received.clear();
+                    if (assembler != null) {
+                        assembler.reset();
+                    }
+                    write();
+                } else if (step == Step.RELEASE || step == Step.DISCONNECT) {
+                    // All meters don't support release.
+                    stepCompleted();
+                } else {
+                    fail(new TimeoutException("Failed to receive reply from the device in given time."));
+                }
+            } catch (Exception ex) {
+                fail(ex);
+            }
+        }
+
+        @Override
+        public void onReceived(final byte[] data) {
+            synchronized (this) {
+                receive(data);
+            }
+            startNext();
+        }
+
+        private void receive(final byte[] data) {
+            if (done) {
+                return;
+            }
+            try {
+                if (assembler != null) {
+                    onFrames(data);
+                    return;
+                }
+                received.set(data);
+                while (!done && received.available() != 0) {
+                    int pos = received.position();
+                    if (!client.getData(received, reply, notify)) {
+                        if (notify.isComplete() && !notify.isMoreData() && notify.getData().size() != 0) {
+                            // Push messages are ignored.
+                            notify.clear();
+                            continue;
+                        }
+                        received.position(pos);
+                        break;
+                    }
+                    received.trim();
+                    frameReceived();
+                }
+            } catch (Exception ex) {
+                fail(ex);
+            }
+        }
+
+        /**
+         * Parse HDLC frames when they are complete.
+         * 
+         * @param data
+         *            Received data.
+         */
+        private void onFrames(final byte[] data) throws Exception {
+            int pos = 0;
+            do {
+                pos += assembler.append(data, pos, data.length - pos);
+                if (assembler.isComplete()) {
+                    if (client.getData(assembler.getFrame(), reply, notify)) {
+                        frameReceived();
+                    } else if (notify.isComplete() && !notify.isMoreData()) {
+                        // Push messages are ignored.
+                        notify.clear();
+                    }
+                }
+            } while (!done && (pos != data.length || assembler.isComplete()));
+        }
+
+        @Override
+        public void onError(final Exception ex) {
+            synchronized (this) {
+                fail(ex);
+            }
+            startNext();
+        }
+
+        private void frameReceived() throws Exception {
+            cancelTimeout();
+            if (reply.getError() != 0 && step != Step.RELEASE && step != Step.DISCONNECT) {
+                throw new GXDLMSException(reply.getError());
+            }
+            if (reply.isMoreData()) {
+                if (reply.isStreaming()) {
+                    sent = null;
+                    retry = 0;
+                    write();
+                } else {
+                    send(client.receiverReady(reply));
+                }
+                return;
+            }
+            if (step == Step.READ && useReadList && reply.getValue() != null) {
+                // Value is null if data is sent in multiple frames.
+                values.addAll((List<?>) reply.getValue());
+            }
+            if (++frameIndex != frames.length) {
+                reply.clear();
+                send(frames[frameIndex]);
+            } else {
+                stepCompleted();
+            }
+        }
+
+        private void stepCompleted() throws Exception {
+            switch (step) {
+            case SNRM:
+                if (frames.length != 0) {
+                    client.parseUAResponse(reply.getData());
+                }
+                send(Step.AARQ, client.aarqRequest());
+                break;
+            case AARQ:
+                if (frames.length != 0) {
+                    client.parseAareResponse(reply.getData());
+                    if (client.getAuthentication().getValue() > Authentication.LOW.getValue()) {
+                        send(Step.AUTHENTICATION, client.getApplicationAssociationRequest());
+                        break;
+                    }
+                }
+                startRead();
+                break;
+            case AUTHENTICATION:
+                client.parseApplicationAssociationResponse(reply.getData());
+                startRead();
+                break;
+            case READ:
+                if (useReadList) {
+                    if (values.size() != items.size()) {
+                        throw new GXDLMSException("Invalid reply. Read items count do not match.");
+                    }
+                    for (int pos = 0; pos != items.size(); ++pos) {
+                        updateValue(items.get(pos), values.get(pos));
+                    }
+                } else {
+                    updateValue(items.get(itemIndex), reply.getValue());
+                    if (++itemIndex != items.size()) {
+                        Entry<GXDLMSObject, Integer> it = items.get(itemIndex);
+                        send(Step.READ, client.read(it.getKey(), it.getValue()));
+                        break;
+                    }
+                }
+                startRelease();
+                break;
+            case RELEASE:
+                byte[] data = client.disconnectRequest();
+                send(Step.DISCONNECT, data == null || data.length == 0 ? new byte[0][] : new byte[][] { data });
+                break;
+            case DISCONNECT:
+                done = true;
+                close();
+                finished();
+                future.complete(Collections.unmodifiableList(results));
+                break;
+            default:
+                throw new IllegalStateException("Invalid step.");
+            }
+        }
+
+        private void updateValue(final Entry<GXDLMSObject, Integer> it, final Object value) {
+            // Update data type on read.
+            if (it.getKey().getDataType(it.getValue()) == DataType.NONE) {
+                it.getKey().setDataType(it.getValue(), reply.getValueType());
+            }
+            results.add(client.updateValue(it.getKey(), it.getValue(), value));
+        }
+
+        private void startRead() throws Exception {
+            useReadList = items.size() != 1
+                    && client.getNegotiatedConformance().contains(Conformance.MULTIPLE_REFERENCES);
+            if (useReadList) {
+                send(Step.READ, client.readList(items));
+            } else {
+                Entry<GXDLMSObject, Integer> it = items.get(0);
+                send(Step.READ, client.read(it.getKey(), it.getValue()));
+            }
+        }
+
+        private void startRelease() throws Exception {
+            // Release is sent only for secured HDLC connections. All meters
+            // are not supporting release and it's causing problems.
+            InterfaceType type = client.getInterfaceType();
+            GXICipher cipher = client.getSettings().getCipher();
+            if ((type == InterfaceType.HDLC || type == InterfaceType.HDLC_WITH_MODE_E)
+                    && (cipher == null || cipher.getSecurity() == Security.NONE)) {
+                send(Step.RELEASE, new byte[0][]);
+            } else {
+                send(Step.RELEASE, client.releaseRequest());
+            }
+        }
+
+        private void fail(final Throwable ex) {
+            if (done) {
+                return;
+            }
+            done = true;
+            cancelTimeout();
+            close();
+            finished();
+            future.completeExceptionally(ex);
+        }
+
+        private void close() {
+            try {
+                transport.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Closing connection failed.", ex);
+            }
+        }
+    }
+}
@@ -34,6 +34,7 @@
 
 package gurux.dlms;
 
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
@@ -411,6 +412,52 @@ public abstract class GXDLMSServer {
         return sr.getReply();
     }
 
+    /**
+     * Handles client request from the NIO buffer. Direct buffers are
+     * supported.
+     * 
+     * @param request
+     *            Received data from the client. All remaining bytes are
+     *            handled.
+     * @param reply
+     *            Buffer where response frame is written. Buffer must have
+     *            room for one frame.
+     * @param connectionInfo
+     *            Connection info.
+     * @return True, if response was written. False, if request packet is not
+     *         complete.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final boolean handleRequest(final ByteBuffer request, final ByteBuffer reply,
+            final GXDLMSConnectionEventArgs connectionInfo) throws InvalidKeyException, NoSuchAlgorithmException,
+            NoSuchPaddingException, InvalidAlgorithmParameterException, IllegalBlockSizeException,
+            BadPaddingException, SignatureException {
+        GXServerReply sr = new GXServerReply(request);
+        sr.setOutput(reply);
+        sr.setConnectionInfo(connectionInfo);
+        base.handleRequest(sr);
+        // Replies that are not HDLC or wrapper frames are returned as
+        // a byte array.
+        if (sr.getReply() != null) {
+            reply.put(sr.getReply());
+            return true;
+        }
+        return sr.isWritten();
+    }
+
     /**
      * Check is data sent to this server.
      * 
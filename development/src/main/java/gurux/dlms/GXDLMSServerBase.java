@@ -5,6 +5,9 @@ import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,8 +41,6 @@ import gurux.dlms.enums.Service;
 import gurux.dlms.enums.ServiceClass;
 import gurux.dlms.enums.SourceDiagnostic;
 import gurux.dlms.internal.GXCommon;
-import gurux.dlms.manufacturersettings.GXAttributeCollection;
-import gurux.dlms.manufacturersettings.GXDLMSAttributeSettings;
 import gurux.dlms.objects.GXDLMSAssociationLogicalName;
 import gurux.dlms.objects.GXDLMSAssociationShortName;
 import gurux.dlms.objects.GXDLMSHdlcSetup;
@@ -164,6 +165,12 @@ public class GXDLMSServerBase {
      */
     private boolean initialized = false;
 
+    /*
+     * Objects that are shared with other servers. They are started and stopped
+     * by the server that owns them.
+     */
+    private Set<GXDLMSObject> sharedObjects;
+
     /*
      * When data was received last time.
      */
@@ -410,14 +417,28 @@ public class GXDLMSServerBase {
     }
 
     /**
-     * Close server.
+     * Close server. Shared objects are removed from the objects of the
+     * server, so they don't refer to the closed server.
      * 
      * @throws Exception
      *             Occurred exception.
      */
     public void close() throws Exception {
         for (GXDLMSObject it : settings.getObjects()) {
-            it.stop(this);
+            if (sharedObjects == null || !sharedObjects.contains(it)) {
+                it.stop(this);
+            }
+        }
+        if (sharedObjects != null) {
+            for (GXDLMSObject it : settings.getObjects()) {
+                if (it instanceof GXDLMSAssociationLogicalName) {
+                    ((GXDLMSAssociationLogicalName) it).getObjectList().removeAll(sharedObjects);
+                } else if (it instanceof GXDLMSAssociationShortName) {
+                    ((GXDLMSAssociationShortName) it).getObjectList().removeAll(sharedObjects);
+                }
+            }
+            settings.getObjects().removeAll(sharedObjects);
+            sharedObjects = null;
         }
     }
 
@@ -425,6 +446,29 @@ public class GXDLMSServerBase {
      * Initialize server. This must call after server objects are set.
      */
     public final void initialize() {
+        initialize(null);
+    }
+
+    /*
+     * Initialize server that uses the objects of another server. Association
+     * objects are not shared, so each server has its own association state.
+     * Shared objects are added if the server doesn't have an object with the
+     * same type and logical name. They are not started or stopped, because
+     * the owner server does that.
+     * @param shared Objects to share.
+     */
+    public final void initialize(final GXDLMSObjectCollection shared) {
+        if (shared != null) {
+            sharedObjects = Collections.newSetFromMap(new IdentityHashMap<GXDLMSObject, Boolean>());
+            GXDLMSObjectCollection items = settings.getObjects();
+            for (GXDLMSObject it : shared) {
+                if (!(it instanceof GXDLMSAssociationLogicalName || it instanceof GXDLMSAssociationShortName)
+                        && items.findByLN(it.getObjectType(), it.getLogicalName()) == null) {
+                    items.add(it);
+                    sharedObjects.add(it);
+                }
+            }
+        }
         GXDLMSObject associationObject = null;
         initialized = true;
         for (int pos = 0; pos != settings.getObjects().size(); ++pos) {
@@ -432,7 +476,9 @@ public class GXDLMSServerBase {
             if (it.getLogicalName() == null) {
                 throw new IllegalArgumentException("Invalid Logical Name.");
             }
-            it.start(this);
+            if (sharedObjects == null || !sharedObjects.contains(it)) {
+                it.start(this);
+            }
             if (it instanceof GXDLMSAssociationShortName && !this.getUseLogicalNameReferencing()) {
                 if (((GXDLMSAssociationShortName) it).getObjectList().isEmpty()) {
                     ((GXDLMSAssociationShortName) it).getObjectList().addAll(getItems());
@@ -885,7 +931,8 @@ public class GXDLMSServerBase {
             throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
             InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
         sr.setReply(null);
-        if (!sr.isStreaming() && (sr.getData() == null || sr.getData().length == 0)) {
+        sr.setWritten(false);
+        if (!sr.isStreaming() && !sr.hasData()) {
             return;
         }
         if (!initialized) {
@@ -893,7 +940,11 @@ public class GXDLMSServerBase {
         }
         try {
             if (!sr.isStreaming()) {
-                receivedData.set(sr.getData());
+                if (sr.getBuffer() != null) {
+                    receivedData.set(sr.getBuffer());
+                } else {
+                    receivedData.set(sr.getData());
+                }
                 boolean first = settings.getServerAddress() == 0 && settings.getClientAddress() == 0;
                 // If using optical probe.
                 if (settings.getInterfaceType() == InterfaceType.HDLC_WITH_MODE_E) {
@@ -961,7 +1012,7 @@ public class GXDLMSServerBase {
                     // info.clear();
                     receivedData.clear();
                     dataReceived = Calendar.getInstance().getTimeInMillis();
-                    sr.setReply(reportError(info.getCommand(), ErrorCode.INCONSISTENT_CLASS));
+                    sr.setReply(reportError(sr, info.getCommand(), ErrorCode.INCONSISTENT_CLASS));
                     return;
                 } catch (Exception ex) {
                     transaction = null;
@@ -970,7 +1021,7 @@ public class GXDLMSServerBase {
                     receivedData.clear();
                     dataReceived = Calendar.getInstance().getTimeInMillis();
                     if ((getSettings().getConnected() & ConnectionState.DLMS) != 0) {
-                        sr.setReply(reportError(info.getCommand(), ErrorCode.INCONSISTENT_CLASS));
+                        sr.setReply(reportError(sr, info.getCommand(), ErrorCode.INCONSISTENT_CLASS));
                     }
                     return;
                 }
@@ -996,7 +1047,7 @@ public class GXDLMSServerBase {
                             return;
                         }
                     }
-                    sr.setReply(GXDLMS.getHdlcFrame(settings, Command.DISCONNECT_MODE, replyData));
+                    sr.setReply(getHdlcFrame(sr, Command.DISCONNECT_MODE));
                     info.clear();
                     return;
                 }
@@ -1027,7 +1078,7 @@ public class GXDLMSServerBase {
                 // If client want next frame.
                 if (info.getMoreData().contains(RequestTypes.FRAME)) {
                     dataReceived = Calendar.getInstance().getTimeInMillis();
-                    sr.setReply(GXDLMS.getHdlcFrame(settings, settings.getReceiverReady(), replyData));
+                    sr.setReply(getHdlcFrame(sr, settings.getReceiverReady()));
                     return;
                 }
                 // Update command if transaction and next frame is asked.
@@ -1035,7 +1086,7 @@ public class GXDLMSServerBase {
                     if (transaction != null) {
                         info.setCommand(transaction.getCommand());
                     } else if (replyData.size() == 0) {
-                        sr.setReply(GXDLMS.getHdlcFrame(settings, settings.getReceiverReady(), replyData));
+                        sr.setReply(getHdlcFrame(sr, settings.getReceiverReady()));
                         return;
                     }
                 }
@@ -1074,7 +1125,7 @@ public class GXDLMSServerBase {
             } catch (Exception ex) {
                 settings.resetBlockIndex();
                 receivedData.size(0);
-                sr.setReply(reportError(info.getCommand(), ErrorCode.INCONSISTENT_CLASS));
+                sr.setReply(reportError(sr, info.getCommand(), ErrorCode.INCONSISTENT_CLASS));
                 return;
             }
             dataReceived = Calendar.getInstance().getTimeInMillis();
@@ -1082,7 +1133,7 @@ public class GXDLMSServerBase {
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, e.toString());
             if (e instanceof GXDLMSConfirmedServiceError) {
-                sr.setReply(reportConfirmedServiceError((GXDLMSConfirmedServiceError) e));
+                sr.setReply(reportConfirmedServiceError(sr, (GXDLMSConfirmedServiceError) e));
                 transaction = null;
                 settings.setCount(0);
                 settings.setIndex(0);
@@ -1091,7 +1142,7 @@ public class GXDLMSServerBase {
                 return;
             }
             if (info.getCommand() != Command.NONE) {
-                sr.setReply(reportError(info.getCommand(), ErrorCode.INCONSISTENT_CLASS));
+                sr.setReply(reportError(sr, info.getCommand(), ErrorCode.INCONSISTENT_CLASS));
                 transaction = null;
                 settings.setCount(0);
                 settings.setIndex(0);
@@ -1124,8 +1175,47 @@ public class GXDLMSServerBase {
         }
     }
 
+    /**
+     * Generate HDLC frame from the reply data. If the reply has an output
+     * buffer, frame is written to it and null is returned.
+     * 
+     * @param sr
+     *            Server reply.
+     * @param frame
+     *            Frame ID.
+     * @return HDLC frame or null, if frame is written to the output buffer.
+     */
+    private byte[] getHdlcFrame(final GXServerReply sr, final int frame) {
+        if (sr.getOutput() != null) {
+            GXDLMS.getHdlcFrame(settings, frame, replyData, sr.getOutput());
+            sr.setWritten(true);
+            return null;
+        }
+        return GXDLMS.getHdlcFrame(settings, frame, replyData);
+    }
+
+    /**
+     * Generate wrapper frame from the reply data. If the reply has an output
+     * buffer, frame is written to it and null is returned.
+     * 
+     * @param sr
+     *            Server reply.
+     * @param command
+     *            DLMS command.
+     * @return Wrapper frame or null, if frame is written to the output
+     *         buffer.
+     */
+    private byte[] getWrapperFrame(final GXServerReply sr, final int command) {
+        if (sr.getOutput() != null) {
+            GXDLMS.getWrapperFrame(settings, command, replyData, sr.getOutput());
+            sr.setWritten(true);
+            return null;
+        }
+        return GXDLMS.getWrapperFrame(settings, command, replyData);
+    }
+
     // GXDLMSConfirmedServiceError
-    private byte[] reportConfirmedServiceError(final GXDLMSConfirmedServiceError e) {
+    private byte[] reportConfirmedServiceError(final GXServerReply sr, final GXDLMSConfirmedServiceError e) {
         replyData.clear();
         if (getSettings().getInterfaceType() == InterfaceType.HDLC) {
             GXDLMS.addLLCBytes(getSettings(), replyData);
@@ -1135,13 +1225,13 @@ public class GXDLMSServerBase {
         replyData.setUInt8(e.getServiceError().getValue());
         replyData.setUInt8(e.getServiceErrorValue());
         if (settings.getInterfaceType() == InterfaceType.WRAPPER) {
-            return GXDLMS.getWrapperFrame(settings, Command.CONFIRMED_SERVICE_ERROR, replyData);
+            return getWrapperFrame(sr, Command.CONFIRMED_SERVICE_ERROR);
         } else {
-            return GXDLMS.getHdlcFrame(settings, (byte) 0, replyData);
+            return getHdlcFrame(sr, (byte) 0);
         }
     }
 
-    private byte[] reportError(final int command, final ErrorCode error)
+    private byte[] reportError(final GXServerReply sr, final int command, final ErrorCode error)
             throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
             InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
         short cmd;
@@ -1180,9 +1270,9 @@ public class GXDLMSServerBase {
             GXDLMS.getSNPdu(p, replyData);
         }
         if (settings.getInterfaceType() == InterfaceType.WRAPPER) {
-            return GXDLMS.getWrapperFrame(settings, cmd, replyData);
+            return getWrapperFrame(sr, cmd);
         } else {
-            return GXDLMS.getHdlcFrame(settings, (byte) 0, replyData);
+            return getHdlcFrame(sr, (byte) 0);
         }
     }
 
@@ -1327,9 +1417,9 @@ public class GXDLMSServerBase {
         }
         byte[] reply;
         if (settings.getInterfaceType() == InterfaceType.WRAPPER) {
-            reply = GXDLMS.getWrapperFrame(settings, cmd, replyData);
+            reply = getWrapperFrame(sr, cmd);
         } else {
-            reply = GXDLMS.getHdlcFrame(settings, frame, replyData);
+            reply = getHdlcFrame(sr, frame);
         }
         if (cmd == Command.DISCONNECT_REQUEST
                 || (settings.getInterfaceType() == InterfaceType.WRAPPER && cmd == Command.RELEASE_REQUEST)) {
@@ -1500,13 +1590,12 @@ public class GXDLMSServerBase {
 
     public final int notifyGetAttributeAccess(final ValueEventArgs arg) throws Exception {
         if (owner instanceof GXDLMSServer) {
-            GXAttributeCollection attributes = arg.getTarget().getAttributes();
-            GXDLMSAttributeSettings att = attributes.find(arg.getIndex());
+            AccessMode access = arg.getTarget().findAccess(arg.getIndex());
             /// If attribute is not set return read only.
-            if (att == null) {
+            if (access == null) {
                 return AccessMode.READ.getValue();
             }
-            return att.getAccess().getValue();
+            return access.getValue();
         } else if (owner instanceof GXDLMSServer3) {
             if (getSettings().getAssignedAssociation().getVersion() < 3) {
                 return ((GXDLMSServer3) owner).onGetAttributeAccess(arg).getValue();
@@ -1522,13 +1611,12 @@ public class GXDLMSServerBase {
 
     public final int notifyGetMethodAccess(final ValueEventArgs arg) throws Exception {
         if (owner instanceof GXDLMSServer) {
-            GXAttributeCollection attributes = arg.getTarget().getMethodAttributes();
-            GXDLMSAttributeSettings att = attributes.find(arg.getIndex());
+            MethodAccessMode access = arg.getTarget().findMethodAccess(arg.getIndex());
             /// If attribute is not set return read only.
-            if (att == null) {
+            if (access == null) {
                 return MethodAccessMode.NO_ACCESS.getValue();
             }
-            return att.getMethodAccess().getValue();
+            return access.getValue();
         } else if (owner instanceof GXDLMSServer3) {
             if (getSettings().getAssignedAssociation().getVersion() < 3) {
                 return ((GXDLMSServer3) owner).onGetMethodAccess(arg).getValue();
@@ -0,0 +1,600 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import gurux.dlms.objects.GXDLMSObjectCollection;
+
+/**
+ * Non-blocking server engine that handles multiple client connections with
+ * one NIO selector.
+ * <p>
+ * Each TCP connection and each UDP client address has own server that is
+ * created by the session factory. Settings, association and ciphering state
+ * are kept per connection. If shared objects are given, all the servers use
+ * the same COSEM objects, so thousands of connections can use one object
+ * model.
+ * </p>
+ * <p>
+ * All requests are handled in the selector thread, so the handlers of the
+ * servers are never called concurrently.
+ * </p>
+ */
+public final class GXDLMSServerEngine implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(GXDLMSServerEngine.class.getName());
+
+    /**
+     * Maximum size of the received TCP packet or UDP datagram.
+     */
+    private static final int RECEIVE_BUFFER_SIZE = 0x10000;
+
+    private final IGXDLMSSessionFactory factory;
+
+    /**
+     * Objects that are shared with all the sessions. Null if objects are not
+     * shared.
+     */
+    private final GXDLMSObjectCollection sharedObjects;
+
+    private final Selector selector;
+
+    /**
+     * Channels are registered while holding this lock, so the selector thread
+     * doesn't block the registration.
+     */
+    private final Object registerLock = new Object();
+
+    /**
+     * Opened server channels.
+     */
+    private final List<SelectableChannel> channels = new ArrayList<SelectableChannel>();
+
+    /**
+     * Received data is read to this buffer.
+     */
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+
+    private Thread thread;
+
+    private volatile boolean closed;
+
+    /**
+     * Amount of the sessions.
+     */
+    private volatile int sessionCount;
+
+    /**
+     * Inactivity timeout in seconds.
+     */
+    private volatile int inactivityTimeout;
+
+    /**
+     * One client connection.
+     */
+    private static final class GXSession {
+        private final GXDLMSServer2 server;
+        private final SocketAddress address;
+        private final GXDLMSConnectionEventArgs connectionInfo = new GXDLMSConnectionEventArgs();
+        /**
+         * TCP channel. Null for UDP sessions.
+         */
+        private final SocketChannel channel;
+        /**
+         * UDP endpoint. Null for TCP sessions.
+         */
+        private final GXUdpEndpoint endpoint;
+        /**
+         * TCP replies that are not sent yet.
+         */
+        private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+        private long lastReceived;
+
+        GXSession(final GXDLMSServer2 forServer, final SocketAddress forAddress, final SocketChannel forChannel,
+                final GXUdpEndpoint forEndpoint) {
+            server = forServer;
+            address = forAddress;
+            channel = forChannel;
+            endpoint = forEndpoint;
+        }
+    }
+
+    /**
+     * UDP channel and the sessions of the client addresses.
+     */
+    private static final class GXUdpEndpoint {
+        private final DatagramChannel channel;
+        private final Map<SocketAddress, GXSession> sessions = new HashMap<SocketAddress, GXSession>();
+
+        GXUdpEndpoint(final DatagramChannel forChannel) {
+            channel = forChannel;
+        }
+    }
+
+    /**
+     * Constructor. Each session has own objects.
+     * 
+     * @param sessionFactory
+     *            Factory that creates the server for each connection.
+     * @throws IOException
+     *             Selector can't be opened.
+     */
+    public GXDLMSServerEngine(final IGXDLMSSessionFactory sessionFactory) throws IOException {
+        this(null, sessionFactory);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param shared
+     *            Objects that are shared with all the sessions. Usually these
+     *            are the objects of a server that captures and updates them.
+     *            Association objects are never shared.
+     * @param sessionFactory
+     *            Factory that creates the server for each connection.
+     * @throws IOException
+     *             Selector can't be opened.
+     * @see GXDLMSServer2#initialize(GXDLMSObjectCollection)
+     */
+    public GXDLMSServerEngine(final GXDLMSObjectCollection shared, final IGXDLMSSessionFactory sessionFactory)
+            throws IOException {
+        if (sessionFactory == null) {
+            throw new IllegalArgumentException("sessionFactory");
+        }
+        factory = sessionFactory;
+        sharedObjects = shared;
+        selector = Selector.open();
+    }
+
+    /**
+     * @return Amount of the sessions.
+     */
+    public int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * @return Inactivity timeout in seconds. Zero if connections are never
+     *         closed because of inactivity.
+     */
+    public int getInactivityTimeout() {
+        return inactivityTimeout;
+    }
+
+    /**
+     * UDP sessions are removed only when inactivity time out elapses, because
+     * UDP doesn't have connections.
+     * 
+     * @param value
+     *            Inactivity timeout in seconds. Zero if connections are never
+     *            closed because of inactivity.
+     */
+    public void setInactivityTimeout(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid inactivity timeout.");
+        }
+        inactivityTimeout = value;
+    }
+
+    /**
+     * Start listening TCP connections.
+     * 
+     * @param address
+     *            Local address.
+     * @return Bound local address.
+     * @throws IOException
+     *             Bind failed.
+     */
+    public SocketAddress bind(final SocketAddress address) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(address);
+            channel.configureBlocking(false);
+            register(channel, SelectionKey.OP_ACCEPT, null);
+            return channel.getLocalAddress();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Start listening UDP datagrams.
+     * 
+     * @param address
+     *            Local address.
+     * @return Bound local address.
+     * @throws IOException
+     *             Bind failed.
+     */
+    public SocketAddress bindUdp(final SocketAddress address) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.bind(address);
+            channel.configureBlocking(false);
+            register(channel, SelectionKey.OP_READ, new GXUdpEndpoint(channel));
+            return channel.getLocalAddress();
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private void register(final SelectableChannel channel, final int ops, final Object attachment)
+            throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed.");
+        }
+        synchronized (registerLock) {
+            selector.wakeup();
+            channel.register(selector, ops, attachment);
+            if (channel instanceof ServerSocketChannel || channel instanceof DatagramChannel) {
+                synchronized (channels) {
+                    channels.add(channel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start the selector thread.
+     */
+    public synchronized void start() {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed.");
+        }
+        if (thread != null) {
+            throw new IllegalStateException("Engine is already started.");
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                process();
+            }
+        }, "GXDLMSServerEngine");
+        thread.start();
+    }
+
+    /**
+     * Close all the connections and stop the selector thread. If the calling
+     * thread is interrupted while it waits for the selector thread, the
+     * interrupt status is set again and the selector thread stops by itself.
+     */
+    @Override
+    public void close() {
+        Thread tmp;
+        synchronized (this) {
+            closed = true;
+            tmp = thread;
+        }
+        selector.wakeup();
+        if (tmp != null && tmp != Thread.currentThread()) {
+            try {
+                tmp.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (tmp == null) {
+            closeAll();
+        }
+    }
+
+    /**
+     * Selector loop.
+     */
+    private void process() {
+        long lastCheck = System.currentTimeMillis();
+        try {
+            while (!closed) {
+                selector.select(1000);
+                // Wait until the channel that woke up the selector is
+                // registered.
+                // CHECKSTYLE:OFF
+                synchronized (registerLock) {
+                }
+                // CHECKSTYLE:ON
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    handleKey(key);
+                }
+                long now = System.currentTimeMillis();
+                if (now - lastCheck >= 1000) {
+                    lastCheck = now;
+                    checkInactivity(now);
+                }
+            }
+        } catch (ClosedSelectorException ex) {
+            // Engine is closed.
+        } catch (IOException ex) {
+            LOGGER.log(Level.SEVERE, "Selector failed.", ex);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void handleKey(final SelectionKey key) {
+        Object attachment = key.attachment();
+        GXSession session = null;
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isAcceptable()) {
+                accept((ServerSocketChannel) key.channel());
+            } else if (attachment instanceof GXUdpEndpoint) {
+                receive((GXUdpEndpoint) attachment);
+            } else {
+                session = (GXSession) attachment;
+                if (key.isWritable()) {
+                    write(session, key);
+                }
+                if (key.isValid() && key.isReadable()) {
+                    read(session);
+                }
+            }
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Connection failed.", ex);
+            if (session != null) {
+                closeSession(session);
+            }
+        }
+    }
+
+    private GXSession createSession(final SocketAddress address, final SocketChannel channel,
+            final GXUdpEndpoint endpoint) throws Exception {
+        GXDLMSServer2 server = factory.createSession(address);
+        if (server == null) {
+            return null;
+        }
+        if (sharedObjects != null) {
+            server.initialize(sharedObjects);
+        } else {
+            server.initialize();
+        }
+        GXSession session = new GXSession(server, address, channel, endpoint);
+        session.lastReceived = System.currentTimeMillis();
+        ++sessionCount;
+        return session;
+    }
+
+    private void accept(final ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        GXSession session;
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            session = createSession(channel.getRemoteAddress(), channel, null);
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Session creation failed.", ex);
+            session = null;
+        }
+        if (session == null) {
+            channel.close();
+            return;
+        }
+        channel.register(selector, SelectionKey.OP_READ, session);
+    }
+
+    private void read(final GXSession session) throws Exception {
+        receiveBuffer.clear();
+        int count = session.channel.read(receiveBuffer);
+        if (count == -1) {
+            closeSession(session);
+        } else if (count != 0) {
+            receiveBuffer.flip();
+            handleRequest(session, receiveBuffer);
+        }
+    }
+
+    private void receive(final GXUdpEndpoint endpoint) throws Exception {
+        while (true) {
+            receiveBuffer.clear();
+            SocketAddress address = endpoint.channel.receive(receiveBuffer);
+            if (address == null) {
+                break;
+            }
+            receiveBuffer.flip();
+            GXSession session = endpoint.sessions.get(address);
+            if (session == null) {
+                try {
+                    session = createSession(address, null, endpoint);
+                } catch (Exception ex) {
+                    LOGGER.log(Level.WARNING, "Session creation failed.", ex);
+                }
+                if (session == null) {
+                    continue;
+                }
+                endpoint.sessions.put(address, session);
+            }
+            try {
+                handleRequest(session, receiveBuffer);
+            } catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Connection failed.", ex);
+                closeSession(session);
+            }
+        }
+    }
+
+    private void handleRequest(final GXSession session, final ByteBuffer data) throws Exception {
+        session.lastReceived = System.currentTimeMillis();
+        GXServerReply sr = new GXServerReply(data);
+        sr.setConnectionInfo(session.connectionInfo);
+        do {
+            session.server.handleRequest(sr);
+            // Reply is null if nothing is sent to the client.
+            if (sr.getReply() != null) {
+                send(session, sr.getReply());
+            }
+        } while (sr.isStreaming());
+    }
+
+    private void send(final GXSession session, final byte[] reply) throws IOException {
+        ByteBuffer bb = ByteBuffer.wrap(reply);
+        if (session.endpoint != null) {
+            if (session.endpoint.channel.send(bb, session.address) == 0) {
+                LOGGER.log(Level.WARNING, "UDP send buffer is full. Reply to {0} is dropped.", session.address);
+            }
+            return;
+        }
+        if (session.pending.isEmpty()) {
+            session.channel.write(bb);
+            if (!bb.hasRemaining()) {
+                return;
+            }
+            SelectionKey key = session.channel.keyFor(selector);
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+        session.pending.add(bb);
+    }
+
+    private static void write(final GXSession session, final SelectionKey key) throws IOException {
+        while (!session.pending.isEmpty()) {
+            ByteBuffer bb = session.pending.peek();
+            session.channel.write(bb);
+            if (bb.hasRemaining()) {
+                return;
+            }
+            session.pending.poll();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    private void checkInactivity(final long now) {
+        int timeout = inactivityTimeout;
+        if (timeout == 0) {
+            return;
+        }
+        long limit = now - 1000L * timeout;
+        List<GXSession> expired = new ArrayList<GXSession>();
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof GXSession) {
+                if (((GXSession) attachment).lastReceived < limit) {
+                    expired.add((GXSession) attachment);
+                }
+            } else if (attachment instanceof GXUdpEndpoint) {
+                for (GXSession it : ((GXUdpEndpoint) attachment).sessions.values()) {
+                    if (it.lastReceived < limit) {
+                        expired.add(it);
+                    }
+                }
+            }
+        }
+        for (GXSession it : expired) {
+            closeSession(it);
+        }
+    }
+
+    private void closeSession(final GXSession session) {
+        if (session.endpoint != null) {
+            if (session.endpoint.sessions.remove(session.address) == null) {
+                return;
+            }
+        } else {
+            if (!session.channel.isOpen()) {
+                return;
+            }
+            try {
+                session.channel.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.FINE, "Closing connection failed.", ex);
+            }
+        }
+        --sessionCount;
+        try {
+            session.server.close();
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Closing session failed.", ex);
+        }
+    }
+
+    private void closeAll() {
+        List<GXSession> sessions = new ArrayList<GXSession>();
+        try {
+            for (SelectionKey key : selector.keys()) {
+                Object attachment = key.attachment();
+                if (attachment instanceof GXSession) {
+                    sessions.add((GXSession) attachment);
+                } else if (attachment instanceof GXUdpEndpoint) {
+                    sessions.addAll(((GXUdpEndpoint) attachment).sessions.values());
+                }
+            }
+        } catch (ClosedSelectorException ex) {
+            // Sessions are already closed.
+        }
+        for (GXSession it : sessions) {
+            closeSession(it);
+        }
+        synchronized (channels) {
+            for (SelectableChannel it : channels) {
+                try {
+                    it.close();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.FINE, "Closing channel failed.", ex);
+                }
+            }
+            channels.clear();
+        }
+        try {
+            selector.close();
+        } catch (IOException ex) {
+            LOGGER.log(Level.FINE, "Closing selector failed.", ex);
+        }
+    }
+}
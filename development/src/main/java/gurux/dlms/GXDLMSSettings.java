@@ -34,6 +34,7 @@
 
 package gurux.dlms;
 
+import java.nio.ByteBuffer;
 import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.ArrayList;
@@ -41,6 +42,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,6 +50,7 @@ import gurux.dlms.asn.GXPkcs8;
 import gurux.dlms.asn.GXx509Certificate;
 import gurux.dlms.asn.enums.KeyUsage;
 import gurux.dlms.compression.GXCompressionOptions;
+import gurux.dlms.compression.GXV44;
 import gurux.dlms.compression.IGXCompressionNotifier;
 import gurux.dlms.enums.Authentication;
 import gurux.dlms.enums.Conformance;
@@ -334,6 +337,17 @@ public class GXDLMSSettings {
      */
     private GXCompressionOptions compressionOptions;
 
+    /**
+     * Built-in V.44 codec. Created when it's used first time.
+     */
+    private GXV44 v44;
+
+    /**
+     * Parallel decryptor. Null if ciphered APDUs are decrypted in caller's
+     * thread.
+     */
+    private GXParallelDecryptor parallelDecryptor;
+
     /**
      * Block number acknowledged in GBT.
      */
@@ -362,6 +376,22 @@ public class GXDLMSSettings {
      */
     private boolean useUtc2NormalTime;
 
+    /**
+     * Is date-time parsed to GXCompactDateTime.
+     */
+    private boolean useCompactDateTime;
+
+    /**
+     * Buffer where client writes generated frames. If null, frames are
+     * returned as byte arrays.
+     */
+    private ByteBuffer frameOutput;
+
+    /**
+     * Amount of frames written to the frame output.
+     */
+    private int frameCount;
+
     /**
      * Some meters expect that Invocation Counter is increased for
      * Authentication when connection is established.
@@ -1430,6 +1460,55 @@ public class GXDLMSSettings {
         useUtc2NormalTime = value;
     }
 
+    /**
+     * @return Is date-time parsed to GXCompactDateTime instead of
+     *         GXDateTime.
+     */
+    public boolean getUseCompactDateTime() {
+        return useCompactDateTime;
+    }
+
+    /**
+     * @param value
+     *            Is date-time parsed to GXCompactDateTime instead of
+     *            GXDateTime.
+     */
+    public void setUseCompactDateTime(final boolean value) {
+        useCompactDateTime = value;
+    }
+
+    /**
+     * @return Buffer where client writes generated frames. If null, frames
+     *         are returned as byte arrays.
+     */
+    final ByteBuffer getFrameOutput() {
+        return frameOutput;
+    }
+
+    /**
+     * @param value
+     *            Buffer where client writes generated frames. If null, frames
+     *            are returned as byte arrays.
+     */
+    final void setFrameOutput(final ByteBuffer value) {
+        frameOutput = value;
+        frameCount = 0;
+    }
+
+    /**
+     * @return Amount of frames written to the frame output.
+     */
+    final int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Frame is written to the frame output.
+     */
+    final void frameWritten() {
+        ++frameCount;
+    }
+
     /**
      * @return Some meters expect that Invocation Counter is increased for
      *         Authentication when connection is established.
@@ -1812,4 +1891,49 @@ public class GXDLMSSettings {
     public IGXCompressionNotifier getCompressionNotifier() {
         return compressionNotifier;
     }
+
+    /**
+     * @return Built-in V.44 codec that is used if compression notifier is
+     *         not set.
+     */
+    GXV44 getV44() {
+        if (v44 == null) {
+            v44 = new GXV44();
+        }
+        return v44;
+    }
+
+    /**
+     * @return Parallel decryptor or null if ciphered APDUs are decrypted in
+     *         caller's thread.
+     */
+    GXParallelDecryptor getParallelDecryptor() {
+        return parallelDecryptor;
+    }
+
+    /**
+     * @return Executor where received ciphered APDUs are decrypted.
+     */
+    public Executor getDecryptExecutor() {
+        if (parallelDecryptor == null) {
+            return null;
+        }
+        return parallelDecryptor.getExecutor();
+    }
+
+    /**
+     * @param value
+     *            Executor where received ciphered APDUs are decrypted. Null
+     *            if ciphered APDUs are decrypted in caller's thread.
+     */
+    public void setDecryptExecutor(final Executor value) {
+        if (parallelDecryptor != null) {
+            parallelDecryptor.clear();
+        }
+        if (value == null) {
+            parallelDecryptor = null;
+        } else {
+            parallelDecryptor = new GXParallelDecryptor(this, value);
+        }
+    }
 }
@@ -0,0 +1,244 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * TCP connection to one meter using asynchronous socket channel. Connections
+ * don't have own threads. Completion handlers are run in the threads of the
+ * channel group.
+ */
+public final class GXDLMSTcpTransport implements IGXDLMSTransport {
+    /**
+     * Size of the receive buffer.
+     */
+    private static final int RECEIVE_BUFFER_SIZE = 4096;
+
+    private final SocketAddress address;
+    private final AsynchronousChannelGroup group;
+    private final ByteBuffer receiveBuffer = ByteBuffer.allocate(RECEIVE_BUFFER_SIZE);
+
+    /**
+     * Data that is waiting to be sent. Only one write can be pending.
+     */
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+    private boolean writing;
+    /**
+     * Future of the connection that is opening. Null if connection is not
+     * opening.
+     */
+    private CompletableFuture<Void> opening;
+    private AsynchronousSocketChannel channel;
+    private IGXDLMSTransportListener listener;
+
+    /**
+     * Constructor. Default channel group is used.
+     * 
+     * @param forAddress
+     *            Address of the meter.
+     */
+    public GXDLMSTcpTransport(final SocketAddress forAddress) {
+        this(forAddress, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param forAddress
+     *            Address of the meter.
+     * @param forGroup
+     *            Channel group. Default group is used if null.
+     */
+    public GXDLMSTcpTransport(final SocketAddress forAddress, final AsynchronousChannelGroup forGroup) {
+        if (forAddress == null) {
+            throw new IllegalArgumentException("address");
+        }
+        address = forAddress;
+        group = forGroup;
+    }
+
+    /**
+     * @return Address of the meter.
+     */
+    public SocketAddress getAddress() {
+        return address;
+    }
+
+    @Override
+    public CompletableFuture<Void> open(final IGXDLMSTransportListener forListener) {
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        try {
+            synchronized (this) {
+                if (channel != null && channel.isOpen()) {
+                    throw new IllegalStateException("Connection is already open.");
+                }
+                listener = forListener;
+                channel = AsynchronousSocketChannel.open(group);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                opening = future;
+            }
+            channel.connect(address, null, new CompletionHandler<Void, Void>() {
+                @Override
+                public void completed(final Void result, final Void attachment) {
+                    synchronized (GXDLMSTcpTransport.this) {
+                        opening = null;
+                    }
+                    // Future is already failed if connection was closed.
+                    if (future.complete(null)) {
+                        read();
+                    }
+                }
+
+                @Override
+                public void failed(final Throwable ex, final Void attachment) {
+                    synchronized (GXDLMSTcpTransport.this) {
+                        opening = null;
+                    }
+                    future.completeExceptionally(ex);
+                }
+            });
+        } catch (Exception ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    private void read() {
+        channel.read(receiveBuffer, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(final Integer count, final Void attachment) {
+                if (count < 0) {
+                    failed(new EOFException("Connection closed by the meter."), null);
+                    return;
+                }
+                receiveBuffer.flip();
+                byte[] data = new byte[receiveBuffer.remaining()];
+                receiveBuffer.get(data);
+                receiveBuffer.clear();
+                listener.onReceived(data);
+                if (channel.isOpen()) {
+                    read();
+                }
+            }
+
+            @Override
+            public void failed(final Throwable ex, final Void attachment) {
+                if (channel.isOpen()) {
+                    listener.onError(ex instanceof Exception ? (Exception) ex : new IOException(ex));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void send(final byte[] data) throws IOException {
+        synchronized (this) {
+            if (channel == null || !channel.isOpen()) {
+                throw new IOException("Connection is not open.");
+            }
+            pending.add(ByteBuffer.wrap(data));
+            if (writing) {
+                return;
+            }
+            writing = true;
+        }
+        write();
+    }
+
+    private void write() {
+        final ByteBuffer bb;
+        synchronized (this) {
+            bb = pending.peek();
+            if (bb == null || !channel.isOpen()) {
+                pending.clear();
+                writing = false;
+                return;
+            }
+        }
+        channel.write(bb, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(final Integer count, final Void attachment) {
+                synchronized (GXDLMSTcpTransport.this) {
+                    // Pending data is cleared if connection is closed while
+                    // the data is written.
+                    if (!bb.hasRemaining() && pending.peek() == bb) {
+                        pending.poll();
+                    }
+                }
+                write();
+            }
+
+            @Override
+            public void failed(final Throwable ex, final Void attachment) {
+                synchronized (GXDLMSTcpTransport.this) {
+                    pending.clear();
+                    writing = false;
+                }
+                if (channel.isOpen()) {
+                    listener.onError(ex instanceof Exception ? (Exception) ex : new IOException(ex));
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        AsynchronousSocketChannel tmp;
+        CompletableFuture<Void> future;
+        synchronized (this) {
+            tmp = channel;
+            future = opening;
+            opening = null;
+            pending.clear();
+        }
+        if (future != null) {
+            future.completeExceptionally(new AsynchronousCloseException());
+        }
+        if (tmp != null) {
+            tmp.close();
+        }
+    }
+}
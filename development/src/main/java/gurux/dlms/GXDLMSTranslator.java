@@ -34,13 +34,13 @@
 
 package gurux.dlms;
 
+import java.io.IOException;
 import java.io.StringReader;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
 import java.util.HashMap;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,9 +48,6 @@ import java.util.logging.Logger;
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -86,8 +83,10 @@ import gurux.dlms.secure.GXCiphering;
  * This class is used to translate DLMS frame or PDU to xml.
  */
 public class GXDLMSTranslator {
-    HashMap<Integer, String> tags = new HashMap<Integer, String>();
-    HashMap<String, Integer> tagsByName = new HashMap<String, Integer>();
+    /**
+     * Shared read-only tags of the output type.
+     */
+    final GXDLMSTranslatorTags tags;
 
     /**
      * Are numeric values shows as hex.
@@ -192,7 +191,7 @@ public class GXDLMSTranslator {
      */
     public GXDLMSTranslator(final TranslatorOutputType type) {
         outputType = type;
-        getTags(outputType, tags, tagsByName);
+        tags = GXDLMSTranslatorTags.getTags(type);
     }
 
     /**
@@ -543,50 +542,6 @@ public class GXDLMSTranslator {
         list.put(value, text);
     }
 
-    /**
-     * Get all tags.
-     * 
-     * @param type
-     *            Output type.
-     * @param list
-     *            List of tags by ID.
-     * @param tagsByName
-     *            List of tags by name.
-     */
-    private static void getTags(final TranslatorOutputType type, final HashMap<Integer, String> list,
-            final HashMap<String, Integer> tagsByName) {
-        if (type == TranslatorOutputType.SIMPLE_XML) {
-            TranslatorSimpleTags.getGeneralTags(type, list);
-            TranslatorSimpleTags.getSnTags(type, list);
-            TranslatorSimpleTags.getLnTags(type, list);
-            TranslatorSimpleTags.getGloTags(type, list);
-            TranslatorSimpleTags.getDedTags(type, list);
-            TranslatorSimpleTags.getTranslatorTags(type, list);
-            TranslatorSimpleTags.getDataTypeTags(list);
-            TranslatorSimpleTags.getPlcTags(list);
-        } else {
-            TranslatorStandardTags.getGeneralTags(type, list);
-            TranslatorStandardTags.getSnTags(type, list);
-            TranslatorStandardTags.getLnTags(type, list);
-            TranslatorStandardTags.getGloTags(type, list);
-            TranslatorStandardTags.getDedTags(type, list);
-            TranslatorStandardTags.getTranslatorTags(type, list);
-            TranslatorStandardTags.getDataTypeTags(list);
-            TranslatorStandardTags.getPlcTags(list);
-        }
-        // Simple is not case sensitive.
-        boolean lowercase = type == TranslatorOutputType.SIMPLE_XML;
-        for (Entry<Integer, String> it : list.entrySet()) {
-            String str = it.getValue();
-            if (lowercase) {
-                str = str.toLowerCase();
-            }
-            if (!tagsByName.containsKey(str)) {
-                tagsByName.put(str, it.getKey());
-            }
-        }
-    }
-
     final byte[] getPdu(final byte[] value)
             throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
             InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
@@ -881,6 +836,53 @@ public class GXDLMSTranslator {
     public final void messageToXml(final GXDLMSTranslatorMessage msg)
             throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
             InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        msg.setXml(messageToStructure(msg).toString());
+    }
+
+    /**
+     * Convert message to XML and write it to the output. Generated XML is
+     * written when the frame is parsed and no string is created from it.
+     * 
+     * @param value
+     *            Bytes to convert.
+     * @param out
+     *            Output where XML is written.
+     * @throws IOException
+     *             Output exception.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final void messageToXml(final GXByteBuffer value, final Appendable out)
+            throws IOException, InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
+        GXDLMSTranslatorMessage msg = new GXDLMSTranslatorMessage();
+        msg.setMessage(value);
+        messageToStructure(msg).writeTo(out);
+    }
+
+    /**
+     * Convert message to XML structure.
+     *
+     * @param msg
+     *            Translator message data.
+     * @return Generated XML.
+     */
+    @SuppressWarnings("squid:S106")
+    private GXDLMSTranslatorStructure messageToStructure(final GXDLMSTranslatorMessage msg)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
         if (msg.getMessage() == null || msg.getMessage().size() == 0) {
             throw new IllegalArgumentException("value");
         }
@@ -953,7 +955,7 @@ public class GXDLMSTranslator {
                             } else {
                                 if (data.getCommand() == Command.SNRM || data.getCommand() == Command.UA) {
                                     xml.appendStartTag(data.getCommand());
-                                    pduToXml(xml, data.getData(), true, true, true, msg);
+                                    pduToStructure(xml, data.getData(), true, msg);
                                     xml.appendEndTag(data.getCommand());
                                     xml.setXmlLength(xml.getXmlLength() + 2);
                                 } else {
@@ -971,8 +973,7 @@ public class GXDLMSTranslator {
                         xml.appendLine("</HDLC>");
                     }
                 }
-                msg.setXml(xml.toString());
-                return;
+                return xml;
             }
             // If wrapper.
             else if (value.getUInt16(value.position()) == 1) {
@@ -1007,8 +1008,7 @@ public class GXDLMSTranslator {
                 if (!getPduOnly()) {
                     xml.appendLine("</WRAPPER>");
                 }
-                msg.setXml(xml.toString());
-                return;
+                return xml;
             }
             // If PLC.
             else if (value.getUInt8(value.position()) == 2) {
@@ -1053,8 +1053,7 @@ public class GXDLMSTranslator {
                 if (!pduOnly) {
                     xml.appendLine("</Plc>");
                 }
-                msg.setXml(xml.toString());
-                return;
+                return xml;
             }
             // If PLC.
             else if (GXDLMS.getPlcSfskFrameSize(value) != 0) {
@@ -1099,8 +1098,7 @@ public class GXDLMSTranslator {
                 if (!pduOnly) {
                     xml.appendLine("</PlcSFsk>");
                 }
-                msg.setXml(xml.toString());
-                return;
+                return xml;
             }
             // If Wired M-Bus.
             if ((msg.getInterfaceType() == InterfaceType.WIRED_MBUS || msg.getInterfaceType() == InterfaceType.HDLC
@@ -1167,8 +1165,7 @@ public class GXDLMSTranslator {
                     xml.appendLine("</WiredMBus>");
                 }
                 updateAddress(settings, msg);
-                msg.setXml(xml.toString());
-                return;
+                return xml;
             }
             // If CoAP message.
             else if ((msg.getInterfaceType() == InterfaceType.COAP || msg.getInterfaceType() == InterfaceType.HDLC
@@ -1270,8 +1267,7 @@ public class GXDLMSTranslator {
                     xml.appendLine("</CoAP>");
                 }
                 updateAddress(settings, msg);
-                msg.setXml(xml.toString());
-                return;
+                return xml;
             }
             // If Wireless M-Bus.
             else if ((msg.getInterfaceType() == InterfaceType.HDLC
@@ -1310,8 +1306,7 @@ public class GXDLMSTranslator {
                     xml.appendLine("</WirelessMBus>");
                 }
                 updateAddress(settings, msg);
-                msg.setXml(xml.toString());
-                return;
+                return xml;
             }
             // If SMS.
             else if (msg.getInterfaceType() == InterfaceType.SMS && msg.getMessage().available() > 2) {
@@ -1340,8 +1335,7 @@ public class GXDLMSTranslator {
                     xml.appendLine("</SMS>");
                 }
                 updateAddress(settings, msg);
-                msg.setXml(xml.toString());
-                return;
+                return xml;
             }
         } catch (RuntimeException ex) {
             Logger.getLogger(GXDLMSTranslator.class.getName()).log(Level.SEVERE, ex.getMessage());
@@ -1423,6 +1417,24 @@ public class GXDLMSTranslator {
         return pduToXml(value, omitXmlDeclaration, omitXmlNameSpace, null);
     }
 
+    /**
+     * Convert PDU to XML and write it to the output. Generated XML is written
+     * when the PDU is parsed and no string is created from it.
+     * 
+     * @param value
+     *            PDU.
+     * @param out
+     *            Output where XML is written.
+     * @throws IOException
+     *             Output exception.
+     */
+    public final void pduToXml(final GXByteBuffer value, final Appendable out) throws IOException {
+        GXDLMSTranslatorStructure xml =
+                new GXDLMSTranslatorStructure(outputType, omitXmlNameSpace, hex, getShowStringAsHex(), comments, tags);
+        short cmd = pduToStructure(xml, value, true, null);
+        writePdu(out, xml, cmd, omitXmlDeclaration, omitXmlNameSpace);
+    }
+
     /**
      * @return Are comments added.
      */
@@ -1515,9 +1527,74 @@ public class GXDLMSTranslator {
      * @param value Bytes to convert.
      * @return Converted XML.
      */
-    @SuppressWarnings({ "squid:S00112", "squid:S1141", "squid:S1871" })
     String pduToXml(final GXDLMSTranslatorStructure xml, final GXByteBuffer value, final boolean omitDeclaration,
             final boolean omitNameSpace, final boolean allowUnknownCommand, final GXDLMSTranslatorMessage msg) {
+        short cmd = pduToStructure(xml, value, allowUnknownCommand, msg);
+        if (outputType == TranslatorOutputType.STANDARD_XML) {
+            StringBuilder sb = new StringBuilder(xml.getXmlLength() + 100);
+            try {
+                writePdu(sb, xml, cmd, omitDeclaration, omitNameSpace);
+            } catch (IOException ex) {
+                throw new RuntimeException(ex.getMessage());
+            }
+            return sb.toString();
+        }
+        return xml.toString();
+    }
+
+    /**
+     * Write parsed PDU to the output.
+     * 
+     * @param out
+     *            Output where XML is written.
+     * @param xml
+     *            Parsed PDU.
+     * @param cmd
+     *            Command.
+     * @param omitDeclaration
+     *            Omit XML declaration.
+     * @param omitNameSpace
+     *            Omit name space.
+     * @throws IOException
+     *             Output exception.
+     */
+    private void writePdu(final Appendable out, final GXDLMSTranslatorStructure xml, final short cmd,
+            final boolean omitDeclaration, final boolean omitNameSpace) throws IOException {
+        if (outputType != TranslatorOutputType.STANDARD_XML) {
+            xml.writeTo(out);
+            return;
+        }
+        boolean acse = cmd == Command.AARE || cmd == Command.AARQ || cmd == Command.RELEASE_REQUEST
+                || cmd == Command.RELEASE_RESPONSE;
+        if (!omitDeclaration) {
+            out.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\r\n");
+        }
+        if (!omitNameSpace) {
+            if (acse) {
+                out.append("<x:aCSE-APDU xmlns:x=\"http://www.dlms.com/COSEMpdu\">\r\n");
+            } else {
+                out.append("<x:xDLMS-APDU xmlns:x=\"http://www.dlms.com/COSEMpdu\">\r\n");
+            }
+        }
+        xml.writeTo(out);
+        if (!omitNameSpace) {
+            if (acse) {
+                out.append("</x:aCSE-APDU>\r\n");
+            } else {
+                out.append("</x:xDLMS-APDU>\r\n");
+            }
+        }
+    }
+
+    /*
+     * Parse PDU to XML structure.
+     * @param xml XML structure where PDU is parsed.
+     * @param value Bytes to convert.
+     * @return Parsed command.
+     */
+    @SuppressWarnings({ "squid:S00112", "squid:S1141", "squid:S1871" })
+    short pduToStructure(final GXDLMSTranslatorStructure xml, final GXByteBuffer value,
+            final boolean allowUnknownCommand, final GXDLMSTranslatorMessage msg) {
         if (value == null || value.size() == 0) {
             throw new IllegalArgumentException("value");
         }
@@ -1731,7 +1808,7 @@ public class GXDLMSTranslator {
                                 GXByteBuffer data2 =
                                         new GXByteBuffer(GXCiphering.decrypt(settings.getCipher(), p, value));
                                 xml.startComment("Decrypt data: " + data2.toString());
-                                pduToXml(xml, data2, omitDeclaration, omitNameSpace, false, msg);
+                                pduToStructure(xml, data2, false, msg);
                                 xml.endComment();
                             }
                         }
@@ -1768,7 +1845,7 @@ public class GXDLMSTranslator {
                         tmp = new GXByteBuffer(GXCiphering.decrypt(settings.getCipher(), p, tmp));
                         len = xml.getXmlLength();
                         xml.startComment("Decrypt data: " + tmp.toString());
-                        pduToXml(xml, tmp, omitDeclaration, omitNameSpace, false, msg);
+                        pduToStructure(xml, tmp, false, msg);
                         xml.endComment();
                     } catch (Exception e) {
                         // It's OK if this fails. Ciphering settings are not
@@ -1787,7 +1864,7 @@ public class GXDLMSTranslator {
                                 GXByteBuffer data2 =
                                         new GXByteBuffer(GXCiphering.decrypt(settings.getCipher(), p, value));
                                 xml.startComment("Decrypt data: " + data2.toString());
-                                pduToXml(xml, data2, omitDeclaration, omitNameSpace, false, msg);
+                                pduToStructure(xml, data2, false, msg);
                                 xml.endComment();
                             }
                         } catch (Exception ex) {
@@ -1829,8 +1906,7 @@ public class GXDLMSTranslator {
                 xml.appendStartTag(cmd);
                 xml.appendLine(TranslatorTags.NETWORK_ID, null, String.valueOf(id));
                 xml.appendLine(TranslatorTags.PHYSICAL_DEVICE_ADDRESS, null, GXCommon.toHex(tmp, false, 0, len));
-                pduToXml(xml, new GXByteBuffer(value.remaining()), omitDeclaration, omitNameSpace, allowUnknownCommand,
-                        msg);
+                pduToStructure(xml, new GXByteBuffer(value.remaining()), allowUnknownCommand, msg);
                 xml.appendEndTag(cmd);
                 break;
             case Command.EXCEPTION_RESPONSE:
@@ -1883,33 +1959,7 @@ public class GXDLMSTranslator {
                         + "\" />");
                 break;
             }
-            if (outputType == TranslatorOutputType.STANDARD_XML) {
-                StringBuilder sb = new StringBuilder();
-                if (!omitDeclaration) {
-                    sb.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\r\n");
-                }
-                if (!omitNameSpace) {
-                    // CHECKSTYLE:OFF
-                    if (cmd != Command.AARE && cmd != Command.AARQ && cmd != Command.RELEASE_REQUEST
-                            && cmd != Command.RELEASE_RESPONSE) {
-                        sb.append("<x:xDLMS-APDU xmlns:x=\"http://www.dlms.com/COSEMpdu\">\r\n");
-                    } else {
-                        sb.append("<x:aCSE-APDU xmlns:x=\"http://www.dlms.com/COSEMpdu\">\r\n");
-                    }
-                    // CHECKSTYLE:ON
-                }
-                sb.append(xml.toString());
-                if (!omitNameSpace) {
-                    if (cmd != Command.AARE && cmd != Command.AARQ && cmd != Command.RELEASE_REQUEST
-                            && cmd != Command.RELEASE_RESPONSE) {
-                        sb.append("</x:xDLMS-APDU>\r\n");
-                    } else {
-                        sb.append("</x:aCSE-APDU>\r\n");
-                    }
-                }
-                return sb.toString();
-            }
-            return xml.toString();
+            return cmd;
         } catch (Exception ex) {
             throw new RuntimeException(ex.getMessage());
         }
@@ -3275,25 +3325,45 @@ public class GXDLMSTranslator {
      * @throws SignatureException
      *             Signature exception.
      */
-    @SuppressWarnings({ "squid:S00112", "squid:S1871" })
     public final byte[] xmlToPdu(final String xml, final GXDLMSXmlSettings settings)
             throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
             InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
-        DocumentBuilder docBuilder;
-        Document doc;
-        DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-        try {
-            docBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            docBuilder = docBuilderFactory.newDocumentBuilder();
-            doc = docBuilder.parse(new InputSource(new StringReader(xml)));
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage());
-        }
+        Document doc = GXDLMSXmlParser.parse(new InputSource(new StringReader(xml)));
+        return xmlToPdu(doc.getDocumentElement(), settings);
+    }
+
+    /**
+     * Convert XML node to byte array.
+     * 
+     * @param node
+     *            Converted XML node.
+     * @param settings
+     *            XML settings.
+     * @return Converted PDU in bytes.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    @SuppressWarnings("squid:S1871")
+    final byte[] xmlToPdu(final Node node, final GXDLMSXmlSettings settings)
+            throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
         GXDLMSXmlSettings s = settings;
         if (s == null) {
-            s = new GXDLMSXmlSettings(outputType, hex, getShowStringAsHex(), tagsByName);
+            s = new GXDLMSXmlSettings(outputType, hex, getShowStringAsHex(), tags.getTagsByName());
         }
-        readNode(doc.getDocumentElement(), s);
+        readNode(node, s);
         GXByteBuffer bb = new GXByteBuffer();
         GXDLMSLNParameters ln;
         GXDLMSSNParameters sn;
@@ -3522,10 +3592,8 @@ public class GXDLMSTranslator {
      * @return
      */
     public static String valueToXml(Object value) {
-        HashMap<Integer, String> tags = new HashMap<Integer, String>();
-        TranslatorSimpleTags.getDataTypeTags(tags);
-        GXDLMSTranslatorStructure xml =
-                new GXDLMSTranslatorStructure(TranslatorOutputType.SIMPLE_XML, true, false, false, false, tags);
+        GXDLMSTranslatorStructure xml = new GXDLMSTranslatorStructure(TranslatorOutputType.SIMPLE_XML, true, false,
+                false, false, GXDLMSTranslatorTags.getDataTypeTags());
         GXCommon.datatoXml(value, xml);
         return xml.toString();
     }
@@ -3564,19 +3632,9 @@ public class GXDLMSTranslator {
      *            XML data.
      * @return Data in bytes.
      */
-    @SuppressWarnings("squid:S00112")
     public final byte[] xmlToData(final String xml) {
-        DocumentBuilder docBuilder;
-        Document doc;
-        DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-        try {
-            docBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            docBuilder = docBuilderFactory.newDocumentBuilder();
-            doc = docBuilder.parse(new InputSource(new StringReader(xml)));
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage());
-        }
-        GXDLMSXmlSettings s = new GXDLMSXmlSettings(outputType, hex, getShowStringAsHex(), tagsByName);
+        Document doc = GXDLMSXmlParser.parse(new InputSource(new StringReader(xml)));
+        GXDLMSXmlSettings s = new GXDLMSXmlSettings(outputType, hex, getShowStringAsHex(), tags.getTagsByName());
 
         getAllDataNodes(doc.getDocumentElement().getChildNodes(), s);
         return s.getData().array();
@@ -34,7 +34,7 @@
 
 package gurux.dlms;
 
-import java.util.HashMap;
+import java.io.IOException;
 
 import gurux.dlms.enums.DataType;
 import gurux.dlms.enums.TranslatorOutputType;
@@ -47,7 +47,7 @@ public class GXDLMSTranslatorStructure {
     // Is comment added already. Nested comments are not allowed in a XML.
     int commentsIndex = 0;
     private StringBuilder sb = new StringBuilder();
-    private HashMap<Integer, String> tags;
+    private final GXDLMSTranslatorTags tags;
 
     private final TranslatorOutputType outputType;
     /**
@@ -112,7 +112,7 @@ public class GXDLMSTranslatorStructure {
      * @param list List of tags.
      */
     GXDLMSTranslatorStructure(final TranslatorOutputType type, final boolean omitNS, final boolean numericAshex,
-            final boolean hex, final boolean addComments, final HashMap<Integer, String> list) {
+            final boolean hex, final boolean addComments, final GXDLMSTranslatorTags list) {
         outputType = type;
         omitNameSpace = omitNS;
         showNumericsAsHex = numericAshex;
@@ -126,6 +126,18 @@ public class GXDLMSTranslatorStructure {
         return sb.toString();
     }
 
+    /**
+     * Write generated XML without creating a string.
+     * 
+     * @param out
+     *            Output where XML is written.
+     * @throws IOException
+     *             Output exception.
+     */
+    final void writeTo(final Appendable out) throws IOException {
+        out.append(sb);
+    }
+
     public final String getDataType(final DataType type) {
         return getTag(GXDLMS.DATA_TYPE_OFFSET + type.getValue());
     }
@@ -143,11 +155,7 @@ public class GXDLMSTranslatorStructure {
     }
 
     private String getTag(final int tag) {
-        String tmp = tags.get(tag);
-        if (getOutputType() == TranslatorOutputType.SIMPLE_XML || omitNameSpace) {
-            return tmp;
-        }
-        return "x:" + tmp;
+        return tags.get(tag, getOutputType() != TranslatorOutputType.SIMPLE_XML && !omitNameSpace);
     }
 
     public final void appendLine(final String str) {
@@ -0,0 +1,236 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import gurux.dlms.enums.TranslatorOutputType;
+
+/**
+ * Read-only translator tag table. Tables are created once for each output
+ * type and shared between all translators.
+ */
+final class GXDLMSTranslatorTags {
+    /**
+     * Shared tag tables by output type.
+     */
+    private static final AtomicReferenceArray<GXDLMSTranslatorTags> TAGS =
+            new AtomicReferenceArray<GXDLMSTranslatorTags>(TranslatorOutputType.values().length);
+
+    /**
+     * Shared data type tags.
+     */
+    private static volatile GXDLMSTranslatorTags dataTypeTags;
+
+    /**
+     * Tag IDs. Open addressing is used and free slot has null name.
+     */
+    private final int[] keys;
+
+    /**
+     * Tag names.
+     */
+    private final String[] names;
+
+    /**
+     * Tag names with name space prefix.
+     */
+    private final String[] prefixedNames;
+
+    /**
+     * Read-only tag IDs by name.
+     */
+    private final Map<String, Integer> tagsByName;
+
+    /**
+     * Constructor.
+     * 
+     * @param list
+     *            Tags by ID.
+     * @param byName
+     *            Tags by name.
+     */
+    private GXDLMSTranslatorTags(final HashMap<Integer, String> list, final HashMap<String, Integer> byName) {
+        int size = 16;
+        while (size < 2 * list.size()) {
+            size <<= 1;
+        }
+        keys = new int[size];
+        names = new String[size];
+        prefixedNames = new String[size];
+        for (Entry<Integer, String> it : list.entrySet()) {
+            int pos = indexOf(it.getKey());
+            keys[pos] = it.getKey();
+            names[pos] = it.getValue();
+            prefixedNames[pos] = "x:" + it.getValue();
+        }
+        tagsByName = Collections.unmodifiableMap(byName);
+    }
+
+    /**
+     * Get shared tags for given output type.
+     * 
+     * @param type
+     *            Output type.
+     * @return Read-only tag table.
+     */
+    static GXDLMSTranslatorTags getTags(final TranslatorOutputType type) {
+        int index = type.ordinal();
+        GXDLMSTranslatorTags tags = TAGS.get(index);
+        if (tags == null) {
+            synchronized (TAGS) {
+                tags = TAGS.get(index);
+                if (tags == null) {
+                    HashMap<Integer, String> list = new HashMap<Integer, String>();
+                    HashMap<String, Integer> byName = new HashMap<String, Integer>();
+                    getTags(type, list, byName);
+                    tags = new GXDLMSTranslatorTags(list, byName);
+                    TAGS.set(index, tags);
+                }
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * @return Shared data type tags for simple XML.
+     */
+    static GXDLMSTranslatorTags getDataTypeTags() {
+        GXDLMSTranslatorTags tags = dataTypeTags;
+        if (tags == null) {
+            synchronized (TAGS) {
+                tags = dataTypeTags;
+                if (tags == null) {
+                    HashMap<Integer, String> list = new HashMap<Integer, String>();
+                    TranslatorSimpleTags.getDataTypeTags(list);
+                    tags = new GXDLMSTranslatorTags(list, new HashMap<String, Integer>());
+                    dataTypeTags = tags;
+                }
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Get all tags.
+     * 
+     * @param type
+     *            Output type.
+     * @param list
+     *            List of tags by ID.
+     * @param tagsByName
+     *            List of tags by name.
+     */
+    private static void getTags(final TranslatorOutputType type, final HashMap<Integer, String> list,
+            final HashMap<String, Integer> tagsByName) {
+        if (type == TranslatorOutputType.SIMPLE_XML) {
+            TranslatorSimpleTags.getGeneralTags(type, list);
+            TranslatorSimpleTags.getSnTags(type, list);
+            TranslatorSimpleTags.getLnTags(type, list);
+            TranslatorSimpleTags.getGloTags(type, list);
+            TranslatorSimpleTags.getDedTags(type, list);
+            TranslatorSimpleTags.getTranslatorTags(type, list);
+            TranslatorSimpleTags.getDataTypeTags(list);
+            TranslatorSimpleTags.getPlcTags(list);
+        } else {
+            TranslatorStandardTags.getGeneralTags(type, list);
+            TranslatorStandardTags.getSnTags(type, list);
+            TranslatorStandardTags.getLnTags(type, list);
+            TranslatorStandardTags.getGloTags(type, list);
+            TranslatorStandardTags.getDedTags(type, list);
+            TranslatorStandardTags.getTranslatorTags(type, list);
+            TranslatorStandardTags.getDataTypeTags(list);
+            TranslatorStandardTags.getPlcTags(list);
+        }
+        // Simple is not case sensitive.
+        boolean lowercase = type == TranslatorOutputType.SIMPLE_XML;
+        for (Entry<Integer, String> it : list.entrySet()) {
+            String str = it.getValue();
+            if (lowercase) {
+                str = str.toLowerCase();
+            }
+            if (!tagsByName.containsKey(str)) {
+                tagsByName.put(str, it.getKey());
+            }
+        }
+    }
+
+    /**
+     * Find slot of the tag.
+     * 
+     * @param tag
+     *            Tag ID.
+     * @return Slot where tag is or where it can be added.
+     */
+    private int indexOf(final int tag) {
+        int mask = keys.length - 1;
+        int pos = (tag ^ (tag >>> 16)) * 0x9E3779B9 >>> 8 & mask;
+        while (names[pos] != null && keys[pos] != tag) {
+            pos = (pos + 1) & mask;
+        }
+        return pos;
+    }
+
+    /**
+     * Get tag name.
+     * 
+     * @param tag
+     *            Tag ID.
+     * @param prefix
+     *            Is name space prefix added.
+     * @return Tag name or null if tag is unknown.
+     */
+    String get(final int tag, final boolean prefix) {
+        int pos = indexOf(tag);
+        if (names[pos] == null) {
+            return prefix ? "x:null" : null;
+        }
+        if (prefix) {
+            return prefixedNames[pos];
+        }
+        return names[pos];
+    }
+
+    /**
+     * @return Read-only tag IDs by name.
+     */
+    Map<String, Integer> getTagsByName() {
+        return tagsByName;
+    }
+}
@@ -34,21 +34,28 @@
 package gurux.dlms;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
@@ -135,19 +142,8 @@ public class GXDLMSXmlClient extends GXDLMSSecureClient {
      *            Load settings.
      * @return Loaded XML objects.
      */
-    @SuppressWarnings("squid:S00112")
     public List<GXDLMSXmlPdu> load(final File file, final GXXmlLoadSettings s) {
-        DocumentBuilder docBuilder;
-        Document doc;
-        DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-        try {
-            docBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            docBuilder = docBuilderFactory.newDocumentBuilder();
-            doc = docBuilder.parse(file);
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage());
-        }
-        return load(doc, s);
+        return load(GXDLMSXmlParser.parse(file), s);
     }
 
     /**
@@ -159,159 +155,314 @@ public class GXDLMSXmlClient extends GXDLMSSecureClient {
      *            Load settings.
      * @return Loaded XML objects.
      */
-    @SuppressWarnings("squid:S00112")
     public List<GXDLMSXmlPdu> load(final String xml, final GXXmlLoadSettings s) {
-        DocumentBuilder docBuilder;
-        Document doc;
-        DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
+        return load(GXDLMSXmlParser.parse(new InputSource(new StringReader(xml))), s);
+    }
+
+    /**
+     * Read XML commands from the file one by one. Only the command that is
+     * read is kept in the memory and large files can be handled. File is
+     * closed when all commands are read or when the iterator is closed. Use
+     * try-with-resources if the iteration can be stopped before the end of
+     * the file.
+     * 
+     * @param file
+     *            XML file
+     * @param s
+     *            Load settings.
+     * @return Iterator of XML objects.
+     */
+    @SuppressWarnings("squid:S00112")
+    public IGXDLMSXmlPduIterator iterate(final File file, final GXXmlLoadSettings s) {
+        FileInputStream stream = null;
         try {
-            docBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
-            docBuilder = docBuilderFactory.newDocumentBuilder();
-            doc = docBuilder.parse(new InputSource(new StringReader(xml)));
+            stream = new FileInputStream(file);
+            return new GXPduIterator(stream, true, s);
         } catch (Exception e) {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(GXDLMSXmlClient.class.getName()).log(Level.SEVERE, ex.getMessage());
+                }
+            }
             throw new RuntimeException(e.getMessage());
         }
-        return load(doc, s);
     }
 
     /**
-     * Load XML commands from the string.
+     * Read XML commands from the stream one by one. Only the command that is
+     * read is kept in the memory and large streams can be handled. Closing
+     * the iterator doesn't close the stream.
      * 
-     * @param xml
-     *            XML string
-     * @param settings
+     * @param stream
+     *            XML stream.
+     * @param s
+     *            Load settings.
+     * @return Iterator of XML objects.
+     */
+    @SuppressWarnings("squid:S00112")
+    public IGXDLMSXmlPduIterator iterate(final InputStream stream, final GXXmlLoadSettings s) {
+        try {
+            return new GXPduIterator(stream, false, s);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Load XML commands from the document.
+     * 
+     * @param doc
+     *            XML document.
+     * @param loadSettings
      *            Load settings.
      * @return Loaded XML objects.
      */
-    @SuppressWarnings({ "squid:S00112", "squid:S1066", "squid:S135" })
     private List<GXDLMSXmlPdu> load(final Document doc, final GXXmlLoadSettings loadSettings) {
         // Remove comments.
         removeRecursively(doc, Node.COMMENT_NODE, null);
-
+        // Join text nodes that were separated by the comments.
+        doc.normalize();
+        GXPduLoader loader = new GXPduLoader(loadSettings);
         List<GXDLMSXmlPdu> actions = new ArrayList<GXDLMSXmlPdu>();
-        String description = null, error = null, errorUrl = null, sleep = null;
         for (int pos = 0; pos != doc.getChildNodes().getLength(); ++pos) {
             Node m1 = doc.getChildNodes().item(pos);
             if (m1.getNodeType() == Node.ELEMENT_NODE) {
                 for (int pos2 = 0; pos2 != m1.getChildNodes().getLength(); ++pos2) {
                     Node node = m1.getChildNodes().item(pos2);
                     if (node.getNodeType() == Node.ELEMENT_NODE) {
-                        if (node.getNodeName().equals("Description")) {
-                            description = node.getNodeValue();
-                            continue;
-                        }
-                        if (node.getNodeName().equals("Error")) {
-                            error = node.getNodeValue();
-                            continue;
+                        GXDLMSXmlPdu p = loader.load(node);
+                        if (p != null) {
+                            actions.add(p);
                         }
-                        if (node.getNodeName().equals("ErrorUrl")) {
-                            errorUrl = node.getNodeValue();
-                            continue;
-                        }
-                        if (node.getNodeName().equals("Sleep")) {
-                            sleep = node.getNodeValue();
-                            continue;
-                        }
-                        if (loadSettings != null && node.getNodeName().equals("GetRequest")) {
-                            if (loadSettings.getStart() != new java.util.Date(0)
-                                    && loadSettings.getEnd() != new java.util.Date(0)) {
-                                for (int pos3 = 0; pos3 != node.getChildNodes().getLength(); ++pos3) {
-                                    Node n1 = node.getChildNodes().item(pos3);
-                                    if (n1.getNodeName().equals("GetRequestNormal")) {
-                                        for (int pos4 = 0; pos4 != n1.getChildNodes().getLength(); ++pos4) {
-                                            Node n2 = n1.getChildNodes().item(pos4);
-                                            if (n2.getNodeName().equals("AccessSelection")) {
-                                                for (int pos5 = 0; pos5 != n2.getChildNodes().getLength(); ++pos5) {
-                                                    Node n3 = n2.getChildNodes().item(pos5);
-                                                    if (n3.getNodeName().equals("AccessSelector")) {
-                                                        if (!n3.getAttributes().getNamedItem("Value").getNodeValue()
-                                                                .equals("1")) {
-                                                            break;
-                                                        }
-                                                    } else if (n3.getNodeName().equals("AccessParameters")) {
-                                                        for (int pos6 = 0; pos6 != n3.getChildNodes()
-                                                                .getLength(); ++pos6) {
-                                                            Node n4 = n3.getChildNodes().item(pos6);
-                                                            if (n4.getNodeName().equals("Structure")) {
-                                                                boolean start = true;
-                                                                for (int pos7 = 0; pos7 != n4.getChildNodes()
-                                                                        .getLength(); ++pos7) {
-                                                                    Node n5 = n4.getChildNodes().item(pos7);
-                                                                    if (n5.getNodeName().equals("OctetString")) {
-                                                                        GXByteBuffer bb = new GXByteBuffer();
-                                                                        if (start) {
-                                                                            GXCommon.setData(settings, bb,
-                                                                                    DataType.OCTET_STRING,
-                                                                                    loadSettings.getStart());
-                                                                            n5.getAttributes().getNamedItem("Value")
-                                                                                    .setNodeValue(bb.toHex(false, 2));
-                                                                            start = false;
-                                                                        } else {
-                                                                            GXCommon.setData(settings, bb,
-                                                                                    DataType.OCTET_STRING,
-                                                                                    loadSettings.getEnd());
-                                                                            n5.getAttributes().getNamedItem("Value")
-                                                                                    .setNodeValue(bb.toHex(false, 2));
-                                                                            break;
-                                                                        }
-                                                                    }
-                                                                }
+                    }
+                }
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * Converts XML commands to PDUs. Description, error and sleep elements
+     * are added to the following commands.
+     */
+    private final class GXPduLoader {
+        private final GXXmlLoadSettings loadSettings;
+        private String description, error, errorUrl, sleep;
+
+        GXPduLoader(final GXXmlLoadSettings s) {
+            loadSettings = s;
+        }
+
+        /**
+         * Load XML command.
+         * 
+         * @param node
+         *            XML node.
+         * @return Loaded XML object or null if node is not a command.
+         */
+        @SuppressWarnings({ "squid:S00112", "squid:S1066", "squid:S135" })
+        GXDLMSXmlPdu load(final Node node) {
+            if (node.getNodeName().equals("Description")) {
+                description = node.getNodeValue();
+                return null;
+            }
+            if (node.getNodeName().equals("Error")) {
+                error = node.getNodeValue();
+                return null;
+            }
+            if (node.getNodeName().equals("ErrorUrl")) {
+                errorUrl = node.getNodeValue();
+                return null;
+            }
+            if (node.getNodeName().equals("Sleep")) {
+                sleep = node.getNodeValue();
+                return null;
+            }
+            if (loadSettings != null && node.getNodeName().equals("GetRequest")) {
+                if (loadSettings.getStart() != new java.util.Date(0)
+                        && loadSettings.getEnd() != new java.util.Date(0)) {
+                    for (int pos3 = 0; pos3 != node.getChildNodes().getLength(); ++pos3) {
+                        Node n1 = node.getChildNodes().item(pos3);
+                        if (n1.getNodeName().equals("GetRequestNormal")) {
+                            for (int pos4 = 0; pos4 != n1.getChildNodes().getLength(); ++pos4) {
+                                Node n2 = n1.getChildNodes().item(pos4);
+                                if (n2.getNodeName().equals("AccessSelection")) {
+                                    for (int pos5 = 0; pos5 != n2.getChildNodes().getLength(); ++pos5) {
+                                        Node n3 = n2.getChildNodes().item(pos5);
+                                        if (n3.getNodeName().equals("AccessSelector")) {
+                                            if (!n3.getAttributes().getNamedItem("Value").getNodeValue().equals("1")) {
+                                                break;
+                                            }
+                                        } else if (n3.getNodeName().equals("AccessParameters")) {
+                                            for (int pos6 = 0; pos6 != n3.getChildNodes().getLength(); ++pos6) {
+                                                Node n4 = n3.getChildNodes().item(pos6);
+                                                if (n4.getNodeName().equals("Structure")) {
+                                                    boolean start = true;
+                                                    for (int pos7 = 0; pos7 != n4.getChildNodes().getLength(); ++pos7) {
+                                                        Node n5 = n4.getChildNodes().item(pos7);
+                                                        if (n5.getNodeName().equals("OctetString")) {
+                                                            GXByteBuffer bb = new GXByteBuffer();
+                                                            if (start) {
+                                                                GXCommon.setData(settings, bb, DataType.OCTET_STRING,
+                                                                        loadSettings.getStart());
+                                                                n5.getAttributes().getNamedItem("Value")
+                                                                        .setNodeValue(bb.toHex(false, 2));
+                                                                start = false;
+                                                            } else {
+                                                                GXCommon.setData(settings, bb, DataType.OCTET_STRING,
+                                                                        loadSettings.getEnd());
+                                                                n5.getAttributes().getNamedItem("Value")
+                                                                        .setNodeValue(bb.toHex(false, 2));
+                                                                break;
                                                             }
-                                                            break;
                                                         }
-                                                        break;
                                                     }
                                                 }
                                                 break;
                                             }
+                                            break;
                                         }
-                                        break;
                                     }
+                                    break;
                                 }
                             }
+                            break;
                         }
+                    }
+                }
+            }
 
-                        GXDLMSXmlSettings s = new GXDLMSXmlSettings(translator.getOutputType(), translator.isHex(),
-                                translator.getShowStringAsHex(), translator.tagsByName);
-                        s.getSettings().setClientAddress(settings.getClientAddress());
-                        s.getSettings().setServerAddress(settings.getServerAddress());
-                        byte[] reply;
-                        try {
-                            reply = translator.xmlToPdu(GXDLMSXmlPdu.getOuterXml(node), s);
-                        } catch (Exception ex) {
-                            throw new RuntimeException(ex.getMessage());
-                        }
-                        if ((s.getCommand() == Command.SNRM && !s.getSettings().isServer())
-                                || (s.getCommand() == Command.UA && s.getSettings().isServer())) {
-                            settings.getHdlcSettings().setMaxInfoTX(s.getSettings().getHdlcSettings().getMaxInfoTX());
-                            settings.getHdlcSettings().setMaxInfoRX(s.getSettings().getHdlcSettings().getMaxInfoRX());
-                            settings.getHdlcSettings()
-                                    .setWindowSizeRX(s.getSettings().getHdlcSettings().getWindowSizeRX());
-                            settings.getHdlcSettings()
-                                    .setWindowSizeTX(s.getSettings().getHdlcSettings().getWindowSizeTX());
-                        }
-                        if (s.isTemplate()) {
-                            reply = null;
-                        }
-                        GXDLMSXmlPdu p = new GXDLMSXmlPdu(s.getCommand(), node, reply);
-                        if (description != null && !description.equals("")) {
-                            p.setDescription(description);
-                        }
-                        if (error != null && !error.equals("")) {
-                            p.setError(error);
-                        }
-                        if (errorUrl != null && !errorUrl.equals("")) {
-                            p.setErrorUrl(errorUrl);
-                        }
-                        if (sleep != null && !sleep.equals("")) {
-                            p.setSleep(Integer.parseInt(sleep));
+            GXDLMSXmlSettings s = new GXDLMSXmlSettings(translator.getOutputType(), translator.isHex(),
+                    translator.getShowStringAsHex(), translator.tags.getTagsByName());
+            s.getSettings().setClientAddress(settings.getClientAddress());
+            s.getSettings().setServerAddress(settings.getServerAddress());
+            byte[] reply;
+            try {
+                reply = translator.xmlToPdu(node, s);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex.getMessage());
+            }
+            if ((s.getCommand() == Command.SNRM && !s.getSettings().isServer())
+                    || (s.getCommand() == Command.UA && s.getSettings().isServer())) {
+                settings.getHdlcSettings().setMaxInfoTX(s.getSettings().getHdlcSettings().getMaxInfoTX());
+                settings.getHdlcSettings().setMaxInfoRX(s.getSettings().getHdlcSettings().getMaxInfoRX());
+                settings.getHdlcSettings().setWindowSizeRX(s.getSettings().getHdlcSettings().getWindowSizeRX());
+                settings.getHdlcSettings().setWindowSizeTX(s.getSettings().getHdlcSettings().getWindowSizeTX());
+            }
+            if (s.isTemplate()) {
+                reply = null;
+            }
+            GXDLMSXmlPdu p = new GXDLMSXmlPdu(s.getCommand(), node, reply);
+            if (description != null && !description.equals("")) {
+                p.setDescription(description);
+            }
+            if (error != null && !error.equals("")) {
+                p.setError(error);
+            }
+            if (errorUrl != null && !errorUrl.equals("")) {
+                p.setErrorUrl(errorUrl);
+            }
+            if (sleep != null && !sleep.equals("")) {
+                p.setSleep(Integer.parseInt(sleep));
+            }
+            return p;
+        }
+    }
+
+    /**
+     * Reads XML commands from the stream with the pull parser. Only the
+     * command that is read is converted to the DOM node.
+     */
+    private final class GXPduIterator implements IGXDLMSXmlPduIterator {
+        private final InputStream stream;
+        private final boolean close;
+        private final XMLStreamReader reader;
+        private final GXPduLoader loader;
+        private final Document doc;
+        /**
+         * Name of the root element.
+         */
+        private String root;
+        /**
+         * Next command or null if it's not read yet.
+         */
+        private GXDLMSXmlPdu next;
+        private boolean end;
+
+        GXPduIterator(final InputStream input, final boolean closeStream, final GXXmlLoadSettings s)
+                throws XMLStreamException {
+            stream = input;
+            close = closeStream;
+            loader = new GXPduLoader(s);
+            doc = GXDLMSXmlParser.newDocument();
+            // Reader is created last, so it's not left open if the
+            // constructor fails.
+            reader = GXDLMSXmlParser.createReader(input);
+        }
+
+        @Override
+        @SuppressWarnings("squid:S00112")
+        public boolean hasNext() {
+            try {
+                while (next == null && !end) {
+                    int type = reader.next();
+                    if (type == XMLStreamConstants.START_ELEMENT) {
+                        if (root == null) {
+                            root = reader.getLocalName();
+                        } else {
+                            // Command is added under the root like in the
+                            // document.
+                            Element parent = doc.createElement(root);
+                            Element node = GXDLMSXmlParser.readElement(reader, doc);
+                            parent.appendChild(node);
+                            next = loader.load(node);
                         }
-                        actions.add(p);
+                    } else if (type == XMLStreamConstants.END_DOCUMENT) {
+                        close();
                     }
                 }
+            } catch (XMLStreamException e) {
+                close();
+                throw new RuntimeException(e.getMessage());
+            } catch (RuntimeException e) {
+                close();
+                throw e;
+            }
+            return next != null;
+        }
+
+        @Override
+        public GXDLMSXmlPdu next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            GXDLMSXmlPdu p = next;
+            next = null;
+            return p;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
+        }
+
+        @Override
+        public void close() {
+            if (end) {
+                return;
+            }
+            end = true;
+            try {
+                reader.close();
+                if (close) {
+                    stream.close();
+                }
+            } catch (Exception e) {
+                Logger.getLogger(GXDLMSXmlClient.class.getName()).log(Level.SEVERE, e.getMessage());
             }
         }
-        return actions;
     }
 
     /**
@@ -0,0 +1,257 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * XML parsers that are shared by the translator and XML client.
+ * <p>
+ * Creating a parser factory looks up the implementation from the class path
+ * and it is slow. Parsers are created once for each thread and reset after
+ * use.
+ * </p>
+ */
+final class GXDLMSXmlParser {
+    private static final ThreadLocal<DocumentBuilder> BUILDERS = new ThreadLocal<DocumentBuilder>() {
+        @Override
+        @SuppressWarnings("squid:S00112")
+        protected DocumentBuilder initialValue() {
+            DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
+            try {
+                docBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+                return docBuilderFactory.newDocumentBuilder();
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+    };
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORIES = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            XMLInputFactory xif = XMLInputFactory.newFactory();
+            xif.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            xif.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            // Element names are handled as in the DOM parser. Name space
+            // prefix is part of the name.
+            xif.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+            return xif;
+        }
+    };
+
+    private static final ThreadLocal<Transformer> TRANSFORMERS = new ThreadLocal<Transformer>() {
+        @Override
+        @SuppressWarnings({ "squid:S00112", "squid:S4435" })
+        protected Transformer initialValue() {
+            try {
+                Transformer transformer = TransformerFactory.newInstance().newTransformer();
+                transformer.setOutputProperty("omit-xml-declaration", "yes");
+                return transformer;
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+    };
+
+    /**
+     * Constructor.
+     */
+    private GXDLMSXmlParser() {
+
+    }
+
+    /**
+     * Parse XML document.
+     * 
+     * @param source
+     *            XML source.
+     * @return Parsed document.
+     */
+    @SuppressWarnings("squid:S00112")
+    static Document parse(final InputSource source) {
+        DocumentBuilder docBuilder = BUILDERS.get();
+        try {
+            return docBuilder.parse(source);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        } finally {
+            docBuilder.reset();
+        }
+    }
+
+    /**
+     * Parse XML document from the file.
+     * 
+     * @param file
+     *            XML file.
+     * @return Parsed document.
+     */
+    @SuppressWarnings("squid:S00112")
+    static Document parse(final java.io.File file) {
+        DocumentBuilder docBuilder = BUILDERS.get();
+        try {
+            return docBuilder.parse(file);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        } finally {
+            docBuilder.reset();
+        }
+    }
+
+    /**
+     * @return New empty document where nodes are created.
+     */
+    static Document newDocument() {
+        return BUILDERS.get().newDocument();
+    }
+
+    /**
+     * Create pull parser for the stream.
+     * 
+     * @param stream
+     *            XML stream.
+     * @return XML stream reader.
+     * @throws XMLStreamException
+     *             Invalid XML.
+     */
+    static XMLStreamReader createReader(final InputStream stream) throws XMLStreamException {
+        return INPUT_FACTORIES.get().createXMLStreamReader(stream);
+    }
+
+    /**
+     * Convert node to XML string.
+     * 
+     * @param node
+     *            XML node.
+     * @return Node as XML string.
+     * @throws TransformerException
+     *             Transformer exception.
+     */
+    static String getOuterXml(final Node node) throws TransformerException {
+        StringWriter writer = new StringWriter();
+        TRANSFORMERS.get().transform(new DOMSource(node), new StreamResult(writer));
+        return writer.toString();
+    }
+
+    /**
+     * Read element and its child nodes from the pull parser. Reader must be
+     * in the start of the element and it's left to the end of the element.
+     * Comments are ignored.
+     * 
+     * @param reader
+     *            XML stream reader.
+     * @param doc
+     *            Document where nodes are created.
+     * @return Read element.
+     * @throws XMLStreamException
+     *             Invalid XML.
+     */
+    static Element readElement(final XMLStreamReader reader, final Document doc) throws XMLStreamException {
+        Element root = createElement(reader, doc);
+        Node parent = root;
+        while (parent != null) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                Element e = createElement(reader, doc);
+                parent.appendChild(e);
+                parent = e;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                parent = parent == root ? null : parent.getParentNode();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                // Parser might split text to several events.
+                Node last = parent.getLastChild();
+                if (last != null && last.getNodeType() == Node.TEXT_NODE) {
+                    last.setNodeValue(last.getNodeValue() + reader.getText());
+                } else {
+                    parent.appendChild(doc.createTextNode(reader.getText()));
+                }
+                break;
+            case XMLStreamConstants.CDATA:
+                parent.appendChild(doc.createCDATASection(reader.getText()));
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                parent.appendChild(doc.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+                break;
+            default:
+                break;
+            }
+        }
+        return root;
+    }
+
+    private static Element createElement(final XMLStreamReader reader, final Document doc) {
+        Element e = doc.createElement(getName(reader.getPrefix(), reader.getLocalName()));
+        for (int pos = 0; pos != reader.getNamespaceCount(); ++pos) {
+            String prefix = reader.getNamespacePrefix(pos);
+            e.setAttribute(prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix,
+                    reader.getNamespaceURI(pos));
+        }
+        for (int pos = 0; pos != reader.getAttributeCount(); ++pos) {
+            e.setAttribute(getName(reader.getAttributePrefix(pos), reader.getAttributeLocalName(pos)),
+                    reader.getAttributeValue(pos));
+        }
+        return e;
+    }
+
+    private static String getName(final String prefix, final String localName) {
+        if (prefix == null || prefix.isEmpty()) {
+            return localName;
+        }
+        return prefix + ":" + localName;
+    }
+}
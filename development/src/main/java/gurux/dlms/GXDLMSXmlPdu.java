@@ -34,16 +34,8 @@
 package gurux.dlms;
 
 import java.io.StringReader;
-import java.io.StringWriter;
 
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -176,15 +168,8 @@ public class GXDLMSXmlPdu {
         privateSleep = value;
     }
 
-    @SuppressWarnings("squid:S4435")
     static String getOuterXml(Node node) throws TransformerException {
-        Transformer transformer =
-                TransformerFactory.newInstance().newTransformer();
-        transformer.setOutputProperty("omit-xml-declaration", "yes");
-
-        StringWriter writer = new StringWriter();
-        transformer.transform(new DOMSource(node), new StreamResult(writer));
-        return writer.toString();
+        return GXDLMSXmlParser.getOuterXml(node);
     }
 
     /**
@@ -280,23 +265,12 @@ public class GXDLMSXmlPdu {
      *            XML string to compare.
      * @return True, if content is same.
      */
-    @SuppressWarnings("squid:S00112")
     public final java.util.ArrayList<String> compare(String xml) {
         java.util.ArrayList<String> list = new java.util.ArrayList<String>();
         // XmlDocument doc2 = new XmlDocument();
         // doc2.LoadXml(xml);
-        DocumentBuilder docBuilder;
-        Document doc;
-        DocumentBuilderFactory docBuilderFactory =
-                DocumentBuilderFactory.newInstance();
-        try {
-            docBuilderFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING,
-                    true);
-            docBuilder = docBuilderFactory.newDocumentBuilder();
-            doc = docBuilder.parse(new InputSource(new StringReader(xml)));
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage());
-        }
+        Document doc =
+                GXDLMSXmlParser.parse(new InputSource(new StringReader(xml)));
         compare(getXmlNode(), doc.getDocumentElement(), list);
         return list;
     }
@@ -34,7 +34,7 @@
 
 package gurux.dlms;
 
-import java.util.HashMap;
+import java.util.Map;
 
 import gurux.dlms.enums.AssociationResult;
 import gurux.dlms.enums.InterfaceType;
@@ -58,7 +58,7 @@ class GXDLMSXmlSettings {
     private GXByteBuffer attributeDescriptor = new GXByteBuffer();
     private GXByteBuffer data = new GXByteBuffer();
     private final GXDLMSSettings settings;
-    private HashMap<String, Integer> tags = new HashMap<String, Integer>();
+    private Map<String, Integer> tags;
     private GXDateTime time = null;
 
     /**
@@ -79,7 +79,7 @@ class GXDLMSXmlSettings {
      * @param list
      */
     GXDLMSXmlSettings(final TranslatorOutputType type, final boolean numericsAsHex, final boolean hex,
-            final HashMap<String, Integer> list) {
+            final Map<String, Integer> list) {
         settings = new GXDLMSSettings(true, null, null, null);
         outputType = type;
         showNumericsAsHex = outputType != TranslatorOutputType.STANDARD_XML && numericsAsHex;
@@ -201,9 +201,9 @@ class GXDLMSXmlSettings {
     }
 
     /**
-     * @return the tags
+     * @return Read-only tags by name.
      */
-    public final HashMap<String, Integer> getTags() {
+    public final Map<String, Integer> getTags() {
         return tags;
     }
 
@@ -36,8 +36,22 @@ package gurux.dlms;
 
 /**
  * Reserved for internal use.
+ * <p>
+ * Checksums are counted with slicing-by-8 tables. Eight bytes are handled with
+ * one round of table lookups. Update methods can be used to count the checksum
+ * while a frame is assembled or received.
+ * </p>
  */
 class GXFCS16 {
+    /**
+     * Initial value of the FCS16 state.
+     */
+    static final int FCS16_INIT = 0xFFFF;
+
+    /**
+     * Initial value of the FCS24 state.
+     */
+    static final int FCS24_INIT = 0;
 
     /**
      * Constructor.
@@ -46,7 +60,7 @@ class GXFCS16 {
 
     }
 
-    private static int[] fcs16Table = { 0x0000, 0x1189, 0x2312, 0x329B, 0x4624,
+    private static final int[] fcs16Table = { 0x0000, 0x1189, 0x2312, 0x329B, 0x4624,
             0x57AD, 0x6536, 0x74BF, 0x8C48, 0x9DC1, 0xAF5A, 0xBED3, 0xCA6C,
             0xDBE5, 0xE97E, 0xF8F7, 0x1081, 0x0108, 0x3393, 0x221A, 0x56A5,
             0x472C, 0x75B7, 0x643E, 0x9CC9, 0x8D40, 0xBFDB, 0xAE52, 0xDAED,
@@ -82,48 +96,205 @@ class GXFCS16 {
 
     };
 
+    /**
+     * FCS16 slicing tables. Table k updates the checksum with a byte that is
+     * followed by k bytes.
+     */
+    private static final int[][] FCS16_TABLES = new int[8][];
+
+    /**
+     * Polynomial of FCS24.
+     */
+    private static final long CRCPOLY = 3551967744L;
+
+    /**
+     * FCS24 state tables. Table j moves byte j of the state over one input
+     * byte.
+     */
+    private static final int[][] FCS24_STATE = new int[4][256];
+
+    /**
+     * FCS24 state tables for eight input bytes.
+     */
+    private static final int[][] FCS24_STATE8 = new int[4][256];
+
+    /**
+     * FCS24 input tables. Table k handles input byte that is followed by k
+     * bytes.
+     */
+    private static final int[][] FCS24_TABLES = new int[8][256];
+
+    static {
+        FCS16_TABLES[0] = fcs16Table;
+        for (int k = 1; k != 8; ++k) {
+            FCS16_TABLES[k] = new int[256];
+            for (int i = 0; i != 256; ++i) {
+                int v = FCS16_TABLES[k - 1][i];
+                FCS16_TABLES[k][i] = (v >> 8) ^ fcs16Table[v & 0xFF];
+            }
+        }
+        // FCS24 is linear, so tables are generated from the bitwise
+        // definition.
+        for (int i = 0; i != 256; ++i) {
+            FCS24_TABLES[0][i] = fcs24Bitwise(0, i);
+            for (int j = 0; j != 4; ++j) {
+                FCS24_STATE[j][i] = fcs24Bitwise(i << (8 * j), 0);
+            }
+        }
+        for (int k = 1; k != 8; ++k) {
+            for (int i = 0; i != 256; ++i) {
+                FCS24_TABLES[k][i] = fcs24Shift(FCS24_TABLES[k - 1][i]);
+            }
+        }
+        for (int j = 0; j != 4; ++j) {
+            for (int i = 0; i != 256; ++i) {
+                int v = i << (8 * j);
+                for (int k = 0; k != 8; ++k) {
+                    v = fcs24Shift(v);
+                }
+                FCS24_STATE8[j][i] = v;
+            }
+        }
+    }
+
     /*
      * Reserved for internal use.
      */
-    static final int countFCS16(final byte[] buff, final int offset,
-            final int count) {
-        int fcs16 = 0xFFFF;
-        for (int pos = offset; pos < offset + count; ++pos) {
-            fcs16 = (((fcs16 >> 8)
-                    ^ fcs16Table[(fcs16 ^ (int) buff[pos]) & 0xFF]) & 0xFFFF);
+    static final int countFCS16(final byte[] buff, final int offset, final int count) {
+        return finishFCS16(updateFCS16(FCS16_INIT, buff, offset, count));
+    }
+
+    /**
+     * Update FCS16 state with the given bytes.
+     * 
+     * @param fcs16
+     *            Current state. Use FCS16_INIT to start.
+     * @param buff
+     *            Data.
+     * @param offset
+     *            Data offset.
+     * @param count
+     *            Byte count.
+     * @return Updated state.
+     */
+    static int updateFCS16(final int fcs16, final byte[] buff, final int offset, final int count) {
+        int crc = fcs16;
+        int pos = offset;
+        int end = offset + count;
+        final int[] t0 = FCS16_TABLES[0], t1 = FCS16_TABLES[1], t2 = FCS16_TABLES[2], t3 = FCS16_TABLES[3],
+                t4 = FCS16_TABLES[4], t5 = FCS16_TABLES[5], t6 = FCS16_TABLES[6], t7 = FCS16_TABLES[7];
+        while (end - pos >= 8) {
+            crc = t7[(crc ^ buff[pos]) & 0xFF] ^ t6[((crc >> 8) ^ buff[pos + 1]) & 0xFF]
+                    ^ t5[buff[pos + 2] & 0xFF] ^ t4[buff[pos + 3] & 0xFF] ^ t3[buff[pos + 4] & 0xFF]
+                    ^ t2[buff[pos + 5] & 0xFF] ^ t1[buff[pos + 6] & 0xFF] ^ t0[buff[pos + 7] & 0xFF];
+            pos += 8;
+        }
+        while (pos < end) {
+            crc = (crc >> 8) ^ t0[(crc ^ buff[pos]) & 0xFF];
+            ++pos;
         }
-        fcs16 = ~fcs16;
-        fcs16 = ((fcs16 >> 8) & 0xFF) | (fcs16 << 8);
-        return (fcs16 & 0xFFFF);
+        return crc;
+    }
+
+    /**
+     * Returns FCS16 checksum from the state.
+     * 
+     * @param fcs16
+     *            FCS16 state.
+     * @return Checksum as it's sent.
+     */
+    static int finishFCS16(final int fcs16) {
+        int value = ~fcs16;
+        value = ((value >> 8) & 0xFF) | (value << 8);
+        return value & 0xFFFF;
     }
 
     /**
      * Reserved for internal use.
      * 
      * @param buff
+     *            Data.
      * @param index
+     *            Data index.
      * @param count
-     * @return
+     *            Byte count.
+     * @return FCS24 checksum.
      */
-    private static final long CRCPOLY = 3551967744L;
+    public static int countFCS24(final byte[] buff, final int index, final int count) {
+        return finishFCS24(updateFCS24(FCS24_INIT, buff, index, count));
+    }
 
-    public static int countFCS24(final byte[] buff, final int index,
-            final int count) {
-        byte i, j;
-        long crcreg = 0;
-        for (j = 0; j < count; ++j) {
-            int b = (buff[index + j] & 0xFF);
-            for (i = 0; i < 8; ++i) {
-                crcreg >>>= 1;
-                if ((b & 0x80) != 0) {
-                    crcreg |= 2147483648L;
-                }
-                if ((crcreg & 0x80) != 0) {
-                    crcreg = crcreg ^ CRCPOLY;
-                }
-                b <<= 1;
+    /**
+     * Update FCS24 state with the given bytes.
+     * 
+     * @param fcs24
+     *            Current state. Use FCS24_INIT to start.
+     * @param buff
+     *            Data.
+     * @param offset
+     *            Data offset.
+     * @param count
+     *            Byte count.
+     * @return Updated state.
+     */
+    static int updateFCS24(final int fcs24, final byte[] buff, final int offset, final int count) {
+        int crc = fcs24;
+        int pos = offset;
+        int end = offset + count;
+        final int[] s1 = FCS24_STATE8[1], s2 = FCS24_STATE8[2], s3 = FCS24_STATE8[3];
+        final int[] t0 = FCS24_TABLES[0], t1 = FCS24_TABLES[1], t2 = FCS24_TABLES[2], t3 = FCS24_TABLES[3],
+                t4 = FCS24_TABLES[4], t5 = FCS24_TABLES[5], t6 = FCS24_TABLES[6], t7 = FCS24_TABLES[7];
+        while (end - pos >= 8) {
+            // Low byte of the state is shifted out without affecting the
+            // checksum.
+            crc = s1[(crc >>> 8) & 0xFF] ^ s2[(crc >>> 16) & 0xFF] ^ s3[crc >>> 24] ^ t7[buff[pos] & 0xFF]
+                    ^ t6[buff[pos + 1] & 0xFF] ^ t5[buff[pos + 2] & 0xFF] ^ t4[buff[pos + 3] & 0xFF]
+                    ^ t3[buff[pos + 4] & 0xFF] ^ t2[buff[pos + 5] & 0xFF] ^ t1[buff[pos + 6] & 0xFF]
+                    ^ t0[buff[pos + 7] & 0xFF];
+            pos += 8;
+        }
+        while (pos < end) {
+            crc = fcs24Shift(crc) ^ t0[buff[pos] & 0xFF];
+            ++pos;
+        }
+        return crc;
+    }
+
+    /**
+     * Returns FCS24 checksum from the state.
+     * 
+     * @param fcs24
+     *            FCS24 state.
+     * @return Checksum.
+     */
+    static int finishFCS24(final int fcs24) {
+        return fcs24 >>> 8;
+    }
+
+    /**
+     * Move FCS24 state over one zero byte.
+     */
+    private static int fcs24Shift(final int crc) {
+        return FCS24_STATE[1][(crc >>> 8) & 0xFF] ^ FCS24_STATE[2][(crc >>> 16) & 0xFF]
+                ^ FCS24_STATE[3][crc >>> 24] ^ FCS24_STATE[0][crc & 0xFF];
+    }
+
+    /**
+     * Update FCS24 state bit by bit. This is used to generate the tables.
+     */
+    private static int fcs24Bitwise(final int crc, final int value) {
+        long crcreg = crc & 0xFFFFFFFFL;
+        int b = value;
+        for (int i = 0; i != 8; ++i) {
+            crcreg >>>= 1;
+            if ((b & 0x80) != 0) {
+                crcreg |= 2147483648L;
+            }
+            if ((crcreg & 0x80) != 0) {
+                crcreg = crcreg ^ CRCPOLY;
             }
+            b <<= 1;
         }
-        return (int) (crcreg >>> 8);
+        return (int) crcreg;
     }
 }
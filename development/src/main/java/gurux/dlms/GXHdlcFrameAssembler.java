@@ -0,0 +1,348 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+/**
+ * Incremental HDLC frame assembler.
+ * <p>
+ * Received bytes are handled only once. Header, length and checksum state is
+ * kept between the calls, so a frame can arrive in any number of pieces. Header
+ * and frame checksums are counted while the bytes arrive. When a frame is
+ * complete, it can be parsed with {@link GXDLMSClient#getData(GXByteBuffer,
+ * GXReplyData, GXReplyData)}.
+ * </p>
+ * 
+ * <pre>
+ * int pos = 0;
+ * do {
+ *     pos += assembler.append(data, pos, count - pos);
+ *     if (assembler.isComplete()) {
+ *         client.getData(assembler.getFrame(), reply, notify);
+ *     }
+ * } while (pos != count || assembler.isComplete());
+ * </pre>
+ * <p>
+ * Frames with invalid checksum are dropped and counted. Bytes of the dropped
+ * frame are searched again for the next frame, so a corrupted length doesn't
+ * lose the following frame. Assembler is not thread safe.
+ * </p>
+ */
+public final class GXHdlcFrameAssembler {
+    /**
+     * Waiting the opening flag.
+     */
+    private static final int HUNT = 0;
+    /**
+     * Waiting the frame format field.
+     */
+    private static final int FORMAT = 1;
+    /**
+     * Waiting the low byte of the frame length.
+     */
+    private static final int LENGTH = 2;
+    /**
+     * Receiving addresses, control field and header checksum.
+     */
+    private static final int HEADER = 3;
+    /**
+     * Receiving information field and frame checksum.
+     */
+    private static final int INFO = 4;
+    /**
+     * Waiting the closing flag.
+     */
+    private static final int END = 5;
+
+    /**
+     * Maximum size of one HDLC address.
+     */
+    private static final int MAX_ADDRESS_SIZE = 4;
+
+    /**
+     * Minimum frame length. Format, two addresses, control and header
+     * checksum.
+     */
+    private static final int MIN_FRAME_LENGTH = 7;
+
+    private final GXByteBuffer frame = new GXByteBuffer();
+    /**
+     * Bytes of the dropped frame that are searched again.
+     */
+    private GXByteBuffer pending = new GXByteBuffer();
+    private GXByteBuffer spare = new GXByteBuffer();
+    private int state = HUNT;
+    /**
+     * Value of the frame length field.
+     */
+    private int frameLength;
+    /**
+     * Amount of the received bytes after the opening flag.
+     */
+    private int received;
+    /**
+     * Header part. 0 destination, 1 source address, 2 control field, 3 and 4
+     * header checksum.
+     */
+    private int headerPart;
+    private int addressSize;
+    private int checksum;
+    private int fcs;
+    private boolean complete;
+    private boolean dropped;
+    private long errors;
+
+    /**
+     * @return Is frame complete.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Returns the complete frame with the flags. Frame is valid until the
+     * next call of append.
+     * 
+     * @return Complete frame.
+     */
+    public GXByteBuffer getFrame() {
+        if (!complete) {
+            throw new IllegalStateException("Frame is not complete.");
+        }
+        return frame;
+    }
+
+    /**
+     * @return Amount of the dropped frames.
+     */
+    public long getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * Drop partially received frame.
+     */
+    public void reset() {
+        state = HUNT;
+        complete = false;
+        frame.clear();
+        pending.clear();
+    }
+
+    /**
+     * Append received bytes. Bytes are handled until the frame is complete.
+     * 
+     * @param data
+     *            Received bytes.
+     * @param offset
+     *            Offset of the first byte.
+     * @param count
+     *            Amount of the bytes.
+     * @return Amount of the handled bytes.
+     */
+    public int append(final byte[] data, final int offset, final int count) {
+        if (complete) {
+            complete = false;
+            frame.clear();
+        }
+        int pos = offset;
+        while (!complete) {
+            if (pending.available() != 0) {
+                pending.position(pending.position() + process(pending.getData(), pending.position(),
+                        pending.available()));
+            } else if (pos != offset + count) {
+                pos += process(data, pos, offset + count - pos);
+            } else {
+                break;
+            }
+            if (dropped) {
+                // Bytes after the opening flag are searched again before
+                // the rest of the data.
+                spare.clear();
+                spare.set(frame.getData(), 1, frame.size() - 1);
+                spare.set(pending.getData(), pending.position(), pending.available());
+                GXByteBuffer tmp = pending;
+                pending = spare;
+                spare = tmp;
+                frame.clear();
+                state = HUNT;
+            }
+        }
+        return pos - offset;
+    }
+
+    private int process(final byte[] data, final int offset, final int count) {
+        dropped = false;
+        final int end = offset + count;
+        int pos = offset;
+        while (pos != end && !complete && !dropped) {
+            switch (state) {
+            case HUNT:
+                while (pos != end && data[pos] != GXDLMS.HDLC_FRAME_START_END) {
+                    ++pos;
+                }
+                if (pos != end) {
+                    ++pos;
+                    state = FORMAT;
+                }
+                break;
+            case FORMAT:
+                int format = data[pos] & 0xFF;
+                if ((format & 0xF0) == 0xA0) {
+                    frame.clear();
+                    frame.setUInt8(GXDLMS.HDLC_FRAME_START_END);
+                    frame.setUInt8(format);
+                    frameLength = (format & 0x7) << 8;
+                    fcs = GXFCS16.updateFCS16(GXFCS16.FCS16_INIT, data, pos, 1);
+                    state = LENGTH;
+                } else if (format != GXDLMS.HDLC_FRAME_START_END) {
+                    state = HUNT;
+                }
+                ++pos;
+                break;
+            case LENGTH:
+                frameLength |= data[pos] & 0xFF;
+                frame.setUInt8(data[pos]);
+                if (frameLength < MIN_FRAME_LENGTH) {
+                    drop();
+                } else {
+                    fcs = GXFCS16.updateFCS16(fcs, data, pos, 1);
+                    received = 2;
+                    headerPart = 0;
+                    addressSize = 0;
+                    state = HEADER;
+                }
+                ++pos;
+                break;
+            case HEADER:
+                header(data[pos]);
+                ++pos;
+                break;
+            case INFO:
+                int remaining = frameLength - 2 - received;
+                if (remaining > 0) {
+                    int cnt = Math.min(remaining, end - pos);
+                    frame.set(data, pos, cnt);
+                    fcs = GXFCS16.updateFCS16(fcs, data, pos, cnt);
+                    received += cnt;
+                    pos += cnt;
+                } else {
+                    frame.setUInt8(data[pos]);
+                    ++received;
+                    if (received == frameLength - 1) {
+                        checksum = (data[pos] & 0xFF) << 8;
+                    } else if (GXFCS16.finishFCS16(fcs) == (checksum | (data[pos] & 0xFF))) {
+                        state = END;
+                    } else {
+                        drop();
+                    }
+                    ++pos;
+                }
+                break;
+            case END:
+                if (data[pos] == GXDLMS.HDLC_FRAME_START_END) {
+                    frame.setUInt8(data[pos]);
+                    complete = true;
+                    // Closing flag can be the opening flag of the next frame.
+                    state = FORMAT;
+                } else {
+                    frame.setUInt8(data[pos]);
+                    drop();
+                }
+                ++pos;
+                break;
+            default:
+                throw new IllegalStateException();
+            }
+        }
+        return pos - offset;
+    }
+
+    /**
+     * Append received bytes from the position of the buffer. Bytes are
+     * handled until the frame is complete.
+     * 
+     * @param data
+     *            Received bytes. Position is moved over the handled bytes.
+     * @return Is frame complete.
+     */
+    public boolean append(final GXByteBuffer data) {
+        data.position(data.position() + append(data.getData(), data.position(), data.available()));
+        return complete;
+    }
+
+    private void header(final byte value) {
+        frame.setUInt8(value);
+        ++received;
+        if (headerPart < 3) {
+            fcs = GXFCS16.updateFCS16(fcs, frame.getData(), frame.size() - 1, 1);
+            if (headerPart == 2) {
+                // Control field.
+                headerPart = 3;
+            } else if ((value & 1) != 0) {
+                // Last byte of the address.
+                ++headerPart;
+                addressSize = 0;
+            } else if (++addressSize == MAX_ADDRESS_SIZE) {
+                drop();
+                return;
+            }
+            if (received > frameLength - 2) {
+                drop();
+            }
+        } else if (headerPart == 3) {
+            checksum = (value & 0xFF) << 8;
+            headerPart = 4;
+        } else if (GXFCS16.finishFCS16(fcs) != (checksum | (value & 0xFF))) {
+            drop();
+        } else if (received == frameLength) {
+            // Frame without information field.
+            state = END;
+        } else if (received > frameLength - 2) {
+            drop();
+        } else {
+            // Frame checksum counts also the header checksum.
+            fcs = GXFCS16.updateFCS16(fcs, frame.getData(), frame.size() - 2, 2);
+            state = INFO;
+        }
+    }
+
+    /**
+     * Drop invalid frame.
+     */
+    private void drop() {
+        ++errors;
+        dropped = true;
+    }
+}
@@ -41,6 +41,7 @@ import gurux.dlms.enums.Security;
 import gurux.dlms.enums.Signing;
 import gurux.dlms.objects.enums.SecurityPolicy;
 import gurux.dlms.objects.enums.SecuritySuite;
+import gurux.dlms.secure.IGXKeyResolver;
 
 public interface GXICipher {
 
@@ -147,6 +148,25 @@ public interface GXICipher {
      */
     void setInvocationCounter(long value);
 
+    /**
+     * Reserve invocation counter for the next ciphered APDU. Counter is
+     * increased atomically, so the same counter is not used twice when the
+     * APDUs are ciphered from several threads.
+     * <p>
+     * Default implementation synchronizes on the cipher. Implementations that
+     * change the invocation counter without that lock must override this.
+     * </p>
+     * 
+     * @return Reserved invocation counter.
+     */
+    default long nextInvocationCounter() {
+        synchronized (this) {
+            long value = getInvocationCounter();
+            setInvocationCounter(value + 1);
+            return value;
+        }
+    }
+
     /**
      * @return Invocation counter.
      */
@@ -229,4 +249,12 @@ public interface GXICipher {
      */
     void setSigning(Signing value);
 
+    /**
+     * @return Resolver that finds the keys of the sender by the system title.
+     *         Null if keys of the settings are used.
+     */
+    default IGXKeyResolver getKeyResolver() {
+        return null;
+    }
+
 }
@@ -0,0 +1,326 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import gurux.dlms.enums.Command;
+import gurux.dlms.enums.InterfaceType;
+import gurux.dlms.secure.AesGcmParameter;
+import gurux.dlms.secure.GXCiphering;
+
+/**
+ * Decrypts received ciphered APDUs in parallel.
+ * <p>
+ * When several complete wrapper frames are already in the receive buffer and
+ * each of them is a ciphered APDU, they are decrypted with the executor before
+ * the first one is parsed. Plain texts are taken in the same order as the
+ * frames are parsed, so GBT and data block handling is not changed. If the
+ * parsed APDU is not the one that was decrypted or decryption failed, pending
+ * results are dropped and the APDU is decrypted again in the caller's thread.
+ * This means that errors are always reported in the same way as without
+ * parallel decryption.
+ * </p>
+ * <p>
+ * Only client side wrapper frames are handled. Decryption is not done in
+ * parallel if invocation counter is checked or crypto notifier is used,
+ * because they must be called in order in the caller's thread.
+ * </p>
+ */
+final class GXParallelDecryptor {
+    /**
+     * Maximum amount of decrypted APDUs that are waiting.
+     */
+    private static final int MAX_PENDING = 64;
+
+    /**
+     * Receive buffer is scanned again when there are less pending APDUs.
+     */
+    private static final int LOW_WATER_MARK = MAX_PENDING / 2;
+
+    /**
+     * Wrapper header size.
+     */
+    private static final int WRAPPER_HEADER_SIZE = 8;
+
+    /**
+     * DLMS settings.
+     */
+    private final GXDLMSSettings settings;
+
+    /**
+     * Executor where APDUs are decrypted.
+     */
+    private final Executor executor;
+
+    /**
+     * Pending APDUs in receive order.
+     */
+    private final ArrayDeque<GXDecryptTask> pending =
+            new ArrayDeque<GXDecryptTask>();
+
+    /**
+     * Decrypted APDU.
+     */
+    static final class GXDecryptTask implements Callable<byte[]> {
+        /**
+         * Ciphered APDU.
+         */
+        private final byte[] cipheredData;
+        /**
+         * AES GCM parameter that is used to decrypt the APDU.
+         */
+        private final AesGcmParameter parameter;
+        /**
+         * Amount of ciphered bytes that are handled.
+         */
+        private int length;
+        /**
+         * Decrypted APDU.
+         */
+        private byte[] plainText;
+        /**
+         * Future of the task.
+         */
+        private final FutureTask<byte[]> future;
+
+        GXDecryptTask(final byte[] data, final AesGcmParameter p) {
+            cipheredData = data;
+            parameter = p;
+            future = new FutureTask<byte[]>(this);
+        }
+
+        @Override
+        public byte[] call() throws Exception {
+            GXByteBuffer bb = new GXByteBuffer(cipheredData);
+            byte[] tmp = GXCiphering.decrypt(
+                    parameter.getSettings().getCipher(), parameter, bb);
+            length = bb.position();
+            return tmp;
+        }
+
+        /**
+         * @return AES GCM parameter that is used to decrypt the APDU.
+         */
+        AesGcmParameter getParameter() {
+            return parameter;
+        }
+
+        /**
+         * @return Decrypted APDU.
+         */
+        byte[] getPlainText() {
+            return plainText;
+        }
+
+        /**
+         * @return Amount of ciphered bytes that are handled.
+         */
+        int getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param s
+     *            DLMS settings.
+     * @param e
+     *            Executor where APDUs are decrypted.
+     */
+    GXParallelDecryptor(final GXDLMSSettings s, final Executor e) {
+        settings = s;
+        executor = e;
+    }
+
+    /**
+     * @return Executor where APDUs are decrypted.
+     */
+    Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Is ciphered command decrypted in parallel.
+     * 
+     * @param cmd
+     *            Command.
+     * @return True, if command is decrypted in parallel.
+     */
+    private static boolean isCiphered(final int cmd) {
+        switch (cmd) {
+        case Command.GLO_GET_RESPONSE:
+        case Command.GLO_SET_RESPONSE:
+        case Command.GLO_METHOD_RESPONSE:
+        case Command.GLO_EVENT_NOTIFICATION_REQUEST:
+        case Command.DED_GET_RESPONSE:
+        case Command.DED_SET_RESPONSE:
+        case Command.DED_METHOD_RESPONSE:
+        case Command.DED_EVENT_NOTIFICATION:
+        case Command.GENERAL_GLO_CIPHERING:
+        case Command.GENERAL_DED_CIPHERING:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Start decrypting the complete ciphered wrapper frames that are in the
+     * receive buffer. Position of the buffer is not changed.
+     * 
+     * @param reply
+     *            Received data.
+     */
+    void schedule(final GXByteBuffer reply) {
+        if (pending.size() > LOW_WATER_MARK || settings.isServer()
+                || settings.getInterfaceType() != InterfaceType.WRAPPER
+                || settings.getCipher() == null
+                || settings.getInvocationCounter() != null
+                || settings.getCryptoNotifier() != null) {
+            return;
+        }
+        byte[] data = reply.getData();
+        int pos = reply.position();
+        int end = reply.size();
+        int index = 0;
+        int count = 0;
+        // Count ciphered frames first. One frame is faster to decrypt in
+        // caller's thread.
+        while (end - pos >= WRAPPER_HEADER_SIZE
+                && reply.getUInt16(pos) == 1) {
+            int len = reply.getUInt16(pos + 6);
+            if (len == 0 || end - pos - WRAPPER_HEADER_SIZE < len) {
+                break;
+            }
+            if (isCiphered(data[pos + WRAPPER_HEADER_SIZE] & 0xFF)) {
+                ++count;
+            }
+            pos += WRAPPER_HEADER_SIZE + len;
+        }
+        if (count < 2) {
+            return;
+        }
+        pos = reply.position();
+        while (count != 0 && pending.size() < MAX_PENDING) {
+            int len = reply.getUInt16(pos + 6);
+            if (isCiphered(data[pos + WRAPPER_HEADER_SIZE] & 0xFF)) {
+                --count;
+                // Frames that are already decrypted are skipped.
+                if (index++ >= pending.size()) {
+                    GXDecryptTask task = new GXDecryptTask(
+                            Arrays.copyOfRange(data,
+                                    pos + WRAPPER_HEADER_SIZE,
+                                    pos + WRAPPER_HEADER_SIZE + len),
+                            GXDLMS.getGloDedParameter(settings));
+                    pending.add(task);
+                    executor.execute(task.future);
+                }
+            }
+            pos += WRAPPER_HEADER_SIZE + len;
+        }
+    }
+
+    /**
+     * Get decrypted APDU.
+     * 
+     * @param data
+     *            Ciphered APDU starting from the command.
+     * @return Decrypted APDU or null, if the APDU must be decrypted in
+     *         caller's thread.
+     */
+    GXDecryptTask poll(final GXByteBuffer data) {
+        GXDecryptTask task = pending.poll();
+        if (task == null) {
+            return null;
+        }
+        if (!isSame(data, task.cipheredData)) {
+            clear();
+            return null;
+        }
+        try {
+            task.plainText = task.future.get();
+            return task;
+        } catch (ExecutionException e) {
+            // Error is reported when the APDU is decrypted again.
+            clear();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            clear();
+            return null;
+        }
+    }
+
+    /**
+     * Compare received APDU to the APDU that was decrypted.
+     * 
+     * @param data
+     *            Received APDU.
+     * @param value
+     *            Decrypted APDU.
+     * @return True, if APDUs are same.
+     */
+    private static boolean isSame(final GXByteBuffer data,
+            final byte[] value) {
+        if (data.size() - data.position() != value.length) {
+            return false;
+        }
+        byte[] buff = data.getData();
+        int pos = data.position();
+        for (int i = 0; i != value.length; ++i) {
+            if (buff[pos + i] != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drop pending APDUs.
+     */
+    void clear() {
+        for (GXDecryptTask it : pending) {
+            it.future.cancel(false);
+        }
+        pending.clear();
+    }
+}
@@ -45,6 +45,11 @@ import gurux.dlms.enums.RequestTypes;
  * Reply data keeps reply information.
  */
 public class GXReplyData {
+    /**
+     * Received data buffer is reused when it's cleared if it's not bigger than
+     * this.
+     */
+    private static final int MAX_REUSED_CAPACITY = 0x10000;
 
     /**
      * Is received frame echo.
@@ -116,6 +121,16 @@ public class GXReplyData {
      */
     private boolean peek;
 
+    /**
+     * Listener that receives array elements as soon as they are parsed.
+     */
+    private IGXRowListener rowListener;
+
+    /**
+     * Amount of the elements that are passed to the row listener.
+     */
+    private int rowCount;
+
     /**
      * Data type.
      */
@@ -330,10 +345,15 @@ public class GXReplyData {
         moreData.clear();
         cipheredCommand = command = Command.NONE;
         commandType = 0;
-        data.capacity(0);
+        if (data.capacity() > MAX_REUSED_CAPACITY) {
+            data.capacity(0);
+        } else {
+            data.clear();
+        }
         complete = false;
         error = 0;
         totalCount = 0;
+        rowCount = 0;
         dataValue = null;
         readPosition = 0;
         packetLength = 0;
@@ -433,6 +453,9 @@ public class GXReplyData {
      * @see #getTotalCount
      */
     public final int getCount() {
+        if (rowListener != null) {
+            return rowCount;
+        }
         if (dataValue instanceof List<?>) {
             return ((List<?>) dataValue).size();
         }
@@ -460,6 +483,46 @@ public class GXReplyData {
         peek = forValue;
     }
 
+    /**
+     * Get listener that receives array elements as soon as they are parsed.
+     * 
+     * @return Row listener.
+     * @see #setRowListener
+     */
+    public final IGXRowListener getRowListener() {
+        return rowListener;
+    }
+
+    /**
+     * Set listener that receives array elements as soon as they are parsed.
+     * <p>
+     * Elements of the received array, like rows of the profile generic
+     * buffer, are passed to the listener when all the bytes of the element
+     * are received. Elements are not added to the value and parsed bytes are
+     * removed from the data. Memory usage is bounded by the received data
+     * block and not by the whole array. Peek is enabled when the listener is
+     * set.
+     * </p>
+     * 
+     * @param value
+     *            Row listener. Null disables streaming.
+     * @see gurux.dlms.GXDLMSClient#createRowListener
+     */
+    public final void setRowListener(final IGXRowListener value) {
+        rowListener = value;
+        if (value != null) {
+            peek = true;
+        }
+    }
+
+    /**
+     * @param value
+     *            Amount of the elements that are passed to the row listener.
+     */
+    final void setRowCount(final int value) {
+        rowCount = value;
+    }
+
     /**
      * @return Cipher index is position where data is decrypted.
      */
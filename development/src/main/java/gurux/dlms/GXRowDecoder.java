@@ -0,0 +1,555 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+import gurux.dlms.internal.GXCommon;
+import gurux.dlms.internal.GXDataInfo;
+import gurux.dlms.objects.GXDLMSCaptureObject;
+import gurux.dlms.objects.GXDLMSDemandRegister;
+import gurux.dlms.objects.GXDLMSObject;
+import gurux.dlms.objects.GXDLMSRegister;
+
+/**
+ * Decodes rows of the profile generic buffer straight to a row visitor.
+ * <p>
+ * Cells are passed to {@link IGXRowVisitor} as primitives and rows are not
+ * collected, so reading a large buffer doesn't create an object for every
+ * cell. Layout of the row is compiled from the first row where all the cells
+ * have a fixed size. After that, the tags of the row are only compared and
+ * the values are read from the known offsets. Rows that don't match the
+ * layout are decoded by tag and rows that contain arrays or structures are
+ * parsed with the generic parser.
+ * </p>
+ * <p>
+ * Values are not converted. Scalers of the register columns are available
+ * with {@link #getScaler(int)}.
+ * </p>
+ * 
+ * <pre>
+ * reply.setRowListener(client.createRowDecoder(pg, visitor));
+ * client.readDataBlock(client.readRowsByRange(pg, start, end), reply);
+ * </pre>
+ * 
+ * @see GXReplyData#setRowListener
+ */
+public final class GXRowDecoder implements IGXRowListener {
+    /**
+     * Row is not received yet.
+     */
+    private static final int INCOMPLETE = -1;
+
+    /**
+     * Row contains a cell that is not a simple value.
+     */
+    private static final int COMPLEX = -2;
+
+    /**
+     * Value is prefixed with the length.
+     */
+    private static final int VARIABLE = -1;
+
+    /**
+     * Value has a fixed size.
+     */
+    private static final int FIXED = -1;
+
+    /**
+     * Structure tag.
+     */
+    private static final int STRUCTURE = 2;
+
+    /**
+     * Value sizes of the simple data types. Index is the tag.
+     */
+    private static final int[] SIZES = new int[0x1C];
+
+    static {
+        java.util.Arrays.fill(SIZES, COMPLEX);
+        SIZES[0] = 0;
+        SIZES[3] = 1;
+        SIZES[5] = 4;
+        SIZES[6] = 4;
+        SIZES[9] = VARIABLE;
+        SIZES[10] = VARIABLE;
+        SIZES[12] = VARIABLE;
+        SIZES[15] = 1;
+        SIZES[16] = 2;
+        SIZES[17] = 1;
+        SIZES[18] = 2;
+        SIZES[20] = 8;
+        SIZES[21] = 8;
+        SIZES[22] = 1;
+        SIZES[23] = 4;
+        SIZES[24] = 8;
+        SIZES[25] = 12;
+        SIZES[26] = 5;
+        SIZES[27] = 4;
+    }
+
+    /**
+     * Row visitor.
+     */
+    private final IGXRowVisitor visitor;
+
+    /**
+     * Scalers of the columns.
+     */
+    private final double[] scalers;
+
+    /**
+     * Tags of the compiled layout.
+     */
+    private int[] tags;
+
+    /**
+     * Lengths of the variable size values of the compiled layout. FIXED if
+     * the value has a fixed size.
+     */
+    private int[] lengths;
+
+    /**
+     * Offsets of the cells in the compiled layout.
+     */
+    private int[] offsets;
+
+    /**
+     * Row size in bytes in the compiled layout. Zero if layout is not
+     * compiled.
+     */
+    private int rowSize;
+
+    /**
+     * Index of the next row.
+     */
+    private int rowIndex;
+
+    /**
+     * Count that was read last time.
+     */
+    private int count;
+
+    /**
+     * Constructor.
+     * 
+     * @param columns
+     *            Read columns.
+     * @param target
+     *            Visitor that receives the cells.
+     */
+    public GXRowDecoder(final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns,
+            final IGXRowVisitor target) {
+        if (columns == null || columns.isEmpty()) {
+            throw new IllegalArgumentException("columns");
+        }
+        if (target == null) {
+            throw new IllegalArgumentException("target");
+        }
+        visitor = target;
+        scalers = new double[columns.size()];
+        int pos = 0;
+        for (Entry<GXDLMSObject, GXDLMSCaptureObject> it : columns) {
+            double scaler = 1;
+            int index = it.getValue().getAttributeIndex();
+            if (it.getKey() instanceof GXDLMSRegister && index == 2) {
+                scaler = ((GXDLMSRegister) it.getKey()).getScaler();
+            } else if (it.getKey() instanceof GXDLMSDemandRegister && (index == 2 || index == 3)) {
+                scaler = ((GXDLMSDemandRegister) it.getKey()).getScaler();
+            }
+            scalers[pos] = scaler;
+            ++pos;
+        }
+    }
+
+    /**
+     * @return Amount of the columns.
+     */
+    public int getColumnCount() {
+        return scalers.length;
+    }
+
+    /**
+     * Returns scaler of the column. Scaler is one if the column is not a
+     * register value.
+     * 
+     * @param column
+     *            Column index.
+     * @return Scaler.
+     */
+    public double getScaler(final int column) {
+        return scalers[column];
+    }
+
+    /**
+     * @return Amount of the decoded rows.
+     */
+    public int getRowCount() {
+        return rowIndex;
+    }
+
+    /**
+     * @return Is row layout compiled.
+     */
+    public boolean isCompiled() {
+        return rowSize != 0;
+    }
+
+    /**
+     * Row is parsed with the generic parser. Values are passed to the
+     * visitor.
+     * 
+     * @param row
+     *            Row values.
+     */
+    @Override
+    public void onRow(final Object[] row) {
+        for (int pos = 0; pos != row.length; ++pos) {
+            Object value = row[pos];
+            if (value instanceof Double || value instanceof Float) {
+                visitor.onDouble(pos, ((Number) value).doubleValue());
+            } else if (value instanceof GXUInt64) {
+                // Unsigned bits are passed.
+                visitor.onLong(pos, ((GXUInt64) value).bigIntegerValue().longValue());
+            } else if (value instanceof Number) {
+                visitor.onLong(pos, ((Number) value).longValue());
+            } else if (value instanceof Boolean) {
+                visitor.onLong(pos, ((Boolean) value) ? 1 : 0);
+            } else if (value instanceof byte[]) {
+                visitor.onBytes(pos, (byte[]) value, 0, ((byte[]) value).length);
+            } else {
+                visitor.onObject(pos, value);
+            }
+        }
+        visitor.onRowEnd(rowIndex);
+        ++rowIndex;
+    }
+
+    /**
+     * Decode next row from the received data. This is called by the parser.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param data
+     *            Received data.
+     * @return True, if the row was decoded. False, if all the bytes of the
+     *         row are not received yet.
+     */
+    public boolean readRow(final GXDLMSSettings settings, final GXByteBuffer data) {
+        byte[] buff = data.getData();
+        int start = data.position();
+        int end = data.size();
+        if (rowSize != 0 && end - start >= rowSize && isMatch(buff, start)) {
+            for (int pos = 0; pos != tags.length; ++pos) {
+                int index = start + offsets[pos];
+                if (lengths[pos] == FIXED) {
+                    emit(pos, tags[pos], buff, index + 1, SIZES[tags[pos]]);
+                } else {
+                    emit(pos, tags[pos], buff, index + 2, lengths[pos]);
+                }
+            }
+            data.position(start + rowSize);
+            visitor.onRowEnd(rowIndex);
+            ++rowIndex;
+            return true;
+        }
+        if (start == end) {
+            return false;
+        }
+        if ((buff[start] & 0xFF) == STRUCTURE) {
+            int pos = readCount(buff, start + 1, end);
+            if (pos == INCOMPLETE) {
+                return false;
+            }
+            if (pos != COMPLEX && count == scalers.length) {
+                int last = scan(buff, pos, end);
+                if (last == INCOMPLETE) {
+                    return false;
+                }
+                if (last != COMPLEX) {
+                    decode(buff, start, pos);
+                    data.position(last);
+                    visitor.onRowEnd(rowIndex);
+                    ++rowIndex;
+                    return true;
+                }
+            }
+        }
+        // Row contains arrays or structures.
+        GXDataInfo info = new GXDataInfo();
+        Object value = GXCommon.getData(settings, data, info);
+        if (!info.isComplete()) {
+            return false;
+        }
+        if (value instanceof List<?>) {
+            onRow(((List<?>) value).toArray());
+        } else {
+            onRow(new Object[] { value });
+        }
+        return true;
+    }
+
+    /**
+     * Read object count.
+     * 
+     * @param buff
+     *            Received data.
+     * @param pos
+     *            Position of the count.
+     * @param end
+     *            End of the received data.
+     * @return Position after the count.
+     */
+    private int readCount(final byte[] buff, final int pos, final int end) {
+        if (pos >= end) {
+            return INCOMPLETE;
+        }
+        int value = buff[pos] & 0xFF;
+        if (value < 0x80) {
+            count = value;
+            return pos + 1;
+        }
+        int size = value - 0x80;
+        if (size < 1 || size > 3) {
+            return COMPLEX;
+        }
+        if (pos + 1 + size > end) {
+            return INCOMPLETE;
+        }
+        value = 0;
+        for (int index = pos + 1; index != pos + 1 + size; ++index) {
+            value = (value << 8) | (buff[index] & 0xFF);
+        }
+        count = value;
+        return pos + 1 + size;
+    }
+
+    /**
+     * Check that all the cells of the row are received and that they are
+     * simple values.
+     * 
+     * @param buff
+     *            Received data.
+     * @param start
+     *            Position of the first cell.
+     * @param end
+     *            End of the received data.
+     * @return Position after the row.
+     */
+    private int scan(final byte[] buff, final int start, final int end) {
+        int pos = start;
+        for (int column = 0; column != scalers.length; ++column) {
+            if (pos >= end) {
+                return INCOMPLETE;
+            }
+            int tag = buff[pos] & 0xFF;
+            if (tag >= SIZES.length || SIZES[tag] == COMPLEX) {
+                return COMPLEX;
+            }
+            ++pos;
+            int size = SIZES[tag];
+            if (size == VARIABLE) {
+                pos = readCount(buff, pos, end);
+                if (pos < 0) {
+                    return pos;
+                }
+                size = count;
+            }
+            pos += size;
+            if (pos > end) {
+                return INCOMPLETE;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Decode the cells of the row by tag. Layout is compiled from the first
+     * row where all the cells have a fixed size.
+     * 
+     * @param buff
+     *            Received data.
+     * @param start
+     *            Position of the row.
+     * @param first
+     *            Position of the first cell.
+     */
+    private void decode(final byte[] buff, final int start, final int first) {
+        boolean compile = rowSize == 0 && first == start + 2;
+        int[] t = null, l = null, o = null;
+        if (compile) {
+            t = new int[scalers.length];
+            l = new int[scalers.length];
+            o = new int[scalers.length];
+        }
+        int pos = first;
+        for (int column = 0; column != scalers.length; ++column) {
+            int tag = buff[pos] & 0xFF;
+            int offset = pos - start;
+            int size = SIZES[tag];
+            int length = FIXED;
+            ++pos;
+            if (size == VARIABLE) {
+                int next = readCount(buff, pos, buff.length);
+                size = count;
+                if (next != pos + 1) {
+                    compile = false;
+                } else {
+                    length = size;
+                }
+                pos = next;
+            }
+            emit(column, tag, buff, pos, size);
+            pos += size;
+            if (compile) {
+                // Null values don't tell the type of the column.
+                if (tag == 0) {
+                    compile = false;
+                } else {
+                    t[column] = tag;
+                    l[column] = length;
+                    o[column] = offset;
+                }
+            }
+        }
+        if (compile) {
+            tags = t;
+            lengths = l;
+            offsets = o;
+            rowSize = pos - start;
+        }
+    }
+
+    /**
+     * Check that the row matches the compiled layout.
+     * 
+     * @param buff
+     *            Received data.
+     * @param start
+     *            Position of the row.
+     * @return True, if the row matches the layout.
+     */
+    private boolean isMatch(final byte[] buff, final int start) {
+        if ((buff[start] & 0xFF) != STRUCTURE || (buff[start + 1] & 0xFF) != tags.length) {
+            return false;
+        }
+        for (int pos = 0; pos != tags.length; ++pos) {
+            int index = start + offsets[pos];
+            if ((buff[index] & 0xFF) != tags[pos]
+                    || (lengths[pos] != FIXED && (buff[index + 1] & 0xFF) != lengths[pos])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pass cell value to the visitor.
+     * 
+     * @param column
+     *            Column index.
+     * @param tag
+     *            Data type.
+     * @param buff
+     *            Received data.
+     * @param pos
+     *            Position of the value.
+     * @param size
+     *            Value size in bytes.
+     */
+    private void emit(final int column, final int tag, final byte[] buff, final int pos,
+            final int size) {
+        switch (tag) {
+        case 0:
+            visitor.onObject(column, null);
+            break;
+        case 3:
+            visitor.onLong(column, buff[pos] != 0 ? 1 : 0);
+            break;
+        case 15:
+            visitor.onLong(column, buff[pos]);
+            break;
+        case 17:
+        case 22:
+            visitor.onLong(column, buff[pos] & 0xFF);
+            break;
+        case 16:
+            visitor.onLong(column, (short) getInt(buff, pos, 2));
+            break;
+        case 18:
+            visitor.onLong(column, getInt(buff, pos, 2));
+            break;
+        case 5:
+            visitor.onLong(column, (int) getInt(buff, pos, 4));
+            break;
+        case 6:
+            visitor.onLong(column, getInt(buff, pos, 4));
+            break;
+        case 20:
+        case 21:
+            visitor.onLong(column, getInt(buff, pos, 8));
+            break;
+        case 23:
+            visitor.onDouble(column, Float.intBitsToFloat((int) getInt(buff, pos, 4)));
+            break;
+        case 24:
+            visitor.onDouble(column, Double.longBitsToDouble(getInt(buff, pos, 8)));
+            break;
+        default:
+            visitor.onBytes(column, buff, pos, size);
+            break;
+        }
+    }
+
+    /**
+     * Read big endian value.
+     * 
+     * @param buff
+     *            Received data.
+     * @param pos
+     *            Position of the value.
+     * @param size
+     *            Value size in bytes.
+     * @return Unsigned value.
+     */
+    private static long getInt(final byte[] buff, final int pos, final int size) {
+        long value = 0;
+        for (int index = pos; index != pos + size; ++index) {
+            value = (value << 8) | (buff[index] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -34,6 +34,7 @@
 
 package gurux.dlms;
 
+import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -52,6 +53,21 @@ public class GXServerReply {
      */
     private byte[] data;
 
+    /**
+     * Server received data in NIO buffer.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * NIO buffer where reply frame is written.
+     */
+    private ByteBuffer output;
+
+    /**
+     * Is reply frame written to the output buffer.
+     */
+    private boolean written;
+
     /**
      * Server reply message.
      */
@@ -94,6 +110,74 @@ public class GXServerReply {
         data = value;
     }
 
+    /**
+     * Constructor.
+     * 
+     * @param value
+     *            Received data. Remaining bytes of the buffer are handled and
+     *            position is moved to the limit.
+     */
+    public GXServerReply(final ByteBuffer value) {
+        buffer = value;
+    }
+
+    /**
+     * @return Received data in NIO buffer.
+     */
+    public final ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @param value
+     *            Received data in NIO buffer.
+     */
+    public final void setBuffer(final ByteBuffer value) {
+        buffer = value;
+    }
+
+    /**
+     * @return NIO buffer where reply frame is written or null, if reply is
+     *         returned as a byte array.
+     */
+    public final ByteBuffer getOutput() {
+        return output;
+    }
+
+    /**
+     * @param value
+     *            NIO buffer where reply frame is written. If null, reply is
+     *            returned as a byte array.
+     */
+    public final void setOutput(final ByteBuffer value) {
+        output = value;
+    }
+
+    /**
+     * @return Is reply frame written to the output buffer.
+     */
+    public final boolean isWritten() {
+        return written;
+    }
+
+    /**
+     * @param value
+     *            Is reply frame written to the output buffer.
+     */
+    final void setWritten(final boolean value) {
+        written = value;
+    }
+
+    /**
+     * @return Is there received data to handle.
+     */
+    final boolean hasData() {
+        if (buffer != null) {
+            return buffer.hasRemaining();
+        }
+        return data != null && data.length != 0;
+    }
+
     /**
      * @return the data
      */
@@ -33,8 +33,12 @@
 //---------------------------------------------------------------------------
 package gurux.dlms;
 
+import java.nio.LongBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import gurux.dlms.enums.ObjectType;
 import gurux.dlms.internal.GXCommon;
@@ -89,75 +93,291 @@ class GXStandardObisCodeCollection
     }
 
     /**
-     * Check is interface included to standard.
+     * Amount of OBIS code groups.
      */
-    private boolean equalsInterface(final GXStandardObisCode it, final int ic) {
-        // If all interfaces are allowed.
-        if (ic == 0 || it.getInterfaces().equals("*")) {
-            return true;
-        }
-        return GXCommon.split(it.getInterfaces(), ',')
-                .contains(String.valueOf(ic));
-    }
+    private static final int GROUPS = 6;
+
+    /**
+     * Maximum amount of compiled masks that are cached.
+     */
+    private static final int MAX_CACHED_MASKS = 1024;
+
+    /**
+     * Compiled masks of equalsMask.
+     */
+    private static final Map<String, long[][]> MASKS =
+            new ConcurrentHashMap<String, long[][]>();
+
+    /**
+     * Compiled index.
+     */
+    private transient GXObisIndex index;
+
+    /**
+     * Modification count of the collection when index was compiled.
+     */
+    private transient int indexModCount;
 
     /**
-     * Check OBIS codes.
+     * Is collection read-only.
      */
-    private static boolean equalsMask(final String obis, final int ic) {
-        if (obis.indexOf(',') != -1) {
-            List<String> tmp = GXCommon.split(obis, ',');
-            for (String it : tmp) {
-                if (it.indexOf('-') != -1) {
-                    if (equalsMask(it, ic)) {
-                        return true;
+    private transient boolean readOnly;
+
+    /**
+     * Compiled OBIS code index. Bit set tells the items that match the value
+     * of the OBIS code group or the interface.
+     */
+    private static final class GXObisIndex {
+        /**
+         * All items.
+         */
+        private final long[] all;
+        /**
+         * Items for each value of each OBIS code group.
+         */
+        private final long[][][] values;
+        /**
+         * Items that are used with all interfaces.
+         */
+        private final long[] anyInterface;
+        /**
+         * Items for each interface.
+         */
+        private final Map<Integer, long[]> interfaces;
+
+        GXObisIndex(final List<GXStandardObisCode> items) {
+            int words = (items.size() + 63) / 64;
+            all = new long[words];
+            anyInterface = new long[words];
+            interfaces = new HashMap<Integer, long[]>();
+            values = new long[GROUPS][256][];
+            long[][][] tmp = new long[GROUPS][256][words];
+            int pos = 0;
+            for (GXStandardObisCode it : items) {
+                int word = pos / 64;
+                long bit = 1L << (pos % 64);
+                all[word] |= bit;
+                if ("*".equals(it.getInterfaces())) {
+                    anyInterface[word] |= bit;
+                } else if (it.getInterfaces() != null) {
+                    for (String ic : GXCommon.split(it.getInterfaces(), ',')) {
+                        Integer key = toInt(ic);
+                        if (key != null) {
+                            long[] set = interfaces.get(key);
+                            if (set == null) {
+                                set = new long[words];
+                                interfaces.put(key, set);
+                            }
+                            set[word] |= bit;
+                        }
                     }
-                } else if (Integer.parseInt(it) == ic) {
-                    return true;
+                }
+                String[] obis = it.getOBIS();
+                if (obis != null && obis.length == GROUPS) {
+                    for (int group = 0; group != GROUPS; ++group) {
+                        long[] mask = compileMask(obis[group]);
+                        for (int value = 0; value != 256; ++value) {
+                            if ((mask[value / 64] & (1L << (value % 64))) != 0) {
+                                tmp[group][value][word] |= bit;
+                            }
+                        }
+                    }
+                }
+                ++pos;
+            }
+            for (long[] set : interfaces.values()) {
+                for (int word = 0; word != words; ++word) {
+                    set[word] |= anyInterface[word];
+                }
+            }
+            // Same bit sets are shared.
+            Map<LongBuffer, long[]> shared = new HashMap<LongBuffer, long[]>();
+            for (int group = 0; group != GROUPS; ++group) {
+                for (int value = 0; value != 256; ++value) {
+                    long[] set = shared.get(LongBuffer.wrap(tmp[group][value]));
+                    if (set == null) {
+                        set = tmp[group][value];
+                        shared.put(LongBuffer.wrap(set), set);
+                    }
+                    values[group][value] = set;
                 }
             }
-            return false;
-        } else if (obis.indexOf('-') != -1) {
-            List<String> tmp = GXCommon.split(obis, '-');
-            return ic >= Integer.parseInt(tmp.get(0))
-                    && ic <= Integer.parseInt(tmp.get(1));
         }
-        if (obis.equals("&")) {
-            return ic == 0 || ic == 1 || ic == 7;
+
+        /**
+         * Returns items that are used with the interface.
+         * 
+         * @param ic
+         *            Interface. All interfaces are used if zero.
+         * @return Items.
+         */
+        long[] getInterface(final int ic) {
+            if (ic == 0) {
+                return all;
+            }
+            long[] set = interfaces.get(ic);
+            if (set == null) {
+                return anyInterface;
+            }
+            return set;
         }
-        return Integer.parseInt(obis) == ic;
     }
 
-    public static boolean equalsMask(final String obisMask, final String ln) {
-        return equalsObisCode(
-                GXCommon.split(obisMask, '.').toArray(new String[0]),
-                getBytes(ln));
+    /**
+     * Convert interface string to integer.
+     * 
+     * @param value
+     *            Interface string.
+     * @return Interface or null if the value is not a number.
+     */
+    private static Integer toInt(final String value) {
+        try {
+            int ret = Integer.parseInt(value);
+            // Interfaces are compared as strings.
+            if (String.valueOf(ret).equals(value)) {
+                return ret;
+            }
+        } catch (NumberFormatException e) {
+            // Value is not a number.
+        }
+        return null;
     }
 
     /**
-     * Check OBIS code.
+     * Compile mask of the OBIS code group to a bit set of the values 0-255.
+     * 
+     * @param obis
+     *            OBIS code group mask.
+     * @return Bit set of the values that match the mask.
      */
-    private static boolean equalsObisCode(final String[] obisMask,
-            final int[] ic) {
-        if (ic == null) {
-            return true;
-        }
-        if (!equalsMask(obisMask[0], ic[0])) {
-            return false;
+    private static long[] compileMask(final String obis) {
+        long[] mask = new long[4];
+        if (obis != null) {
+            for (String it : GXCommon.split(obis, ',')) {
+                int begin, end;
+                try {
+                    if (it.equals("&")) {
+                        mask[0] |= 0x83;
+                        continue;
+                    } else if (it.indexOf('-') != -1) {
+                        List<String> tmp = GXCommon.split(it, '-');
+                        begin = Integer.parseInt(tmp.get(0));
+                        end = Integer.parseInt(tmp.get(1));
+                    } else {
+                        begin = Integer.parseInt(it);
+                        end = begin;
+                    }
+                } catch (NumberFormatException e) {
+                    // Invalid values are not matched.
+                    continue;
+                }
+                for (int value = Math.max(0, begin); value <= Math.min(255, end); ++value) {
+                    mask[value / 64] |= 1L << (value % 64);
+                }
+            }
         }
-        if (!equalsMask(obisMask[1], ic[1])) {
-            return false;
+        return mask;
+    }
+
+    /**
+     * Make collection read-only. Index is compiled, so read-only collection
+     * can be searched from several threads.
+     */
+    final void setReadOnly() {
+        getIndex();
+        readOnly = true;
+    }
+
+    /**
+     * Check that collection can be changed.
+     */
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Standard OBIS codes are read-only.");
         }
-        if (!equalsMask(obisMask[2], ic[2])) {
-            return false;
+    }
+
+    @Override
+    public final boolean add(final GXStandardObisCode value) {
+        checkWritable();
+        return super.add(value);
+    }
+
+    @Override
+    public final void add(final int index, final GXStandardObisCode value) {
+        checkWritable();
+        super.add(index, value);
+    }
+
+    @Override
+    public final boolean addAll(final java.util.Collection<? extends GXStandardObisCode> values) {
+        checkWritable();
+        return super.addAll(values);
+    }
+
+    @Override
+    public final boolean addAll(final int index, final java.util.Collection<? extends GXStandardObisCode> values) {
+        checkWritable();
+        return super.addAll(index, values);
+    }
+
+    @Override
+    public final GXStandardObisCode set(final int index, final GXStandardObisCode value) {
+        checkWritable();
+        return super.set(index, value);
+    }
+
+    @Override
+    public final GXStandardObisCode remove(final int index) {
+        checkWritable();
+        return super.remove(index);
+    }
+
+    @Override
+    public final boolean remove(final Object value) {
+        checkWritable();
+        return super.remove(value);
+    }
+
+    @Override
+    public final void clear() {
+        checkWritable();
+        super.clear();
+    }
+
+    /**
+     * @return Compiled index. Index is compiled again if the collection is
+     *         changed.
+     */
+    private GXObisIndex getIndex() {
+        if (index == null || indexModCount != modCount) {
+            index = new GXObisIndex(this);
+            indexModCount = modCount;
         }
-        if (!equalsMask(obisMask[3], ic[3])) {
-            return false;
+        return index;
+    }
+
+    public static boolean equalsMask(final String obisMask, final String ln) {
+        int[] code = getBytes(ln);
+        if (code == null) {
+            return true;
         }
-        if (!equalsMask(obisMask[4], ic[4])) {
-            return false;
+        long[][] mask = MASKS.get(obisMask);
+        if (mask == null) {
+            List<String> groups = GXCommon.split(obisMask, '.');
+            mask = new long[GROUPS][];
+            for (int group = 0; group != GROUPS; ++group) {
+                mask[group] = compileMask(groups.get(group));
+            }
+            if (MASKS.size() < MAX_CACHED_MASKS) {
+                MASKS.put(obisMask, mask);
+            }
         }
-        if (!equalsMask(obisMask[5], ic[5])) {
-            return false;
+        for (int group = 0; group != GROUPS; ++group) {
+            int value = code[group];
+            if (value < 0 || value > 255 || (mask[group][value / 64] & (1L << (value % 64))) == 0) {
+                return false;
+            }
         }
         return true;
     }
@@ -421,10 +641,25 @@ class GXStandardObisCodeCollection
         GXStandardObisCode tmp;
         List<GXStandardObisCode> list = new ArrayList<GXStandardObisCode>();
 
-        for (GXStandardObisCode it : this) {
-            // Interface is tested first because it's faster.
-            if (equalsInterface(it, ic)
-                    && equalsObisCode(it.getOBIS(), obisCode)) {
+        GXObisIndex idx = getIndex();
+        long[] items = idx.getInterface(ic);
+        if (obisCode != null) {
+            for (int value : obisCode) {
+                if (value < 0 || value > 255) {
+                    items = null;
+                    break;
+                }
+            }
+        }
+        for (int word = 0; items != null && word != items.length; ++word) {
+            long bits = items[word];
+            if (obisCode != null) {
+                for (int group = 0; group != GROUPS; ++group) {
+                    bits &= idx.values[group][obisCode[group]][word];
+                }
+            }
+            for (; bits != 0; bits &= bits - 1) {
+                GXStandardObisCode it = get(word * 64 + Long.numberOfTrailingZeros(bits));
                 tmp = new GXStandardObisCode(it.getOBIS(), it.getDescription(),
                         it.getInterfaces(), it.getDataType());
                 tmp.setUIDataType(it.getUIDataType());
@@ -0,0 +1,58 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.net.SocketAddress;
+
+/**
+ * This interface is used to create the client that parses the push messages
+ * of one sender.
+ * 
+ * @see GXDLMSPushEngine
+ */
+public interface IGXDLMSPushClientFactory {
+    /**
+     * Create client for a new sender. Each sender has own reassembly and
+     * ciphering state, so the client must not be shared between senders.
+     * 
+     * @param address
+     *            Address of the sender.
+     * @return Client that parses the push messages of the sender or null, if
+     *         the sender is rejected.
+     * @throws Exception
+     *             Client creation failed.
+     */
+    GXDLMSClient createClient(SocketAddress address) throws Exception;
+}
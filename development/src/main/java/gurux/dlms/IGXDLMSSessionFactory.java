@@ -0,0 +1,59 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.net.SocketAddress;
+
+/**
+ * This interface is used to create the server that handles the requests of
+ * one client connection.
+ * 
+ * @see GXDLMSServerEngine
+ */
+public interface IGXDLMSSessionFactory {
+    /**
+     * Create server for a new client connection. Each connection has own
+     * settings, so the server must not be shared between connections. The
+     * engine initializes the server, so initialize is not called here.
+     * 
+     * @param address
+     *            Address of the client.
+     * @return Server that handles the requests of the client or null, if the
+     *         connection is rejected.
+     * @throws Exception
+     *             Server creation failed.
+     */
+    GXDLMSServer2 createSession(SocketAddress address) throws Exception;
+}
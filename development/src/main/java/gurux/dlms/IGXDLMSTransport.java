@@ -0,0 +1,74 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking connection to one meter.
+ * 
+ * @see GXDLMSReaderEngine
+ * @see GXDLMSTcpTransport
+ */
+public interface IGXDLMSTransport {
+    /**
+     * Open the connection. This method must not block.
+     * 
+     * @param listener
+     *            Listener that receives the data from the meter.
+     * @return Future that completes when connection is opened.
+     */
+    CompletableFuture<Void> open(IGXDLMSTransportListener listener);
+
+    /**
+     * Send data to the meter. This method must not block. Data is sent in
+     * the same order as this method is called.
+     * 
+     * @param data
+     *            Data to send.
+     * @throws IOException
+     *             Sending failed.
+     */
+    void send(byte[] data) throws IOException;
+
+    /**
+     * Close the connection.
+     * 
+     * @throws IOException
+     *             Closing failed.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,54 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.dlms;
+
+import java.util.Iterator;
+
+/**
+ * Iterator that reads XML commands one by one. The source is closed when
+ * all the commands are read. If the iteration is stopped before that,
+ * close must be called.
+ * 
+ * @see GXDLMSXmlClient#iterate(java.io.File, GXXmlLoadSettings)
+ */
+public interface IGXDLMSXmlPduIterator extends Iterator<GXDLMSXmlPdu>, AutoCloseable {
+    /**
+     * Stop reading and release the parser. If the iterator opened the file,
+     * the file is closed.
+     */
+    @Override
+    void close();
+}
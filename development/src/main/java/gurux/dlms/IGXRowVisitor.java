@@ -0,0 +1,99 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+/**
+ * This interface is used to receive the cells of the rows that are parsed
+ * with {@link GXRowDecoder}. Values are passed as primitives, so they are not
+ * boxed.
+ * 
+ * @see GXRowDecoder
+ */
+public interface IGXRowVisitor {
+    /**
+     * Integer, boolean or enumeration cell is parsed. Boolean is 0 or 1.
+     * UInt64 values are passed as unsigned bits.
+     * 
+     * @param column
+     *            Column index.
+     * @param value
+     *            Cell value.
+     */
+    void onLong(int column, long value);
+
+    /**
+     * Float32 or float64 cell is parsed.
+     * 
+     * @param column
+     *            Column index.
+     * @param value
+     *            Cell value.
+     */
+    void onDouble(int column, double value);
+
+    /**
+     * Octet string, string, date-time, date or time cell is parsed. Data is
+     * valid only during the call.
+     * 
+     * @param column
+     *            Column index.
+     * @param data
+     *            Received data.
+     * @param index
+     *            Index of the first byte of the value.
+     * @param count
+     *            Value size in bytes.
+     */
+    void onBytes(int column, byte[] data, int index, int count);
+
+    /**
+     * Cell that can't be passed as a primitive is parsed. Null values and
+     * cells of the rows that don't have a simple layout are passed here.
+     * 
+     * @param column
+     *            Column index.
+     * @param value
+     *            Cell value.
+     */
+    void onObject(int column, Object value);
+
+    /**
+     * All cells of the row are parsed.
+     * 
+     * @param row
+     *            Row index.
+     */
+    void onRowEnd(int row);
+}
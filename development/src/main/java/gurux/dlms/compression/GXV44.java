@@ -0,0 +1,473 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2.
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.compression;
+
+import java.util.Arrays;
+
+import gurux.dlms.GXByteBuffer;
+
+/**
+ * V.44 (LZJH) compressor and decompressor.
+ * <p>
+ * Each APDU is compressed independently. Strings of the APDU are kept in a
+ * dictionary tree whose entries refer to the already processed data, so the
+ * strings are not copied. Ordinals are sent with a '0' prefix bit and
+ * codewords with a '1' prefix bit. Each ordinal and codeword is followed by
+ * the string extension length. Codeword and ordinal sizes are stepped up
+ * with control codewords when needed.
+ * </p>
+ * <p>
+ * Maximum codewords (N2), maximum string length (N7), history size and the
+ * initial codeword and ordinal sizes are taken from
+ * {@link GXCompressionOptions}. Transparent mode is not used.
+ * </p>
+ * <p>
+ * Codec keeps its work tables between the calls, so one instance should be
+ * used for several APDUs. Instance is not thread safe.
+ * </p>
+ */
+public final class GXV44 {
+    /**
+     * Enter transparent mode control codeword.
+     */
+    private static final int ETM = 0;
+    /**
+     * End of data control codeword.
+     */
+    private static final int FLUSH = 1;
+    /**
+     * Codeword size step up control codeword.
+     */
+    private static final int STEPUP = 2;
+    /**
+     * Ordinal size step up control codeword.
+     */
+    private static final int ORDINAL_STEPUP = 3;
+    /**
+     * First codeword that is used for strings (N5).
+     */
+    private static final int FIRST_CODEWORD = 4;
+
+    /**
+     * Maximum codewords (N2). Root nodes are after the codewords.
+     */
+    private int maxCodewords;
+    /**
+     * Maximum string length (N7).
+     */
+    private int maxStringLength;
+    /**
+     * History size.
+     */
+    private long historySize;
+    /**
+     * Next free codeword (C1).
+     */
+    private int nextCodeword;
+    /**
+     * Parent node.
+     */
+    private int[] parent = new int[0];
+    /**
+     * String length.
+     */
+    private int[] length = new int[0];
+    /**
+     * End of the last occurrence of the string. -1 if not seen.
+     */
+    private int[] end = new int[0];
+    /**
+     * First character after the parent string.
+     */
+    private byte[] edge = new byte[0];
+    /**
+     * Children. Node + 1, zero if empty.
+     */
+    private int[] children = new int[0];
+
+    // Bit writer and reader state.
+    private long bits;
+    private int bitCount;
+    private byte[] source;
+    private int sourcePosition;
+    private int sourceEnd;
+
+    private void reset(final GXCompressionOptions options) {
+        maxCodewords = Math.max(options.getMaxCodewords(), FIRST_CODEWORD);
+        maxStringLength = options.getMaximumStringLength().getValue();
+        historySize = options.getMaxDictionarySize();
+        nextCodeword = FIRST_CODEWORD;
+        int nodes = maxCodewords + 256;
+        if (parent.length < nodes) {
+            parent = new int[nodes];
+            length = new int[nodes];
+            end = new int[nodes];
+            edge = new byte[nodes];
+        }
+        int size = Integer.highestOneBit(2 * maxCodewords - 1) << 1;
+        if (children.length != size) {
+            children = new int[size];
+        } else {
+            Arrays.fill(children, 0);
+        }
+        for (int pos = 0; pos != 256; ++pos) {
+            length[maxCodewords + pos] = 1;
+            end[maxCodewords + pos] = -1;
+        }
+        bits = 0;
+        bitCount = 0;
+    }
+
+    private static int codewordBits(final int value) {
+        return 32 - Integer.numberOfLeadingZeros(value);
+    }
+
+    private int hash(final int node, final int ch) {
+        int h = (node * 256 + ch) * 0x9E3779B1;
+        return (h ^ (h >>> 16)) & (children.length - 1);
+    }
+
+    /**
+     * Find child node.
+     * 
+     * @return Child node or -1.
+     */
+    private int find(final int node, final int ch) {
+        int mask = children.length - 1;
+        for (int pos = hash(node, ch);; pos = (pos + 1) & mask) {
+            int child = children[pos] - 1;
+            if (child == -1) {
+                return -1;
+            }
+            if (parent[child] == node && (edge[child] & 0xFF) == ch) {
+                return child;
+            }
+        }
+    }
+
+    /**
+     * Add new string to the dictionary if there is space and the string is
+     * not already there.
+     * 
+     * @return New node or -1.
+     */
+    private int add(final int node, final int ch, final int len, final int forEnd) {
+        if (nextCodeword == maxCodewords || len > maxStringLength || find(node, ch) != -1) {
+            return -1;
+        }
+        int child = nextCodeword;
+        ++nextCodeword;
+        parent[child] = node;
+        edge[child] = (byte) ch;
+        length[child] = len;
+        end[child] = forEnd;
+        int mask = children.length - 1;
+        int pos = hash(node, ch);
+        while (children[pos] != 0) {
+            pos = (pos + 1) & mask;
+        }
+        children[pos] = child + 1;
+        return child;
+    }
+
+    private void write(final GXByteBuffer output, final int value, final int count) {
+        bits |= (long) value << bitCount;
+        bitCount += count;
+        while (bitCount >= 8) {
+            output.setUInt8((int) bits & 0xFF);
+            bits >>>= 8;
+            bitCount -= 8;
+        }
+    }
+
+    private int read(final int count) {
+        while (bitCount < count) {
+            if (sourcePosition == sourceEnd) {
+                throw new IllegalArgumentException("Invalid V.44 data.");
+            }
+            bits |= (long) (source[sourcePosition++] & 0xFF) << bitCount;
+            bitCount += 8;
+        }
+        int value = (int) (bits & ((1L << count) - 1));
+        bits >>>= count;
+        bitCount -= count;
+        return value;
+    }
+
+    private void writeExtension(final GXByteBuffer output, final int value) {
+        if (value == 0) {
+            write(output, 0, 1);
+        } else if (value < 5) {
+            write(output, 1 | (value - 1) << 2, 4);
+        } else {
+            write(output, 3 | (value - 5) << 2, 10);
+        }
+    }
+
+    private int readExtension() {
+        if (read(1) == 0) {
+            return 0;
+        }
+        if (read(1) == 0) {
+            return 1 + read(2);
+        }
+        return 5 + read(8);
+    }
+
+    /**
+     * Is the string of the node inside the history window.
+     */
+    private boolean inHistory(final int node, final int position) {
+        int e = end[node];
+        return e != -1 && position - (e - length[node]) <= historySize;
+    }
+
+    /**
+     * Compress the available bytes of the input.
+     * 
+     * @param options
+     *            Compression options.
+     * @param input
+     *            Data to compress. Position is moved to the end of the
+     *            data.
+     * @param output
+     *            Compressed data is appended here.
+     */
+    public void compress(final GXCompressionOptions options,
+            final GXByteBuffer input, final GXByteBuffer output) {
+        reset(options);
+        final byte[] in = input.getData();
+        final int base = input.position();
+        final int n = input.available();
+        final int maxBits = codewordBits(maxCodewords - 1);
+        final int root = maxCodewords;
+        int codewordSize = Math.min(options.getDefaultCodewordSize(), maxBits);
+        int ordinalSize = options.getDefaultOrdinalSize();
+        int prev = -1;
+        int pos = 0;
+        while (pos < n) {
+            int ch = in[base + pos] & 0xFF;
+            int node = root + ch;
+            int len = 1;
+            // Find the longest string from the dictionary.
+            while (pos + len < n) {
+                int child = find(node, in[base + pos + len] & 0xFF);
+                if (child == -1) {
+                    break;
+                }
+                int childLength = length[child];
+                if (pos + childLength > n || !inHistory(child, pos)) {
+                    break;
+                }
+                int start = base + end[child] - childLength;
+                int k = len + 1;
+                while (k != childLength
+                        && in[start + k] == in[base + pos + k]) {
+                    ++k;
+                }
+                if (k != childLength) {
+                    break;
+                }
+                node = child;
+                len = childLength;
+            }
+            if (node >= root) {
+                if (ch >= 1 << ordinalSize) {
+                    write(output, 1 | ORDINAL_STEPUP << 1, 1 + codewordSize);
+                    ordinalSize = 8;
+                }
+                write(output, ch << 1, 1 + ordinalSize);
+            } else {
+                while (node >= 1 << codewordSize) {
+                    write(output, 1 | STEPUP << 1, 1 + codewordSize);
+                    ++codewordSize;
+                }
+                write(output, 1 | node << 1, 1 + codewordSize);
+            }
+            if (prev != -1) {
+                add(prev, ch, length[prev] + 1, pos + 1);
+            }
+            // String extension from the previous occurrence of the string.
+            int ext = 0;
+            if (inHistory(node, pos)) {
+                int e = base + end[node];
+                int p = base + pos + len;
+                int max = Math.min(maxStringLength - len, n - pos - len);
+                while (ext < max && in[e + ext] == in[p + ext]) {
+                    ++ext;
+                }
+            }
+            end[node] = pos + len;
+            writeExtension(output, ext);
+            if (ext == 0) {
+                prev = node;
+            } else {
+                prev = add(node, in[base + pos + len] & 0xFF, len + ext,
+                        pos + len + ext);
+            }
+            pos += len + ext;
+        }
+        while (FLUSH >= 1 << codewordSize) {
+            ++codewordSize;
+        }
+        write(output, 1 | FLUSH << 1, 1 + codewordSize);
+        if (bitCount != 0) {
+            write(output, 0, 8 - bitCount);
+        }
+        input.position(base + n);
+    }
+
+    /**
+     * Compress data.
+     * 
+     * @param options
+     *            Compression options.
+     * @param data
+     *            Data to compress.
+     * @return Compressed data or null if data can't be compressed.
+     */
+    public byte[] compress(final GXCompressionOptions options,
+            final byte[] data) {
+        GXByteBuffer output = new GXByteBuffer(data.length);
+        compress(options, new GXByteBuffer(data), output);
+        if (output.size() >= data.length) {
+            return null;
+        }
+        return output.array();
+    }
+
+    /**
+     * Decompress the available bytes of the input.
+     * 
+     * @param options
+     *            Compression options.
+     * @param input
+     *            Compressed data. Position is moved after the compressed
+     *            data.
+     * @param output
+     *            Decompressed data is appended here.
+     */
+    public void decompress(final GXCompressionOptions options,
+            final GXByteBuffer input, final GXByteBuffer output) {
+        reset(options);
+        source = input.getData();
+        sourcePosition = input.position();
+        sourceEnd = input.size();
+        try {
+            decompress(options, output);
+            input.position(sourcePosition);
+        } finally {
+            source = null;
+        }
+    }
+
+    private void decompress(final GXCompressionOptions options,
+            final GXByteBuffer output) {
+        final int maxBits = codewordBits(maxCodewords - 1);
+        final int root = maxCodewords;
+        final int base = output.size();
+        int codewordSize = Math.min(options.getDefaultCodewordSize(), maxBits);
+        int ordinalSize = options.getDefaultOrdinalSize();
+        int prev = -1;
+        while (true) {
+            int pos = output.size() - base;
+            int node;
+            int len;
+            int ch;
+            if (read(1) == 0) {
+                ch = read(ordinalSize);
+                node = root + ch;
+                len = 1;
+                output.setUInt8(ch);
+            } else {
+                node = read(codewordSize);
+                if (node < FIRST_CODEWORD) {
+                    if (node == FLUSH) {
+                        break;
+                    } else if (node == STEPUP && codewordSize < maxBits) {
+                        ++codewordSize;
+                    } else if (node == ORDINAL_STEPUP && ordinalSize == 7) {
+                        ordinalSize = 8;
+                    } else {
+                        throw new IllegalArgumentException(
+                                "Invalid V.44 control codeword " + node);
+                    }
+                    continue;
+                }
+                if (node >= nextCodeword) {
+                    throw new IllegalArgumentException(
+                            "Invalid V.44 codeword " + node);
+                }
+                len = length[node];
+                output.set(output.getData(), base + end[node] - len, len);
+                ch = output.getData()[base + pos] & 0xFF;
+            }
+            if (prev != -1) {
+                add(prev, ch, length[prev] + 1, pos + 1);
+            }
+            int e = end[node];
+            end[node] = pos + len;
+            int ext = readExtension();
+            if (ext != 0) {
+                if (e == -1 || len + ext > maxStringLength) {
+                    throw new IllegalArgumentException(
+                            "Invalid V.44 string extension.");
+                }
+                for (int k = 0; k != ext; ++k) {
+                    output.setUInt8(output.getData()[base + e + k]);
+                }
+                prev = add(node, output.getData()[base + pos + len] & 0xFF,
+                        len + ext, pos + len + ext);
+            } else {
+                prev = node;
+            }
+        }
+    }
+
+    /**
+     * Decompress data.
+     * 
+     * @param options
+     *            Compression options.
+     * @param data
+     *            Compressed data.
+     * @return Decompressed data.
+     */
+    public byte[] decompress(final GXCompressionOptions options,
+            final byte[] data) {
+        GXByteBuffer output = new GXByteBuffer(4 * data.length);
+        decompress(options, new GXByteBuffer(data), output);
+        return output.array();
+    }
+}
@@ -50,6 +50,7 @@ import java.util.TimeZone;
 import gurux.dlms.GXArray;
 import gurux.dlms.GXBitString;
 import gurux.dlms.GXByteBuffer;
+import gurux.dlms.GXCompactDateTime;
 import gurux.dlms.GXCryptoKeyParameter;
 import gurux.dlms.GXDLMSClient;
 import gurux.dlms.GXDLMSConverter;
@@ -64,12 +65,14 @@ import gurux.dlms.GXDeltaUInt16;
 import gurux.dlms.GXDeltaUInt32;
 import gurux.dlms.GXDeltaUInt8;
 import gurux.dlms.GXEnum;
+import gurux.dlms.GXRowDecoder;
 import gurux.dlms.GXStructure;
 import gurux.dlms.GXTime;
 import gurux.dlms.GXUInt16;
 import gurux.dlms.GXUInt32;
 import gurux.dlms.GXUInt64;
 import gurux.dlms.GXUInt8;
+import gurux.dlms.IGXRowListener;
 import gurux.dlms.enums.ClockStatus;
 import gurux.dlms.enums.Command;
 import gurux.dlms.enums.ConnectionState;
@@ -564,6 +567,37 @@ public final class GXCommon {
         }
     }
 
+    /**
+     * Change compact date-time values to GXDateTime. Structures and arrays
+     * are changed in place.
+     * 
+     * @param value
+     *            Parsed value.
+     * @return Value where compact date-times are changed to GXDateTime.
+     */
+    @SuppressWarnings("unchecked")
+    public static Object toDateTime(final Object value) {
+        if (value instanceof GXCompactDateTime) {
+            return ((GXCompactDateTime) value).toGXDateTime();
+        }
+        if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            for (int pos = 0; pos != list.size(); ++pos) {
+                Object it = list.get(pos);
+                Object tmp = toDateTime(it);
+                if (tmp != it) {
+                    list.set(pos, tmp);
+                }
+            }
+        } else if (value instanceof Object[]) {
+            Object[] list = (Object[]) value;
+            for (int pos = 0; pos != list.length; ++pos) {
+                list[pos] = toDateTime(list[pos]);
+            }
+        }
+        return value;
+    }
+
     /**
      * Get data from DLMS frame.
      * 
@@ -771,8 +805,32 @@ public final class GXCommon {
         } else {
             arr = new GXStructure();
         }
+        // Only array elements are streamed. Nested arrays use own info.
+        IGXRowListener listener = null;
+        if (info.getType() == DataType.ARRAY) {
+            listener = info.getRowListener();
+            if (listener != null) {
+                // Parsing continues from the first row if the first block
+                // doesn't contain a whole row. Header is not parsed again.
+                startIndex = buff.position();
+            }
+        }
         // Position where last row was found. Cache uses this info.
         int pos = info.getIndex();
+        if (listener instanceof GXRowDecoder && info.getXml() == null) {
+            // Rows are decoded without creating the values.
+            GXRowDecoder decoder = (GXRowDecoder) listener;
+            for (; pos != info.getCount(); ++pos) {
+                if (!decoder.readRow(settings, buff)) {
+                    buff.position(startIndex);
+                    info.setComplete(false);
+                    break;
+                }
+                startIndex = buff.position();
+            }
+            info.setIndex(pos);
+            return arr;
+        }
         for (; pos != info.getCount(); ++pos) {
             GXDataInfo info2 = new GXDataInfo();
             info2.setXml(info.getXml());
@@ -784,7 +842,15 @@ public final class GXCommon {
             } else {
                 if (info2.getCount() == info2.getIndex()) {
                     startIndex = buff.position();
-                    arr.add(tmp);
+                    if (listener != null) {
+                        if (tmp instanceof List<?>) {
+                            listener.onRow(((List<?>) tmp).toArray());
+                        } else {
+                            listener.onRow(new Object[] { tmp });
+                        }
+                    } else {
+                        arr.add(tmp);
+                    }
                 }
             }
         }
@@ -944,14 +1010,16 @@ public final class GXCommon {
      * @return Parsed date and time.
      */
     private static Object getDateTime(final GXDLMSSettings settings, final GXByteBuffer buff, final GXDataInfo info) {
-        Object value = null;
-        java.util.Set<DateTimeSkips> skip = new HashSet<DateTimeSkips>();
-
         // If there is not enough data available.
         if (buff.size() - buff.position() < 12) {
             info.setComplete(false);
             return null;
         }
+        if (info.getXml() == null && settings != null && settings.getUseCompactDateTime()) {
+            return GXCompactDateTime.parse(settings, buff);
+        }
+        Object value = null;
+        java.util.Set<DateTimeSkips> skip = new HashSet<DateTimeSkips>();
         String str = null;
         if (info.getXml() != null) {
             str = GXCommon.toHex(buff.getData(), false, buff.position(), 12);
@@ -1805,15 +1873,18 @@ public final class GXCommon {
             info.setComplete(false);
             return null;
         }
-        StringBuilder sb = new StringBuilder();
-        while (cnt > 0) {
-            toBitString(sb, buff.getInt8(), cnt);
-            cnt -= 8;
+        byte[] value = new byte[byteCnt];
+        buff.get(value);
+        int padBits = 8 * byteCnt - cnt;
+        if (padBits != 0) {
+            // Unused bits are always zero.
+            value[byteCnt - 1] &= (byte) (0xFF << padBits);
         }
+        GXBitString ret = new GXBitString(value, padBits);
         if (info.getXml() != null) {
-            info.getXml().appendLine(info.getXml().getDataType(info.getType()), null, sb.toString());
+            info.getXml().appendLine(info.getXml().getDataType(info.getType()), null, ret.toString());
         }
-        return new GXBitString(sb.toString());
+        return ret;
     }
 
     /**
@@ -1938,8 +2009,8 @@ public final class GXCommon {
                 // Add size
                 buff.setUInt8(4);
                 setTime(settings, buff, value);
-            } else if (value instanceof GXDateTime || value instanceof java.util.Date
-                    || value instanceof java.util.Calendar) {
+            } else if (value instanceof GXDateTime || value instanceof GXCompactDateTime
+                    || value instanceof java.util.Date || value instanceof java.util.Calendar) {
                 // Date an calendar are always written as date time.
                 buff.setUInt8(12);
                 setDateTime(settings, buff, value);
@@ -2107,6 +2178,8 @@ public final class GXCommon {
         GXDateTime dt;
         if (value instanceof GXDateTime) {
             dt = (GXDateTime) value;
+        } else if (value instanceof GXCompactDateTime) {
+            dt = ((GXCompactDateTime) value).toGXDateTime();
         } else if (value instanceof java.util.Date) {
             dt = new GXDateTime((java.util.Date) value);
             dt.getSkip().add(DateTimeSkips.MILLISECOND);
@@ -2136,6 +2209,10 @@ public final class GXCommon {
      *            Added value.
      */
     private static void setDateTime(final GXDLMSSettings settings, final GXByteBuffer buff, final Object value) {
+        if (value instanceof GXCompactDateTime) {
+            ((GXCompactDateTime) value).write(settings, buff);
+            return;
+        }
         GXDateTime dt = getDateTime(value);
         java.util.Calendar tm = dt.getMeterCalendar();
         // Add additional date time skips.
@@ -35,6 +35,7 @@
 package gurux.dlms.internal;
 
 import gurux.dlms.GXDLMSTranslatorStructure;
+import gurux.dlms.IGXRowListener;
 import gurux.dlms.enums.DataType;
 
 /**
@@ -67,6 +68,27 @@ public class GXDataInfo {
 
     private GXDLMSTranslatorStructure xml;
 
+    /**
+     * Array elements are passed to the listener instead of returning them.
+     */
+    private IGXRowListener rowListener;
+
+    /**
+     * @return Listener that receives the parsed elements of the array.
+     */
+    public final IGXRowListener getRowListener() {
+        return rowListener;
+    }
+
+    /**
+     * @param value
+     *            Listener that receives the parsed elements of the array.
+     *            Elements are not added to the returned array.
+     */
+    public final void setRowListener(final IGXRowListener value) {
+        rowListener = value;
+    }
+
     /**
      * @return Last array index.
      */
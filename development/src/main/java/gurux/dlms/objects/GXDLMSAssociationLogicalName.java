@@ -78,7 +78,6 @@ import gurux.dlms.enums.MethodAccessMode;
 import gurux.dlms.enums.MethodAccessMode3;
 import gurux.dlms.enums.ObjectType;
 import gurux.dlms.internal.GXCommon;
-import gurux.dlms.manufacturersettings.GXDLMSAttributeSettings;
 import gurux.dlms.objects.enums.ApplicationContextName;
 import gurux.dlms.objects.enums.AssociationStatus;
 import gurux.dlms.objects.enums.CertificateType;
@@ -94,8 +93,16 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
      * Is this association including other association views.
      */
     private boolean multipleAssociationViews;
-    private HashMap<GXDLMSObject, int[]> accessRights = new HashMap<GXDLMSObject, int[]>();
-    private HashMap<GXDLMSObject, int[]> methodAccessRights = new HashMap<GXDLMSObject, int[]>();
+    /**
+     * Packed attribute access rights by object. Arrays might be shared and
+     * they are copied before they are changed.
+     */
+    private HashMap<GXDLMSObject, byte[]> accessRights = new HashMap<GXDLMSObject, byte[]>();
+    /**
+     * Packed method access rights by object. Arrays might be shared and they
+     * are copied before they are changed.
+     */
+    private HashMap<GXDLMSObject, byte[]> methodAccessRights = new HashMap<GXDLMSObject, byte[]>();
 
     private static final Logger LOGGER = Logger.getLogger(GXDLMSAssociationLogicalName.class.getName());
     private GXDLMSObjectCollection objectList;
@@ -122,6 +129,12 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
      */
     private Entry<Byte, String> currentUser;
 
+    /**
+     * Is object list compacted. This is used to prevent recursion when
+     * association is in its own object list.
+     */
+    private boolean compacting;
+
     /**
      * Constructor.
      */
@@ -161,6 +174,35 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
         objectList = value;
     }
 
+    /**
+     * Convert association and the objects in the object list to the compact
+     * form. Access rights of the association view are shared with the other
+     * associations that have the same access rights.
+     * 
+     * @return True, if association object was compacted.
+     */
+    @Override
+    public final boolean compact() {
+        boolean ret = super.compact();
+        if (!compacting) {
+            compacting = true;
+            try {
+                if (objectList != null) {
+                    objectList.compact();
+                }
+                for (Entry<GXDLMSObject, byte[]> it : accessRights.entrySet()) {
+                    it.setValue(GXObjectPool.intern(it.getValue()));
+                }
+                for (Entry<GXDLMSObject, byte[]> it : methodAccessRights.entrySet()) {
+                    it.setValue(GXObjectPool.intern(it.getValue()));
+                }
+            } finally {
+                compacting = false;
+            }
+        }
+        return ret;
+    }
+
     /**
      * @return Contains the identifiers of the COSEM client APs within the
      *         physical devices hosting these APs, which belong to the AA
@@ -420,11 +462,11 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
                 byte[] tmp;
                 Signature ver;
                 if (settings.getCipher().getSecuritySuite() == SecuritySuite.SUITE_1) {
-                    ver = Signature.getInstance("SHA256withECDSA");
+                    ver = GXSecure.getSignature("SHA256withECDSA");
                     tmp = GXAsn1Converter.toByteArray(new Object[] { new GXAsn1Integer(signature.subArray(0, 32)),
                             new GXAsn1Integer(signature.subArray(32, 32)) });
                 } else if (settings.getCipher().getSecuritySuite() == SecuritySuite.SUITE_2) {
-                    ver = Signature.getInstance("SHA384withECDSA");
+                    ver = GXSecure.getSignature("SHA384withECDSA");
                     tmp = GXAsn1Converter.toByteArray(new Object[] { new GXAsn1Integer(signature.subArray(0, 48)),
                             new GXAsn1Integer(signature.subArray(48, 48)) });
                 } else {
@@ -566,22 +608,22 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
                         ss.setKek(settings.getKek());
                     }
                     int count = obj.getAttributeCount();
-                    int[] list = new int[count];
+                    byte[] list = new byte[count];
                     for (int pos = 0; pos != count; ++pos) {
                         if (getVersion() < 3) {
-                            list[pos] = obj.getAccess(1 + pos).getValue();
+                            list[pos] = (byte) obj.getAccess(1 + pos).getValue();
                         } else {
-                            list[pos] = AccessMode3.toInteger(obj.getAccess3(1 + pos));
+                            list[pos] = (byte) AccessMode3.toInteger(obj.getAccess3(1 + pos));
                         }
                     }
                     accessRights.put(obj, list);
                     count = obj.getMethodCount();
-                    list = new int[count];
+                    list = new byte[count];
                     for (int pos = 0; pos != count; ++pos) {
                         if (getVersion() < 3) {
-                            list[pos] = obj.getMethodAccess(1 + pos).getValue();
+                            list[pos] = (byte) obj.getMethodAccess(1 + pos).getValue();
                         } else {
-                            list[pos] = MethodAccessMode3.toInteger(obj.getMethodAccess3(1 + pos));
+                            list[pos] = (byte) MethodAccessMode3.toInteger(obj.getMethodAccess3(1 + pos));
                         }
                     }
                     methodAccessRights.put(obj, list);
@@ -1322,7 +1364,7 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
         objectList.clear();
         if (reader.isStartElement("ObjectList", true)) {
             String target;
-            int[] buff;
+            byte[] buff;
             while (!reader.isEOF()) {
                 if (reader.isStartElement()) {
                     target = reader.getName();
@@ -1346,34 +1388,34 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
                         String access = reader.readElementContentAsString("Access");
                         if (access != null && access != "") {
                             byte[] tmp = access.getBytes();
-                            buff = new int[tmp.length];
+                            buff = new byte[tmp.length];
                             for (int pos = 0; pos != tmp.length; ++pos) {
-                                buff[pos] = tmp[pos] - 0x30;
+                                buff[pos] = (byte) (tmp[pos] - 0x30);
                             }
                             accessRights.put(obj, buff);
                         }
                         access = reader.readElementContentAsString("Access3");
                         if (access != null && access != "") {
-                            buff = new int[access.length() / 4];
+                            buff = new byte[access.length() / 4];
                             for (int pos = 0; pos != buff.length; ++pos) {
-                                buff[pos] = Integer.parseInt(access.substring(4 * pos, 4 * pos + 4), 16) & ~0x8000;
+                                buff[pos] = (byte) Integer.parseInt(access.substring(4 * pos, 4 * pos + 4), 16);
                             }
                             accessRights.put(obj, buff);
                         }
                         access = reader.readElementContentAsString("MethodAccess");
                         if (access != null && access != "") {
                             byte[] tmp = access.getBytes();
-                            buff = new int[tmp.length];
+                            buff = new byte[tmp.length];
                             for (int pos = 0; pos != tmp.length; ++pos) {
-                                buff[pos] = tmp[pos] - 0x30;
+                                buff[pos] = (byte) (tmp[pos] - 0x30);
                             }
                             methodAccessRights.put(obj, buff);
                         }
                         access = reader.readElementContentAsString("MethodAccess3");
                         if (access != null && access != "") {
-                            buff = new int[access.length() / 4];
+                            buff = new byte[access.length() / 4];
                             for (int pos = 0; pos != buff.length; ++pos) {
-                                buff[pos] = Integer.parseInt(access.substring(4 * pos, 4 * pos + 4), 16) & ~0x8000;
+                                buff[pos] = (byte) Integer.parseInt(access.substring(4 * pos, 4 * pos + 4), 16);
                             }
                             methodAccessRights.put(obj, buff);
                         }
@@ -1492,15 +1534,15 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
                         }
                         // Add access rights if set.
                         if (accessRights.containsKey(it)) {
-                            int[] buff = accessRights.get(it);
+                            byte[] buff = accessRights.get(it);
                             sb.setLength(0);
                             for (int pos = 0; pos != buff.length; ++pos) {
                                 if (getVersion() < 3) {
-                                    sb.append(String.valueOf(buff[pos]));
+                                    sb.append(String.valueOf(buff[pos] & 0xFF));
                                 } else {
                                     // Set highest bit so value is write with
                                     // two byte.
-                                    sb.append(Integer.toHexString(0x8000 | buff[pos]));
+                                    sb.append(Integer.toHexString(0x8000 | (buff[pos] & 0xFF)));
                                 }
                             }
                             if (getVersion() < 3) {
@@ -1521,15 +1563,15 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
                             }
                         }
                         if (methodAccessRights.containsKey(it)) {
-                            int[] buff = methodAccessRights.get(it);
+                            byte[] buff = methodAccessRights.get(it);
                             sb.setLength(0);
                             for (int pos = 0; pos != buff.length; ++pos) {
                                 if (getVersion() < 3) {
-                                    sb.append(String.valueOf(buff[pos]));
+                                    sb.append(String.valueOf(buff[pos] & 0xFF));
                                 } else {
                                     // Set highest bit so value is write with
                                     // two byte.
-                                    sb.append(Integer.toHexString(0x8000 | buff[pos]));
+                                    sb.append(Integer.toHexString(0x8000 | (buff[pos] & 0xFF)));
                                 }
                             }
                             if (getVersion() < 3) {
@@ -1659,9 +1701,9 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
         if (attributeIndex == 1) {
             return AccessMode.READ.getValue();
         }
-        GXDLMSAttributeSettings att = target.getAttributes().find(attributeIndex);
-        if (att != null) {
-            return att.getAccess().getValue();
+        AccessMode access = target.findAccess(attributeIndex);
+        if (access != null) {
+            return access.getValue();
         }
         switch (target.getObjectType()) {
         case ACCOUNT:
@@ -1823,6 +1865,36 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
         return AccessMode.READ_WRITE.getValue();
     }
 
+    /**
+     * Update packed access right of the object. Array is copied, because it
+     * might be shared.
+     * 
+     * @param rights
+     *            Access rights by object.
+     * @param target
+     *            COSEM object.
+     * @param count
+     *            Amount of attributes or methods.
+     * @param defaultValue
+     *            Default access right.
+     * @param index
+     *            Attribute or method index.
+     * @param value
+     *            Access right.
+     */
+    private static void updateAccess(final HashMap<GXDLMSObject, byte[]> rights, final GXDLMSObject target,
+            final int count, final int defaultValue, final int index, final int value) {
+        byte[] list = rights.get(target);
+        if (list == null) {
+            list = new byte[count];
+            Arrays.fill(list, (byte) defaultValue);
+        } else {
+            list = list.clone();
+        }
+        list[index - 1] = (byte) value;
+        rights.put(target, list);
+    }
+
     /**
      * Returns access mode for given object.
      * 
@@ -1837,11 +1909,11 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
                 && target.getLogicalName().compareTo("0.0.40.0.0.255") == 0)) {
             return this.getAccess(index);
         }
-        int[] tmp = accessRights.get(target);
+        byte[] tmp = accessRights.get(target);
         if (tmp == null) {
             return AccessMode.forValue(getAttributeAccess(target, index));
         }
-        return AccessMode.forValue(tmp[index - 1]);
+        return AccessMode.forValue(tmp[index - 1] & 0xFF);
     }
 
     /**
@@ -1855,14 +1927,7 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
      *            Access mode.
      */
     public void setAccess(final GXDLMSObject target, final int index, final AccessMode access) {
-        if (accessRights.containsKey(target)) {
-            accessRights.get(target)[index - 1] = access.getValue();
-        } else {
-            int[] list = new int[target.getAttributeCount()];
-            Arrays.fill(list, 3);
-            list[index - 1] = access.getValue();
-            accessRights.put(target, list);
-        }
+        updateAccess(accessRights, target, target.getAttributeCount(), 3, index, access.getValue());
     }
 
     /**
@@ -1878,10 +1943,10 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
         if (count < access.length) {
             throw new RuntimeException("Invalid access buffer.");
         }
-        int[] buff = new int[count];
-        Arrays.fill(buff, 3);
+        byte[] buff = new byte[count];
+        Arrays.fill(buff, (byte) 3);
         for (int pos = 0; pos != access.length; ++pos) {
-            buff[pos] = access[pos].getValue();
+            buff[pos] = (byte) access[pos].getValue();
         }
         accessRights.put(target, buff);
     }
@@ -1902,7 +1967,7 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
                 || methodAccessRights.get(target) == null) {
             return this.getMethodAccess(index);
         }
-        return MethodAccessMode.forValue(methodAccessRights.get(target)[index - 1]);
+        return MethodAccessMode.forValue(methodAccessRights.get(target)[index - 1] & 0xFF);
     }
 
     /**
@@ -1916,14 +1981,7 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
      *            Method access mode.
      */
     public void setMethodAccess(final GXDLMSObject target, final int index, final MethodAccessMode access) {
-        if (methodAccessRights.containsKey(target)) {
-            methodAccessRights.get(target)[index - 1] = access.getValue();
-        } else {
-            int[] list = new int[target.getMethodCount()];
-            Arrays.fill(list, 1);
-            list[index - 1] = access.getValue();
-            methodAccessRights.put(target, list);
-        }
+        updateAccess(methodAccessRights, target, target.getMethodCount(), 1, index, access.getValue());
     }
 
     /**
@@ -1939,10 +1997,10 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
         if (count < access.length) {
             throw new RuntimeException("Invalid access buffer.");
         }
-        int[] buff = new int[count];
-        Arrays.fill(buff, 1);
+        byte[] buff = new byte[count];
+        Arrays.fill(buff, (byte) 1);
         for (int pos = 0; pos != access.length; ++pos) {
-            buff[pos] = access[pos].getValue();
+            buff[pos] = (byte) access[pos].getValue();
         }
         methodAccessRights.put(target, buff);
     }
@@ -1961,11 +2019,11 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
                 && target.getLogicalName().compareTo("0.0.40.0.0.255") == 0)) {
             return this.getAccess3(index);
         }
-        int[] tmp = accessRights.get(target);
+        byte[] tmp = accessRights.get(target);
         if (tmp == null) {
             return AccessMode3.forValue(getAttributeAccess(target, index));
         }
-        return AccessMode3.forValue(tmp[index - 1]);
+        return AccessMode3.forValue(tmp[index - 1] & 0xFF);
     }
 
     /**
@@ -1979,14 +2037,7 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
      *            Access mode.
      */
     public void setAccess3(final GXDLMSObject target, final int index, final Set<AccessMode3> access) {
-        if (accessRights.containsKey(target)) {
-            accessRights.get(target)[index - 1] = AccessMode3.toInteger(access);
-        } else {
-            int[] list = new int[target.getAttributeCount()];
-            Arrays.fill(list, 3);
-            list[index - 1] = AccessMode3.toInteger(access);
-            accessRights.put(target, list);
-        }
+        updateAccess(accessRights, target, target.getAttributeCount(), 3, index, AccessMode3.toInteger(access));
     }
 
     /**
@@ -2002,10 +2053,10 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
         if (count < access.length) {
             throw new RuntimeException("Invalid access buffer.");
         }
-        int[] buff = new int[count];
-        Arrays.fill(buff, 3);
+        byte[] buff = new byte[count];
+        Arrays.fill(buff, (byte) 3);
         for (int pos = 0; pos != access.length; ++pos) {
-            buff[pos] = AccessMode3.toInteger(access[pos]);
+            buff[pos] = (byte) AccessMode3.toInteger(access[pos]);
         }
         accessRights.put(target, buff);
     }
@@ -2026,7 +2077,7 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
                 || accessRights.get(target) == null) {
             return this.getMethodAccess3(index);
         }
-        return MethodAccessMode3.forValue(methodAccessRights.get(target)[index - 1]);
+        return MethodAccessMode3.forValue(methodAccessRights.get(target)[index - 1] & 0xFF);
     }
 
     /**
@@ -2040,14 +2091,7 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
      *            Method access mode.
      */
     public void setMethodAccess3(final GXDLMSObject target, final int index, final Set<MethodAccessMode3> access) {
-        if (methodAccessRights.containsKey(target)) {
-            methodAccessRights.get(target)[index - 1] = MethodAccessMode3.toInteger(access);
-        } else {
-            int[] list = new int[target.getMethodCount()];
-            Arrays.fill(list, 1);
-            list[index - 1] = MethodAccessMode3.toInteger(access);
-            methodAccessRights.put(target, list);
-        }
+        updateAccess(methodAccessRights, target, target.getMethodCount(), 1, index, MethodAccessMode3.toInteger(access));
     }
 
     /**
@@ -2063,10 +2107,10 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject implements IGXDLM
         if (count < access.length) {
             throw new RuntimeException("Invalid access buffer.");
         }
-        int[] buff = new int[count];
-        Arrays.fill(buff, 1);
+        byte[] buff = new byte[count];
+        Arrays.fill(buff, (byte) 1);
         for (int pos = 0; pos != access.length; ++pos) {
-            buff[pos] = MethodAccessMode3.toInteger(access[pos]);
+            buff[pos] = (byte) MethodAccessMode3.toInteger(access[pos]);
         }
         methodAccessRights.put(target, buff);
     }
@@ -60,7 +60,6 @@ import gurux.dlms.enums.ErrorCode;
 import gurux.dlms.enums.MethodAccessMode;
 import gurux.dlms.enums.ObjectType;
 import gurux.dlms.internal.GXCommon;
-import gurux.dlms.manufacturersettings.GXDLMSAttributeSettings;
 import gurux.dlms.objects.enums.SecuritySuite;
 import gurux.dlms.secure.GXSecure;
 
@@ -150,9 +149,9 @@ public class GXDLMSAssociationShortName extends GXDLMSObject implements IGXDLMSB
                 try {
                     GXByteBuffer signature = new GXByteBuffer((byte[]) e.getParameters());
                     if (settings.getCipher().getSecuritySuite() == SecuritySuite.SUITE_1) {
-                        ver = Signature.getInstance("SHA256withECDSA");
+                        ver = GXSecure.getSignature("SHA256withECDSA");
                     } else if (settings.getCipher().getSecuritySuite() == SecuritySuite.SUITE_2) {
-                        ver = Signature.getInstance("SHA384withECDSA");
+                        ver = GXSecure.getSignature("SHA384withECDSA");
                     } else {
                         throw new IllegalArgumentException("Invalid security suite.");
                     }
@@ -269,23 +268,26 @@ public class GXDLMSAssociationShortName extends GXDLMSObject implements IGXDLMSB
         data.setUInt8((byte) 3);
         GXCommon.setData(null, data, DataType.UINT16, item.getShortName());
         data.setUInt8((byte) DataType.ARRAY.getValue());
-        data.setUInt8((byte) item.getAttributes().size());
-        for (GXDLMSAttributeSettings att : item.getAttributes()) {
+        // Settings are read without expanding compact objects.
+        int[] indexes = item.getSettingIndexes(false);
+        data.setUInt8((byte) indexes.length);
+        for (int index : indexes) {
             // attribute_access_item
             data.setUInt8((byte) DataType.STRUCTURE.getValue());
             data.setUInt8((byte) 3);
-            GXCommon.setData(null, data, DataType.INT8, att.getIndex());
-            GXCommon.setData(null, data, DataType.ENUM, att.getAccess().getValue());
+            GXCommon.setData(null, data, DataType.INT8, index);
+            GXCommon.setData(null, data, DataType.ENUM, item.findAccess(index).getValue());
             GXCommon.setData(null, data, DataType.NONE, null);
         }
         data.setUInt8((byte) DataType.ARRAY.getValue());
-        data.setUInt8((byte) item.getMethodAttributes().size());
-        for (GXDLMSAttributeSettings it : item.getMethodAttributes()) {
+        indexes = item.getSettingIndexes(true);
+        data.setUInt8((byte) indexes.length);
+        for (int index : indexes) {
             // attribute_access_item
             data.setUInt8((byte) DataType.STRUCTURE.getValue());
             data.setUInt8((byte) 2);
-            GXCommon.setData(null, data, DataType.INT8, it.getIndex());
-            GXCommon.setData(null, data, DataType.ENUM, it.getMethodAccess().getValue());
+            GXCommon.setData(null, data, DataType.INT8, index);
+            GXCommon.setData(null, data, DataType.ENUM, item.findMethodAccess(index).getValue());
         }
     }
 
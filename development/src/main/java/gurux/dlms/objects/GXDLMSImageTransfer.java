@@ -34,12 +34,14 @@
 
 package gurux.dlms.objects;
 
+import java.io.IOException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.SignatureException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Hashtable;
 import java.util.List;
 
@@ -67,6 +69,18 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
     private long imageSize;
     private Hashtable<Long, Object> imageData = new Hashtable<Long, Object>();
     private long imageBlockSize;
+    /**
+     * Transferred image blocks. Null if status is not set.
+     */
+    private BitSet transferredBlocks;
+    /**
+     * Number of image blocks in the transferred blocks status.
+     */
+    private int transferredBlocksCount;
+    /**
+     * Transferred blocks status as a string. Null if the string is not build
+     * yet.
+     */
     private String imageTransferredBlocksStatus;
     private long imageFirstNotTransferredBlockNumber;
     private boolean imageTransferEnabled;
@@ -130,6 +144,13 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
      *         one individual ImageBlock.
      */
     public final String getImageTransferredBlocksStatus() {
+        if (imageTransferredBlocksStatus == null && transferredBlocks != null) {
+            StringBuilder sb = new StringBuilder(transferredBlocksCount);
+            for (int pos = 0; pos != transferredBlocksCount; ++pos) {
+                sb.append(transferredBlocks.get(pos) ? '1' : '0');
+            }
+            imageTransferredBlocksStatus = sb.toString();
+        }
         return imageTransferredBlocksStatus;
     }
 
@@ -140,9 +161,88 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
      *            about one individual ImageBlock.
      */
     public final void setImageTransferredBlocksStatus(final String value) {
+        if (value == null) {
+            transferredBlocks = null;
+            transferredBlocksCount = 0;
+        } else {
+            transferredBlocks = new BitSet(value.length());
+            transferredBlocksCount = value.length();
+            for (int pos = 0; pos != value.length(); ++pos) {
+                if (value.charAt(pos) == '1') {
+                    transferredBlocks.set(pos);
+                }
+            }
+        }
         imageTransferredBlocksStatus = value;
     }
 
+    /**
+     * Returns transferred image blocks. Bit is set for each transferred block.
+     * 
+     * @return Copy of the transferred blocks status, or null if status is not
+     *         set.
+     */
+    public final BitSet getImageTransferredBlocks() {
+        if (transferredBlocks == null) {
+            return null;
+        }
+        return (BitSet) transferredBlocks.clone();
+    }
+
+    /**
+     * @return Number of image blocks in the transferred blocks status.
+     */
+    public final int getImageTransferredBlocksCount() {
+        return transferredBlocksCount;
+    }
+
+    /**
+     * Set transferred image blocks.
+     * 
+     * @param value
+     *            Transferred blocks. Bit is set for each transferred block.
+     *            Value is copied.
+     * @param count
+     *            Number of image blocks.
+     */
+    public final void setImageTransferredBlocks(final BitSet value, final int count) {
+        if (value == null) {
+            setImageTransferredBlocksStatus(null);
+        } else {
+            if (count < 0 || value.length() > count) {
+                throw new IllegalArgumentException("Invalid image block count.");
+            }
+            transferredBlocks = (BitSet) value.clone();
+            transferredBlocksCount = count;
+            imageTransferredBlocksStatus = null;
+        }
+    }
+
+    /**
+     * Decode transferred blocks from bit-string. The first bit of the
+     * bit-string is the most significant bit of the first byte.
+     */
+    private void setImageTransferredBlocks(final GXBitString value) {
+        byte[] bytes = value.getValue();
+        if (bytes == null) {
+            bytes = new byte[0];
+        }
+        int count = 8 * bytes.length - value.getPadBits();
+        long[] words = new long[(count + 63) / 64];
+        for (int pos = 0; pos != bytes.length; ++pos) {
+            // Bit order is reversed in BitSet.
+            long it = Integer.reverse(bytes[pos] & 0xFF) >>> 24;
+            words[pos / 8] |= it << (8 * (pos % 8));
+        }
+        if (count % 64 != 0) {
+            // Pad bits are ignored.
+            words[words.length - 1] &= (1L << (count % 64)) - 1;
+        }
+        transferredBlocks = BitSet.valueOf(words);
+        transferredBlocksCount = count;
+        imageTransferredBlocksStatus = null;
+    }
+
     /**
      * @return Provides the ImageBlockNumber of the first ImageBlock not
      *         transferred. NOTE If the Image is complete, the value returned
@@ -268,7 +368,6 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
         // Image transfer initiate
         if (e.getIndex() == 1) {
             imageFirstNotTransferredBlockNumber = 0;
-            imageTransferredBlocksStatus = "";
             List<?> value = (List<?>) e.getParameters();
             byte[] imageIdentifier = (byte[]) value.get(0);
             imageSize = ((Number) value.get(1)).longValue();
@@ -293,19 +392,19 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
             if (imageSize % imageBlockSize != 0) {
                 ++cnt;
             }
-            StringBuilder sb = new StringBuilder(cnt);
-            for (long pos = 0; pos < cnt; ++pos) {
-                sb.append('0');
-            }
-            imageTransferredBlocksStatus = sb.toString();
+            transferredBlocks = new BitSet(cnt);
+            transferredBlocksCount = cnt;
+            imageTransferredBlocksStatus = null;
             return null;
         } else if (e.getIndex() == 2) {
             // Image block transfer
             List<?> value = (List<?>) e.getParameters();
             long imageIndex = ((Number) value.get(0)).longValue();
-            byte[] tmp = imageTransferredBlocksStatus.getBytes();
-            tmp[(int) imageIndex] = '1';
-            imageTransferredBlocksStatus = new String(tmp);
+            if (transferredBlocks == null || imageIndex < 0 || imageIndex >= transferredBlocksCount) {
+                throw new IllegalArgumentException("Invalid image block number.");
+            }
+            transferredBlocks.set((int) imageIndex);
+            imageTransferredBlocksStatus = null;
             imageFirstNotTransferredBlockNumber = imageIndex + 1;
             imageData.put(imageIndex, (byte[]) value.get(1));
             imageTransferStatus = ImageTransferStatus.IMAGE_TRANSFER_INITIATED;
@@ -379,7 +478,8 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
             return getImageBlockSize();
         }
         if (e.getIndex() == 3) {
-            return imageTransferredBlocksStatus;
+            // Status string is cached until the next block is transferred.
+            return getImageTransferredBlocksStatus();
         }
         if (e.getIndex() == 4) {
             return getImageFirstNotTransferredBlockNumber();
@@ -412,9 +512,9 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
             }
         } else if (e.getIndex() == 3) {
             if (e.getValue() instanceof GXBitString) {
-                imageTransferredBlocksStatus = ((GXBitString) e.getValue()).toString();
+                setImageTransferredBlocks((GXBitString) e.getValue());
             } else {
-                imageTransferredBlocksStatus = String.valueOf(e.getValue());
+                setImageTransferredBlocksStatus(String.valueOf(e.getValue()));
             }
         } else if (e.getIndex() == 4) {
             if (e.getValue() == null) {
@@ -483,33 +583,116 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
      * @return Sent blocks.
      */
     public List<byte[]> getImageBlocks(final byte[] image) {
-        int cnt = (int) (image.length / imageBlockSize);
-        if (image.length % imageBlockSize != 0) {
-            ++cnt;
-        }
-        List<byte[]> packets = new ArrayList<byte[]>();
+        GXImageSource source = GXImageSource.forBytes(image);
+        int cnt = (int) getImageBlockCount(source);
+        List<byte[]> packets = new ArrayList<byte[]>(cnt);
         for (int pos = 0; pos != cnt; ++pos) {
-            GXByteBuffer data = new GXByteBuffer();
-            data.setUInt8(DataType.STRUCTURE.getValue());
-            data.setUInt8(2);
-            GXCommon.setData(null, data, DataType.UINT32, pos);
-            byte[] tmp;
-            int bytes = (int) (image.length - ((pos + 1) * imageBlockSize));
-            // If last packet
-            if (bytes < 0) {
-                bytes = (int) (image.length - (pos * imageBlockSize));
-                tmp = new byte[bytes];
-                System.arraycopy(image, (int) (pos * imageBlockSize), tmp, 0, bytes);
-            } else {
-                tmp = new byte[(int) imageBlockSize];
-                System.arraycopy(image, (int) (pos * imageBlockSize), tmp, 0, (int) imageBlockSize);
-            }
-            GXCommon.setData(null, data, DataType.OCTET_STRING, tmp);
-            packets.add(data.array());
+            packets.add(getImageBlock(image, pos));
         }
         return packets;
     }
 
+    /**
+     * Returns the number of image blocks.
+     * 
+     * @param image
+     *            Image.
+     * @return Number of image blocks.
+     */
+    public final long getImageBlockCount(final GXImageSource image) {
+        if (imageBlockSize == 0) {
+            throw new IllegalArgumentException("Invalid image block size.");
+        }
+        long cnt = image.getSize() / imageBlockSize;
+        if (image.getSize() % imageBlockSize != 0) {
+            ++cnt;
+        }
+        return cnt;
+    }
+
+    /**
+     * Returns image block to send to the meter.
+     * 
+     * @param image
+     *            Image.
+     * @param blockNumber
+     *            Zero based block number.
+     * @return Image block transfer parameter.
+     * @throws IOException
+     *             Reading the image failed.
+     */
+    public final byte[] getImageBlock(final GXImageSource image, final long blockNumber) throws IOException {
+        if (blockNumber < 0 || blockNumber >= getImageBlockCount(image)) {
+            throw new IllegalArgumentException("Invalid image block number.");
+        }
+        long position = blockNumber * imageBlockSize;
+        int count = (int) Math.min(imageBlockSize, image.getSize() - position);
+        GXByteBuffer data = new GXByteBuffer(12);
+        data.setUInt8(DataType.STRUCTURE.getValue());
+        data.setUInt8(2);
+        GXCommon.setData(null, data, DataType.UINT32, blockNumber);
+        data.setUInt8(DataType.OCTET_STRING.getValue());
+        GXCommon.setObjectCount(count, data);
+        // Image bytes are read directly to the parameter.
+        byte[] block = new byte[data.size() + count];
+        System.arraycopy(data.getData(), 0, block, 0, data.size());
+        image.read(position, block, data.size(), count);
+        return block;
+    }
+
+    private byte[] getImageBlock(final byte[] image, final long blockNumber) {
+        try {
+            return getImageBlock(GXImageSource.forBytes(image), blockNumber);
+        } catch (IOException e) {
+            // Byte array is never failing.
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    /**
+     * Move one image block to the meter. Blocks are read and encoded only when
+     * they are sent, so the same image can be shared by all the sessions.
+     * Interrupted transfer is resumed by starting from
+     * {@link #getImageFirstNotTransferredBlockNumber()}:
+     * 
+     * <pre>
+     * long count = target.getImageBlockCount(image);
+     * for (long pos = target.getImageFirstNotTransferredBlockNumber(); pos &lt; count; ++pos) {
+     *     readDataBlock(target.imageBlockTransfer(client, image, pos), reply);
+     * }
+     * </pre>
+     * 
+     * @param client
+     *            DLMS Client.
+     * @param image
+     *            Image.
+     * @param blockNumber
+     *            Zero based block number.
+     * @return DLMS frames that are send to the meter.
+     * @throws IOException
+     *             Reading the image failed.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final byte[][] imageBlockTransfer(final GXDLMSClient client, final GXImageSource image,
+            final long blockNumber) throws IOException, InvalidKeyException, NoSuchAlgorithmException,
+            NoSuchPaddingException, InvalidAlgorithmParameterException, IllegalBlockSizeException,
+            BadPaddingException, SignatureException {
+        return client.method(this, 2, getImageBlock(image, blockNumber), DataType.ARRAY);
+    }
+
     /**
      * Move image to the meter.
      * 
@@ -575,21 +758,17 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
         if (index < 0) {
             throw new IllegalArgumentException("Index is zero based value.");
         }
-        List<byte[]> blocks = getImageBlocks(image);
+        int cnt = (int) getImageBlockCount(GXImageSource.forBytes(image));
         if (imageBlockCount != null) {
-            imageBlockCount[0] = blocks.size();
+            imageBlockCount[0] = cnt;
         }
-        if (index >= blocks.size()) {
+        if (index >= cnt) {
             throw new IllegalArgumentException("Image start index is higher than image block count");
         }
         List<byte[]> packets = new ArrayList<byte[]>();
-        int i = index;
-        for (byte[] it : blocks) {
-            if (i == 0) {
-                packets.addAll(Arrays.asList(client.method(this, 2, it, DataType.ARRAY)));
-            } else {
-                --i;
-            }
+        // Blocks before the start index are not encoded.
+        for (int pos = index; pos != cnt; ++pos) {
+            packets.addAll(Arrays.asList(client.method(this, 2, getImageBlock(image, pos), DataType.ARRAY)));
         }
         return packets.toArray(new byte[packets.size()][]);
     }
@@ -624,26 +803,118 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
     public byte[][] imageBlockTransfer(final GXDLMSClient client, final byte[] image, final String blocksStatus,
             final int[] imageBlockCount) throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
             InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
-        List<byte[]> packets = new ArrayList<byte[]>();
-        List<byte[]> blocks = getImageBlocks(image);
+        GXImageSource source = GXImageSource.forBytes(image);
+        int cnt = (int) getImageBlockCount(source);
         if (imageBlockCount != null) {
-            imageBlockCount[0] = blocks.size();
+            imageBlockCount[0] = cnt;
         }
-        if (blocksStatus == null || blocksStatus.length() < blocks.size()) {
+        if (blocksStatus == null || blocksStatus.length() < cnt) {
             throw new IllegalArgumentException("Image start index is higher than image block count");
         }
-        int index = 0;
-        byte[] status = blocksStatus.getBytes();
-        for (byte[] it : blocks) {
-            if (blocksStatus == null || blocksStatus.length() < index || status[index] != '1') {
-                packets.addAll(Arrays.asList(client.method(this, 2, it, DataType.ARRAY)));
-            } else {
-                ++index;
+        BitSet transferred = new BitSet(cnt);
+        for (int pos = 0; pos != cnt; ++pos) {
+            if (blocksStatus.charAt(pos) == '1') {
+                transferred.set(pos);
+            }
+        }
+        try {
+            return imageBlockTransfer(client, source, transferred);
+        } catch (IOException e) {
+            // Byte array is never failing.
+            throw new IllegalStateException(e.getMessage());
+        }
+    }
+
+    /**
+     * Send only the image blocks that are not transferred yet.
+     * 
+     * @param client
+     *            DLMS Client.
+     * @param image
+     *            Image.
+     * @param transferred
+     *            Transferred blocks. Bit is set for each transferred block.
+     *            See {@link #getImageTransferredBlocks()}.
+     * @return DLMS frames that are send to the meter.
+     * @throws IOException
+     *             Reading the image failed.
+     * @throws NoSuchPaddingException
+     *             No such padding exception.
+     * @throws NoSuchAlgorithmException
+     *             No such algorithm exception.
+     * @throws InvalidAlgorithmParameterException
+     *             Invalid algorithm parameter exception.
+     * @throws InvalidKeyException
+     *             Invalid key exception.
+     * @throws BadPaddingException
+     *             Bad padding exception.
+     * @throws IllegalBlockSizeException
+     *             Illegal block size exception.
+     * @throws SignatureException
+     *             Signature exception.
+     */
+    public final byte[][] imageBlockTransfer(final GXDLMSClient client, final GXImageSource image,
+            final BitSet transferred) throws IOException, InvalidKeyException, NoSuchAlgorithmException,
+            NoSuchPaddingException, InvalidAlgorithmParameterException, IllegalBlockSizeException,
+            BadPaddingException, SignatureException {
+        List<byte[]> packets = new ArrayList<byte[]>();
+        for (int[] it : getMissingImageBlocks(transferred, (int) getImageBlockCount(image), 0)) {
+            for (int pos = it[0]; pos != it[0] + it[1]; ++pos) {
+                packets.addAll(Arrays.asList(imageBlockTransfer(client, image, pos)));
             }
         }
         return packets.toArray(new byte[packets.size()][]);
     }
 
+    /**
+     * Plan the resend of the missing image blocks. Adjacent missing blocks
+     * are merged to ascending runs, so each run can be sent back to back
+     * without reading the transferred blocks status between the blocks.
+     * 
+     * @param transferred
+     *            Transferred blocks. Bit is set for each transferred block. If
+     *            null, all the blocks are missing.
+     * @param blockCount
+     *            Number of image blocks.
+     * @param maxRunLength
+     *            Maximum number of the blocks in one run, for example the
+     *            negotiated GBT window size. Zero if not limited.
+     * @return Runs of the missing blocks. First item is the first missing
+     *         block and second item is the number of the blocks in the run.
+     */
+    public static List<int[]> getMissingImageBlocks(final BitSet transferred, final int blockCount,
+            final int maxRunLength) {
+        if (blockCount < 0 || maxRunLength < 0) {
+            throw new IllegalArgumentException("Invalid block count.");
+        }
+        List<int[]> runs = new ArrayList<int[]>();
+        int pos = 0;
+        while (pos < blockCount) {
+            if (transferred != null) {
+                pos = transferred.nextClearBit(pos);
+                if (pos >= blockCount) {
+                    break;
+                }
+            }
+            int end = blockCount;
+            if (transferred != null) {
+                end = Math.min(blockCount, transferred.nextSetBit(pos));
+                if (end < 0) {
+                    end = blockCount;
+                }
+            }
+            while (pos != end) {
+                int count = end - pos;
+                if (maxRunLength != 0 && count > maxRunLength) {
+                    count = maxRunLength;
+                }
+                runs.add(new int[] { pos, count });
+                pos += count;
+            }
+        }
+        return runs;
+    }
+
     public final byte[][] imageVerify(final GXDLMSClient client)
             throws InvalidKeyException, NoSuchAlgorithmException, NoSuchPaddingException,
             InvalidAlgorithmParameterException, IllegalBlockSizeException, BadPaddingException, SignatureException {
@@ -659,7 +930,7 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
     @Override
     public final void load(final GXXmlReader reader) throws XMLStreamException {
         imageBlockSize = reader.readElementContentAsInt("ImageBlockSize");
-        imageTransferredBlocksStatus = reader.readElementContentAsString("ImageTransferredBlocksStatus");
+        setImageTransferredBlocksStatus(reader.readElementContentAsString("ImageTransferredBlocksStatus"));
         imageFirstNotTransferredBlockNumber = reader.readElementContentAsLong("ImageFirstNotTransferredBlockNumber");
         imageTransferEnabled = reader.readElementContentAsInt("ImageTransferEnabled") != 0;
         imageTransferStatus = ImageTransferStatus.values()[reader.readElementContentAsInt("ImageTransferStatus")];
@@ -681,7 +952,7 @@ public class GXDLMSImageTransfer extends GXDLMSObject implements IGXDLMSBase {
     @Override
     public final void save(final GXXmlWriter writer) throws XMLStreamException {
         writer.writeElementString("ImageBlockSize", imageBlockSize);
-        writer.writeElementString("ImageTransferredBlocksStatus", imageTransferredBlocksStatus);
+        writer.writeElementString("ImageTransferredBlocksStatus", getImageTransferredBlocksStatus());
         writer.writeElementString("ImageFirstNotTransferredBlockNumber", imageFirstNotTransferredBlockNumber);
         writer.writeElementString("ImageTransferEnabled", imageTransferEnabled);
         writer.writeElementString("ImageTransferStatus", imageTransferStatus.ordinal());
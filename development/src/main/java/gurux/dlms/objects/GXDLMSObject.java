@@ -39,9 +39,7 @@ import java.io.ByteArrayOutputStream;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.SignatureException;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
@@ -68,7 +66,26 @@ import gurux.dlms.manufacturersettings.GXDLMSAttributeSettings;
  * GXDLMSObject provides an interface to DLMS registers.
  */
 public class GXDLMSObject {
-    private HashMap<Integer, java.util.Date> readTimes = new HashMap<Integer, java.util.Date>();
+    /**
+     * Packed access right flag: attribute settings exist.
+     */
+    private static final int ACCESS_SET = 0x80;
+
+    /**
+     * Packed access right flag: access set of version 3 is used.
+     */
+    private static final int ACCESS3_SET = 0x40;
+
+    /**
+     * Packed access right flag: access set of version 3 contains NO_ACCESS.
+     */
+    private static final int ACCESS3_NO_ACCESS = 0x20;
+
+    /**
+     * Read times in milliseconds by attribute index. Zero if attribute is not
+     * read.
+     */
+    private long[] readTimes;
     protected int version;
     /**
      * Object type.
@@ -81,10 +98,26 @@ public class GXDLMSObject {
     private int customObjectType = 0;
     private GXAttributeCollection attributes = null;
     private GXAttributeCollection methodAttributes = null;
+    /**
+     * Packed attribute access rights of the compact object. There are two
+     * bytes for each attribute index. First byte has the flags and access
+     * mode and second byte has the access mode of version 3. Packed arrays
+     * might be shared and they are copied before they are changed.
+     */
+    private byte[] packedAccess;
+    /**
+     * Packed method access rights of the compact object.
+     */
+    private byte[] packedMethodAccess;
     private int shortName;
     protected String logicalName;
     private String description;
 
+    /**
+     * Is object added to the index of an object collection.
+     */
+    private boolean indexed;
+
     /**
      * Constructor.
      */
@@ -103,8 +136,6 @@ public class GXDLMSObject {
      * Constructor.
      */
     protected GXDLMSObject(final ObjectType type, final String ln, final int sn) {
-        attributes = new GXAttributeCollection();
-        methodAttributes = new GXAttributeCollection();
         setObjectType(type);
         this.setShortName(sn);
         if (ln != null) {
@@ -120,8 +151,6 @@ public class GXDLMSObject {
      * Constructor for custom objects.
      */
     protected GXDLMSObject(final int type, final String ln, final int sn) {
-        attributes = new GXAttributeCollection();
-        methodAttributes = new GXAttributeCollection();
         customObjectType = type;
         this.setShortName(sn);
         if (ln != null) {
@@ -177,10 +206,8 @@ public class GXDLMSObject {
      * @return Is attribute read only.
      */
     protected final java.util.Date getLastReadTime(final int attributeIndex) {
-        for (Map.Entry<Integer, java.util.Date> it : readTimes.entrySet()) {
-            if (it.getKey() == attributeIndex) {
-                return it.getValue();
-            }
+        if (readTimes != null && attributeIndex >= 0 && attributeIndex < readTimes.length) {
+            return new java.util.Date(readTimes[attributeIndex]);
         }
         return new java.util.Date(0);
     }
@@ -191,7 +218,17 @@ public class GXDLMSObject {
      * @param tm Read time.
      */
     protected final void setLastReadTime(final int attributeIndex, final java.util.Date tm) {
-        readTimes.put(attributeIndex, tm);
+        if (attributeIndex < 0) {
+            throw new IllegalArgumentException("attributeIndex");
+        }
+        if (readTimes == null || attributeIndex >= readTimes.length) {
+            long[] tmp = new long[attributeIndex + 1];
+            if (readTimes != null) {
+                System.arraycopy(readTimes, 0, tmp, 0, readTimes.length);
+            }
+            readTimes = tmp;
+        }
+        readTimes[attributeIndex] = tm == null ? 0 : tm.getTime();
     }
 
     /**
@@ -225,7 +262,11 @@ public class GXDLMSObject {
      *            Interface type of the COSEM object.
      */
     public final void setObjectType(final ObjectType value) {
+        boolean changed = indexed && objectType != value;
         objectType = value;
+        if (changed) {
+            GXDLMSObjectIndex.objectChanged();
+        }
     }
 
     /**
@@ -263,7 +304,11 @@ public class GXDLMSObject {
      *            The base name of the object.
      */
     public final void setShortName(final int value) {
+        boolean changed = indexed && shortName != value;
         shortName = value;
+        if (changed) {
+            GXDLMSObjectIndex.objectChanged();
+        }
     }
 
     /**
@@ -290,7 +335,23 @@ public class GXDLMSObject {
      *            Logical Name of COSEM object.
      */
     public final void setLogicalName(final String value) {
-        logicalName = value;
+        boolean changed = indexed && (value == null ? logicalName != null : !value.equals(logicalName));
+        if (packedAccess != null) {
+            logicalName = GXObjectPool.intern(value);
+        } else {
+            logicalName = value;
+        }
+        if (changed) {
+            GXDLMSObjectIndex.objectChanged();
+        }
+    }
+
+    /**
+     * Object is added to the index of an object collection. Indexes are
+     * checked when the name or the type of the object changes.
+     */
+    final void setIndexed() {
+        indexed = true;
     }
 
     /**
@@ -312,6 +373,10 @@ public class GXDLMSObject {
      * @return Object attribute collection.
      */
     public final GXAttributeCollection getAttributes() {
+        expand();
+        if (attributes == null) {
+            attributes = new GXAttributeCollection();
+        }
         return attributes;
     }
 
@@ -319,9 +384,322 @@ public class GXDLMSObject {
      * @return Object method attribute collection.
      */
     public final GXAttributeCollection getMethodAttributes() {
+        expand();
+        if (methodAttributes == null) {
+            methodAttributes = new GXAttributeCollection();
+        }
         return methodAttributes;
     }
 
+    /**
+     * Find attribute settings without creating the attribute collection.
+     * 
+     * @param index
+     *            Attribute index.
+     * @return Attribute settings or null if settings are not set.
+     */
+    private GXDLMSAttributeSettings findAttribute(final int index) {
+        if (attributes == null) {
+            return null;
+        }
+        return attributes.find(index);
+    }
+
+    /**
+     * Find method attribute settings without creating the attribute
+     * collection.
+     * 
+     * @param index
+     *            Method index.
+     * @return Method attribute settings or null if settings are not set.
+     */
+    private GXDLMSAttributeSettings findMethodAttribute(final int index) {
+        if (methodAttributes == null) {
+            return null;
+        }
+        return methodAttributes.find(index);
+    }
+
+    /**
+     * Returns access mode that is set for the attribute. Compact object is
+     * not expanded.
+     * 
+     * @param index
+     *            Attribute index.
+     * @return Access mode or null if access is not set for the attribute.
+     */
+    public final AccessMode findAccess(final int index) {
+        if (packedAccess != null) {
+            int pos = getPackedPosition(packedAccess, index);
+            if (pos == -1) {
+                return null;
+            }
+            return AccessMode.forValue(packedAccess[pos] & 0x7);
+        }
+        GXDLMSAttributeSettings att = findAttribute(index);
+        if (att == null) {
+            return null;
+        }
+        return att.getAccess();
+    }
+
+    /**
+     * Returns access mode that is set for the method. Compact object is not
+     * expanded.
+     * 
+     * @param index
+     *            Method index.
+     * @return Method access mode or null if access is not set for the
+     *         method.
+     */
+    public final MethodAccessMode findMethodAccess(final int index) {
+        if (packedMethodAccess != null) {
+            int pos = getPackedPosition(packedMethodAccess, index);
+            if (pos == -1) {
+                return null;
+            }
+            return MethodAccessMode.forValue(packedMethodAccess[pos] & 0x7);
+        }
+        GXDLMSAttributeSettings att = findMethodAttribute(index);
+        if (att == null) {
+            return null;
+        }
+        return att.getMethodAccess();
+    }
+
+    /**
+     * Returns indexes of the attributes or methods that have settings.
+     * Compact object is not expanded.
+     * 
+     * @param method
+     *            Are method indexes returned.
+     * @return Attribute or method indexes.
+     */
+    final int[] getSettingIndexes(final boolean method) {
+        byte[] packed = method ? packedMethodAccess : packedAccess;
+        int[] list;
+        if (packed != null) {
+            int count = 0;
+            for (int pos = 0; pos < packed.length; pos += 2) {
+                if ((packed[pos] & ACCESS_SET) != 0) {
+                    ++count;
+                }
+            }
+            list = new int[count];
+            count = 0;
+            for (int pos = 0; pos < packed.length; pos += 2) {
+                if ((packed[pos] & ACCESS_SET) != 0) {
+                    list[count] = pos / 2;
+                    ++count;
+                }
+            }
+        } else {
+            GXAttributeCollection items = method ? methodAttributes : attributes;
+            if (items == null) {
+                return new int[0];
+            }
+            list = new int[items.size()];
+            for (int pos = 0; pos != list.length; ++pos) {
+                list[pos] = items.get(pos).getIndex();
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Is object compact. Access rights of the compact object are kept in
+     * packed arrays and logical name is shared with the other objects.
+     * 
+     * @return True, if object is compact.
+     */
+    public final boolean isCompact() {
+        return packedAccess != null;
+    }
+
+    /**
+     * Convert object to the compact form. Access rights are packed to byte
+     * arrays and the arrays and logical name are shared with the other
+     * compact objects that have the same values. This is used when a large
+     * amount of association views is kept in the memory.
+     * <p>
+     * Object is not compacted if attribute settings have other settings than
+     * access rights. Attribute settings are created again when they are asked
+     * with {@link #getAttributes()} or {@link #getMethodAttributes()}. Access
+     * sets that are returned from the compact object are copies.
+     * </p>
+     * 
+     * @return True, if object was compacted.
+     */
+    public boolean compact() {
+        if (packedAccess == null) {
+            byte[] access = pack(attributes, false);
+            if (access == null) {
+                return false;
+            }
+            byte[] methodAccess = pack(methodAttributes, true);
+            if (methodAccess == null) {
+                return false;
+            }
+            packedAccess = GXObjectPool.intern(access);
+            packedMethodAccess = GXObjectPool.intern(methodAccess);
+            attributes = null;
+            methodAttributes = null;
+            logicalName = GXObjectPool.intern(logicalName);
+        }
+        return true;
+    }
+
+    /**
+     * Pack access rights of attribute settings.
+     * 
+     * @param list
+     *            Attribute settings.
+     * @param method
+     *            Are settings for the methods.
+     * @return Packed access rights or null if settings can't be packed.
+     */
+    private static byte[] pack(final GXAttributeCollection list, final boolean method) {
+        int count = 0;
+        if (list != null) {
+            for (GXDLMSAttributeSettings it : list) {
+                // Only access rights are packed.
+                if (it.getIndex() < 0 || it.getIndex() > 0xFF || it.getType() != DataType.NONE
+                        || it.getUIType() != DataType.NONE || it.getStatic() || it.getName() != null
+                        || it.getOrder() != 0 || it.getMinimumVersion() != 0
+                        || (it.getValues() != null && !it.getValues().isEmpty())
+                        || (method ? it.getMethodAccess3() == null : it.getAccess3() == null)) {
+                    return null;
+                }
+                count = Math.max(count, it.getIndex() + 1);
+            }
+        }
+        byte[] packed = new byte[2 * count];
+        if (list != null) {
+            for (GXDLMSAttributeSettings it : list) {
+                int pos = 2 * it.getIndex();
+                if (packed[pos] != 0) {
+                    // Only the first settings of the index are used.
+                    return null;
+                }
+                if (method) {
+                    packed[pos] = (byte) (ACCESS_SET | it.getMethodAccess().getValue());
+                    packAccess3(packed, pos, it.getMethodAccess3().isEmpty(),
+                            it.getMethodAccess3().contains(MethodAccessMode3.NO_ACCESS),
+                            MethodAccessMode3.toInteger(it.getMethodAccess3()));
+                } else {
+                    packed[pos] = (byte) (ACCESS_SET | it.getAccess().getValue());
+                    packAccess3(packed, pos, it.getAccess3().isEmpty(),
+                            it.getAccess3().contains(AccessMode3.NO_ACCESS), AccessMode3.toInteger(it.getAccess3()));
+                }
+            }
+        }
+        return packed;
+    }
+
+    private static void packAccess3(final byte[] packed, final int pos, final boolean empty, final boolean noAccess,
+            final int value) {
+        if (!empty) {
+            packed[pos] |= ACCESS3_SET;
+            if (noAccess) {
+                packed[pos] |= ACCESS3_NO_ACCESS;
+            }
+        }
+        packed[pos + 1] = (byte) value;
+    }
+
+    /**
+     * Create attribute settings from packed access rights. After this object
+     * is not compact.
+     */
+    private void expand() {
+        if (packedAccess != null) {
+            GXAttributeCollection list = new GXAttributeCollection();
+            for (int pos = 0; pos < packedAccess.length; pos += 2) {
+                if ((packedAccess[pos] & ACCESS_SET) != 0) {
+                    GXDLMSAttributeSettings att = new GXDLMSAttributeSettings(pos / 2);
+                    att.setAccess(AccessMode.forValue(packedAccess[pos] & 0x7));
+                    att.setAccess3(getAccess3(packedAccess, pos));
+                    list.add(att);
+                }
+            }
+            attributes = list;
+            list = new GXAttributeCollection();
+            for (int pos = 0; pos < packedMethodAccess.length; pos += 2) {
+                if ((packedMethodAccess[pos] & ACCESS_SET) != 0) {
+                    GXDLMSAttributeSettings att = new GXDLMSAttributeSettings(pos / 2);
+                    att.setMethodAccess(MethodAccessMode.forValue(packedMethodAccess[pos] & 0x7));
+                    att.setMethodAccess3(getMethodAccess3(packedMethodAccess, pos));
+                    list.add(att);
+                }
+            }
+            methodAttributes = list;
+            packedAccess = null;
+            packedMethodAccess = null;
+        }
+    }
+
+    private static java.util.Set<AccessMode3> getAccess3(final byte[] packed, final int pos) {
+        java.util.Set<AccessMode3> tmp = new java.util.HashSet<AccessMode3>();
+        if ((packed[pos] & ACCESS3_SET) != 0) {
+            for (AccessMode3 it : AccessMode3.values()) {
+                if (it == AccessMode3.NO_ACCESS ? (packed[pos] & ACCESS3_NO_ACCESS) != 0
+                        : (packed[pos + 1] & it.getValue()) != 0) {
+                    tmp.add(it);
+                }
+            }
+        }
+        return tmp;
+    }
+
+    private static java.util.Set<MethodAccessMode3> getMethodAccess3(final byte[] packed, final int pos) {
+        java.util.Set<MethodAccessMode3> tmp = new java.util.HashSet<MethodAccessMode3>();
+        if ((packed[pos] & ACCESS3_SET) != 0) {
+            for (MethodAccessMode3 it : MethodAccessMode3.values()) {
+                if (it == MethodAccessMode3.NO_ACCESS ? (packed[pos] & ACCESS3_NO_ACCESS) != 0
+                        : (packed[pos + 1] & it.getValue()) != 0) {
+                    tmp.add(it);
+                }
+            }
+        }
+        return tmp;
+    }
+
+    /**
+     * Get position of the packed access right.
+     * 
+     * @param packed
+     *            Packed access rights.
+     * @param index
+     *            Attribute or method index.
+     * @return Position or -1 if access right is not set.
+     */
+    private static int getPackedPosition(final byte[] packed, final int index) {
+        int pos = 2 * index;
+        if (index < 0 || pos >= packed.length || (packed[pos] & ACCESS_SET) == 0) {
+            return -1;
+        }
+        return pos;
+    }
+
+    /**
+     * Copy packed access rights before they are changed, because they might
+     * be shared.
+     * 
+     * @param packed
+     *            Packed access rights.
+     * @param index
+     *            Attribute or method index.
+     * @return Copy of the packed access rights.
+     */
+    private static byte[] copyPacked(final byte[] packed, final int index) {
+        if (index < 0 || index > 0xFF) {
+            throw new IllegalArgumentException("index");
+        }
+        byte[] tmp = new byte[Math.max(packed.length, 2 * index + 2)];
+        System.arraycopy(packed, 0, tmp, 0, packed.length);
+        return tmp;
+    }
+
     /**
      * Returns is attribute read only. -
      * 
@@ -333,7 +711,14 @@ public class GXDLMSObject {
         if (index == 1) {
             return AccessMode.READ;
         }
-        GXDLMSAttributeSettings att = attributes.find(index);
+        if (packedAccess != null) {
+            int pos = getPackedPosition(packedAccess, index);
+            if (pos == -1) {
+                return AccessMode.READ_WRITE;
+            }
+            return AccessMode.forValue(packedAccess[pos] & 0x7);
+        }
+        GXDLMSAttributeSettings att = findAttribute(index);
         if (att == null) {
             return AccessMode.READ_WRITE;
         }
@@ -349,7 +734,14 @@ public class GXDLMSObject {
      *            Attribute access.
      */
     public final void setAccess(final int index, final AccessMode access) {
-        GXDLMSAttributeSettings att = attributes.find(index);
+        if (packedAccess != null) {
+            byte[] tmp = copyPacked(packedAccess, index);
+            tmp[2 * index] = (byte) (ACCESS_SET | access.getValue());
+            tmp[2 * index + 1] = 0;
+            packedAccess = GXObjectPool.intern(tmp);
+            return;
+        }
+        GXDLMSAttributeSettings att = getAttributes().find(index);
         if (att == null) {
             att = new GXDLMSAttributeSettings(index);
             attributes.add(att);
@@ -371,7 +763,15 @@ public class GXDLMSObject {
             tmp.add(AccessMode3.READ);
             return tmp;
         }
-        GXDLMSAttributeSettings att = attributes.find(index);
+        GXDLMSAttributeSettings att = null;
+        if (packedAccess != null) {
+            int pos = getPackedPosition(packedAccess, index);
+            if (pos != -1) {
+                return getAccess3(packedAccess, pos);
+            }
+        } else {
+            att = findAttribute(index);
+        }
         if (att == null) {
             java.util.Set<AccessMode3> tmp = new java.util.HashSet<AccessMode3>();
             tmp.add(AccessMode3.READ);
@@ -390,7 +790,15 @@ public class GXDLMSObject {
      *            Attribute access.
      */
     public final void setAccess3(final int index, final java.util.Set<AccessMode3> access) {
-        GXDLMSAttributeSettings att = attributes.find(index);
+        if (packedAccess != null && access != null) {
+            byte[] tmp = copyPacked(packedAccess, index);
+            tmp[2 * index] = (byte) (ACCESS_SET | AccessMode.NO_ACCESS.getValue());
+            packAccess3(tmp, 2 * index, access.isEmpty(), access.contains(AccessMode3.NO_ACCESS),
+                    AccessMode3.toInteger(access));
+            packedAccess = GXObjectPool.intern(tmp);
+            return;
+        }
+        GXDLMSAttributeSettings att = getAttributes().find(index);
         if (att == null) {
             att = new GXDLMSAttributeSettings(index);
             attributes.add(att);
@@ -416,7 +824,14 @@ public class GXDLMSObject {
      * @return Is attribute read only.
      */
     public final MethodAccessMode getMethodAccess(final int index) {
-        GXDLMSAttributeSettings att = getMethodAttributes().find(index);
+        if (packedMethodAccess != null) {
+            int pos = getPackedPosition(packedMethodAccess, index);
+            if (pos != -1) {
+                return MethodAccessMode.forValue(packedMethodAccess[pos] & 0x7);
+            }
+            return MethodAccessMode.ACCESS;
+        }
+        GXDLMSAttributeSettings att = findMethodAttribute(index);
         if (att != null) {
             return att.getMethodAccess();
         }
@@ -432,6 +847,14 @@ public class GXDLMSObject {
      *            Method access mode.
      */
     public final void setMethodAccess(final int index, final MethodAccessMode access) {
+        if (packedMethodAccess != null) {
+            byte[] tmp = copyPacked(packedMethodAccess, index);
+            // Access set of version 3 is not changed.
+            tmp[2 * index] = (byte) (ACCESS_SET | (tmp[2 * index] & (ACCESS3_SET | ACCESS3_NO_ACCESS))
+                    | access.getValue());
+            packedMethodAccess = GXObjectPool.intern(tmp);
+            return;
+        }
         GXDLMSAttributeSettings att = getMethodAttributes().find(index);
         if (att == null) {
             att = new GXDLMSAttributeSettings(index);
@@ -448,9 +871,16 @@ public class GXDLMSObject {
      * @return Is attribute read only.
      */
     public final java.util.Set<MethodAccessMode3> getMethodAccess3(final int index) {
-        GXDLMSAttributeSettings att = getMethodAttributes().find(index);
-        if (att != null) {
-            return att.getMethodAccess3();
+        if (packedMethodAccess != null) {
+            int pos = getPackedPosition(packedMethodAccess, index);
+            if (pos != -1) {
+                return getMethodAccess3(packedMethodAccess, pos);
+            }
+        } else {
+            GXDLMSAttributeSettings att = findMethodAttribute(index);
+            if (att != null) {
+                return att.getMethodAccess3();
+            }
         }
         java.util.Set<MethodAccessMode3> tmp = new java.util.HashSet<MethodAccessMode3>();
         tmp.add(MethodAccessMode3.ACCESS);
@@ -466,6 +896,15 @@ public class GXDLMSObject {
      *            Method access mode.
      */
     public final void setMethodAccess3(final int index, final java.util.Set<MethodAccessMode3> access) {
+        if (packedMethodAccess != null && access != null) {
+            byte[] tmp = copyPacked(packedMethodAccess, index);
+            // Access mode is not changed.
+            tmp[2 * index] = (byte) (ACCESS_SET | (tmp[2 * index] & 0x7));
+            packAccess3(tmp, 2 * index, access.isEmpty(), access.contains(MethodAccessMode3.NO_ACCESS),
+                    MethodAccessMode3.toInteger(access));
+            packedMethodAccess = GXObjectPool.intern(tmp);
+            return;
+        }
         GXDLMSAttributeSettings att = getMethodAttributes().find(index);
         if (att == null) {
             att = new GXDLMSAttributeSettings(index);
@@ -482,7 +921,7 @@ public class GXDLMSObject {
      * @return Device data type of the object.
      */
     public DataType getDataType(final int index) {
-        GXDLMSAttributeSettings att = attributes.find(index);
+        GXDLMSAttributeSettings att = findAttribute(index);
         if (att == null) {
             return DataType.NONE;
         }
@@ -497,7 +936,7 @@ public class GXDLMSObject {
      * @return UI data type of the object.
      */
     public DataType getUIDataType(final int index) {
-        GXDLMSAttributeSettings att = attributes.find(index);
+        GXDLMSAttributeSettings att = findAttribute(index);
         if (att == null) {
             return DataType.NONE;
         }
@@ -584,7 +1023,7 @@ public class GXDLMSObject {
      *            Data type-
      */
     public final void setDataType(final int index, final DataType type) {
-        GXDLMSAttributeSettings att = attributes.find(index);
+        GXDLMSAttributeSettings att = getAttributes().find(index);
         if (att == null) {
             att = new GXDLMSAttributeSettings(index);
             attributes.add(att);
@@ -601,7 +1040,7 @@ public class GXDLMSObject {
      *            Data type-
      */
     public final void setUIDataType(final int index, final DataType type) {
-        GXDLMSAttributeSettings att = attributes.find(index);
+        GXDLMSAttributeSettings att = getAttributes().find(index);
         if (att == null) {
             att = new GXDLMSAttributeSettings(index);
             attributes.add(att);
@@ -618,7 +1057,7 @@ public class GXDLMSObject {
      *            Is attribute static.
      */
     public final void setStatic(final int index, final boolean isStatic) {
-        GXDLMSAttributeSettings att = attributes.find(index);
+        GXDLMSAttributeSettings att = getAttributes().find(index);
         if (att == null) {
             att = new GXDLMSAttributeSettings(index);
             attributes.add(att);
@@ -634,7 +1073,18 @@ public class GXDLMSObject {
      * @return True, if attribute is static.
      */
     public final boolean getStatic(final int index) {
-        GXDLMSAttributeSettings att = attributes.find(index);
+        if (packedAccess != null && index >= 0 && index <= 0xFF) {
+            // Static attributes are never packed.
+            if (getPackedPosition(packedAccess, index) == -1) {
+                byte[] tmp = copyPacked(packedAccess, index);
+                // Default settings are added like in the attribute collection.
+                tmp[2 * index] = (byte) (ACCESS_SET | ACCESS3_SET | AccessMode.READ_WRITE.getValue());
+                tmp[2 * index + 1] = (byte) (AccessMode3.READ.getValue() | AccessMode3.WRITE.getValue());
+                packedAccess = GXObjectPool.intern(tmp);
+            }
+            return false;
+        }
+        GXDLMSAttributeSettings att = getAttributes().find(index);
         if (att == null) {
             att = new GXDLMSAttributeSettings(index);
             attributes.add(att);
@@ -50,6 +50,7 @@ import gurux.dlms.enums.AccessMode3;
 import gurux.dlms.enums.MethodAccessMode;
 import gurux.dlms.enums.MethodAccessMode3;
 import gurux.dlms.enums.ObjectType;
+import gurux.dlms.internal.GXCommon;
 
 /**
  * Collection of DLMS objects.
@@ -58,6 +59,12 @@ public class GXDLMSObjectCollection extends ArrayList<GXDLMSObject> implements j
     private static final long serialVersionUID = 1L;
     private Object parent;
 
+    /**
+     * Index of the objects. Index is rebuilt when the collection or the name
+     * of an indexed object is changed.
+     */
+    private transient volatile GXDLMSObjectIndex index;
+
     /**
      * Constructor.
      */
@@ -105,6 +112,88 @@ public class GXDLMSObjectCollection extends ArrayList<GXDLMSObject> implements j
         return items;
     }
 
+    /**
+     * Returns index of the objects that is up to date with the collection.
+     */
+    private GXDLMSObjectIndex getIndex() {
+        GXDLMSObjectIndex tmp = index;
+        if (tmp == null || !tmp.isValid(modCount)) {
+            tmp = rebuild(tmp);
+        }
+        return tmp;
+    }
+
+    /**
+     * Rebuild the index. Index is published through the volatile field after
+     * it's built.
+     * 
+     * @param old
+     *            Index that is replaced.
+     * @return New index.
+     */
+    private synchronized GXDLMSObjectIndex rebuild(final GXDLMSObjectIndex old) {
+        GXDLMSObjectIndex tmp = index;
+        // Other thread might have rebuilt the index already.
+        if (tmp == null || tmp == old || !tmp.isValid(modCount)) {
+            tmp = new GXDLMSObjectIndex(this, modCount);
+            index = tmp;
+        }
+        return tmp;
+    }
+
+    @Override
+    public boolean add(final GXDLMSObject value) {
+        GXDLMSObjectIndex tmp = index;
+        boolean valid = tmp != null && tmp.isValid(modCount);
+        super.add(value);
+        if (valid) {
+            tmp.append(value, modCount);
+        }
+        return true;
+    }
+
+    @Override
+    public GXDLMSObject set(final int position, final GXDLMSObject value) {
+        index = null;
+        return super.set(position, value);
+    }
+
+    /**
+     * Find object from the index.
+     * 
+     * @param type
+     *            Object type.
+     * @param ln
+     *            Packed logical name.
+     * @return Found object or null.
+     */
+    private GXDLMSObject findIndexed(final ObjectType type, final long ln) {
+        GXDLMSObjectIndex tmp = getIndex();
+        GXDLMSObject value = tmp.findByLN(type, ln);
+        if (value == null ? tmp.isRenamed() : !GXDLMSObjectIndex.matches(value, type, ln)) {
+            value = rebuild(tmp).findByLN(type, ln);
+        }
+        return value;
+    }
+
+    /**
+     * Find custom object from the index.
+     * 
+     * @param type
+     *            Custom object type.
+     * @param ln
+     *            Packed logical name.
+     * @return Found object or null.
+     */
+    private GXDLMSObject findIndexed(final int type, final long ln) {
+        GXDLMSObjectIndex tmp = getIndex();
+        GXDLMSObject value = tmp.findByLN(type, ln);
+        if (value == null ? tmp.isRenamed() : !GXDLMSObjectIndex.matches(value, type, ln)) {
+            value = rebuild(tmp).findByLN(type, ln);
+        }
+        return value;
+    }
+
     /**
      * Find COSEM object.
      * 
@@ -115,6 +204,10 @@ public class GXDLMSObjectCollection extends ArrayList<GXDLMSObject> implements j
      * @return Found object or null if object is not found.
      */
     public final GXDLMSObject findByLN(final ObjectType type, final String ln) {
+        long value = GXDLMSObjectIndex.pack(ln, false);
+        if (value != GXDLMSObjectIndex.INVALID && type != null) {
+            return findIndexed(type, value);
+        }
         for (GXDLMSObject it : this) {
             if ((type == ObjectType.NONE || it.getObjectType() == type) && it.getLogicalName().trim().equals(ln)) {
                 return it;
@@ -123,6 +216,23 @@ public class GXDLMSObjectCollection extends ArrayList<GXDLMSObject> implements j
         return null;
     }
 
+    /**
+     * Find COSEM object.
+     * 
+     * @param type
+     *            Object type.
+     * @param ln
+     *            Logical name as bytes.
+     * @return Found object or null if object is not found.
+     */
+    public final GXDLMSObject findByLN(final ObjectType type, final byte[] ln) {
+        long value = GXDLMSObjectIndex.pack(ln);
+        if (value != GXDLMSObjectIndex.INVALID && type != null) {
+            return findIndexed(type, value);
+        }
+        return findByLN(type, GXCommon.toLogicalName(ln));
+    }
+
     /**
      * Find custom COSEM object.
      * 
@@ -133,6 +243,10 @@ public class GXDLMSObjectCollection extends ArrayList<GXDLMSObject> implements j
      * @return Found object or null if object is not found.
      */
     public final GXDLMSObject findByLN(final int type, final String ln) {
+        long value = GXDLMSObjectIndex.pack(ln, false);
+        if (value != GXDLMSObjectIndex.INVALID && (type & 0xFFFF) == type) {
+            return findIndexed(type, value);
+        }
         for (GXDLMSObject it : this) {
             if ((type == 0 || it.getCustomObjectType() == type) && it.getLogicalName().trim().equals(ln)) {
                 return it;
@@ -142,12 +256,31 @@ public class GXDLMSObjectCollection extends ArrayList<GXDLMSObject> implements j
     }
 
     public final GXDLMSObject findBySN(final int sn) {
+        GXDLMSObjectIndex tmp = getIndex();
+        GXDLMSObject value = tmp.findBySN(sn);
+        if (value == null ? tmp.isRenamed() : value.getShortName() != sn) {
+            value = rebuild(tmp).findBySN(sn);
+        }
+        return value;
+    }
+
+    /**
+     * Convert objects to the compact form. This can be used to reduce the
+     * memory usage when objects of a large amount of meters are kept in the
+     * memory.
+     * 
+     * @return Amount of compacted objects.
+     * @see GXDLMSObject#compact()
+     */
+    public final int compact() {
+        int count = 0;
         for (GXDLMSObject it : this) {
-            if (it.getShortName() == sn) {
-                return it;
+            if (it.compact()) {
+                ++count;
             }
         }
-        return null;
+        trimToSize();
+        return count;
     }
 
     @Override
@@ -0,0 +1,399 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.objects;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gurux.dlms.enums.ObjectType;
+
+/**
+ * Hash index of the COSEM objects in one object collection.
+ * <p>
+ * Logical names are packed to 48 bit integers, so lookups don't allocate. Only
+ * logical names in the canonical form (a.b.c.d.e.f without leading zeros) are
+ * indexed. Other names can't match a name that is generated from the bytes of
+ * the logical name and they are searched from the collection.
+ * </p>
+ * <p>
+ * Objects don't keep references to the collections that index them. The
+ * collection checks that the found object still has the searched name and
+ * type. If nothing is found, the index is rebuilt only if an indexed object
+ * was renamed after the index was built.
+ * </p>
+ */
+final class GXDLMSObjectIndex {
+    /**
+     * Packed value when the logical name is not in canonical form.
+     */
+    static final long INVALID = -1;
+
+    /**
+     * Amount of the name and type changes of the indexed objects.
+     */
+    private static final AtomicInteger RENAMES = new AtomicInteger();
+
+    /**
+     * Objects by logical name.
+     */
+    private final GXLongMap byLN;
+
+    /**
+     * Objects by logical name and object type.
+     */
+    private final GXLongMap byType;
+
+    /**
+     * Custom objects by logical name and custom object type.
+     */
+    private final GXLongMap byCustomType;
+
+    /**
+     * Objects by short name.
+     */
+    private final GXLongMap bySN;
+
+    /**
+     * Modification count of the collection when index was updated.
+     */
+    private int modCount;
+
+    /**
+     * Amount of the renames when index was built.
+     */
+    private final int renames;
+
+    /**
+     * Constructor.
+     * 
+     * @param objects
+     *            Indexed objects.
+     * @param forModCount
+     *            Modification count of the collection.
+     */
+    GXDLMSObjectIndex(final GXDLMSObjectCollection objects, final int forModCount) {
+        // Renames are read before the names, so a rename that happens
+        // during the build is noticed.
+        renames = RENAMES.get();
+        int capacity = objects.size();
+        byLN = new GXLongMap(capacity);
+        byType = new GXLongMap(capacity);
+        byCustomType = new GXLongMap(0);
+        bySN = new GXLongMap(capacity);
+        for (GXDLMSObject it : objects) {
+            add(it);
+        }
+        modCount = forModCount;
+    }
+
+    /**
+     * Name or type of an indexed object is changed.
+     */
+    static void objectChanged() {
+        RENAMES.incrementAndGet();
+    }
+
+    /**
+     * Is index up to date with the collection.
+     * 
+     * @param forModCount
+     *            Current modification count of the collection.
+     * @return True, if index can be used.
+     */
+    boolean isValid(final int forModCount) {
+        return modCount == forModCount;
+    }
+
+    /**
+     * @return Is an indexed object renamed after the index was built.
+     */
+    boolean isRenamed() {
+        return renames != RENAMES.get();
+    }
+
+    /**
+     * Add object to the end of the collection.
+     * 
+     * @param value
+     *            Added object.
+     * @param forModCount
+     *            Modification count of the collection after the object is
+     *            added.
+     */
+    void append(final GXDLMSObject value, final int forModCount) {
+        add(value);
+        modCount = forModCount;
+    }
+
+    private void add(final GXDLMSObject value) {
+        value.setIndexed();
+        // If there are several objects with the same name, the first one is
+        // found.
+        bySN.putIfAbsent(value.getShortName() & 0xFFFFFFFFL, value);
+        long ln = pack(value.getLogicalName(), true);
+        if (ln != INVALID) {
+            byLN.putIfAbsent(ln, value);
+            if (value.getObjectType() != null) {
+                byType.putIfAbsent(ln << 16 | value.getObjectType().getValue(), value);
+            }
+            int type = value.getCustomObjectType();
+            if (type != 0 && (type & 0xFFFF) == type) {
+                byCustomType.putIfAbsent(ln << 16 | type, value);
+            }
+        }
+    }
+
+    /**
+     * Check that the found object has the searched name and type.
+     * 
+     * @param value
+     *            Found object.
+     * @param type
+     *            Object type. NONE matches all types.
+     * @param ln
+     *            Packed logical name.
+     * @return True, if object matches.
+     */
+    static boolean matches(final GXDLMSObject value, final ObjectType type, final long ln) {
+        return (type == ObjectType.NONE || value.getObjectType() == type)
+                && pack(value.getLogicalName(), true) == ln;
+    }
+
+    /**
+     * Check that the found custom object has the searched name and type.
+     * 
+     * @param value
+     *            Found object.
+     * @param type
+     *            Custom object type. Zero matches all types.
+     * @param ln
+     *            Packed logical name.
+     * @return True, if object matches.
+     */
+    static boolean matches(final GXDLMSObject value, final int type, final long ln) {
+        return (type == 0 || value.getCustomObjectType() == type) && pack(value.getLogicalName(), true) == ln;
+    }
+
+    /**
+     * Find object by logical name.
+     * 
+     * @param type
+     *            Object type. NONE matches all types.
+     * @param ln
+     *            Packed logical name.
+     * @return Found object or null.
+     */
+    GXDLMSObject findByLN(final ObjectType type, final long ln) {
+        if (type == ObjectType.NONE) {
+            return byLN.get(ln);
+        }
+        return byType.get(ln << 16 | type.getValue());
+    }
+
+    /**
+     * Find custom object by logical name.
+     * 
+     * @param type
+     *            Custom object type. Zero matches all types. Type must fit
+     *            to 16 bits.
+     * @param ln
+     *            Packed logical name.
+     * @return Found object or null.
+     */
+    GXDLMSObject findByLN(final int type, final long ln) {
+        if (type == 0) {
+            return byLN.get(ln);
+        }
+        return byCustomType.get(ln << 16 | type);
+    }
+
+    /**
+     * Find object by short name.
+     * 
+     * @param sn
+     *            Short name.
+     * @return Found object or null.
+     */
+    GXDLMSObject findBySN(final int sn) {
+        return bySN.get(sn & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Pack logical name to 48 bit integer.
+     * 
+     * @param ln
+     *            Logical name.
+     * @param trim
+     *            Are leading and trailing white spaces ignored.
+     * @return Packed logical name or INVALID if logical name is not in
+     *         canonical form.
+     */
+    static long pack(final String ln, final boolean trim) {
+        if (ln == null) {
+            return INVALID;
+        }
+        int start = 0;
+        int end = ln.length();
+        if (trim) {
+            while (start < end && ln.charAt(start) <= ' ') {
+                ++start;
+            }
+            while (end > start && ln.charAt(end - 1) <= ' ') {
+                --end;
+            }
+        }
+        long value = 0;
+        int count = 0;
+        int pos = start;
+        while (count != 6) {
+            if (pos == end) {
+                return INVALID;
+            }
+            int v = 0;
+            int digits = 0;
+            char ch;
+            while (pos != end && (ch = ln.charAt(pos)) >= '0' && ch <= '9') {
+                // Leading zeros are not allowed.
+                if (digits == 1 && v == 0) {
+                    return INVALID;
+                }
+                v = 10 * v + ch - '0';
+                ++digits;
+                ++pos;
+                if (v > 255) {
+                    return INVALID;
+                }
+            }
+            if (digits == 0) {
+                return INVALID;
+            }
+            value = value << 8 | v;
+            ++count;
+            if (count != 6) {
+                if (pos == end || ln.charAt(pos) != '.') {
+                    return INVALID;
+                }
+                ++pos;
+            }
+        }
+        if (pos != end) {
+            return INVALID;
+        }
+        return value;
+    }
+
+    /**
+     * Pack logical name bytes to 48 bit integer.
+     * 
+     * @param ln
+     *            Logical name bytes.
+     * @return Packed logical name or INVALID if size is not six bytes.
+     */
+    static long pack(final byte[] ln) {
+        if (ln == null || ln.length != 6) {
+            return INVALID;
+        }
+        long value = 0;
+        for (byte it : ln) {
+            value = value << 8 | (it & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Open addressing hash map from long to COSEM object.
+     */
+    private static final class GXLongMap {
+        private long[] keys;
+        private GXDLMSObject[] values;
+        private int size;
+
+        GXLongMap(final int expected) {
+            int capacity = 16;
+            while (capacity < 2 * expected) {
+                capacity <<= 1;
+            }
+            keys = new long[capacity];
+            values = new GXDLMSObject[capacity];
+        }
+
+        private static int hash(final long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        GXDLMSObject get(final long key) {
+            int mask = keys.length - 1;
+            int pos = hash(key) & mask;
+            GXDLMSObject value;
+            while ((value = values[pos]) != null) {
+                if (keys[pos] == key) {
+                    return value;
+                }
+                pos = (pos + 1) & mask;
+            }
+            return null;
+        }
+
+        void putIfAbsent(final long key, final GXDLMSObject value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int mask = keys.length - 1;
+            int pos = hash(key) & mask;
+            while (values[pos] != null) {
+                if (keys[pos] == key) {
+                    return;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[pos] = key;
+            values[pos] = value;
+            ++size;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            GXDLMSObject[] oldValues = values;
+            keys = new long[2 * oldKeys.length];
+            values = new GXDLMSObject[2 * oldKeys.length];
+            size = 0;
+            for (int pos = 0; pos != oldKeys.length; ++pos) {
+                if (oldValues[pos] != null) {
+                    putIfAbsent(oldKeys[pos], oldValues[pos]);
+                }
+            }
+        }
+    }
+}
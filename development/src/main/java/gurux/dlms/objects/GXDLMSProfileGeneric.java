@@ -51,14 +51,18 @@ import javax.crypto.NoSuchPaddingException;
 import javax.xml.stream.XMLStreamException;
 
 import gurux.dlms.GXByteBuffer;
+import gurux.dlms.GXCompactDateTime;
 import gurux.dlms.GXDLMSClient;
 import gurux.dlms.GXDLMSConverter;
 import gurux.dlms.GXDLMSException;
 import gurux.dlms.GXDLMSServerBase;
 import gurux.dlms.GXDLMSSettings;
 import gurux.dlms.GXDateTime;
+import gurux.dlms.GXRowDecoder;
 import gurux.dlms.GXSimpleEntry;
 import gurux.dlms.GXUInt64;
+import gurux.dlms.IGXRowListener;
+import gurux.dlms.IGXRowVisitor;
 import gurux.dlms.ValueEventArgs;
 import gurux.dlms.enums.DataType;
 import gurux.dlms.enums.ErrorCode;
@@ -74,7 +78,7 @@ import gurux.dlms.objects.enums.SortMethod;
 public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
     private GXProfileGenericUpdater updater = null;
 
-    private ArrayList<Object[]> buffer = new ArrayList<Object[]>();
+    private List<Object[]> buffer = new ArrayList<Object[]>();
     private List<Entry<GXDLMSObject, GXDLMSCaptureObject>> captureObjects;
     private long capturePeriod;
     private SortMethod sortMethod;
@@ -123,6 +127,38 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
         return buffer.toArray();
     }
 
+    /**
+     * @return Is buffer stored to primitive columns.
+     */
+    public final boolean isColumnar() {
+        return buffer instanceof GXProfileGenericColumns;
+    }
+
+    /**
+     * Columnar buffer stores each column to one primitive array. Integers are
+     * stored to long[], floating point values to double[] and date times as
+     * epoch milliseconds. The oldest row is removed in constant time when the
+     * buffer is full. Rows are created when they are read, so changing a row
+     * that is returned from the buffer doesn't change the stored values.
+     * 
+     * @param value
+     *            Is buffer stored to primitive columns.
+     */
+    public final void setColumnar(final boolean value) {
+        synchronized (this) {
+            if (value != isColumnar()) {
+                List<Object[]> tmp;
+                if (value) {
+                    tmp = new GXProfileGenericColumns();
+                } else {
+                    tmp = new ArrayList<Object[]>(buffer.size());
+                }
+                tmp.addAll(buffer);
+                buffer = tmp;
+            }
+        }
+    }
+
     /**
      * @param value
      *            Data of profile generic.
@@ -603,22 +639,31 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
             GXDataInfo info = new GXDataInfo();
             info.setType(DataType.DATETIME);
             java.util.Date start =
-                    ((GXDateTime) GXCommon.getData(settings, new GXByteBuffer((byte[]) arr.get(1)), info))
-                            .getMeterCalendar().getTime();
+                    ((GXDateTime) GXCommon.toDateTime(
+                            GXCommon.getData(settings, new GXByteBuffer((byte[]) arr.get(1)), info)))
+                                    .getMeterCalendar().getTime();
             info.clear();
             info.setType(DataType.DATETIME);
-            java.util.Date end = ((GXDateTime) GXCommon.getData(settings, new GXByteBuffer((byte[]) arr.get(2)), info))
-                    .getMeterCalendar().getTime();
-            for (Object row : getBuffer()) {
-                java.util.Date tm;
-                Object tmp = ((Object[]) row)[getSortObjectDataIndex()];
-                if (tmp instanceof GXDateTime) {
-                    tm = ((GXDateTime) tmp).getMeterCalendar().getTime();
-                } else {
-                    tm = (java.util.Date) tmp;
-                }
-                if (tm.compareTo(start) >= 0 && tm.compareTo(end) <= 0) {
-                    table.add((Object[]) row);
+            java.util.Date end = ((GXDateTime) GXCommon.toDateTime(
+                    GXCommon.getData(settings, new GXByteBuffer((byte[]) arr.get(2)), info))).getMeterCalendar()
+                            .getTime();
+            if (buffer instanceof GXProfileGenericColumns) {
+                ((GXProfileGenericColumns) buffer).getRange(getSortObjectDataIndex(), start.getTime(), end.getTime(),
+                        table);
+            } else {
+                for (Object[] row : buffer) {
+                    java.util.Date tm;
+                    Object tmp = row[getSortObjectDataIndex()];
+                    if (tmp instanceof GXDateTime) {
+                        tm = ((GXDateTime) tmp).getMeterCalendar().getTime();
+                    } else if (tmp instanceof GXCompactDateTime) {
+                        tm = java.util.Date.from(((GXCompactDateTime) tmp).toInstant());
+                    } else {
+                        tm = (java.util.Date) tmp;
+                    }
+                    if (tm.compareTo(start) >= 0 && tm.compareTo(end) <= 0) {
+                        table.add(row);
+                    }
                 }
             }
         } else if (e.getSelector() == 2) {
@@ -628,18 +673,19 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
                 start = 1;
             }
             int count = ((Number) arr.get(1)).intValue();
+            int size = buffer.size();
             if (count == 0) {
-                count = getBuffer().length;
+                count = size;
             }
-            if (start + count > getBuffer().length + 1) {
-                count = getBuffer().length;
+            if (start + count > size + 1) {
+                count = size;
             }
             // Starting index is 1.
             for (int pos = 0; pos < count; ++pos) {
-                if (pos + start - 1 == getBuffer().length) {
+                if (pos + start - 1 == size) {
                     break;
                 }
-                table.add((Object[]) getBuffer()[start + pos - 1]);
+                table.add(buffer.get(start + pos - 1));
             }
         } else {
             throw new IllegalArgumentException("Invalid selector.");
@@ -868,97 +914,197 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
     private void setBuffer(final ValueEventArgs e) {
         List<Entry<GXDLMSObject, GXDLMSCaptureObject>> cols =
                 (List<Entry<GXDLMSObject, GXDLMSCaptureObject>>) e.getParameters();
-        if (cols == null) {
-            cols = captureObjects;
+        if (e.getValue() != null) {
+            GXRowConverter converter = new GXRowConverter(e.getSettings(), cols, null);
+            for (Object it : (List<?>) e.getValue()) {
+                List<Object> row = (List<Object>) it;
+                Object[] values = converter.convert(row.toArray());
+                // Received value is updated like before.
+                for (int pos = 0; pos != values.length; ++pos) {
+                    row.set(pos, values[pos]);
+                }
+                buffer.add(values);
+            }
+            if (e.getSettings().isServer()) {
+                entriesInUse = buffer.size();
+            }
+        } else if (cols == null && (captureObjects == null || captureObjects.size() == 0)) {
+            throw new RuntimeException("Read capture objects first.");
+        }
+    }
+
+    /**
+     * Create listener that converts received rows like they are converted
+     * when the buffer is updated. Converted rows are passed to the target
+     * listener and they are not added to the buffer.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param columns
+     *            Read columns. Capture objects are used if null.
+     * @param target
+     *            Listener that receives converted rows.
+     * @return Listener that is set to the reply data.
+     * @see gurux.dlms.GXReplyData#setRowListener
+     */
+    public final IGXRowListener createRowListener(final GXDLMSSettings settings,
+            final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns, final IGXRowListener target) {
+        if (target == null) {
+            throw new IllegalArgumentException("target");
         }
-        if (cols == null || cols.size() == 0) {
+        return new GXRowConverter(settings, columns, target);
+    }
+
+    /**
+     * Create decoder that passes the cells of the received rows to the
+     * visitor as primitives. Rows are not added to the buffer.
+     * 
+     * @param columns
+     *            Read columns. Capture objects are used if null.
+     * @param visitor
+     *            Visitor that receives the cells.
+     * @return Decoder that is set to the reply data as a row listener.
+     * @see gurux.dlms.GXReplyData#setRowListener
+     */
+    public final GXRowDecoder createRowDecoder(final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns,
+            final IGXRowVisitor visitor) {
+        List<Entry<GXDLMSObject, GXDLMSCaptureObject>> tmp = columns;
+        if (tmp == null) {
+            tmp = captureObjects;
+        }
+        if (tmp == null || tmp.size() == 0) {
             throw new RuntimeException("Read capture objects first.");
         }
-        if (e.getValue() != null) {
-            List<Object> lastRow = null;
-            java.util.Calendar lastDate = java.util.Calendar.getInstance();
-            DataType[] types = new DataType[cols.size()];
+        return new GXRowDecoder(tmp, visitor);
+    }
+
+    /**
+     * Converts received rows using the data types of the columns.
+     */
+    private final class GXRowConverter implements IGXRowListener {
+        private final GXDLMSSettings settings;
+        private final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> cols;
+        private final DataType[] types;
+        private final IGXRowListener target;
+        private final java.util.Calendar lastDate = java.util.Calendar.getInstance();
+        private Object[] lastRow;
+
+        GXRowConverter(final GXDLMSSettings forSettings,
+                final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns, final IGXRowListener forTarget) {
+            List<Entry<GXDLMSObject, GXDLMSCaptureObject>> tmp = columns;
+            if (tmp == null) {
+                tmp = captureObjects;
+            }
+            if (tmp == null || tmp.size() == 0) {
+                throw new RuntimeException("Read capture objects first.");
+            }
+            settings = forSettings;
+            cols = tmp;
+            target = forTarget;
+            types = new DataType[cols.size()];
             int colIndex = -1;
             // CHECKSTYLE:OFF
             for (Entry<GXDLMSObject, GXDLMSCaptureObject> it : cols) {
                 // CHECKSTYLE:ON
                 types[++colIndex] = it.getKey().getUIDataType(it.getValue().getAttributeIndex());
             }
-            for (Object it : (List<?>) e.getValue()) {
-                List<Object> row = (List<Object>) it;
-                if (row.size() != cols.size()) {
-                    throw new RuntimeException("Number of columns do not match.");
-                }
-                for (colIndex = 0; colIndex < row.size(); ++colIndex) {
-                    Object data = row.get(colIndex);
-                    DataType type = types[colIndex];
-                    if (type != DataType.NONE && type != null && data instanceof byte[]) {
-                        data = GXDLMSClient.changeType((byte[]) data, type, e.getSettings());
-                        if (data instanceof GXDateTime) {
-                            GXDateTime dt = (GXDateTime) data;
-                            lastDate.setTime(dt.getMeterCalendar().getTime());
-                        }
-                        row.set(colIndex, data);
-                    } else if (type == DataType.DATETIME && data == null && capturePeriod != 0) {
-                        if (lastDate.getTimeInMillis() == 0 && !buffer.isEmpty()) {
-                            lastDate.setTime(((GXDateTime) buffer.get(buffer.size() - 1)[colIndex]).getMeterCalendar()
-                                    .getTime());
-                        }
-                        if (lastDate.getTimeInMillis() != 0) {
-                            lastDate.add(java.util.Calendar.SECOND, (int) capturePeriod);
-                            row.set(colIndex, new GXDateTime(lastDate.getTime()));
-                        }
-                    } else if (type == DataType.DATETIME && row.get(colIndex) instanceof Number) {
-                        if (row.get(colIndex) instanceof GXUInt64) {
-                            row.set(colIndex,
-                                    GXDateTime.fromHighResolutionTime(((Number) row.get(colIndex)).longValue()));
+        }
+
+        @Override
+        public void onRow(final Object[] row) {
+            target.onRow(convert(row));
+        }
+
+        /**
+         * Convert row values.
+         * 
+         * @param row
+         *            Received row. Values are converted in place.
+         * @return Converted row.
+         */
+        Object[] convert(final Object[] row) {
+            if (row.length != cols.size()) {
+                throw new RuntimeException("Number of columns do not match.");
+            }
+            for (int colIndex = 0; colIndex < row.length; ++colIndex) {
+                Object data = row[colIndex];
+                DataType type = types[colIndex];
+                if (type != DataType.NONE && type != null && data instanceof byte[]) {
+                    if (type == DataType.DATETIME && ((byte[]) data).length == 12 && settings != null
+                            && settings.getUseCompactDateTime()) {
+                        // Buffer keeps compact date-time values.
+                        data = GXCompactDateTime.parse(settings, new GXByteBuffer((byte[]) data));
+                    } else {
+                        data = GXDLMSClient.changeType((byte[]) data, type, settings);
+                    }
+                    if (data instanceof GXDateTime) {
+                        GXDateTime dt = (GXDateTime) data;
+                        lastDate.setTime(dt.getMeterCalendar().getTime());
+                    } else if (data instanceof GXCompactDateTime) {
+                        lastDate.setTimeInMillis(((GXCompactDateTime) data).toInstant().toEpochMilli());
+                    }
+                    row[colIndex] = data;
+                } else if (type == DataType.DATETIME && data instanceof GXCompactDateTime) {
+                    lastDate.setTimeInMillis(((GXCompactDateTime) data).toInstant().toEpochMilli());
+                } else if (type == DataType.DATETIME && data == null && capturePeriod != 0) {
+                    if (lastDate.getTimeInMillis() == 0 && !buffer.isEmpty()) {
+                        Object last = buffer.get(buffer.size() - 1)[colIndex];
+                        if (last instanceof GXCompactDateTime) {
+                            lastDate.setTimeInMillis(((GXCompactDateTime) last).toInstant().toEpochMilli());
                         } else {
-                            row.set(colIndex, GXDateTime.fromUnixTime(((Number) row.get(colIndex)).longValue()));
+                            lastDate.setTime(((GXDateTime) last).getMeterCalendar().getTime());
                         }
                     }
+                    if (lastDate.getTimeInMillis() != 0) {
+                        lastDate.add(java.util.Calendar.SECOND, (int) capturePeriod);
+                        row[colIndex] = new GXDateTime(lastDate.getTime());
+                    }
+                } else if (type == DataType.DATETIME && row[colIndex] instanceof Number) {
+                    if (row[colIndex] instanceof GXUInt64) {
+                        row[colIndex] = GXDateTime.fromHighResolutionTime(((Number) row[colIndex]).longValue());
+                    } else {
+                        row[colIndex] = GXDateTime.fromUnixTime(((Number) row[colIndex]).longValue());
+                    }
+                }
 
-                    Entry<GXDLMSObject, GXDLMSCaptureObject> item = cols.get(colIndex);
-                    if (item.getKey() instanceof GXDLMSRegister && item.getValue().getAttributeIndex() == 2) {
-                        double scaler = ((GXDLMSRegister) item.getKey()).getScaler();
-                        if (data != null) {
-                            if (scaler != 1) {
-                                try {
-                                    data = ((Number) data).doubleValue() * scaler;
-                                    row.set(colIndex, data);
-                                } catch (Exception ex) {
-                                    Logger.getLogger(GXDLMSProfileGeneric.class.getName()).log(Level.SEVERE,
-                                            "Scalar failed for: {0}", item.getKey().getLogicalName());
-                                    // Skip error
-                                }
+                Entry<GXDLMSObject, GXDLMSCaptureObject> item = cols.get(colIndex);
+                if (item.getKey() instanceof GXDLMSRegister && item.getValue().getAttributeIndex() == 2) {
+                    double scaler = ((GXDLMSRegister) item.getKey()).getScaler();
+                    if (data != null) {
+                        if (scaler != 1) {
+                            try {
+                                data = ((Number) data).doubleValue() * scaler;
+                                row[colIndex] = data;
+                            } catch (Exception ex) {
+                                Logger.getLogger(GXDLMSProfileGeneric.class.getName()).log(Level.SEVERE,
+                                        "Scalar failed for: {0}", item.getKey().getLogicalName());
+                                // Skip error
                             }
-                        } else if (lastRow != null) {
-                            row.set(colIndex, lastRow.get(colIndex));
                         }
-                    } else if (item.getKey() instanceof GXDLMSDemandRegister
-                            && (item.getValue().getAttributeIndex() == 2 || item.getValue().getAttributeIndex() == 3)) {
-                        double scaler = ((GXDLMSDemandRegister) item.getKey()).getScaler();
-                        if (data != null) {
-                            if (scaler != 1) {
-                                try {
-                                    data = ((Number) data).doubleValue() * scaler;
-                                    row.set(colIndex, data);
-                                } catch (Exception ex) {
-                                    Logger.getLogger(GXDLMSProfileGeneric.class.getName()).log(Level.SEVERE,
-                                            "Scalar failed for: {0}", item.getKey().getLogicalName());
-                                    // Skip error
-                                }
+                    } else if (lastRow != null) {
+                        row[colIndex] = lastRow[colIndex];
+                    }
+                } else if (item.getKey() instanceof GXDLMSDemandRegister
+                        && (item.getValue().getAttributeIndex() == 2 || item.getValue().getAttributeIndex() == 3)) {
+                    double scaler = ((GXDLMSDemandRegister) item.getKey()).getScaler();
+                    if (data != null) {
+                        if (scaler != 1) {
+                            try {
+                                data = ((Number) data).doubleValue() * scaler;
+                                row[colIndex] = data;
+                            } catch (Exception ex) {
+                                Logger.getLogger(GXDLMSProfileGeneric.class.getName()).log(Level.SEVERE,
+                                        "Scalar failed for: {0}", item.getKey().getLogicalName());
+                                // Skip error
                             }
-                        } else if (lastRow != null) {
-                            row.set(colIndex, lastRow.get(colIndex));
                         }
+                    } else if (lastRow != null) {
+                        row[colIndex] = lastRow[colIndex];
                     }
                 }
-                buffer.add(row.toArray(new Object[0]));
-                lastRow = row;
-            }
-            if (e.getSettings().isServer()) {
-                entriesInUse = buffer.size();
             }
+            lastRow = row;
+            return row;
         }
     }
 
@@ -992,7 +1138,7 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
                 }
                 synchronized (this) {
                     // Remove first items if buffer is full.
-                    if (getProfileEntries() != 0 && getProfileEntries() == getBuffer().length) {
+                    if (getProfileEntries() != 0 && getProfileEntries() == buffer.size()) {
                         --entriesInUse;
                         buffer.remove(0);
                     }
@@ -1090,7 +1090,7 @@ public class GXDLMSSecuritySetup extends GXDLMSObject implements IGXDLMSBase {
                     eKpS = GXEcdsa.generateKeyPair(Ecc.P256);
                     settings.getCipher().setEphemeralKeyPair(eKpS);
                     // Generate shared secret.
-                    KeyAgreement ka = KeyAgreement.getInstance("ECDH");
+                    KeyAgreement ka = GXSecure.getKeyAgreement();
                     ka.init(eKpS.getPrivate());
                     ka.doPhase(settings.getTargetEphemeralKey(), true);
                     byte[] sharedSecret = ka.generateSecret();
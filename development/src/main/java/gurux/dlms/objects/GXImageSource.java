@@ -0,0 +1,323 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.objects;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only firmware image that image transfer reads block by block.
+ * <p>
+ * Image blocks are read only when they are sent, so the whole image is never
+ * copied to the heap. Byte array, NIO buffer, memory-mapped file and file
+ * channel sources do not have a read position and the same instance can be
+ * shared by all the sessions that update the firmware in parallel. Stream
+ * source must be read in ascending order and it can be used only by one
+ * session.
+ * </p>
+ */
+public abstract class GXImageSource implements Closeable {
+
+    /**
+     * Constructor.
+     */
+    protected GXImageSource() {
+    }
+
+    /**
+     * @return Image size in bytes.
+     */
+    public abstract long getSize();
+
+    /**
+     * Read image bytes.
+     * 
+     * @param position
+     *            Zero based position in the image.
+     * @param target
+     *            Target array.
+     * @param offset
+     *            Offset in the target array.
+     * @param count
+     *            Amount of the bytes to read.
+     * @throws IOException
+     *             Reading failed or image ended.
+     */
+    public abstract void read(long position, byte[] target, int offset, int count) throws IOException;
+
+    /**
+     * Close the image source. Sources that do not hold any resources ignore
+     * this.
+     * 
+     * @throws IOException
+     *             Closing failed.
+     */
+    @Override
+    public void close() throws IOException {
+    }
+
+    /**
+     * Check that read is inside of the image.
+     */
+    protected final void checkRange(final long position, final int count) throws IOException {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("Invalid image position.");
+        }
+        if (position + count > getSize()) {
+            throw new EOFException("Image position is out of range.");
+        }
+    }
+
+    /**
+     * Image from byte array. Array is not copied.
+     * 
+     * @param image
+     *            Image bytes.
+     * @return Image source.
+     */
+    public static GXImageSource forBytes(final byte[] image) {
+        if (image == null) {
+            throw new IllegalArgumentException("image");
+        }
+        return forBuffer(ByteBuffer.wrap(image));
+    }
+
+    /**
+     * Image from NIO buffer. Image is the remaining bytes of the buffer. Buffer
+     * is not copied and position and limit of the given buffer are not
+     * changed.
+     * 
+     * @param image
+     *            Image bytes. Direct and mapped buffers are supported.
+     * @return Image source.
+     */
+    public static GXImageSource forBuffer(final ByteBuffer image) {
+        if (image == null) {
+            throw new IllegalArgumentException("image");
+        }
+        return new GXBufferSource(image.slice());
+    }
+
+    /**
+     * Map image file to the memory. The file is closed after mapping and the
+     * mapping is released when the source is garbage collected.
+     * 
+     * @param path
+     *            Image file.
+     * @return Image source.
+     * @throws IOException
+     *             Mapping failed.
+     */
+    public static GXImageSource map(final Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Image is too big to map.");
+            }
+            MappedByteBuffer buff = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new GXBufferSource(buff);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Image from file channel. Positional reads are used, so the channel
+     * position is not changed and the source can be shared between the
+     * threads. Closing the source closes the channel.
+     * 
+     * @param channel
+     *            Opened file channel.
+     * @return Image source.
+     * @throws IOException
+     *             Reading the size failed.
+     */
+    public static GXImageSource forChannel(final FileChannel channel) throws IOException {
+        if (channel == null) {
+            throw new IllegalArgumentException("channel");
+        }
+        return new GXChannelSource(channel, channel.size());
+    }
+
+    /**
+     * Image from input stream. Blocks must be read in ascending order.
+     * Skipped bytes are discarded, so transfer can be resumed from the first
+     * not transferred block. Closing the source closes the stream.
+     * 
+     * @param stream
+     *            Input stream.
+     * @param size
+     *            Image size in bytes.
+     * @return Image source.
+     */
+    public static GXImageSource forStream(final InputStream stream, final long size) {
+        if (stream == null) {
+            throw new IllegalArgumentException("stream");
+        }
+        if (size < 0) {
+            throw new IllegalArgumentException("size");
+        }
+        return new GXStreamSource(stream, size);
+    }
+
+    /**
+     * Image in NIO buffer.
+     */
+    private static final class GXBufferSource extends GXImageSource {
+        private final ByteBuffer buffer;
+
+        GXBufferSource(final ByteBuffer value) {
+            buffer = value;
+        }
+
+        @Override
+        public long getSize() {
+            return buffer.capacity();
+        }
+
+        @Override
+        public void read(final long position, final byte[] target, final int offset, final int count)
+                throws IOException {
+            checkRange(position, count);
+            // Duplicate has own position so concurrent reads are not
+            // interfering each other.
+            ByteBuffer tmp = buffer.duplicate();
+            tmp.position((int) position);
+            tmp.get(target, offset, count);
+        }
+    }
+
+    /**
+     * Image in the file.
+     */
+    private static final class GXChannelSource extends GXImageSource {
+        private final FileChannel channel;
+        private final long size;
+
+        GXChannelSource(final FileChannel value, final long imageSize) {
+            channel = value;
+            size = imageSize;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public void read(final long position, final byte[] target, final int offset, final int count)
+                throws IOException {
+            checkRange(position, count);
+            ByteBuffer tmp = ByteBuffer.wrap(target, offset, count);
+            long pos = position;
+            while (tmp.hasRemaining()) {
+                int ret = channel.read(tmp, pos);
+                if (ret < 0) {
+                    throw new EOFException("Image file is shorter than expected.");
+                }
+                pos += ret;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Image that is read from the stream.
+     */
+    private static final class GXStreamSource extends GXImageSource {
+        private final InputStream stream;
+        private final long size;
+        /**
+         * Current position in the stream.
+         */
+        private long current;
+
+        GXStreamSource(final InputStream value, final long imageSize) {
+            stream = value;
+            size = imageSize;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public synchronized void read(final long position, final byte[] target, final int offset,
+                final int count) throws IOException {
+            checkRange(position, count);
+            if (position < current) {
+                throw new IOException("Stream can't be read backwards.");
+            }
+            while (current != position) {
+                long ret = stream.skip(position - current);
+                if (ret <= 0) {
+                    // Skip is not supported. Read byte to find the end of the
+                    // stream.
+                    if (stream.read() < 0) {
+                        throw new EOFException("Image stream is shorter than expected.");
+                    }
+                    ret = 1;
+                }
+                current += ret;
+            }
+            int pos = 0;
+            while (pos != count) {
+                int ret = stream.read(target, offset + pos, count - pos);
+                if (ret < 0) {
+                    throw new EOFException("Image stream is shorter than expected.");
+                }
+                pos += ret;
+            }
+            current += count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
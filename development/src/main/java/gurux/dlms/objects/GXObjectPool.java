@@ -0,0 +1,112 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.objects;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared immutable values of compact COSEM objects. Meters that use the same
+ * firmware have the same logical names and access rights, so compact objects
+ * share them instead of keeping own copies.
+ */
+final class GXObjectPool {
+    /**
+     * Maximum amount of the shared values of each type. Values are not
+     * shared after this and the pool can't grow without limits.
+     */
+    private static final int MAX_VALUES = 0x10000;
+
+    private static final Map<String, String> NAMES = new ConcurrentHashMap<String, String>();
+
+    private static final Map<ByteBuffer, byte[]> ARRAYS = new ConcurrentHashMap<ByteBuffer, byte[]>();
+
+    /**
+     * Constructor.
+     */
+    private GXObjectPool() {
+
+    }
+
+    /**
+     * Get shared logical name.
+     * 
+     * @param value
+     *            Logical name.
+     * @return Shared logical name.
+     */
+    static String intern(final String value) {
+        if (value == null) {
+            return null;
+        }
+        String tmp = NAMES.get(value);
+        if (tmp == null) {
+            if (NAMES.size() >= MAX_VALUES) {
+                return value;
+            }
+            tmp = NAMES.putIfAbsent(value, value);
+            if (tmp == null) {
+                tmp = value;
+            }
+        }
+        return tmp;
+    }
+
+    /**
+     * Get shared array. Shared array must not be modified.
+     * 
+     * @param value
+     *            Array.
+     * @return Shared array with the same content.
+     */
+    static byte[] intern(final byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        ByteBuffer key = ByteBuffer.wrap(value);
+        byte[] tmp = ARRAYS.get(key);
+        if (tmp == null) {
+            if (ARRAYS.size() >= MAX_VALUES) {
+                return value;
+            }
+            tmp = ARRAYS.putIfAbsent(key, value);
+            if (tmp == null) {
+                tmp = value;
+            }
+        }
+        return tmp;
+    }
+}
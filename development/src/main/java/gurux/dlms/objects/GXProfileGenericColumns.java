@@ -0,0 +1,502 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.objects;
+
+import java.util.AbstractList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.TimeZone;
+
+import gurux.dlms.GXCompactDateTime;
+import gurux.dlms.GXDateTime;
+import gurux.dlms.GXUInt16;
+import gurux.dlms.GXUInt32;
+import gurux.dlms.GXUInt8;
+import gurux.dlms.enums.ClockStatus;
+import gurux.dlms.enums.DateTimeExtraInfo;
+import gurux.dlms.enums.DateTimeSkips;
+
+/**
+ * Columnar ring buffer for the rows of the profile generic.
+ * <p>
+ * Each column is stored to one array. Integers are stored to long[], floating
+ * point values to double[] and date times as epoch milliseconds. The type of
+ * the column is selected from the first stored value. If a later value can't
+ * be stored without losing information, the column is changed to an object
+ * column. The oldest row is removed in constant time.
+ * </p>
+ * <p>
+ * Rows are created when they are read, so changing a returned row doesn't
+ * change the stored values.
+ * </p>
+ */
+final class GXProfileGenericColumns extends AbstractList<Object[]> implements RandomAccess {
+    /**
+     * Types that are stored to primitive arrays. Index is the column kind.
+     */
+    private static final Class<?>[] TYPES = new Class<?>[] { Long.class, Integer.class, Short.class, Byte.class,
+            GXUInt8.class, GXUInt16.class, GXUInt32.class, Double.class, Float.class, GXDateTime.class,
+            java.util.Date.class };
+
+    private static final int LONG = 0;
+    private static final int INT = 1;
+    private static final int SHORT = 2;
+    private static final int BYTE = 3;
+    private static final int UINT8 = 4;
+    private static final int UINT16 = 5;
+    private static final int UINT32 = 6;
+    private static final int DOUBLE = 7;
+    private static final int FLOAT = 8;
+    private static final int DATETIME = 9;
+    private static final int DATE = 10;
+    private static final int OBJECT = 11;
+
+    /**
+     * Initial capacity of the columns.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Columns. Null if there are no rows.
+     */
+    private GXColumn[] columns;
+
+    /**
+     * Position of the oldest row.
+     */
+    private int head;
+
+    /**
+     * Amount of the rows.
+     */
+    private int count;
+
+    /**
+     * Length of the column arrays.
+     */
+    private int capacity;
+
+    /**
+     * One column of the buffer.
+     */
+    private static final class GXColumn {
+        private int kind = -1;
+        private long[] longs;
+        private double[] doubles;
+        /**
+         * Clock status and day of week of the date time values.
+         */
+        private short[] infos;
+        private Object[] objects;
+        /**
+         * Time zone of the date time values.
+         */
+        private TimeZone zone;
+        private Set<DateTimeSkips> skip;
+        private Set<DateTimeExtraInfo> extra;
+        /**
+         * Last clock status that can be restored from the integer value.
+         */
+        private Set<ClockStatus> status;
+
+        /**
+         * Select column type using the first value.
+         */
+        void init(final Object value, final int length) {
+            kind = OBJECT;
+            if (value != null) {
+                for (int pos = 0; pos != TYPES.length; ++pos) {
+                    if (value.getClass() == TYPES[pos]) {
+                        kind = pos;
+                        break;
+                    }
+                }
+            }
+            if (kind == DATETIME) {
+                GXDateTime dt = (GXDateTime) value;
+                if (!isStatusSupported(dt.getStatus()) || dt.getSkip() == null || dt.getExtra() == null
+                        || dt.getMeterCalendar().getClass() != GregorianCalendar.class) {
+                    kind = OBJECT;
+                } else {
+                    zone = (TimeZone) dt.getMeterCalendar().getTimeZone().clone();
+                    skip = new HashSet<DateTimeSkips>(dt.getSkip());
+                    extra = new HashSet<DateTimeExtraInfo>(dt.getExtra());
+                }
+            }
+            if (kind == OBJECT) {
+                objects = new Object[length];
+            } else if (kind == DOUBLE || kind == FLOAT) {
+                doubles = new double[length];
+            } else {
+                longs = new long[length];
+                if (kind == DATETIME) {
+                    infos = new short[length];
+                }
+            }
+        }
+
+        /**
+         * Status can be restored from the integer value.
+         */
+        private boolean isStatusSupported(final Set<ClockStatus> value) {
+            if (value == null) {
+                return false;
+            }
+            if (value.equals(status)) {
+                return true;
+            }
+            Set<ClockStatus> tmp = ClockStatus.forValue(ClockStatus.toInteger(value));
+            if (tmp.equals(value)) {
+                status = tmp;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Store value if it can be restored without losing information.
+         * 
+         * @return True, if value is stored.
+         */
+        boolean set(final int pos, final Object value) {
+            if (kind == OBJECT) {
+                objects[pos] = value;
+                return true;
+            }
+            if (value == null || value.getClass() != TYPES[kind]) {
+                return false;
+            }
+            switch (kind) {
+            case DOUBLE:
+            case FLOAT:
+                doubles[pos] = ((Number) value).doubleValue();
+                break;
+            case DATETIME:
+                GXDateTime dt = (GXDateTime) value;
+                Calendar cal = dt.getMeterCalendar();
+                if (!isStatusSupported(dt.getStatus()) || cal.getClass() != GregorianCalendar.class
+                        || dt.getDayOfWeek() < 0 || dt.getDayOfWeek() > 0xFF || !skip.equals(dt.getSkip())
+                        || !extra.equals(dt.getExtra()) || !zone.equals(cal.getTimeZone())) {
+                    return false;
+                }
+                longs[pos] = cal.getTimeInMillis();
+                infos[pos] = (short) (ClockStatus.toInteger(dt.getStatus()) | dt.getDayOfWeek() << 8);
+                break;
+            case DATE:
+                longs[pos] = ((java.util.Date) value).getTime();
+                break;
+            default:
+                longs[pos] = ((Number) value).longValue();
+                break;
+            }
+            return true;
+        }
+
+        Object get(final int pos) {
+            switch (kind) {
+            case LONG:
+                return longs[pos];
+            case INT:
+                return (int) longs[pos];
+            case SHORT:
+                return (short) longs[pos];
+            case BYTE:
+                return (byte) longs[pos];
+            case UINT8:
+                return new GXUInt8((short) longs[pos]);
+            case UINT16:
+                return new GXUInt16((int) longs[pos]);
+            case UINT32:
+                return new GXUInt32(longs[pos]);
+            case DOUBLE:
+                return doubles[pos];
+            case FLOAT:
+                return (float) doubles[pos];
+            case DATETIME:
+                Calendar cal = Calendar.getInstance(zone);
+                cal.setTimeInMillis(longs[pos]);
+                GXDateTime dt = new GXDateTime(cal);
+                dt.getSkip().addAll(skip);
+                dt.getExtra().addAll(extra);
+                dt.setStatus(ClockStatus.forValue(infos[pos] & 0xFF));
+                dt.setDayOfWeek((infos[pos] >> 8) & 0xFF);
+                return dt;
+            case DATE:
+                return new java.util.Date(longs[pos]);
+            default:
+                return objects[pos];
+            }
+        }
+
+        /**
+         * Release the object that is stored to the removed row.
+         */
+        void release(final int pos) {
+            if (objects != null) {
+                objects[pos] = null;
+            }
+        }
+
+        /**
+         * Copy the rows to new arrays so that the oldest row is in the
+         * beginning.
+         */
+        void resize(final int head, final int count, final int length) {
+            if (longs != null) {
+                longs = copy(longs, new long[length], head, count);
+            }
+            if (doubles != null) {
+                doubles = copy(doubles, new double[length], head, count);
+            }
+            if (infos != null) {
+                infos = copy(infos, new short[length], head, count);
+            }
+            if (objects != null) {
+                objects = copy(objects, new Object[length], head, count);
+            }
+        }
+
+        private static <T> T copy(final T source, final T target, final int head, final int count) {
+            int length = java.lang.reflect.Array.getLength(source);
+            int first = Math.min(count, length - head);
+            System.arraycopy(source, head, target, 0, first);
+            System.arraycopy(source, 0, target, first, count - first);
+            return target;
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Amount of the columns.
+     */
+    int getColumnCount() {
+        if (columns == null) {
+            return 0;
+        }
+        return columns.length;
+    }
+
+    private int position(final int index) {
+        int pos = head + index;
+        if (pos >= capacity) {
+            pos -= capacity;
+        }
+        return pos;
+    }
+
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+
+    @Override
+    public Object[] get(final int index) {
+        checkIndex(index);
+        int pos = position(index);
+        Object[] row = new Object[columns.length];
+        for (int col = 0; col != columns.length; ++col) {
+            row[col] = columns[col].get(pos);
+        }
+        return row;
+    }
+
+    @Override
+    public boolean add(final Object[] row) {
+        if (row == null) {
+            throw new IllegalArgumentException("row");
+        }
+        if (count == 0 && (columns == null || columns.length != row.length)) {
+            columns = new GXColumn[row.length];
+            for (int col = 0; col != row.length; ++col) {
+                columns[col] = new GXColumn();
+            }
+            head = 0;
+            capacity = INITIAL_CAPACITY;
+        } else if (columns.length != row.length) {
+            throw new IllegalArgumentException("Number of columns do not match.");
+        }
+        if (count == capacity) {
+            int length = capacity << 1;
+            for (GXColumn it : columns) {
+                if (it.kind != -1) {
+                    it.resize(head, count, length);
+                }
+            }
+            head = 0;
+            capacity = length;
+        }
+        int pos = position(count);
+        for (int col = 0; col != row.length; ++col) {
+            GXColumn c = columns[col];
+            if (c.kind == -1) {
+                c.init(row[col], capacity);
+            }
+            if (!c.set(pos, row[col])) {
+                toObjects(c);
+                c.set(pos, row[col]);
+            }
+        }
+        ++count;
+        ++modCount;
+        return true;
+    }
+
+    /**
+     * Change the column to the object column.
+     */
+    private void toObjects(final GXColumn column) {
+        Object[] objects = new Object[capacity];
+        for (int index = 0; index != count; ++index) {
+            int pos = position(index);
+            objects[pos] = column.get(pos);
+        }
+        column.kind = OBJECT;
+        column.longs = null;
+        column.doubles = null;
+        column.infos = null;
+        column.zone = null;
+        column.skip = null;
+        column.extra = null;
+        column.status = null;
+        column.objects = objects;
+    }
+
+    /**
+     * Remove the row. The oldest row is removed in constant time.
+     */
+    @Override
+    public Object[] remove(final int index) {
+        checkIndex(index);
+        Object[] row = get(index);
+        if (index == 0) {
+            for (GXColumn it : columns) {
+                it.release(head);
+            }
+            ++head;
+            if (head == capacity) {
+                head = 0;
+            }
+            --count;
+        } else {
+            // Move the newer rows.
+            for (int pos = index + 1; pos != count; ++pos) {
+                set(pos - 1, get(pos));
+            }
+            --count;
+            for (GXColumn it : columns) {
+                it.release(position(count));
+            }
+        }
+        ++modCount;
+        return row;
+    }
+
+    @Override
+    public Object[] set(final int index, final Object[] row) {
+        checkIndex(index);
+        if (row == null || row.length != columns.length) {
+            throw new IllegalArgumentException("Number of columns do not match.");
+        }
+        Object[] old = get(index);
+        int pos = position(index);
+        for (int col = 0; col != row.length; ++col) {
+            GXColumn c = columns[col];
+            if (!c.set(pos, row[col])) {
+                toObjects(c);
+                c.set(pos, row[col]);
+            }
+        }
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        columns = null;
+        head = 0;
+        count = 0;
+        capacity = 0;
+        ++modCount;
+    }
+
+    /**
+     * Add the rows where the time of the column is between start and end.
+     * 
+     * @param column
+     *            Index of the date time column.
+     * @param start
+     *            Start time in epoch milliseconds.
+     * @param end
+     *            End time in epoch milliseconds.
+     * @param target
+     *            Found rows.
+     */
+    void getRange(final int column, final long start, final long end, final List<Object[]> target) {
+        if (count == 0) {
+            return;
+        }
+        if (column < 0 || column >= columns.length) {
+            throw new IndexOutOfBoundsException("Column: " + column);
+        }
+        GXColumn c = columns[column];
+        long tm;
+        for (int index = 0; index != count; ++index) {
+            int pos = position(index);
+            if (c.kind == DATETIME || c.kind == DATE) {
+                tm = c.longs[pos];
+            } else {
+                Object value = c.get(pos);
+                if (value instanceof GXDateTime) {
+                    tm = ((GXDateTime) value).getMeterCalendar().getTimeInMillis();
+                } else if (value instanceof GXCompactDateTime) {
+                    tm = ((GXCompactDateTime) value).toInstant().toEpochMilli();
+                } else {
+                    tm = ((java.util.Date) value).getTime();
+                }
+            }
+            if (tm >= start && tm <= end) {
+                target.add(get(index));
+            }
+        }
+    }
+}
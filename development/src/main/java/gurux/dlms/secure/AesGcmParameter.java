@@ -132,6 +132,11 @@ public class AesGcmParameter {
      */
     private boolean compression;
 
+    /*
+     * Resolves the keys of the sender by the system title.
+     */
+    private IGXKeyResolver keyResolver;
+
     private GXDLMSTranslatorStructure xml;
 
     /**
@@ -401,6 +406,21 @@ public class AesGcmParameter {
         ignoreSystemTitle = value;
     }
 
+    /**
+     * @return Resolves the keys of the sender by the system title.
+     */
+    public IGXKeyResolver getKeyResolver() {
+        return keyResolver;
+    }
+
+    /**
+     * @param value
+     *            Resolves the keys of the sender by the system title.
+     */
+    public void setKeyResolver(final IGXKeyResolver value) {
+        keyResolver = value;
+    }
+
     /**
      * @return Key parameters.
      */
@@ -0,0 +1,96 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+/**
+ * Block cipher and authentication key of one system title.
+ */
+public final class GXCipherKeys {
+    private final byte[] blockCipherKey;
+    private final byte[] authenticationKey;
+
+    /**
+     * Constructor. Keys are not copied.
+     * 
+     * @param forBlockCipherKey
+     *            Block cipher key.
+     * @param forAuthenticationKey
+     *            Authentication key.
+     */
+    public GXCipherKeys(final byte[] forBlockCipherKey, final byte[] forAuthenticationKey) {
+        checkKey(forBlockCipherKey);
+        checkKey(forAuthenticationKey);
+        blockCipherKey = forBlockCipherKey;
+        authenticationKey = forAuthenticationKey;
+    }
+
+    private static void checkKey(final byte[] value) {
+        if (value == null || (value.length != 16 && value.length != 32)) {
+            throw new IllegalArgumentException("Invalid key.");
+        }
+    }
+
+    /**
+     * @return Block cipher key.
+     */
+    public byte[] getBlockCipherKey() {
+        return blockCipherKey;
+    }
+
+    /**
+     * @return Authentication key.
+     */
+    public byte[] getAuthenticationKey() {
+        return authenticationKey;
+    }
+
+    /**
+     * Convert system title to the key of the key stores.
+     * 
+     * @param systemTitle
+     *            System title.
+     * @return System title as a big-endian integer.
+     */
+    static long toKey(final byte[] systemTitle) {
+        if (systemTitle == null || systemTitle.length != 8) {
+            throw new IllegalArgumentException("Invalid system title.");
+        }
+        long value = 0;
+        for (byte it : systemTitle) {
+            value = (value << 8) | (it & 0xFF);
+        }
+        return value;
+    }
+}
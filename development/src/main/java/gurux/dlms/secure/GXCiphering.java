@@ -100,7 +100,7 @@ public class GXCiphering implements GXICipher {
     /**
      * Invocation Counter.
      */
-    private long invocationCounter = 0;
+    private IGXInvocationCounter invocationCounter = new GXInvocationCounter();
 
     /**
      * Used security suite.
@@ -122,6 +122,11 @@ public class GXCiphering implements GXICipher {
      */
     private Signing signing;
 
+    /**
+     * Resolves the keys of the sender by the system title.
+     */
+    private IGXKeyResolver keyResolver;
+
     /**
      * Transaction Id.
      */
@@ -207,16 +212,42 @@ public class GXCiphering implements GXICipher {
      *            Invocation Counter.
      */
     public final void setInvocationCounter(final long value) {
-        invocationCounter = value;
+        invocationCounter.set(value);
     }
 
     /**
      * @return Invocation Counter.
      */
     public final long getInvocationCounter() {
+        return invocationCounter.get();
+    }
+
+    @Override
+    public final long nextInvocationCounter() {
+        return invocationCounter.next();
+    }
+
+    /**
+     * @return Invocation counter provider.
+     */
+    public final IGXInvocationCounter getInvocationCounterProvider() {
         return invocationCounter;
     }
 
+    /**
+     * Set invocation counter provider. Use {@link GXMappedInvocationCounter}
+     * to keep the invocation counter over restarts.
+     * 
+     * @param value
+     *            Invocation counter provider.
+     */
+    public final void setInvocationCounterProvider(final IGXInvocationCounter value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Invalid invocation counter provider.");
+        }
+        invocationCounter = value;
+    }
+
     /**
      * @return Used security.
      */
@@ -432,13 +463,14 @@ public class GXCiphering implements GXICipher {
     public byte[] generateGmacPassword(final byte[] challenge)
             throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException,
             NoSuchAlgorithmException, NoSuchPaddingException, InvalidAlgorithmParameterException {
+        long ic = invocationCounter.get();
         AesGcmParameter p =
                 new AesGcmParameter(null, 0x10, Security.AUTHENTICATION, SecuritySuite.SUITE_0,
-                        invocationCounter, systemTitle, blockCipherKey, authenticationKey);
+                        ic, systemTitle, blockCipherKey, authenticationKey);
         p.setType(CountType.TAG);
         GXByteBuffer bb = new GXByteBuffer();
         bb.setUInt8(0x10);
-        bb.setUInt32(invocationCounter);
+        bb.setUInt32(ic);
         bb.set(GXSecure.encryptAesGcm(true, p, challenge));
         return bb.array();
     }
@@ -453,6 +485,15 @@ public class GXCiphering implements GXICipher {
         dedicatedKey = value;
     }
 
+    /**
+     * Remove cached cipher engines and keys of the current thread. This can
+     * be called when a thread stops using the ciphering, for example before
+     * a pooled thread is returned.
+     */
+    public static void clearThreadCache() {
+        GXCryptoEngines.clear();
+    }
+
     /**
      * @return Used key agreement scheme.
      */
@@ -470,6 +511,30 @@ public class GXCiphering implements GXICipher {
         signing = value;
     }
 
+    /**
+     * @return Resolver that finds the keys of the sender by the system title.
+     *         Null if keys of the settings are used.
+     */
+    @Override
+    public IGXKeyResolver getKeyResolver() {
+        return keyResolver;
+    }
+
+    /**
+     * Set resolver that finds the keys of the sender by the system title.
+     * <p>
+     * Resolver is used when general global ciphering, general ciphering or
+     * global ciphering is used and the system title of the sender is known.
+     * Dedicated keys are always taken from the association.
+     * </p>
+     * 
+     * @param value
+     *            Key resolver. Null if keys of the settings are used.
+     */
+    public void setKeyResolver(final IGXKeyResolver value) {
+        keyResolver = value;
+    }
+
     @Override
     public byte[] getTransactionId() {
         return transactionId;
@@ -0,0 +1,274 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Per-thread cache of JCE engines.
+ * <p>
+ * Provider lookup is done only once for each algorithm in each thread. Ciphers
+ * are cached by key bytes, so the key schedule that the cipher expands from
+ * the key is reused when the same key is used again. Engines are never shared
+ * between threads.
+ * </p>
+ * <p>
+ * Amount of the cached keys is bounded. Keys that are not used anymore age out
+ * when other keys are used and their copies are zeroed when they are evicted.
+ * </p>
+ */
+final class GXCryptoEngines {
+    /**
+     * Amount of the cached keys for each cipher transformation. The least
+     * recently used key is evicted when a new key is used.
+     */
+    private static final int KEY_SLOTS = 16;
+
+    private static final ThreadLocal<GXCryptoEngines> ENGINES = new ThreadLocal<GXCryptoEngines>() {
+        @Override
+        protected GXCryptoEngines initialValue() {
+            return new GXCryptoEngines();
+        }
+    };
+
+    /**
+     * Cipher that is initialized with the given key.
+     */
+    private static final class GXKeyedCipher {
+        private byte[] key;
+        private SecretKeySpec spec;
+        private Cipher cipher;
+        private long lastUsed;
+    }
+
+    /**
+     * Keyed ciphers by transformation.
+     */
+    private final Map<String, GXKeyedCipher[]> ciphers = new HashMap<String, GXKeyedCipher[]>();
+
+    /**
+     * Signatures by algorithm.
+     */
+    private final Map<String, Signature> signatures = new HashMap<String, Signature>();
+
+    /**
+     * Message digests by algorithm.
+     */
+    private final Map<String, MessageDigest> digests = new HashMap<String, MessageDigest>();
+
+    private KeyAgreement keyAgreement;
+
+    /**
+     * Use counter that is used to find the least recently used key.
+     */
+    private long useCount;
+
+    /**
+     * Constructor.
+     */
+    private GXCryptoEngines() {
+    }
+
+    /**
+     * Remove all the cached engines and keys of the current thread.
+     */
+    static void clear() {
+        GXCryptoEngines engines = ENGINES.get();
+        for (GXKeyedCipher[] slots : engines.ciphers.values()) {
+            for (GXKeyedCipher it : slots) {
+                if (it != null) {
+                    Arrays.fill(it.key, (byte) 0);
+                }
+            }
+        }
+        ENGINES.remove();
+    }
+
+    /**
+     * Returns initialized cipher.
+     * 
+     * @param transformation
+     *            Cipher transformation.
+     * @param mode
+     *            Cipher mode.
+     * @param key
+     *            AES key.
+     * @param params
+     *            Algorithm parameters or null.
+     * @return Cipher that is ready to use in the current thread.
+     */
+    static Cipher getCipher(final String transformation, final int mode, final byte[] key,
+            final AlgorithmParameterSpec params) throws NoSuchAlgorithmException, NoSuchPaddingException,
+            InvalidKeyException, InvalidAlgorithmParameterException {
+        GXCryptoEngines engines = ENGINES.get();
+        GXKeyedCipher[] slots = engines.ciphers.get(transformation);
+        if (slots == null) {
+            slots = new GXKeyedCipher[KEY_SLOTS];
+            engines.ciphers.put(transformation, slots);
+        }
+        GXKeyedCipher target = null;
+        for (GXKeyedCipher it : slots) {
+            if (it != null && Arrays.equals(it.key, key)) {
+                target = it;
+                break;
+            }
+        }
+        if (target == null) {
+            // Replace the least recently used key.
+            int index = 0;
+            for (int pos = 0; pos != slots.length; ++pos) {
+                if (slots[pos] == null) {
+                    index = pos;
+                    break;
+                }
+                if (slots[pos].lastUsed < slots[index].lastUsed) {
+                    index = pos;
+                }
+            }
+            if (slots[index] != null) {
+                Arrays.fill(slots[index].key, (byte) 0);
+            }
+            target = new GXKeyedCipher();
+            target.key = key.clone();
+            target.spec = new SecretKeySpec(target.key, "AES");
+            target.cipher = Cipher.getInstance(transformation);
+            slots[index] = target;
+        }
+        target.lastUsed = ++engines.useCount;
+        try {
+            init(target.cipher, mode, target.spec, params);
+        } catch (InvalidAlgorithmParameterException e) {
+            // GCM cipher doesn't allow the same IV to be used again for
+            // encryption. This happens when the same invocation counter is
+            // verified with an authentication only tag. New cipher is used.
+            target.cipher = Cipher.getInstance(transformation);
+            init(target.cipher, mode, target.spec, params);
+        }
+        return target.cipher;
+    }
+
+    /**
+     * Returns initialized cipher that doesn't use algorithm parameters.
+     * 
+     * @param transformation
+     *            Cipher transformation.
+     * @param mode
+     *            Cipher mode.
+     * @param key
+     *            AES key.
+     * @return Cipher that is ready to use in the current thread.
+     */
+    static Cipher getCipher(final String transformation, final int mode, final byte[] key)
+            throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException {
+        try {
+            return getCipher(transformation, mode, key, null);
+        } catch (InvalidAlgorithmParameterException e) {
+            // Parameters are not used.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void init(final Cipher cipher, final int mode, final SecretKeySpec spec,
+            final AlgorithmParameterSpec params) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        if (params == null) {
+            cipher.init(mode, spec);
+        } else {
+            cipher.init(mode, spec, params);
+        }
+    }
+
+    /**
+     * Returns signature engine. Engine must be initialized before use.
+     * 
+     * @param algorithm
+     *            Signature algorithm.
+     * @return Signature engine of the current thread.
+     */
+    static Signature getSignature(final String algorithm) throws NoSuchAlgorithmException {
+        GXCryptoEngines engines = ENGINES.get();
+        Signature s = engines.signatures.get(algorithm);
+        if (s == null) {
+            s = Signature.getInstance(algorithm);
+            engines.signatures.put(algorithm, s);
+        }
+        return s;
+    }
+
+    /**
+     * Returns message digest that is reset.
+     * 
+     * @param algorithm
+     *            Digest algorithm.
+     * @return Message digest of the current thread.
+     */
+    static MessageDigest getMessageDigest(final String algorithm) throws NoSuchAlgorithmException {
+        GXCryptoEngines engines = ENGINES.get();
+        MessageDigest md = engines.digests.get(algorithm);
+        if (md == null) {
+            md = MessageDigest.getInstance(algorithm);
+            engines.digests.put(algorithm, md);
+        } else {
+            md.reset();
+        }
+        return md;
+    }
+
+    /**
+     * Returns ECDH key agreement. Key agreement must be initialized before
+     * use.
+     * 
+     * @return ECDH key agreement of the current thread.
+     */
+    static KeyAgreement getKeyAgreement() throws NoSuchAlgorithmException {
+        GXCryptoEngines engines = ENGINES.get();
+        if (engines.keyAgreement == null) {
+            engines.keyAgreement = KeyAgreement.getInstance("ECDH");
+        }
+        return engines.keyAgreement;
+    }
+}
@@ -0,0 +1,99 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free in-memory invocation counter.
+ */
+public final class GXInvocationCounter implements IGXInvocationCounter {
+    /**
+     * Largest invocation counter.
+     */
+    static final long MAX_VALUE = 0xFFFFFFFFL;
+
+    private final AtomicLong value;
+
+    /**
+     * Constructor.
+     */
+    public GXInvocationCounter() {
+        this(0);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param initialValue
+     *            Invocation counter that is used next.
+     */
+    public GXInvocationCounter(final long initialValue) {
+        value = new AtomicLong(initialValue);
+    }
+
+    @Override
+    public long get() {
+        return value.get();
+    }
+
+    @Override
+    public void set(final long forValue) {
+        value.set(forValue);
+    }
+
+    @Override
+    public long next() {
+        return next(value);
+    }
+
+    /**
+     * Increase the counter if it's not overflown.
+     * 
+     * @param value
+     *            Counter.
+     * @return Value before the increase.
+     */
+    static long next(final AtomicLong value) {
+        long current;
+        do {
+            current = value.get();
+            if (current > MAX_VALUE) {
+                throw new IllegalStateException("Invocation counter overflow.");
+            }
+        } while (!value.compareAndSet(current, current + 1));
+        return current;
+    }
+}
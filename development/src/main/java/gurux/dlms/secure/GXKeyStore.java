@@ -0,0 +1,111 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe in-memory key store. System titles are stored as 64-bit
+ * integers, so the lookup doesn't copy the system title or compare byte
+ * arrays. The integer is boxed for the hash map lookup.
+ */
+public final class GXKeyStore implements IGXKeyResolver {
+    private final ConcurrentHashMap<Long, GXCipherKeys> keys;
+
+    /**
+     * Constructor.
+     */
+    public GXKeyStore() {
+        keys = new ConcurrentHashMap<Long, GXCipherKeys>();
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            Expected amount of the system titles.
+     */
+    public GXKeyStore(final int capacity) {
+        keys = new ConcurrentHashMap<Long, GXCipherKeys>(capacity);
+    }
+
+    /**
+     * Add or replace the keys of the system title.
+     * 
+     * @param systemTitle
+     *            System title.
+     * @param blockCipherKey
+     *            Block cipher key.
+     * @param authenticationKey
+     *            Authentication key.
+     */
+    public void put(final byte[] systemTitle, final byte[] blockCipherKey, final byte[] authenticationKey) {
+        keys.put(GXCipherKeys.toKey(systemTitle),
+                new GXCipherKeys(blockCipherKey.clone(), authenticationKey.clone()));
+    }
+
+    /**
+     * Remove the keys of the system title.
+     * 
+     * @param systemTitle
+     *            System title.
+     * @return True, if the keys were removed.
+     */
+    public boolean remove(final byte[] systemTitle) {
+        return keys.remove(GXCipherKeys.toKey(systemTitle)) != null;
+    }
+
+    /**
+     * @return Amount of the system titles.
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Remove all the keys.
+     */
+    public void clear() {
+        keys.clear();
+    }
+
+    @Override
+    public GXCipherKeys getKeys(final byte[] systemTitle) {
+        if (systemTitle == null || systemTitle.length != 8) {
+            return null;
+        }
+        return keys.get(GXCipherKeys.toKey(systemTitle));
+    }
+}
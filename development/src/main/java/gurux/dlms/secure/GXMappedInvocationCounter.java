@@ -0,0 +1,162 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Invocation counter that survives restarts without writing every used
+ * value.
+ * <p>
+ * Counters are reserved in blocks. The end of the reserved block, high-water
+ * mark, is written to the memory mapped file and forced to the disk before
+ * any counter of the block is used. Counters are handed out lock-free inside
+ * the block. After restart, counting continues from the high-water mark, so
+ * the same invocation counter is never used twice. At most one block of
+ * counters is skipped.
+ * </p>
+ */
+public final class GXMappedInvocationCounter implements IGXInvocationCounter, Closeable {
+    /**
+     * File identifier ("GXIC").
+     */
+    private static final int MAGIC = 0x47584943;
+    private static final int VERSION = 1;
+    private static final int SIZE = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int reserve;
+    private final AtomicLong value;
+    /**
+     * Persisted high-water mark. Counters below this are reserved.
+     */
+    private volatile long limit;
+
+    /**
+     * Constructor.
+     * 
+     * @param path
+     *            File path. The file is created if it doesn't exist.
+     * @param forReserve
+     *            Amount of the counters that are reserved with one write.
+     * @throws IOException
+     *             File is invalid or it can't be opened.
+     */
+    public GXMappedInvocationCounter(final Path path, final int forReserve) throws IOException {
+        if (forReserve < 1) {
+            throw new IllegalArgumentException("Invalid reserve.");
+        }
+        reserve = forReserve;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (size != 0 && size != SIZE) {
+                throw new IOException("Invalid invocation counter file.");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+            if (size == 0) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putLong(8, 0);
+                buffer.force();
+            } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getLong(8) < 0) {
+                throw new IOException("Invalid invocation counter file.");
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        limit = buffer.getLong(8);
+        value = new AtomicLong(limit);
+    }
+
+    /**
+     * @return Persisted high-water mark.
+     */
+    public long getHighWaterMark() {
+        return limit;
+    }
+
+    @Override
+    public long get() {
+        return value.get();
+    }
+
+    @Override
+    public synchronized void set(final long forValue) {
+        if (forValue < 0) {
+            throw new IllegalArgumentException("Invalid invocation counter.");
+        }
+        if (forValue >= limit) {
+            persist(forValue + reserve);
+        }
+        value.set(forValue);
+    }
+
+    @Override
+    public long next() {
+        long current = GXInvocationCounter.next(value);
+        if (current >= limit) {
+            reserve(current);
+        }
+        return current;
+    }
+
+    private synchronized void reserve(final long current) {
+        while (current >= limit) {
+            persist(Math.min(limit + reserve, GXInvocationCounter.MAX_VALUE + 1));
+        }
+    }
+
+    private void persist(final long forLimit) {
+        buffer.putLong(8, forLimit);
+        buffer.force();
+        limit = forLimit;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
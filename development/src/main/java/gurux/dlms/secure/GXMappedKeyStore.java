@@ -0,0 +1,433 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Key store that keeps the keys outside of the Java heap.
+ * <p>
+ * Keys are kept in an open addressing hash table. The table is either in a
+ * memory mapped file, so the keys of millions of meters can be used without
+ * loading them to the heap, or in a direct buffer. Lookups use optimistic
+ * reads and don't block each other.
+ * </p>
+ * <p>
+ * Capacity of the table is fixed when it's created. Keep the capacity at
+ * least one third larger than the amount of the meters. Removed keys leave
+ * tombstones to the table. When the keys and the tombstones fill more than
+ * three quarters of the slots, the table is rehashed in place and the
+ * tombstones are dropped.
+ * </p>
+ */
+public final class GXMappedKeyStore implements IGXKeyResolver, Closeable {
+    /**
+     * File identifier ("GXKS").
+     */
+    private static final int MAGIC = 0x47584B53;
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+    private static final int SLOT_SIZE = 80;
+    private static final int TITLE = 0;
+    private static final int STATE = 8;
+    private static final int KEY_LENGTH = 9;
+    private static final int BLOCK_CIPHER_KEY = 16;
+    private static final int AUTHENTICATION_KEY = 48;
+    private static final byte EMPTY = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+    /**
+     * Slot is waiting to be moved while the table is rehashed.
+     */
+    private static final byte MOVING = 3;
+
+    private final ByteBuffer buffer;
+    private final FileChannel channel;
+    private final int mask;
+    private final StampedLock lock = new StampedLock();
+    private int count;
+    /**
+     * Amount of the tombstones.
+     */
+    private int deleted;
+
+    private GXMappedKeyStore(final ByteBuffer forBuffer, final FileChannel forChannel) {
+        buffer = forBuffer;
+        channel = forChannel;
+        mask = buffer.getInt(8) - 1;
+        count = buffer.getInt(12);
+        deleted = buffer.getInt(16);
+    }
+
+    /**
+     * Create key store to the direct memory.
+     * 
+     * @param capacity
+     *            Amount of the slots. Value is rounded up to power of two.
+     * @return Key store.
+     */
+    public static GXMappedKeyStore allocate(final int capacity) {
+        int size = getCapacity(capacity);
+        ByteBuffer bb = ByteBuffer.allocateDirect(HEADER_SIZE + size * SLOT_SIZE);
+        init(bb, size);
+        return new GXMappedKeyStore(bb, null);
+    }
+
+    /**
+     * Open key store file. The file is created if it doesn't exist.
+     * 
+     * @param path
+     *            File path.
+     * @param capacity
+     *            Amount of the slots if the file is created. Value is rounded
+     *            up to power of two.
+     * @return Key store.
+     * @throws IOException
+     *             File is invalid or it can't be opened.
+     */
+    public static GXMappedKeyStore open(final Path path, final int capacity) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = ch.size();
+            MappedByteBuffer bb;
+            if (size == 0) {
+                int slots = getCapacity(capacity);
+                bb = ch.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * SLOT_SIZE);
+                init(bb, slots);
+            } else {
+                if (size < HEADER_SIZE) {
+                    throw new IOException("Invalid key store.");
+                }
+                bb = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                int slots = bb.getInt(8);
+                if (bb.getInt(0) != MAGIC || bb.getInt(4) != VERSION || slots <= 0
+                        || Integer.bitCount(slots) != 1
+                        || size != HEADER_SIZE + (long) slots * SLOT_SIZE || bb.getInt(16) < 0
+                        || bb.getInt(12) < 0 || (long) bb.getInt(12) + bb.getInt(16) > slots) {
+                    throw new IOException("Invalid key store.");
+                }
+            }
+            return new GXMappedKeyStore(bb, ch);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static int getCapacity(final int capacity) {
+        if (capacity < 1 || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        int value = Integer.highestOneBit(capacity);
+        if (value != capacity) {
+            value <<= 1;
+        }
+        if (value > (Integer.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE) {
+            throw new IllegalArgumentException("Invalid capacity.");
+        }
+        return value;
+    }
+
+    private static void init(final ByteBuffer bb, final int capacity) {
+        bb.putInt(0, MAGIC);
+        bb.putInt(4, VERSION);
+        bb.putInt(8, capacity);
+        bb.putInt(12, 0);
+        bb.putInt(16, 0);
+    }
+
+    private static int hash(final long title) {
+        long h = title * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int offset(final int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    /**
+     * Find the slot of the title.
+     * 
+     * @param title
+     *            System title.
+     * @return Slot index or -1 if the title is not found.
+     */
+    private int find(final long title) {
+        int slot = hash(title) & mask;
+        for (int pos = 0; pos <= mask; ++pos) {
+            int offset = offset(slot);
+            byte state = buffer.get(offset + STATE);
+            if (state == EMPTY) {
+                return -1;
+            }
+            if (state == USED && buffer.getLong(offset + TITLE) == title) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * @return Amount of the slots.
+     */
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return Amount of the system titles.
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Add or replace the keys of the system title.
+     * 
+     * @param systemTitle
+     *            System title.
+     * @param blockCipherKey
+     *            Block cipher key.
+     * @param authenticationKey
+     *            Authentication key.
+     */
+    public void put(final byte[] systemTitle, final byte[] blockCipherKey, final byte[] authenticationKey) {
+        long title = GXCipherKeys.toKey(systemTitle);
+        if (blockCipherKey == null || authenticationKey == null
+                || blockCipherKey.length != authenticationKey.length
+                || (blockCipherKey.length != 16 && blockCipherKey.length != 32)) {
+            throw new IllegalArgumentException("Invalid key.");
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(title);
+            if (slot == -1) {
+                // Few tombstones are kept, so the table is not rehashed on
+                // every put when it's almost full.
+                if (count + deleted >= (mask + 1) - ((mask + 1) >>> 2) && deleted > (mask >>> 4)) {
+                    rehash();
+                }
+                slot = hash(title) & mask;
+                int pos;
+                for (pos = 0; pos <= mask; ++pos) {
+                    if (buffer.get(offset(slot) + STATE) != USED) {
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (pos > mask) {
+                    throw new IllegalStateException("Key store is full.");
+                }
+                if (buffer.get(offset(slot) + STATE) == DELETED) {
+                    --deleted;
+                    buffer.putInt(16, deleted);
+                }
+                ++count;
+                buffer.putInt(12, count);
+            }
+            int offset = offset(slot);
+            buffer.putLong(offset + TITLE, title);
+            buffer.put(offset + KEY_LENGTH, (byte) blockCipherKey.length);
+            for (int pos = 0; pos != blockCipherKey.length; ++pos) {
+                buffer.put(offset + BLOCK_CIPHER_KEY + pos, blockCipherKey[pos]);
+                buffer.put(offset + AUTHENTICATION_KEY + pos, authenticationKey[pos]);
+            }
+            buffer.put(offset + STATE, USED);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the keys of the system title.
+     * 
+     * @param systemTitle
+     *            System title.
+     * @return True, if the keys were removed.
+     */
+    public boolean remove(final byte[] systemTitle) {
+        long title = GXCipherKeys.toKey(systemTitle);
+        long stamp = lock.writeLock();
+        try {
+            int slot = find(title);
+            if (slot == -1) {
+                return false;
+            }
+            int offset = offset(slot);
+            // Tombstone is not needed if the probe sequence ends to the next
+            // slot.
+            if (buffer.get(offset(slot + 1 & mask) + STATE) == EMPTY) {
+                buffer.put(offset + STATE, EMPTY);
+            } else {
+                buffer.put(offset + STATE, DELETED);
+                ++deleted;
+                buffer.putInt(16, deleted);
+            }
+            for (int pos = BLOCK_CIPHER_KEY; pos != SLOT_SIZE; ++pos) {
+                buffer.put(offset + pos, (byte) 0);
+            }
+            --count;
+            buffer.putInt(12, count);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Rehash the table in place and drop the tombstones. Keys are first
+     * marked to be moved. Each key is then moved to the first free slot of
+     * its probe sequence. If that slot has a key that is not moved yet, the
+     * keys are swapped and the swapped key is handled next.
+     */
+    private void rehash() {
+        for (int slot = 0; slot <= mask; ++slot) {
+            int offset = offset(slot);
+            byte state = buffer.get(offset + STATE);
+            if (state == DELETED) {
+                buffer.put(offset + STATE, EMPTY);
+            } else if (state == USED) {
+                buffer.put(offset + STATE, MOVING);
+            }
+        }
+        byte[] tmp = new byte[SLOT_SIZE];
+        for (int slot = 0; slot <= mask; ++slot) {
+            int offset = offset(slot);
+            if (buffer.get(offset + STATE) != MOVING) {
+                continue;
+            }
+            int target = hash(buffer.getLong(offset + TITLE)) & mask;
+            while (buffer.get(offset(target) + STATE) == USED) {
+                target = (target + 1) & mask;
+            }
+            if (target == slot) {
+                buffer.put(offset + STATE, USED);
+                continue;
+            }
+            int targetOffset = offset(target);
+            boolean swap = buffer.get(targetOffset + STATE) == MOVING;
+            for (int pos = 0; pos != SLOT_SIZE; ++pos) {
+                tmp[pos] = buffer.get(targetOffset + pos);
+                buffer.put(targetOffset + pos, buffer.get(offset + pos));
+                buffer.put(offset + pos, swap ? tmp[pos] : 0);
+            }
+            buffer.put(targetOffset + STATE, USED);
+            if (swap) {
+                // Swapped key is handled next.
+                --slot;
+            }
+        }
+        deleted = 0;
+        buffer.putInt(16, 0);
+    }
+
+    @Override
+    public GXCipherKeys getKeys(final byte[] systemTitle) {
+        if (systemTitle == null || systemTitle.length != 8) {
+            return null;
+        }
+        long title = GXCipherKeys.toKey(systemTitle);
+        long stamp = lock.tryOptimisticRead();
+        GXCipherKeys keys = read(title);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                keys = read(title);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Read keys. Data may be inconsistent when optimistic read is used, so
+     * invalid values must not throw.
+     */
+    private GXCipherKeys read(final long title) {
+        int slot = find(title);
+        if (slot == -1) {
+            return null;
+        }
+        int offset = offset(slot);
+        int len = buffer.get(offset + KEY_LENGTH);
+        if (len != 16 && len != 32) {
+            return null;
+        }
+        byte[] bck = new byte[len];
+        byte[] ak = new byte[len];
+        for (int pos = 0; pos != len; ++pos) {
+            bck[pos] = buffer.get(offset + BLOCK_CIPHER_KEY + pos);
+            ak[pos] = buffer.get(offset + AUTHENTICATION_KEY + pos);
+        }
+        return new GXCipherKeys(bck, ak);
+    }
+
+    /**
+     * Write changes to the file.
+     */
+    public void force() {
+        if (buffer instanceof MappedByteBuffer) {
+            long stamp = lock.readLock();
+            try {
+                ((MappedByteBuffer) buffer).force();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -60,7 +60,6 @@ import javax.crypto.KeyAgreement;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
 
 import gurux.dlms.GXBitString;
 import gurux.dlms.GXByteBuffer;
@@ -81,6 +80,7 @@ import gurux.dlms.enums.KeyAgreementScheme;
 import gurux.dlms.enums.Security;
 import gurux.dlms.enums.Signing;
 import gurux.dlms.internal.GXCommon;
+import gurux.dlms.objects.GXDLMSData;
 import gurux.dlms.objects.enums.CertificateType;
 import gurux.dlms.objects.enums.SecurityPolicy;
 import gurux.dlms.objects.enums.SecuritySuite;
@@ -89,6 +89,11 @@ public final class GXSecure {
     private static final byte[] IV =
             { (byte) 0xA6, (byte) 0xA6, (byte) 0xA6, (byte) 0xA6, (byte) 0xA6, (byte) 0xA6, (byte) 0xA6, (byte) 0xA6 };
 
+    /**
+     * Zero IV that is used with AES-CBC.
+     */
+    private static final IvParameterSpec ZERO_IV = new IvParameterSpec(new byte[16]);
+
     /**
      * Default Logger.
      */
@@ -100,6 +105,34 @@ public final class GXSecure {
     private GXSecure() {
     }
 
+    /**
+     * Returns signature engine of the current thread. Engine is reused, so it
+     * must be initialized with initSign or initVerify before use and it can't
+     * be shared with other threads.
+     * 
+     * @param algorithm
+     *            Signature algorithm.
+     * @return Signature engine.
+     * @throws NoSuchAlgorithmException
+     *             Algorithm is not supported.
+     */
+    public static Signature getSignature(final String algorithm) throws NoSuchAlgorithmException {
+        return GXCryptoEngines.getSignature(algorithm);
+    }
+
+    /**
+     * Returns ECDH key agreement of the current thread. Key agreement is
+     * reused, so it must be initialized before use and it can't be shared with
+     * other threads.
+     * 
+     * @return ECDH key agreement.
+     * @throws NoSuchAlgorithmException
+     *             ECDH is not supported.
+     */
+    public static KeyAgreement getKeyAgreement() throws NoSuchAlgorithmException {
+        return GXCryptoEngines.getKeyAgreement();
+    }
+
     private static int getBlocklength(final byte[] data) {
         if (data.length % 16 == 0) {
             return data.length;
@@ -119,10 +152,7 @@ public final class GXSecure {
         byte[] s = new byte[16];
         System.arraycopy(data, 0, d, 0, data.length);
         System.arraycopy(secret, 0, s, 0, secret.length);
-        IvParameterSpec ivspec = new IvParameterSpec(new byte[16]);
-        SecretKeySpec keyToBeWrapped2 = new SecretKeySpec(s, "AES");
-        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
-        cipher.init(Cipher.ENCRYPT_MODE, keyToBeWrapped2, ivspec);
+        Cipher cipher = GXCryptoEngines.getCipher("AES/CBC/NoPadding", Cipher.ENCRYPT_MODE, s, ZERO_IV);
         return cipher.doFinal(d);
     }
 
@@ -138,11 +168,7 @@ public final class GXSecure {
         byte[] s = new byte[16];
         System.arraycopy(data, 0, d, 0, data.length);
         System.arraycopy(secret, 0, s, 0, secret.length);
-
-        IvParameterSpec ivspec = new IvParameterSpec(new byte[16]);
-        SecretKeySpec keyToBeWrapped2 = new SecretKeySpec(s, "AES");
-        Cipher cipher = Cipher.getInstance("AES/CBC/NoPadding");
-        cipher.init(Cipher.DECRYPT_MODE, keyToBeWrapped2, ivspec);
+        Cipher cipher = GXCryptoEngines.getCipher("AES/CBC/NoPadding", Cipher.DECRYPT_MODE, s, ZERO_IV);
         return cipher.doFinal(d);
     }
 
@@ -165,9 +191,7 @@ public final class GXSecure {
 
         System.arraycopy(IV, 0, block, 0, IV.length);
         System.arraycopy(data, 0, block, IV.length, data.length);
-        SecretKeySpec keyToBeWrapped2 = new SecretKeySpec(kek, "AES");
-        Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
-        cipher.init(Cipher.ENCRYPT_MODE, keyToBeWrapped2);
+        Cipher cipher = GXCryptoEngines.getCipher("AES/ECB/NoPadding", Cipher.ENCRYPT_MODE, kek);
         for (int j = 0; j != 6; j++) {
             for (int i = 1; i <= n; i++) {
                 System.arraycopy(block, 0, buf, 0, IV.length);
@@ -217,9 +241,7 @@ public final class GXSecure {
             n = 1;
         }
         try {
-            SecretKeySpec keyToBeWrapped2 = new SecretKeySpec(kek, "AES");
-            Cipher cipher = Cipher.getInstance("AES/ECB/NoPadding");
-            cipher.init(Cipher.DECRYPT_MODE, keyToBeWrapped2);
+            Cipher cipher = GXCryptoEngines.getCipher("AES/ECB/NoPadding", Cipher.DECRYPT_MODE, kek);
             for (int j = 5; j >= 0; j--) {
                 for (int i = n; i >= 1; i--) {
                     System.arraycopy(a, 0, buf, 0, IV.length);
@@ -278,15 +300,15 @@ public final class GXSecure {
             MessageDigest md;
             switch (settings.getAuthentication()) {
             case HIGH_MD5:
-                md = MessageDigest.getInstance("MD5");
+                md = GXCryptoEngines.getMessageDigest("MD5");
                 d = md.digest(d);
                 break;
             case HIGH_SHA1:
-                md = MessageDigest.getInstance("SHA-1");
+                md = GXCryptoEngines.getMessageDigest("SHA-1");
                 d = md.digest(d);
                 break;
             case HIGH_SHA256:
-                md = MessageDigest.getInstance("SHA-256");
+                md = GXCryptoEngines.getMessageDigest("SHA-256");
                 d = md.digest(d);
                 break;
             case HIGH_GMAC:
@@ -304,9 +326,9 @@ public final class GXSecure {
             case HIGH_ECDSA:
                 Signature sig;
                 if (settings.getCipher().getSecuritySuite() == SecuritySuite.SUITE_1) {
-                    sig = Signature.getInstance("SHA256withECDSA");
+                    sig = GXCryptoEngines.getSignature("SHA256withECDSA");
                 } else if (settings.getCipher().getSecuritySuite() == SecuritySuite.SUITE_2) {
-                    sig = Signature.getInstance("SHA384withECDSA");
+                    sig = GXCryptoEngines.getSignature("SHA384withECDSA");
                 } else {
                     throw new IllegalArgumentException("Invalid security suite.");
                 }
@@ -410,7 +432,7 @@ public final class GXSecure {
             final byte[] otherInfo) {
         byte[] key = new byte[keyDataLen / 8];
         try {
-            MessageDigest md = MessageDigest.getInstance(hashAlg);
+            MessageDigest md = GXCryptoEngines.getMessageDigest(hashAlg);
             int hashLen = md.getDigestLength();
             int cnt = key.length / hashLen;
             byte[] v = new byte[4];
@@ -491,9 +513,9 @@ public final class GXSecure {
         // Add ephemeral public key signature.
         Signature instance;
         if (fieldSize == 256) {
-            instance = Signature.getInstance("SHA256withECDSA");
+            instance = GXCryptoEngines.getSignature("SHA256withECDSA");
         } else if (fieldSize == 384) {
-            instance = Signature.getInstance("SHA384withECDSA");
+            instance = GXCryptoEngines.getSignature("SHA384withECDSA");
         } else {
             throw new IllegalArgumentException("Not an ECDSA key");
         }
@@ -533,7 +555,7 @@ public final class GXSecure {
         s.add(a);
         s.add(b);
         byte[] tmp = GXAsn1Converter.toByteArray(s);
-        Signature instance = Signature.getInstance("SHA256withECDSA");
+        Signature instance = GXCryptoEngines.getSignature("SHA256withECDSA");
         instance.initVerify(publicSigningKey);
         instance.update(data);
         boolean v = instance.verify(tmp);
@@ -549,16 +571,14 @@ public final class GXSecure {
         GXByteBuffer iv = new GXByteBuffer();
         iv.set(p.getSystemTitle());
         iv.setUInt32(p.getInvocationCounter());
-        SecretKeySpec eks = new SecretKeySpec(p.getBlockCipherKey(), "AES");
-        Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
         int mode;
         if (encrypt) {
             mode = Cipher.ENCRYPT_MODE;
         } else {
             mode = Cipher.DECRYPT_MODE;
         }
-        c.init(mode, eks, new GCMParameterSpec(12 * 8, iv.array()));
-        return c;
+        return GXCryptoEngines.getCipher("AES/GCM/NoPadding", mode, p.getBlockCipherKey(),
+                new GCMParameterSpec(12 * 8, iv.array()));
     }
 
     private static byte[] countTag(final Cipher c, final AesGcmParameter p, final byte[] data)
@@ -733,6 +753,9 @@ public final class GXSecure {
                 throw new IllegalArgumentException("cryptedData");
             }
             byte[] tmp;
+            // Data might be a slice that doesn't start from the beginning of
+            // the buffer.
+            int apduStart = data.position();
             int len, cmd = data.getUInt8();
             switch (cmd) {
             case Command.GENERAL_GLO_CIPHERING:
@@ -979,7 +1002,7 @@ public final class GXSecure {
                 }
             } else if (value == KeyAgreementScheme.ONE_PASS_DIFFIE_HELLMAN.ordinal()) {
                 // Client generates shared secret.
-                KeyAgreement ka = KeyAgreement.getInstance("ECDH");
+                KeyAgreement ka = GXCryptoEngines.getKeyAgreement();
                 ka.init(kp.getPrivate());
                 ka.doPhase(kp.getPublic(), true);
                 byte[] z = ka.generateSecret();
@@ -995,7 +1018,7 @@ public final class GXSecure {
                 p.setBlockCipherKey(kdf.subArray(0, 16));
             } else if (value == KeyAgreementScheme.STATIC_UNIFIED_MODEL.ordinal()) {
                 // Client generates shared secret.
-                KeyAgreement ka = KeyAgreement.getInstance("ECDH");
+                KeyAgreement ka = GXCryptoEngines.getKeyAgreement();
                 ka.init(p.getSettings().getCipher().getKeyAgreementKeyPair().getPrivate());
                 ka.doPhase(kp.getPublic(), true);
                 byte[] z = ka.generateSecret();
@@ -1020,19 +1043,31 @@ public final class GXSecure {
             if (p.getSecurity() != Security.NONE) {
                 invocationCounter = data.getUInt32();
             }
-            if (p.getSettings().getInvocationCounter() != null
-                    && p.getSettings().getInvocationCounter().getValue() instanceof Number) {
-                {
-                    if (invocationCounter < ((Number) p.getSettings().getInvocationCounter().getValue()).longValue()) {
-                        throw new GXDLMSExceptionResponse(ExceptionStateError.SERVICE_NOT_ALLOWED,
-                                ExceptionServiceError.INVOCATION_COUNTER_ERROR,
-                                p.getSettings().getInvocationCounter().getValue());
+            GXDLMSData ic = p.getSettings().getInvocationCounter();
+            if (ic != null) {
+                // Check and update are done atomically, because the same
+                // invocation counter object can be shared between the
+                // connections.
+                synchronized (ic) {
+                    if (ic.getValue() instanceof Number) {
+                        if (invocationCounter < ((Number) ic.getValue()).longValue()) {
+                            throw new GXDLMSExceptionResponse(ExceptionStateError.SERVICE_NOT_ALLOWED,
+                                    ExceptionServiceError.INVOCATION_COUNTER_ERROR, ic.getValue());
+                        }
+                        // Update IC value.
+                        ic.setValue(invocationCounter);
                     }
-                    // Update IC value.
-                    p.getSettings().getInvocationCounter().setValue(invocationCounter);
                 }
             }
             p.setInvocationCounter(invocationCounter);
+            if (p.getKeyResolver() != null && value == 0 && p.getSystemTitle() != null) {
+                // Keys of the sender are used if they are known.
+                GXCipherKeys keys = p.getKeyResolver().getKeys(p.getSystemTitle());
+                if (keys != null) {
+                    p.setBlockCipherKey(keys.getBlockCipherKey());
+                    p.setAuthenticationKey(keys.getAuthenticationKey());
+                }
+            }
             if (p.getAuthenticationKey() == null || p.getBlockCipherKey() == null) {
                 if (p.getSettings().getCryptoNotifier() == null) {
                     throw new Exception("Failed to get the block cipher key.");
@@ -1114,7 +1149,7 @@ public final class GXSecure {
             if (cmd == Command.GENERAL_SIGNING) {
                 // Content length is not add for the signed data.
                 GXByteBuffer signedData = new GXByteBuffer();
-                signedData.set(data.getData(), 1, contentStart - 1);
+                signedData.set(data.getData(), apduStart + 1, contentStart - apduStart - 1);
                 signedData.set(p.getCipheredContent());
                 len = GXCommon.getObjectCount(data);
                 byte[] s = new byte[len];
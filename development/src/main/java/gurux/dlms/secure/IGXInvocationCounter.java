@@ -0,0 +1,66 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+/**
+ * Invocation counter of the ciphered APDUs that are sent.
+ * <p>
+ * Implementations must be thread safe. Same invocation counter is never
+ * returned twice from {@link #next()} until the value is set again.
+ * </p>
+ * 
+ * @see GXCiphering#setInvocationCounterProvider(IGXInvocationCounter)
+ */
+public interface IGXInvocationCounter {
+    /**
+     * @return Invocation counter that is used next.
+     */
+    long get();
+
+    /**
+     * @param value
+     *            Invocation counter that is used next.
+     */
+    void set(long value);
+
+    /**
+     * Reserve invocation counter for the next ciphered APDU.
+     * 
+     * @return Reserved invocation counter.
+     * @throws IllegalStateException
+     *             All invocation counters are used.
+     */
+    long next();
+}
@@ -0,0 +1,64 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+/**
+ * Resolves the ciphering keys of the sender by the system title.
+ * <p>
+ * When the resolver is set to the ciphering settings, the keys of the
+ * received ciphered APDUs are resolved by the system title of the sender. The
+ * system title is taken from the general ciphering APDU or from the
+ * association. If the resolver doesn't know the sender, keys of the ciphering
+ * settings are used.
+ * </p>
+ * <p>
+ * Resolver is called from the threads that parse the received data, so
+ * implementations must be thread safe.
+ * </p>
+ * 
+ * @see GXCiphering#setKeyResolver(IGXKeyResolver)
+ * @see GXKeyStore
+ * @see GXMappedKeyStore
+ */
+public interface IGXKeyResolver {
+    /**
+     * Get the keys of the sender.
+     * 
+     * @param systemTitle
+     *            System title of the sender.
+     * @return Keys of the sender or null, if the sender is unknown.
+     */
+    GXCipherKeys getKeys(byte[] systemTitle);
+}
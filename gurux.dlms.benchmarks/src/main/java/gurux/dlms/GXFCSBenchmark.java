@@ -0,0 +1,154 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+//
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2.
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare table-driven FCS16 and FCS24 against the byte-by-byte and
+ * bit-by-bit implementations they replaced. Benchmark is in the gurux.dlms
+ * package, because the checksum class is package private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GXFCSBenchmark {
+
+    /**
+     * Checksummed byte count.
+     */
+    @Param({ "16", "128", "1024" })
+    private int size;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        data = new byte[size];
+        new Random(size).nextBytes(data);
+        if (GXFCS16.countFCS16(data, 0, size) != legacyFCS16(data, 0, size)) {
+            throw new IllegalStateException("FCS16 mismatch.");
+        }
+        if (GXFCS16.countFCS24(data, 0, size) != legacyFCS24(data, 0, size)) {
+            throw new IllegalStateException("FCS24 mismatch.");
+        }
+    }
+
+    @Benchmark
+    public int fcs16() {
+        return GXFCS16.countFCS16(data, 0, size);
+    }
+
+    @Benchmark
+    public int fcs16Legacy() {
+        return legacyFCS16(data, 0, size);
+    }
+
+    @Benchmark
+    public int fcs24() {
+        return GXFCS16.countFCS24(data, 0, size);
+    }
+
+    @Benchmark
+    public int fcs24Legacy() {
+        return legacyFCS24(data, 0, size);
+    }
+
+    /**
+     * Byte-by-byte FCS16 that was used before slicing tables.
+     */
+    private static int legacyFCS16(final byte[] buff, final int offset, final int count) {
+        int fcs16 = 0xFFFF;
+        for (int pos = offset; pos < offset + count; ++pos) {
+            fcs16 = (((fcs16 >> 8) ^ LEGACY_FCS16[(fcs16 ^ (int) buff[pos]) & 0xFF]) & 0xFFFF);
+        }
+        fcs16 = ~fcs16;
+        fcs16 = ((fcs16 >> 8) & 0xFF) | (fcs16 << 8);
+        return (fcs16 & 0xFFFF);
+    }
+
+    /**
+     * Bit-by-bit FCS24 that was used before slicing tables. Counter is an int,
+     * so frames longer than 127 bytes can be measured.
+     */
+    private static int legacyFCS24(final byte[] buff, final int index, final int count) {
+        long crcreg = 0;
+        for (int j = 0; j < count; ++j) {
+            int b = (buff[index + j] & 0xFF);
+            for (int i = 0; i < 8; ++i) {
+                crcreg >>>= 1;
+                if ((b & 0x80) != 0) {
+                    crcreg |= 2147483648L;
+                }
+                if ((crcreg & 0x80) != 0) {
+                    crcreg = crcreg ^ 3551967744L;
+                }
+                b <<= 1;
+            }
+        }
+        return (int) (crcreg >>> 8);
+    }
+
+    /**
+     * Byte-by-byte FCS16 table.
+     */
+    private static final int[] LEGACY_FCS16 = new int[256];
+
+    static {
+        for (int i = 0; i != 256; ++i) {
+            int v = i;
+            for (int bit = 0; bit != 8; ++bit) {
+                v = (v & 1) != 0 ? (v >>> 1) ^ 0x8408 : v >>> 1;
+            }
+            LEGACY_FCS16[i] = v;
+        }
+    }
+}
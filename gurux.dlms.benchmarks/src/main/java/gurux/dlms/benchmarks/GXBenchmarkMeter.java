@@ -0,0 +1,263 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+//
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2.
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import gurux.dlms.GXDLMSConnectionEventArgs;
+import gurux.dlms.GXDateTime;
+import gurux.dlms.ValueEventArgs;
+import gurux.dlms.enums.AccessMode;
+import gurux.dlms.enums.Authentication;
+import gurux.dlms.enums.Conformance;
+import gurux.dlms.enums.InterfaceType;
+import gurux.dlms.enums.MethodAccessMode;
+import gurux.dlms.enums.ObjectType;
+import gurux.dlms.enums.SourceDiagnostic;
+import gurux.dlms.enums.Unit;
+import gurux.dlms.objects.GXDLMSAssociationLogicalName;
+import gurux.dlms.objects.GXDLMSClock;
+import gurux.dlms.objects.GXDLMSObject;
+import gurux.dlms.objects.GXDLMSProfileGeneric;
+import gurux.dlms.objects.GXDLMSRegister;
+import gurux.dlms.objects.GXDLMSSecuritySetup;
+import gurux.dlms.objects.enums.ApplicationContextName;
+import gurux.dlms.objects.enums.SecuritySuite;
+import gurux.dlms.secure.GXDLMSSecureServer2;
+
+/**
+ * In-memory meter that is used to record the frames that benchmarks replay.
+ * Only one association is supported and all the values are generated in
+ * advance, so the meter itself never touches the network or the disk.
+ */
+public class GXBenchmarkMeter extends GXDLMSSecureServer2 {
+
+    /**
+     * Logical name of the load profile.
+     */
+    public static final String PROFILE_LN = "1.0.99.1.0.255";
+
+    /**
+     * Logical name of the active energy register.
+     */
+    public static final String REGISTER_LN = "1.0.1.8.0.255";
+
+    /**
+     * Logical name of the clock.
+     */
+    public static final String CLOCK_LN = "0.0.1.0.0.255";
+
+    /**
+     * All rows of the load profile. Buffer of the profile generic holds only
+     * the rows that are sent in the current PDU.
+     */
+    private final List<Object[]> rows = new ArrayList<Object[]>();
+
+    /**
+     * Constructor.
+     *
+     * @param interfaceType
+     *            Used interface type.
+     * @param ciphered
+     *            Is association ciphered.
+     * @param gbt
+     *            Is general block transfer allowed.
+     * @param maxPduSize
+     *            Maximum PDU size.
+     * @param rowCount
+     *            Amount of the rows in the load profile.
+     */
+    public GXBenchmarkMeter(final InterfaceType interfaceType, final boolean ciphered, final boolean gbt,
+            final int maxPduSize, final int rowCount) {
+        super(createAssociation(ciphered, gbt, maxPduSize), interfaceType);
+        getCiphering().setSystemTitle("GRX12345".getBytes());
+        if (ciphered) {
+            GXDLMSAssociationLogicalName ln = (GXDLMSAssociationLogicalName) getItems().get(0);
+            GXDLMSSecuritySetup s = new GXDLMSSecuritySetup("0.0.43.0.0.255");
+            s.setSecuritySuite(SecuritySuite.SUITE_0);
+            s.setGuek(getCiphering().getBlockCipherKey());
+            s.setGak(getCiphering().getAuthenticationKey());
+            s.setServerSystemTitle(getCiphering().getSystemTitle());
+            ln.setSecuritySetupReference(s.getLogicalName());
+            getItems().add(s);
+        }
+        setMaxReceivePDUSize(maxPduSize);
+        GXDLMSClock clock = new GXDLMSClock(CLOCK_LN);
+        GXDLMSRegister register = new GXDLMSRegister(REGISTER_LN);
+        register.setUnit(Unit.ACTIVE_ENERGY);
+        register.setScaler(1);
+        register.setValue(12345678L);
+        GXDLMSProfileGeneric pg = new GXDLMSProfileGeneric(PROFILE_LN);
+        pg.addCaptureObject(clock, 2, 0);
+        pg.addCaptureObject(register, 2, 0);
+        // Rows are generated in advance, so automatic capture is not used.
+        pg.setCapturePeriod(0);
+        pg.setProfileEntries(rowCount);
+        getItems().add(clock);
+        getItems().add(register);
+        getItems().add(pg);
+        Calendar start = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        start.clear();
+        start.set(2024, Calendar.JANUARY, 1);
+        for (int pos = 0; pos != rowCount; ++pos) {
+            rows.add(new Object[] { new GXDateTime(start.getTime()), Long.valueOf(1000L * pos) });
+            start.add(Calendar.MINUTE, 15);
+        }
+        pg.setEntriesInUse(rowCount);
+        initialize();
+    }
+
+    private static GXDLMSAssociationLogicalName createAssociation(final boolean ciphered, final boolean gbt,
+            final int maxPduSize) {
+        GXDLMSAssociationLogicalName ln = new GXDLMSAssociationLogicalName();
+        ln.setClientSAP(16);
+        ln.getXDLMSContextInfo().setMaxReceivePduSize(maxPduSize);
+        ln.getXDLMSContextInfo().setMaxSendPduSize(maxPduSize);
+        ln.getXDLMSContextInfo().getConformance().clear();
+        ln.getXDLMSContextInfo().getConformance().add(Conformance.GET);
+        ln.getXDLMSContextInfo().getConformance().add(Conformance.SET);
+        ln.getXDLMSContextInfo().getConformance().add(Conformance.ACTION);
+        ln.getXDLMSContextInfo().getConformance().add(Conformance.BLOCK_TRANSFER_WITH_GET_OR_READ);
+        ln.getXDLMSContextInfo().getConformance().add(Conformance.BLOCK_TRANSFER_WITH_SET_OR_WRITE);
+        ln.getXDLMSContextInfo().getConformance().add(Conformance.BLOCK_TRANSFER_WITH_ACTION);
+        ln.getXDLMSContextInfo().getConformance().add(Conformance.SELECTIVE_ACCESS);
+        if (gbt) {
+            ln.getXDLMSContextInfo().getConformance().add(Conformance.GENERAL_BLOCK_TRANSFER);
+        }
+        if (ciphered) {
+            ln.getApplicationContextName().setContextId(ApplicationContextName.LOGICAL_NAME_WITH_CIPHERING);
+        }
+        ln.getAuthenticationMechanismName().setMechanismId(Authentication.NONE);
+        return ln;
+    }
+
+    @Override
+    protected boolean isTarget(final int serverAddress, final int clientAddress) {
+        setAssignedAssociation((GXDLMSAssociationLogicalName) getItems()
+                .findByLN(ObjectType.ASSOCIATION_LOGICAL_NAME, "0.0.40.0.0.255"));
+        return true;
+    }
+
+    @Override
+    protected SourceDiagnostic onValidateAuthentication(final Authentication authentication,
+            final byte[] password) {
+        return SourceDiagnostic.NONE;
+    }
+
+    @Override
+    protected GXDLMSObject onFindObject(final ObjectType objectType, final int sn, final String ln) {
+        return null;
+    }
+
+    @Override
+    public void onPreRead(final ValueEventArgs[] args) {
+        for (ValueEventArgs e : args) {
+            if (e.getTarget() instanceof GXDLMSProfileGeneric && e.getIndex() == 2) {
+                GXDLMSProfileGeneric pg = (GXDLMSProfileGeneric) e.getTarget();
+                // If reading first time.
+                if (e.getRowEndIndex() == 0) {
+                    if (e.getSelector() == 2) {
+                        List<?> arr = (List<?>) e.getParameters();
+                        e.setRowBeginIndex(((Number) arr.get(0)).longValue() - 1);
+                        e.setRowEndIndex(Math.min(rows.size(), ((Number) arr.get(1)).longValue()));
+                    } else {
+                        e.setRowEndIndex(rows.size());
+                    }
+                }
+                long count = e.getRowEndIndex() - e.getRowBeginIndex();
+                // Read only rows that can fit to one PDU.
+                if (count > e.getRowToPdu()) {
+                    count = e.getRowToPdu();
+                }
+                pg.clearBuffer();
+                int begin = (int) e.getRowBeginIndex();
+                pg.addBuffer(rows.subList(begin, begin + (int) count));
+            }
+        }
+    }
+
+    @Override
+    public void onPostRead(final ValueEventArgs[] args) {
+    }
+
+    @Override
+    protected void onPreWrite(final ValueEventArgs[] args) {
+    }
+
+    @Override
+    protected void onPostWrite(final ValueEventArgs[] args) {
+    }
+
+    @Override
+    protected void onPreAction(final ValueEventArgs[] args) {
+    }
+
+    @Override
+    protected void onPostAction(final ValueEventArgs[] args) {
+    }
+
+    @Override
+    public void onPreGet(final ValueEventArgs[] args) {
+    }
+
+    @Override
+    public void onPostGet(final ValueEventArgs[] args) {
+    }
+
+    @Override
+    protected AccessMode onGetAttributeAccess(final ValueEventArgs arg) {
+        return AccessMode.READ_WRITE;
+    }
+
+    @Override
+    protected MethodAccessMode onGetMethodAccess(final ValueEventArgs arg) {
+        return MethodAccessMode.ACCESS;
+    }
+
+    @Override
+    protected void onConnected(final GXDLMSConnectionEventArgs connectionInfo) {
+    }
+
+    @Override
+    protected void onInvalidConnection(final GXDLMSConnectionEventArgs connectionInfo) {
+    }
+
+    @Override
+    protected void onDisconnected(final GXDLMSConnectionEventArgs connectionInfo) {
+    }
+}
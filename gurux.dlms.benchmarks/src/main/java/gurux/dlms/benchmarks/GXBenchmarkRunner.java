@@ -0,0 +1,68 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+//
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2.
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.dlms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks. GC profiler is added by default, so allocated bytes per
+ * operation (gc.alloc.rate.norm) are reported next to operations per second.
+ */
+public final class GXBenchmarkRunner {
+
+    private GXBenchmarkRunner() {
+
+    }
+
+    /**
+     * Main method.
+     *
+     * @param args
+     *            JMH command line arguments.
+     * @throws Exception
+     *             Running benchmarks failed.
+     */
+    public static void main(final String[] args) throws Exception {
+        List<String> list = new ArrayList<String>(Arrays.asList(args));
+        if (!list.contains("-prof")) {
+            list.add("-prof");
+            list.add("gc");
+        }
+        org.openjdk.jmh.Main.main(list.toArray(new String[list.size()]));
+    }
+}
@@ -0,0 +1,136 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+//
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2.
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.dlms.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gurux.dlms.enums.InterfaceType;
+import gurux.dlms.benchmarks.GXRecordedSession.Operation;
+import gurux.dlms.GXReplyData;
+
+/**
+ * Read the whole load profile. Reply is split to several data blocks and
+ * frames, so block transfer, general block transfer and profile generic
+ * buffer parsing are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GXProfileBenchmark {
+
+    /**
+     * How the load profile is transferred.
+     */
+    public enum Transfer {
+        /**
+         * Block transfer without ciphering.
+         */
+        PLAIN,
+        /**
+         * Ciphered block transfer.
+         */
+        CIPHERED,
+        /**
+         * General block transfer without ciphering.
+         */
+        GBT
+    }
+
+    /**
+     * Used interface type.
+     */
+    @Param({ "HDLC", "WRAPPER" })
+    private InterfaceType interfaceType;
+
+    /**
+     * How the load profile is transferred.
+     */
+    @Param({ "PLAIN", "CIPHERED", "GBT" })
+    private Transfer transfer;
+
+    /**
+     * Amount of the rows. One day and one month of 15 minute values.
+     */
+    @Param({ "96", "2880" })
+    private int rows;
+
+    private GXRecordedSession session;
+    private List<byte[]> frames;
+
+    /**
+     * Connect to the meter and record the replies.
+     *
+     * @throws Exception
+     *             Recording failed.
+     */
+    @Setup
+    public void setup() throws Exception {
+        session = new GXRecordedSession(interfaceType, transfer == Transfer.CIPHERED, transfer == Transfer.GBT,
+                1024, rows);
+        frames = session.record(Operation.PROFILE);
+        if (session.getProfile().getBuffer().length != rows) {
+            throw new IllegalStateException("Invalid row count.");
+        }
+    }
+
+    /**
+     * Read the load profile.
+     *
+     * @return Reply data.
+     * @throws Exception
+     *             Reading failed.
+     */
+    @Benchmark
+    public GXReplyData read() throws Exception {
+        return session.replay(Operation.PROFILE, frames, new GXReplyData());
+    }
+}
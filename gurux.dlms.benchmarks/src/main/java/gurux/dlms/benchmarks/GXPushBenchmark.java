@@ -0,0 +1,103 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+//
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2.
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.dlms.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gurux.dlms.GXReplyData;
+import gurux.dlms.enums.InterfaceType;
+
+/**
+ * Parse recorded data notification. Data notification is sent in one frame,
+ * so only two rows are pushed. S-FSK PLC frame can't hold more.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GXPushBenchmark {
+
+    /**
+     * Used interface type.
+     */
+    @Param({ "HDLC", "WRAPPER", "COAP", "PLC", "PLC_HDLC" })
+    private InterfaceType interfaceType;
+
+    /**
+     * Are messages ciphered.
+     */
+    @Param({ "false", "true" })
+    private boolean ciphered;
+
+    private GXRecordedPush push;
+
+    /**
+     * Record the data notification.
+     *
+     * @throws Exception
+     *             Recording failed.
+     */
+    @Setup
+    public void setup() throws Exception {
+        push = new GXRecordedPush(interfaceType, ciphered, 1024, 2);
+    }
+
+    /**
+     * Parse the data notification.
+     *
+     * @return Received notification.
+     * @throws Exception
+     *             Parsing failed.
+     */
+    @Benchmark
+    public GXReplyData receive() throws Exception {
+        return push.replay(new GXReplyData());
+    }
+}
@@ -0,0 +1,147 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+//
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2.
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.benchmarks;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import gurux.dlms.GXByteBuffer;
+import gurux.dlms.GXDateTime;
+import gurux.dlms.GXReplyData;
+import gurux.dlms.enums.Authentication;
+import gurux.dlms.enums.DataType;
+import gurux.dlms.enums.InterfaceType;
+import gurux.dlms.plc.enums.PlcDestinationAddress;
+import gurux.dlms.enums.Security;
+import gurux.dlms.internal.GXCommon;
+import gurux.dlms.secure.GXDLMSSecureClient;
+import gurux.dlms.secure.GXDLMSSecureNotify;
+
+/**
+ * Data notification frames that are recorded from the meter side notifier.
+ * <p>
+ * In-memory meter answers only in HDLC and WRAPPER framing, so CoAP and PLC
+ * frames are recorded as pushed load profile rows. They are decoded with the
+ * same code path as the replies of the meter.
+ * </p>
+ */
+public final class GXRecordedPush {
+
+    /**
+     * Receiver that parses the recorded frames.
+     */
+    private final GXDLMSSecureClient receiver;
+
+    /**
+     * Recorded frames.
+     */
+    private final List<byte[]> frames;
+
+    /**
+     * Constructor.
+     *
+     * @param interfaceType
+     *            Used interface type.
+     * @param ciphered
+     *            Are messages ciphered.
+     * @param maxPduSize
+     *            Maximum PDU size.
+     * @param rowCount
+     *            Amount of the pushed load profile rows.
+     * @throws Exception
+     *             Generating frames failed.
+     */
+    public GXRecordedPush(final InterfaceType interfaceType, final boolean ciphered, final int maxPduSize,
+            final int rowCount) throws Exception {
+        GXDLMSSecureNotify sender = new GXDLMSSecureNotify(true, 16, 1, interfaceType);
+        sender.setMaxReceivePDUSize(maxPduSize);
+        sender.getCiphering().setSystemTitle("GRX12345".getBytes());
+        if (interfaceType == InterfaceType.COAP) {
+            sender.getCoap().setToken(BigInteger.valueOf(0x4745));
+        } else if (interfaceType == InterfaceType.PLC) {
+            // Push is sent to all physical devices.
+            sender.getPlc().setMacDestinationAddress(PlcDestinationAddress.ALL_PHYSICAL.getValue());
+        }
+        if (ciphered) {
+            sender.getCiphering().setSecurity(Security.AUTHENTICATION_ENCRYPTION);
+        }
+        receiver = new GXDLMSSecureClient(true, 16, 1, Authentication.NONE, null, interfaceType);
+        receiver.getCoap().setToken(BigInteger.valueOf(0x4745));
+        GXByteBuffer data = new GXByteBuffer();
+        data.setUInt8(DataType.ARRAY.getValue());
+        GXCommon.setObjectCount(rowCount, data);
+        Calendar start = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        start.clear();
+        start.set(2024, Calendar.JANUARY, 1);
+        for (int pos = 0; pos != rowCount; ++pos) {
+            data.setUInt8(DataType.STRUCTURE.getValue());
+            data.setUInt8(2);
+            sender.addData(new GXDateTime(start.getTime()), DataType.OCTET_STRING, data);
+            sender.addData(1000L * pos, DataType.UINT32, data);
+            start.add(Calendar.MINUTE, 15);
+        }
+        frames = Arrays.asList(sender.generateDataNotificationMessages(null, data));
+    }
+
+    /**
+     * @return Recorded frames.
+     */
+    public List<byte[]> getFrames() {
+        return frames;
+    }
+
+    /**
+     * Parse the recorded frames.
+     *
+     * @param reply
+     *            Received notification.
+     * @return Received notification.
+     * @throws Exception
+     *             Parsing failed.
+     */
+    public GXReplyData replay(final GXReplyData reply) throws Exception {
+        GXReplyData data = new GXReplyData();
+        for (byte[] it : frames) {
+            receiver.getData(it, data, reply);
+        }
+        if (!reply.isComplete() || reply.isMoreData()) {
+            throw new IllegalStateException("Notification is not complete.");
+        }
+        return reply;
+    }
+}
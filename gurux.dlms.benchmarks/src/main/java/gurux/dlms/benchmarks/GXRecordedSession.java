@@ -0,0 +1,289 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+//
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2.
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.benchmarks;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import gurux.dlms.GXDLMSClient;
+import gurux.dlms.GXReplyData;
+import gurux.dlms.enums.Authentication;
+import gurux.dlms.enums.Conformance;
+import gurux.dlms.enums.InterfaceType;
+import gurux.dlms.enums.ObjectType;
+import gurux.dlms.enums.Security;
+import gurux.dlms.objects.GXDLMSProfileGeneric;
+import gurux.dlms.objects.GXDLMSRegister;
+import gurux.dlms.secure.GXDLMSSecureClient;
+
+/**
+ * Client session that records the frames of the in-memory meter and replays
+ * them later without the meter.
+ * <p>
+ * Replaying runs exactly the same read loop that was used when the frames were
+ * recorded, so the client generates the same requests and receiver ready
+ * frames and parses the same replies. The measured cost is the client side
+ * cost of one operation.
+ * </p>
+ */
+public final class GXRecordedSession {
+
+    /**
+     * Operations that can be recorded.
+     */
+    public enum Operation {
+        /**
+         * Get register value.
+         */
+        GET,
+        /**
+         * Set register value.
+         */
+        SET,
+        /**
+         * Invoke register reset action.
+         */
+        ACTION,
+        /**
+         * Read the whole load profile.
+         */
+        PROFILE
+    }
+
+    /**
+     * Client that allows the frame sequence to reset between operations.
+     */
+    private static final class GXClient extends GXDLMSSecureClient {
+        GXClient(final InterfaceType interfaceType) {
+            super(true, 16, 1, Authentication.NONE, null, interfaceType);
+        }
+
+        void resetFrameSequence() {
+            getSettings().resetFrameSequence();
+        }
+    }
+
+    private final GXClient client;
+    private final GXBenchmarkMeter meter;
+    private final GXDLMSRegister register;
+    private final GXDLMSProfileGeneric profile;
+
+    /**
+     * Received frames when the session is recording. Otherwise null.
+     */
+    private List<byte[]> recording;
+
+    /**
+     * Frames to replay. Null when the session is recording.
+     */
+    private Iterator<byte[]> replay;
+
+    /**
+     * Constructor. The client is connected to the in-memory meter.
+     *
+     * @param interfaceType
+     *            Used interface type.
+     * @param ciphered
+     *            Are messages ciphered.
+     * @param gbt
+     *            Is general block transfer used.
+     * @param maxPduSize
+     *            Maximum PDU size.
+     * @param rowCount
+     *            Amount of the rows in the load profile.
+     * @throws Exception
+     *             Connection failed.
+     */
+    public GXRecordedSession(final InterfaceType interfaceType, final boolean ciphered, final boolean gbt,
+            final int maxPduSize, final int rowCount) throws Exception {
+        meter = new GXBenchmarkMeter(interfaceType, ciphered, gbt, maxPduSize, rowCount);
+        client = new GXClient(interfaceType);
+        client.setMaxReceivePDUSize(maxPduSize);
+        if (interfaceType == InterfaceType.COAP) {
+            client.getCoap().setToken(BigInteger.valueOf(0x4745));
+        }
+        if (!gbt) {
+            client.getProposedConformance().remove(Conformance.GENERAL_BLOCK_TRANSFER);
+        }
+        if (ciphered) {
+            client.getCiphering().setSecurity(Security.AUTHENTICATION_ENCRYPTION);
+            client.getCiphering().setSystemTitle("GRX00001".getBytes());
+        }
+        register = new GXDLMSRegister(GXBenchmarkMeter.REGISTER_LN);
+        profile = copyProfile((GXDLMSProfileGeneric) meter.getItems().findByLN(ObjectType.PROFILE_GENERIC,
+                GXBenchmarkMeter.PROFILE_LN));
+        recording = new ArrayList<byte[]>();
+        GXReplyData reply = new GXReplyData();
+        byte[] data = client.snrmRequest();
+        if (data.length != 0) {
+            readDataBlock(data, reply);
+            client.parseUAResponse(reply.getData());
+            reply.clear();
+        }
+        for (byte[] it : client.aarqRequest()) {
+            reply.clear();
+            readDataBlock(it, reply);
+        }
+        client.parseAareResponse(reply.getData());
+        recording = null;
+    }
+
+    private static GXDLMSProfileGeneric copyProfile(final GXDLMSProfileGeneric source) {
+        GXDLMSProfileGeneric pg = new GXDLMSProfileGeneric(source.getLogicalName());
+        pg.getCaptureObjects().addAll(source.getCaptureObjects());
+        pg.setCapturePeriod(source.getCapturePeriod());
+        return pg;
+    }
+
+    /**
+     * @return Client that is used to generate the requests and parse the
+     *         replies.
+     */
+    public GXDLMSClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return Client side load profile.
+     */
+    public GXDLMSProfileGeneric getProfile() {
+        return profile;
+    }
+
+    /**
+     * Execute the operation against the meter and record the replies.
+     *
+     * @param operation
+     *            Operation to record.
+     * @return Recorded reply frames.
+     * @throws Exception
+     *             Operation failed.
+     */
+    public List<byte[]> record(final Operation operation) throws Exception {
+        recording = new ArrayList<byte[]>();
+        try {
+            meter.getSettings().resetFrameSequence();
+            execute(operation, new GXReplyData());
+            return recording;
+        } finally {
+            recording = null;
+        }
+    }
+
+    /**
+     * Execute the operation using recorded replies.
+     *
+     * @param operation
+     *            Operation to replay.
+     * @param frames
+     *            Recorded reply frames.
+     * @param reply
+     *            Reply data.
+     * @return Reply data.
+     * @throws Exception
+     *             Operation failed.
+     */
+    public GXReplyData replay(final Operation operation, final List<byte[]> frames, final GXReplyData reply)
+            throws Exception {
+        replay = frames.iterator();
+        try {
+            execute(operation, reply);
+            return reply;
+        } finally {
+            replay = null;
+        }
+    }
+
+    private void execute(final Operation operation, final GXReplyData reply) throws Exception {
+        client.resetFrameSequence();
+        byte[][] data;
+        switch (operation) {
+        case GET:
+            data = client.read(register, 2);
+            break;
+        case SET:
+            register.setValue(12345678L);
+            data = client.write(register, 2);
+            break;
+        case ACTION:
+            data = register.reset(client);
+            break;
+        case PROFILE:
+            profile.clearBuffer();
+            data = client.read(profile, 2);
+            break;
+        default:
+            throw new IllegalArgumentException("operation");
+        }
+        for (byte[] it : data) {
+            reply.clear();
+            readDataBlock(it, reply);
+        }
+        if (operation == Operation.PROFILE) {
+            client.updateValue(profile, 2, reply.getValue());
+        }
+    }
+
+    /**
+     * Send the data and read the reply including all the following frames and
+     * data blocks.
+     */
+    private void readDataBlock(final byte[] data, final GXReplyData reply) throws Exception {
+        byte[] frame = data;
+        while (true) {
+            if (!client.getData(send(frame), reply)) {
+                throw new IllegalStateException("Reply is not complete.");
+            }
+            if (!reply.isMoreData()) {
+                break;
+            }
+            frame = client.receiverReady(reply);
+        }
+    }
+
+    /**
+     * Send data to the meter or get the next recorded reply.
+     */
+    private byte[] send(final byte[] data) throws Exception {
+        if (replay != null) {
+            return replay.next();
+        }
+        byte[] frame = meter.handleRequest(data);
+        recording.add(frame);
+        return frame;
+    }
+}
@@ -0,0 +1,157 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+//
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: https://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2.
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.dlms.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gurux.dlms.GXDLMSTranslator;
+import gurux.dlms.enums.InterfaceType;
+import gurux.dlms.enums.TranslatorOutputType;
+import gurux.dlms.benchmarks.GXRecordedSession.Operation;
+
+/**
+ * Convert recorded replies of the meter to XML. Translator is used to log the
+ * frames of the sessions, so the cost of one frame is measured with a register
+ * value and with load profile data blocks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GXTranslatorBenchmark {
+
+    /**
+     * Used interface type of the frames.
+     */
+    @Param({ "HDLC", "WRAPPER" })
+    private InterfaceType interfaceType;
+
+    /**
+     * Used XML output type.
+     */
+    @Param({ "SIMPLE_XML", "STANDARD_XML" })
+    private TranslatorOutputType outputType;
+
+    /**
+     * Translated operation. Load profile is read with block transfer.
+     */
+    @Param({ "GET", "PROFILE" })
+    private Operation operation;
+
+    private GXDLMSTranslator translator;
+
+    /**
+     * Recorded frames.
+     */
+    private List<byte[]> frames;
+
+    /**
+     * PDUs of the recorded frames. Wrapper frames are used, because every
+     * wrapper frame holds a complete PDU.
+     */
+    private List<byte[]> pdus;
+
+    /**
+     * Connect to the meter and record the replies.
+     *
+     * @throws Exception
+     *             Recording failed.
+     */
+    @Setup
+    public void setup() throws Exception {
+        translator = new GXDLMSTranslator(outputType);
+        // Load profile is split to several HDLC frames.
+        translator.setCompletePdu(true);
+        frames = new GXRecordedSession(interfaceType, false, false, 1024, 96).record(operation);
+        List<byte[]> wrapper;
+        if (interfaceType == InterfaceType.WRAPPER) {
+            wrapper = frames;
+        } else {
+            wrapper = new GXRecordedSession(InterfaceType.WRAPPER, false, false, 1024, 96).record(operation);
+        }
+        pdus = new ArrayList<byte[]>(wrapper.size());
+        for (byte[] it : wrapper) {
+            byte[] pdu = new byte[it.length - 8];
+            System.arraycopy(it, 8, pdu, 0, pdu.length);
+            pdus.add(pdu);
+        }
+    }
+
+    /**
+     * Convert the recorded frames to XML.
+     *
+     * @param bh
+     *            Black hole.
+     * @throws Exception
+     *             Conversion failed.
+     */
+    @Benchmark
+    public void messageToXml(final Blackhole bh) throws Exception {
+        for (byte[] it : frames) {
+            bh.consume(translator.messageToXml(it));
+        }
+    }
+
+    /**
+     * Convert the PDUs of the recorded frames to XML.
+     *
+     * @param bh
+     *            Black hole.
+     */
+    @Benchmark
+    public void pduToXml(final Blackhole bh) {
+        for (byte[] it : pdus) {
+            bh.consume(translator.pduToXml(it));
+        }
+    }
+}